@@ -204,6 +204,31 @@ public abstract class Engine {
      */
     public abstract void setRandomSeed(int seed);
 
+    /**
+     * Sets the number of intra-op threads that operators use.
+     *
+     * <p>The scope of the limit depends on the engine, see {@link #isNumThreadsPerThread()}: MXNet
+     * limits the OpenMP threads of the operators that run on the current thread only, while
+     * PyTorch resizes its intra-op thread pool for the whole process, so the last value set
+     * applies to all threads. Engines that cannot limit the threads of an operator ignore it.
+     *
+     * @param numThreads the number of intra-op threads
+     */
+    public void setNumThreads(int numThreads) {}
+
+    /**
+     * Returns whether {@link #setNumThreads(int)} only limits the operators called from the
+     * current thread.
+     *
+     * <p>Only then can several inference threads each be given their own share of the CPU cores.
+     * Otherwise the limit applies to a thread pool shared by the whole process, or is ignored.
+     *
+     * @return {@code true} if the number of intra-op threads is limited per calling thread
+     */
+    public boolean isNumThreadsPerThread() {
+        return false;
+    }
+
     /** Logs debug information about the environment for use when debugging environment issues. */
     public void debugEnvironment() {
         logger.info("Engine name: {}", getEngineName());
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.inference;
+
+import ai.djl.translate.TranslateException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * An {@code AsyncPredictor} is a thread-safe, non-blocking facade over a pool of {@link
+ * Predictor}s.
+ *
+ * <p>Unlike a {@link Predictor}, an {@code AsyncPredictor} can be shared by any number of threads.
+ * Each call to {@link #predict(Object)} queues the input and returns immediately. Each predictor of
+ * the pool runs on its own thread, it takes the oldest queued input and coalesces the inputs that
+ * arrive within the maximum batch delay into one {@link Predictor#batchPredict(List)} call:
+ *
+ * <pre>
+ * try (AsyncPredictor&lt;Image, Classifications&gt; predictor =
+ *         AsyncPredictor.builder(model::newPredictor)
+ *                 .optPoolSize(2)
+ *                 .optMaxBatchSize(8)
+ *                 .optMaxBatchDelay(5, TimeUnit.MILLISECONDS)
+ *                 .build()) {
+ *     CompletableFuture&lt;Classifications&gt; result = predictor.predict(image);
+ * }
+ * </pre>
+ *
+ * <p>For inputs of variable length, such as text, set {@link Builder#optLengthBuckets} so that a
+ * batch does not pad short inputs to the length of a long one.
+ *
+ * @param <I> the input type
+ * @param <O> the output type
+ */
+public class AsyncPredictor<I, O> implements AutoCloseable {
+
+    private static final long POLL_INTERVAL = 100;
+
+    private BlockingQueue<Request<I, O>> queue;
+    private int maxBatchSize;
+    private long maxBatchDelay;
+    private BucketBatcher<Request<I, O>> batcher;
+    private List<Thread> threads;
+    private volatile boolean closed;
+
+    private LongAdder submitted;
+    private LongAdder rejected;
+    private LongAdder completed;
+    private LongAdder failed;
+    private LongAdder batches;
+    private LongAdder queueTime;
+    private LongAdder latency;
+
+    AsyncPredictor(Builder<I, O> builder) {
+        queue = new ArrayBlockingQueue<>(builder.queueSize);
+        maxBatchSize = builder.maxBatchSize;
+        maxBatchDelay = builder.maxBatchDelay;
+        if (builder.boundaries != null) {
+            ToIntFunction<I> length = builder.length;
+            batcher =
+                    new BucketBatcher<>(
+                            builder.boundaries,
+                            r -> length.applyAsInt(r.input),
+                            r -> r.begin,
+                            builder.queueSize);
+        }
+        submitted = new LongAdder();
+        rejected = new LongAdder();
+        completed = new LongAdder();
+        failed = new LongAdder();
+        batches = new LongAdder();
+        queueTime = new LongAdder();
+        latency = new LongAdder();
+        threads = new ArrayList<>(builder.poolSize);
+        List<Predictor<I, O>> predictors = new ArrayList<>(builder.poolSize);
+        try {
+            for (int i = 0; i < builder.poolSize; ++i) {
+                predictors.add(builder.factory.get());
+            }
+        } catch (RuntimeException e) {
+            for (Predictor<I, O> predictor : predictors) {
+                predictor.close();
+            }
+            throw e;
+        }
+        for (int i = 0; i < predictors.size(); ++i) {
+            Predictor<I, O> predictor = predictors.get(i);
+            String name = "djl-async-predictor-" + i;
+            Thread thread = new Thread(() -> run(predictor), name);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Creates a builder to build an {@code AsyncPredictor}.
+     *
+     * @param factory the factory that creates each {@link Predictor} of the pool, for example
+     *     {@code model::newPredictor}
+     * @param <I> the input type
+     * @param <O> the output type
+     * @return a new builder
+     */
+    public static <I, O> Builder<I, O> builder(Supplier<Predictor<I, O>> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Queues an input for inference.
+     *
+     * <p>If the queue is full, the returned future fails with a {@link
+     * RejectedExecutionException}. If the prediction fails, the returned future fails with the
+     * {@link TranslateException} or the runtime exception thrown by the {@link Predictor}.
+     *
+     * @param input the input
+     * @return a future of the output object defined by the user
+     */
+    public CompletableFuture<O> predict(I input) {
+        if (closed) {
+            throw new IllegalStateException("AsyncPredictor has been closed already.");
+        }
+        Request<I, O> request = new Request<>(input);
+        submitted.increment();
+        if (!queue.offer(request)) {
+            rejected.increment();
+            request.future.completeExceptionally(
+                    new RejectedExecutionException("The prediction queue is full."));
+        } else if (closed) {
+            // the predictor was closed while the input was being queued
+            failQueuedRequests();
+        }
+        return request.future;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the predictor.
+     *
+     * @return a snapshot of the statistics of the predictor
+     */
+    public Stats getStats() {
+        return new Stats(this);
+    }
+
+    /**
+     * Stops accepting inputs, waits until the queued inputs are processed and closes the pool of
+     * {@link Predictor}s.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failQueuedRequests();
+    }
+
+    private void run(Predictor<I, O> predictor) {
+        List<Request<I, O>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (batcher == null ? nextBatch(batch) : nextBucketedBatch(batch)) {
+                process(predictor, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            for (Request<I, O> request : batch) {
+                request.future.completeExceptionally(new CancellationException());
+            }
+        } finally {
+            predictor.close();
+        }
+    }
+
+    /**
+     * Takes the oldest queued inputs and the inputs that arrive within the maximum batch delay.
+     *
+     * @param batch the batch to fill
+     * @return {@code false} if the predictor is closed and the queue is empty
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean nextBatch(List<Request<I, O>> batch) throws InterruptedException {
+        Request<I, O> first;
+        do {
+            first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (first == null && closed) {
+                return false;
+            }
+        } while (first == null);
+        batch.add(first);
+        // the batch is sent when it is full or when its oldest input waited long enough
+        long deadline = first.begin + maxBatchDelay;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            Request<I, O> request =
+                    remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (request == null) {
+                break;
+            }
+            batch.add(request);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the queued inputs into length buckets and takes the inputs of the first bucket that
+     * is full or whose oldest input waited for the maximum batch delay.
+     *
+     * @param batch the batch to fill
+     * @return {@code false} if the predictor is closed and no input is left
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean nextBucketedBatch(List<Request<I, O>> batch) throws InterruptedException {
+        long pollInterval = TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL);
+        while (true) {
+            // the inputs stay in the bounded queue while the buckets are full
+            List<Request<I, O>> arrived = new ArrayList<>();
+            queue.drainTo(arrived, batcher.remainingCapacity());
+            for (Request<I, O> request : arrived) {
+                batcher.add(request);
+            }
+            // once closed, the remaining partial buckets are flushed without waiting
+            long delay = closed ? 0 : maxBatchDelay;
+            long now = System.nanoTime();
+            if (batcher.poll(batch, maxBatchSize, maxBatchSize, delay, now)) {
+                return true;
+            }
+            if (closed && queue.isEmpty() && batcher.size() == 0) {
+                return false;
+            }
+            long wait = Math.min(batcher.getWaitTime(delay, now), pollInterval);
+            if (batcher.remainingCapacity() == 0) {
+                // another worker filled the buckets, it dispatches them without waiting
+                Thread.yield();
+                continue;
+            }
+            Request<I, O> request = queue.poll(wait, TimeUnit.NANOSECONDS);
+            if (request != null) {
+                batcher.add(request);
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void process(Predictor<I, O> predictor, List<Request<I, O>> batch) {
+        long begin = System.nanoTime();
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Request<I, O> request : batch) {
+            queueTime.add(begin - request.begin);
+            inputs.add(request.input);
+        }
+        batches.increment();
+        try {
+            List<O> outputs = predictor.batchPredict(inputs);
+            long end = System.nanoTime();
+            for (int i = 0; i < batch.size(); ++i) {
+                Request<I, O> request = batch.get(i);
+                latency.add(end - request.begin);
+                request.future.complete(outputs.get(i));
+            }
+            completed.add(batch.size());
+        } catch (TranslateException | RuntimeException e) {
+            failed.add(batch.size());
+            for (Request<I, O> request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failQueuedRequests() {
+        List<Request<I, O>> requests = new ArrayList<>();
+        queue.drainTo(requests);
+        if (batcher != null) {
+            batcher.drainTo(requests);
+        }
+        for (Request<I, O> request : requests) {
+            rejected.increment();
+            request.future.completeExceptionally(
+                    new RejectedExecutionException("AsyncPredictor has been closed."));
+        }
+    }
+
+    /** A queued input. */
+    private static final class Request<I, O> {
+
+        I input;
+        long begin;
+        CompletableFuture<O> future;
+
+        Request(I input) {
+            this.input = input;
+            begin = System.nanoTime();
+            future = new CompletableFuture<>();
+        }
+    }
+
+    /** A snapshot of the statistics of an {@code AsyncPredictor}. */
+    public static final class Stats {
+
+        private int queueLength;
+        private long submitted;
+        private long rejected;
+        private long completed;
+        private long failed;
+        private long batches;
+        private long queueTime;
+        private long latency;
+
+        Stats(AsyncPredictor<?, ?> predictor) {
+            queueLength = predictor.queue.size();
+            if (predictor.batcher != null) {
+                queueLength += predictor.batcher.size();
+            }
+            submitted = predictor.submitted.sum();
+            rejected = predictor.rejected.sum();
+            completed = predictor.completed.sum();
+            failed = predictor.failed.sum();
+            batches = predictor.batches.sum();
+            queueTime = predictor.queueTime.sum();
+            latency = predictor.latency.sum();
+        }
+
+        /**
+         * Returns the number of inputs waiting in the queue.
+         *
+         * @return the number of inputs waiting in the queue
+         */
+        public int getQueueLength() {
+            return queueLength;
+        }
+
+        /**
+         * Returns the number of inputs submitted.
+         *
+         * @return the number of inputs submitted
+         */
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        /**
+         * Returns the number of inputs rejected because the queue was full or the predictor was
+         * closed.
+         *
+         * @return the number of inputs rejected
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the number of inputs predicted successfully.
+         *
+         * @return the number of inputs predicted successfully
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * Returns the number of inputs whose prediction failed.
+         *
+         * @return the number of inputs whose prediction failed
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the number of {@link Predictor#batchPredict(List)} calls.
+         *
+         * @return the number of batches
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Returns the average number of inputs per batch.
+         *
+         * @return the average number of inputs per batch
+         */
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) (completed + failed) / batches;
+        }
+
+        /**
+         * Returns the average time in milliseconds that an input waited in the queue.
+         *
+         * @return the average queue time in milliseconds
+         */
+        public double getAverageQueueTime() {
+            long count = completed + failed;
+            return count == 0 ? 0 : queueTime / 1_000_000d / count;
+        }
+
+        /**
+         * Returns the average time in milliseconds from submitting an input to its successful
+         * prediction.
+         *
+         * @return the average latency in milliseconds
+         */
+        public double getAverageLatency() {
+            return completed == 0 ? 0 : latency / 1_000_000d / completed;
+        }
+    }
+
+    /**
+     * A builder to construct an {@code AsyncPredictor}.
+     *
+     * @param <I> the input type
+     * @param <O> the output type
+     */
+    public static final class Builder<I, O> {
+
+        Supplier<Predictor<I, O>> factory;
+        int poolSize = 1;
+        int maxBatchSize = 1;
+        long maxBatchDelay;
+        int queueSize = 1000;
+        ToIntFunction<I> length;
+        int[] boundaries;
+
+        Builder(Supplier<Predictor<I, O>> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * Sets the number of {@link Predictor}s, each predictor runs one batch at a time.
+         *
+         * @param poolSize the number of predictors
+         * @return this {@code Builder}
+         */
+        public Builder<I, O> optPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of inputs coalesced into one batch.
+         *
+         * @param maxBatchSize the maximum batch size
+         * @return this {@code Builder}
+         */
+        public Builder<I, O> optMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time that the oldest input of a batch waits for more inputs.
+         *
+         * @param maxBatchDelay the maximum batch delay
+         * @param unit the time unit of the delay
+         * @return this {@code Builder}
+         */
+        public Builder<I, O> optMaxBatchDelay(long maxBatchDelay, TimeUnit unit) {
+            this.maxBatchDelay = unit.toNanos(maxBatchDelay);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of queued inputs, inputs beyond it are rejected.
+         *
+         * <p>With length buckets, up to the same number of inputs are sorted into the buckets in
+         * addition to the queued inputs.
+         *
+         * @param queueSize the maximum number of queued inputs
+         * @return this {@code Builder}
+         */
+        public Builder<I, O> optQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Sets the length buckets, so inputs are only batched with inputs of similar length.
+         *
+         * <p>A bucket is sent as soon as it holds the maximum batch size of inputs, or when its
+         * oldest input waited for the maximum batch delay, see {@link BucketBatcher}.
+         *
+         * @param length the function that returns the length of an input, for example the number
+         *     of tokens
+         * @param boundaries the strictly ascending inclusive upper bounds of the length of the
+         *     buckets
+         * @return this {@code Builder}
+         */
+        public Builder<I, O> optLengthBuckets(ToIntFunction<I> length, int... boundaries) {
+            this.length = length;
+            this.boundaries = boundaries;
+            return this;
+        }
+
+        /**
+         * Builds the {@code AsyncPredictor} and starts its pool of {@link Predictor}s.
+         *
+         * @return the {@code AsyncPredictor}
+         */
+        public AsyncPredictor<I, O> build() {
+            if (poolSize < 1 || maxBatchSize < 1 || queueSize < 1 || maxBatchDelay < 0) {
+                throw new IllegalArgumentException(
+                        "Pool size, batch size and queue size must be positive.");
+            }
+            return new AsyncPredictor<>(this);
+        }
+    }
+}
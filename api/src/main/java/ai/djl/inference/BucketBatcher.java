@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.inference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@code BucketBatcher} groups pending items of variable length into length buckets, so each
+ * batch only contains items of similar length.
+ *
+ * <p>Batching a short and a long sequence together pads the short one to the length of the long
+ * one, which wastes most of the compute of the batch. The bucket boundaries are inclusive upper
+ * bounds of the length: with boundaries {@code [64, 256]}, the buckets hold the items of length
+ * {@code [0, 64]}, {@code [65, 256]} and above 256.
+ *
+ * <p>A bucket is ready to be dispatched when it holds enough items for a batch, or when its oldest
+ * item has waited for the maximum delay, so a rarely used bucket does not starve. Among the ready
+ * buckets, the one with the oldest item is dispatched first.
+ *
+ * <p>The number of items held by all buckets is bounded by the capacity. Callers that move items
+ * from a bounded queue into the buckets should only move up to {@link #remainingCapacity()} items,
+ * so the items stay in the queue, and new items are rejected by the queue, while the buckets are
+ * full. A full {@code BucketBatcher} dispatches the bucket with the oldest item without waiting.
+ *
+ * <p>{@code BucketBatcher} is thread-safe.
+ *
+ * @param <T> the type of the items
+ */
+public class BucketBatcher<T> {
+
+    private int[] boundaries;
+    private ToIntFunction<T> length;
+    private ToLongFunction<T> arrival;
+    private List<ArrayDeque<T>> buckets;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs a new {@code BucketBatcher} instance without a capacity limit.
+     *
+     * @param boundaries the strictly ascending inclusive upper bounds of the length of the buckets
+     * @param length the function that returns the length of an item
+     * @param arrival the function that returns the arrival time of an item in {@link
+     *     System#nanoTime()} time base
+     */
+    public BucketBatcher(int[] boundaries, ToIntFunction<T> length, ToLongFunction<T> arrival) {
+        this(boundaries, length, arrival, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a new {@code BucketBatcher} instance.
+     *
+     * @param boundaries the strictly ascending inclusive upper bounds of the length of the buckets
+     * @param length the function that returns the length of an item
+     * @param arrival the function that returns the arrival time of an item in {@link
+     *     System#nanoTime()} time base
+     * @param capacity the maximum number of items in all buckets
+     */
+    public BucketBatcher(
+            int[] boundaries, ToIntFunction<T> length, ToLongFunction<T> arrival, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid bucket capacity: " + capacity);
+        }
+        for (int i = 1; i < boundaries.length; ++i) {
+            if (boundaries[i] <= boundaries[i - 1]) {
+                throw new IllegalArgumentException(
+                        "Bucket boundaries must be strictly ascending: "
+                                + Arrays.toString(boundaries));
+            }
+        }
+        this.boundaries = boundaries.clone();
+        this.length = length;
+        this.arrival = arrival;
+        this.capacity = capacity;
+        buckets = new ArrayList<>(boundaries.length + 1);
+        for (int i = 0; i <= boundaries.length; ++i) {
+            buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Returns the bucket boundaries.
+     *
+     * @return the inclusive upper bounds of the length of the buckets
+     */
+    public int[] getBoundaries() {
+        return boundaries.clone();
+    }
+
+    /**
+     * Adds an item to the bucket of its length.
+     *
+     * <p>The item is added even if the buckets are full, so an item that a caller already took
+     * from its queue is never lost, see {@link #remainingCapacity()}.
+     *
+     * @param item the item to add
+     */
+    public synchronized void add(T item) {
+        int index = Arrays.binarySearch(boundaries, length.applyAsInt(item));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        buckets.get(index).add(item);
+        ++size;
+    }
+
+    /**
+     * Moves the items of a ready bucket to the batch.
+     *
+     * @param batch the batch to fill
+     * @param minSize the number of items that makes a bucket ready
+     * @param maxSize the maximum size of the batch
+     * @param maxDelay the time in nanoseconds after which a bucket with any item is ready
+     * @param now the current time in nanoseconds
+     * @return {@code true} if items were added to the batch, {@code false} if no bucket is ready
+     */
+    public synchronized boolean poll(
+            List<T> batch, int minSize, int maxSize, long maxDelay, long now) {
+        ArrayDeque<T> ready = null;
+        long oldest = 0;
+        for (ArrayDeque<T> bucket : buckets) {
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            long head = arrival.applyAsLong(bucket.peek());
+            boolean isReady =
+                    size >= capacity || bucket.size() >= minSize || now - head >= maxDelay;
+            if (isReady && (ready == null || head - oldest < 0)) {
+                ready = bucket;
+                oldest = head;
+            }
+        }
+        if (ready == null) {
+            return false;
+        }
+        while (batch.size() < maxSize && !ready.isEmpty()) {
+            batch.add(ready.poll());
+            --size;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time until the next bucket becomes ready by reaching the maximum delay.
+     *
+     * @param maxDelay the time in nanoseconds after which a bucket with any item is ready
+     * @param now the current time in nanoseconds
+     * @return the time to wait in nanoseconds, {@code Long.MAX_VALUE} if all buckets are empty
+     */
+    public synchronized long getWaitTime(long maxDelay, long now) {
+        long wait = Long.MAX_VALUE;
+        for (ArrayDeque<T> bucket : buckets) {
+            if (!bucket.isEmpty()) {
+                long head = arrival.applyAsLong(bucket.peek());
+                wait = Math.min(wait, Math.max(head + maxDelay - now, 0));
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Returns the number of items in all buckets.
+     *
+     * @return the number of items in all buckets
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of items that can be added before the buckets are full.
+     *
+     * <p>Callers sharing the buckets may check the remaining capacity concurrently, so each of
+     * them may add one item more than the capacity.
+     *
+     * @return the number of items that can be added before the buckets are full
+     */
+    public synchronized int remainingCapacity() {
+        return Math.max(capacity - size, 0);
+    }
+
+    /**
+     * Removes all items from the buckets and adds them to the given collection.
+     *
+     * @param collection the collection to transfer the items into
+     * @return the number of items transferred
+     */
+    public synchronized int drainTo(Collection<? super T> collection) {
+        int count = size;
+        for (ArrayDeque<T> bucket : buckets) {
+            collection.addAll(bucket);
+            bucket.clear();
+        }
+        size = 0;
+        return count;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.inference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@code PipelinedPredictor} overlaps the pre-processing, inference and post-processing of
+ * consecutive batches of a {@link Predictor}.
+ *
+ * <p>Each stage runs on its own thread, so while the model runs the forward pass of one batch, the
+ * next batch is being pre-processed and the previous batch is being post-processed. The stages are
+ * connected by bounded queues: when a downstream stage falls behind, the upstream stages block,
+ * and eventually {@link #submit(List)} blocks, instead of buffering an unbounded number of
+ * batches.
+ *
+ * <p>The {@link ai.djl.translate.Translator} of the predictor must support processing inputs and
+ * outputs of different batches concurrently.
+ *
+ * @param <I> the input type
+ * @param <O> the output type
+ */
+public class PipelinedPredictor<I, O> implements AutoCloseable {
+
+    private Predictor<I, O> predictor;
+    private BlockingQueue<Task> preprocessQueue;
+    private BlockingQueue<Task> inferenceQueue;
+    private BlockingQueue<Task> postprocessQueue;
+    private List<Thread> threads;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a new {@code PipelinedPredictor} instance.
+     *
+     * <p>The predictor is not closed when the {@code PipelinedPredictor} is closed.
+     *
+     * @param predictor the predictor that runs the stages
+     * @param capacity the maximum number of batches waiting in front of each stage
+     */
+    public PipelinedPredictor(Predictor<I, O> predictor, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.predictor = predictor;
+        preprocessQueue = new ArrayBlockingQueue<>(capacity);
+        inferenceQueue = new ArrayBlockingQueue<>(capacity);
+        postprocessQueue = new ArrayBlockingQueue<>(capacity);
+        threads = new ArrayList<>(3);
+        startStage("preprocess", preprocessQueue, inferenceQueue, this::preprocess);
+        startStage("inference", inferenceQueue, postprocessQueue, this::forward);
+        startStage("postprocess", postprocessQueue, null, this::postprocess);
+    }
+
+    /**
+     * Submits a batch for inference, blocks if the pipeline is full.
+     *
+     * @param inputs a list of inputs
+     * @return a future of the list of output objects defined by the user
+     */
+    public CompletableFuture<List<O>> submit(List<I> inputs) {
+        if (closed) {
+            throw new IllegalStateException("PipelinedPredictor has been closed already.");
+        }
+        Task task = new Task(inputs);
+        try {
+            preprocessQueue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.fail(e);
+            return task.future;
+        }
+        if (closed) {
+            // the pipeline was closed while the task was being queued
+            failQueuedTasks();
+        }
+        return task.future;
+    }
+
+    /**
+     * Stops the stages, the batches in the pipeline fail with a {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failQueuedTasks();
+    }
+
+    private void startStage(
+            String name, BlockingQueue<Task> in, BlockingQueue<Task> out, Stage<Task> stage) {
+        Thread thread = new Thread(() -> runStage(in, out, stage), "djl-pipeline-" + name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void runStage(BlockingQueue<Task> in, BlockingQueue<Task> out, Stage<Task> stage) {
+        while (!closed) {
+            Task task;
+            try {
+                task = in.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                stage.process(task);
+                if (out != null) {
+                    out.put(task);
+                }
+            } catch (InterruptedException e) {
+                task.fail(new CancellationException("The pipeline is closed."));
+                break;
+            } catch (Exception e) {
+                task.fail(e);
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.SignatureDeclareThrowsException")
+    private void preprocess(Task task) throws Exception {
+        task.batch = predictor.preprocess(task.inputs);
+    }
+
+    private void forward(Task task) {
+        predictor.forward(task.batch);
+    }
+
+    @SuppressWarnings("PMD.SignatureDeclareThrowsException")
+    private void postprocess(Task task) throws Exception {
+        PredictionBatch batch = task.batch;
+        // postprocess releases the batch whether it succeeds or not
+        task.batch = null;
+        task.future.complete(predictor.postprocess(batch));
+    }
+
+    private void failQueuedTasks() {
+        List<Task> tasks = new ArrayList<>();
+        preprocessQueue.drainTo(tasks);
+        inferenceQueue.drainTo(tasks);
+        postprocessQueue.drainTo(tasks);
+        for (Task task : tasks) {
+            task.fail(new CancellationException("The pipeline is closed."));
+        }
+    }
+
+    /**
+     * A stage of the pipeline.
+     *
+     * @param <T> the type of the task
+     */
+    @FunctionalInterface
+    private interface Stage<T> {
+
+        @SuppressWarnings("PMD.SignatureDeclareThrowsException")
+        void process(T task) throws Exception;
+    }
+
+    /** A batch that flows through the pipeline. */
+    private final class Task {
+
+        List<I> inputs;
+        PredictionBatch batch;
+        CompletableFuture<List<O>> future;
+
+        Task(List<I> inputs) {
+            this.inputs = inputs;
+            future = new CompletableFuture<>();
+        }
+
+        void fail(Throwable t) {
+            if (batch != null) {
+                batch.close();
+                batch = null;
+            }
+            future.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.inference;
+
+import ai.djl.ndarray.NDList;
+import ai.djl.translate.TranslatorContext;
+
+/**
+ * A batch that is processed by a {@link Predictor} in separate stages.
+ *
+ * <p>A {@code PredictionBatch} is created by {@link Predictor#preprocess(java.util.List)}, runs
+ * through {@link Predictor#forward(PredictionBatch)}, and its resources are released by {@link
+ * Predictor#postprocess(PredictionBatch)}. A batch that is abandoned before it is post-processed
+ * must be closed.
+ */
+public final class PredictionBatch implements AutoCloseable {
+
+    Predictor<?, ?> predictor;
+    TranslatorContext[] contexts;
+    NDList[] data;
+    boolean batchified;
+    int size;
+    long begin;
+
+    PredictionBatch(Predictor<?, ?> predictor, int size) {
+        this.predictor = predictor;
+        this.size = size;
+        contexts = new TranslatorContext[0];
+        begin = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of inputs in the batch.
+     *
+     * @return the number of inputs in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        for (TranslatorContext context : contexts) {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+}
@@ -14,6 +14,7 @@ package ai.djl.inference;
 
 import ai.djl.Model;
 import ai.djl.metric.Metrics;
+import ai.djl.ndarray.BaseNDManager;
 import ai.djl.ndarray.LazyNDArray;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
@@ -24,10 +25,13 @@ import ai.djl.translate.Batchifier;
 import ai.djl.translate.TranslateException;
 import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +67,10 @@ import org.slf4j.LoggerFactory;
  *       with an MXNet model</a>
  * </ul>
  *
+ * <p>The {@link NDArray}s of each request are attached to a sub-manager that is closed when the
+ * request completes. For small models with a high request rate, set the {@code
+ * ai.djl.predictor.manager_pool_size} system property to recycle that many idle managers instead.
+ *
  * <p>For information about running multi-threaded inference, see <a
  * href="https://github.com/awslabs/djl/blob/master/examples/docs/multithread_inference.md">here</a>.
  *
@@ -74,15 +82,22 @@ import org.slf4j.LoggerFactory;
 public class Predictor<I, O> implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(Predictor.class);
+
+    /**
+     * The system property of the number of idle request managers that each predictor keeps for
+     * reuse, 0 to create a new manager for each request.
+     */
+    private static final String MANAGER_POOL_SIZE = "ai.djl.predictor.manager_pool_size";
+
     private Translator<I, O> translator;
-    private long timestamp;
 
-    private boolean prepared;
+    private volatile boolean prepared;
     private Model model;
     private NDManager manager;
     Metrics metrics;
     private Block block;
     private ParameterStore parameterStore;
+    private BlockingQueue<NDManager> managerPool;
 
     /**
      * Creates a new instance of {@code BasePredictor} with the given {@link Model} and {@link
@@ -98,6 +113,10 @@ public class Predictor<I, O> implements AutoCloseable {
         this.translator = translator;
         block = model.getBlock();
         parameterStore = new ParameterStore(manager, copy);
+        int poolSize = Integer.getInteger(MANAGER_POOL_SIZE, 0);
+        if (poolSize > 0) {
+            managerPool = new ArrayBlockingQueue<>(poolSize);
+        }
     }
 
     /**
@@ -124,46 +143,118 @@ public class Predictor<I, O> implements AutoCloseable {
      * @return a list of output objects defined by the user
      * @throws TranslateException if an error occurs during prediction
      */
-    @SuppressWarnings("PMD.AvoidRethrowingException")
     public List<O> batchPredict(List<I> inputs) throws TranslateException {
-        long begin = System.nanoTime();
-        try (PredictorContext context = new PredictorContext()) {
-            if (!prepared) {
-                translator.prepare(manager, model);
-                prepared = true;
-            }
+        PredictionBatch batch = preprocess(inputs);
+        try {
+            forward(batch);
+        } catch (RuntimeException e) {
+            batch.close();
+            throw e;
+        }
+        return postprocess(batch);
+    }
+
+    /**
+     * Runs the pre-processing stage of a batch.
+     *
+     * <p>{@link #batchPredict(List)} is split into the {@code preprocess}, {@link
+     * #forward(PredictionBatch)} and {@link #postprocess(PredictionBatch)} stages, so the stages of
+     * different batches can run concurrently on different threads, see {@link PipelinedPredictor}.
+     * The pre-processing and post-processing stages may run concurrently with each other and with
+     * the inference stage, the {@link Translator} must support that. The inference stage must not
+     * run concurrently with itself.
+     *
+     * @param inputs a list of inputs
+     * @return the pre-processed batch
+     * @throws TranslateException if an error occurs during pre-processing
+     */
+    @SuppressWarnings("PMD.AvoidRethrowingException")
+    public PredictionBatch preprocess(List<I> inputs) throws TranslateException {
+        PredictionBatch batch = new PredictionBatch(this, inputs.size());
+        try {
+            prepare();
             Batchifier batchifier = translator.getBatchifier();
+            // each input that is not batchified has its own context, like a single prediction,
+            // so the attachments of an input are not overwritten by the next input
+            batch.contexts = new TranslatorContext[batchifier == null ? inputs.size() : 1];
+            for (int i = 0; i < batch.contexts.length; ++i) {
+                batch.contexts[i] = new PredictorContext();
+            }
+            NDList[] preprocessed = new NDList[inputs.size()];
+            for (int i = 0; i < preprocessed.length; ++i) {
+                TranslatorContext context = batch.contexts[batchifier == null ? i : 0];
+                preprocessed[i] = translator.processInput(context, inputs.get(i));
+            }
             if (batchifier == null) {
-                List<O> ret = new ArrayList<>(inputs.size());
-                for (I input : inputs) {
-                    timestamp = System.nanoTime();
-                    begin = timestamp;
-                    NDList ndList = translator.processInput(context, input);
-                    preprocessEnd(ndList);
-
-                    NDList result = predict(ndList);
-                    predictEnd(result);
-
-                    ret.add(translator.processOutput(context, result));
-                    postProcessEnd(begin);
-                }
-                return ret;
+                batch.data = preprocessed;
+            } else {
+                batch.data = new NDList[] {batchifier.batchify(preprocessed)};
+                batch.batchified = true;
             }
+            if (metrics != null) {
+                waitToRead(batch.data);
+                metrics.addMetric("Preprocess", System.nanoTime() - batch.begin, "nano");
+            }
+            return batch;
+        } catch (RuntimeException e) {
+            batch.close();
+            throw e;
+        } catch (Exception e) {
+            batch.close();
+            throw new TranslateException(e);
+        }
+    }
 
-            timestamp = System.nanoTime();
-            NDList inputBatch = processInputs(context, inputs);
-            preprocessEnd(inputBatch);
-
-            NDList result = predict(inputBatch);
-            predictEnd(result);
+    /**
+     * Runs the inference stage of a pre-processed batch.
+     *
+     * @param batch the batch returned by {@link #preprocess(List)}
+     */
+    public void forward(PredictionBatch batch) {
+        checkBatch(batch);
+        long begin = System.nanoTime();
+        for (int i = 0; i < batch.data.length; ++i) {
+            batch.data[i] = predict(batch.data[i]);
+        }
+        if (metrics != null) {
+            waitToRead(batch.data);
+            metrics.addMetric("Inference", System.nanoTime() - begin, "nano");
+        }
+    }
 
-            List<O> ret = processOutputs(context, result);
-            postProcessEnd(begin);
+    /**
+     * Runs the post-processing stage of a batch and releases its resources.
+     *
+     * @param batch the batch that has been passed to {@link #forward(PredictionBatch)}
+     * @return a list of output objects defined by the user
+     * @throws TranslateException if an error occurs during post-processing
+     */
+    @SuppressWarnings("PMD.AvoidRethrowingException")
+    public List<O> postprocess(PredictionBatch batch) throws TranslateException {
+        checkBatch(batch);
+        long begin = System.nanoTime();
+        try {
+            NDList[] results = batch.data;
+            if (batch.batchified) {
+                results = translator.getBatchifier().unbatchify(results[0]);
+            }
+            List<O> ret = new ArrayList<>(results.length);
+            for (int i = 0; i < results.length; ++i) {
+                TranslatorContext context = batch.contexts[batch.batchified ? 0 : i];
+                ret.add(translator.processOutput(context, results[i]));
+            }
+            if (metrics != null) {
+                long end = System.nanoTime();
+                metrics.addMetric("Postprocess", end - begin, "nano");
+                metrics.addMetric("Total", end - batch.begin, "nano");
+            }
             return ret;
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
             throw new TranslateException(e);
+        } finally {
+            batch.close();
         }
     }
 
@@ -176,61 +267,56 @@ public class Predictor<I, O> implements AutoCloseable {
         this.metrics = metrics;
     }
 
-    private void waitToRead(NDList list) {
-        for (NDArray array : list) {
-            if (array instanceof LazyNDArray) {
-                ((LazyNDArray) array).waitToRead();
-            }
-        }
-    }
-
-    @SuppressWarnings("PMD.SignatureDeclareThrowsException")
-    private NDList processInputs(TranslatorContext ctx, List<I> inputs) throws Exception {
-        int batchSize = inputs.size();
-        NDList[] preprocessed = new NDList[batchSize];
-        for (int i = 0; i < batchSize; ++i) {
-            preprocessed[i] = translator.processInput(ctx, inputs.get(i));
+    private synchronized void prepare() throws IOException {
+        if (!prepared) {
+            translator.prepare(manager, model);
+            prepared = true;
         }
-        return translator.getBatchifier().batchify(preprocessed);
     }
 
-    @SuppressWarnings("PMD.SignatureDeclareThrowsException")
-    private List<O> processOutputs(TranslatorContext ctx, NDList list) throws Exception {
-        NDList[] unbatched = translator.getBatchifier().unbatchify(list);
-        List<O> outputs = new ArrayList<>(unbatched.length);
-        for (NDList output : unbatched) {
-            outputs.add(translator.processOutput(ctx, output));
+    private void checkBatch(PredictionBatch batch) {
+        if (batch.predictor != this) {
+            throw new IllegalArgumentException("The batch is created by another predictor.");
         }
-        return outputs;
     }
 
-    private void preprocessEnd(NDList list) {
-        if (metrics != null) {
-            waitToRead(list);
-            long tmp = System.nanoTime();
-            long duration = tmp - timestamp;
-            timestamp = tmp;
-            metrics.addMetric("Preprocess", duration, "nano");
+    /**
+     * Returns the manager of a request, a recycled manager if one is idle.
+     *
+     * @return the manager of a request
+     */
+    private NDManager newRequestManager() {
+        if (managerPool != null) {
+            NDManager recycled = managerPool.poll();
+            if (recycled != null) {
+                return recycled;
+            }
         }
+        return manager.newSubManager();
     }
 
-    private void predictEnd(NDList list) {
-        if (metrics != null) {
-            waitToRead(list);
-            long tmp = System.nanoTime();
-            long duration = tmp - timestamp;
-            timestamp = tmp;
-            metrics.addMetric("Inference", duration, "nano");
+    /**
+     * Releases the resources of a request, the manager is kept for reuse if the pool is not full.
+     *
+     * @param requestManager the manager of the request
+     */
+    private void releaseRequestManager(NDManager requestManager) {
+        if (managerPool != null
+                && requestManager instanceof BaseNDManager
+                && ((BaseNDManager) requestManager).recycle()
+                && managerPool.offer(requestManager)) {
+            return;
         }
+        requestManager.close();
     }
 
-    private void postProcessEnd(long begin) {
-        if (metrics != null) {
-            long tmp = System.nanoTime();
-            long duration = tmp - timestamp;
-            timestamp = tmp;
-            metrics.addMetric("Postprocess", duration, "nano");
-            metrics.addMetric("Total", tmp - begin, "nano");
+    private void waitToRead(NDList[] lists) {
+        for (NDList list : lists) {
+            for (NDArray array : list) {
+                if (array instanceof LazyNDArray) {
+                    ((LazyNDArray) array).waitToRead();
+                }
+            }
         }
     }
 
@@ -259,7 +345,7 @@ public class Predictor<I, O> implements AutoCloseable {
         private Map<String, Object> attachments;
 
         PredictorContext() {
-            ctxManager = manager.newSubManager();
+            ctxManager = newRequestManager();
             attachments = new ConcurrentHashMap<>();
         }
 
@@ -284,7 +370,7 @@ public class Predictor<I, O> implements AutoCloseable {
         /** {@inheritDoc} */
         @Override
         public void close() {
-            ctxManager.close();
+            releaseRequestManager(ctxManager);
         }
 
         /** {@inheritDoc} */
@@ -44,10 +44,14 @@ public class Metric {
      * @param unit the metric unit
      */
     public Metric(String metricName, Number value, String unit) {
+        this(metricName, value, unit, System.currentTimeMillis());
+    }
+
+    Metric(String metricName, Number value, String unit, long timestamp) {
         this.metricName = metricName;
         this.value = value;
         this.unit = unit;
-        timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
     }
 
     /**
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free recorder of the values of one metric that keeps their statistics in fixed memory.
+ *
+ * <p>Values are counted in a log-linear histogram: each power of two range is split into {@value
+ * #SUB_BUCKETS} linear buckets, so a percentile is accurate to within 1/{@value #SUB_BUCKETS} of
+ * its value, and integers below {@value #SUB_BUCKETS} are exact. The buckets of a power of two
+ * range are allocated the first time a value falls into it, after that recording a value does not
+ * allocate. Magnitudes below 2<sup>{@value #MIN_EXPONENT}</sup> are counted as zero.
+ */
+final class MetricRecorder {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MIN_EXPONENT = -64;
+    private static final int MAX_EXPONENT = 64;
+    private static final int MANTISSA_BITS = 52;
+
+    private String name;
+    private String unit;
+    private LongAdder count;
+    private LongAdder longSum;
+    private DoubleAdder doubleSum;
+    private AtomicLong min;
+    private AtomicLong max;
+    private AtomicLong zeros;
+    private AtomicReferenceArray<AtomicLongArray> positive;
+    private AtomicReferenceArray<AtomicLongArray> negative;
+    private volatile boolean floating;
+    private volatile long latest;
+    private volatile boolean latestFloating;
+    private volatile long timestamp;
+
+    MetricRecorder(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+        count = new LongAdder();
+        longSum = new LongAdder();
+        doubleSum = new DoubleAdder();
+        min = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+        max = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+        zeros = new AtomicLong();
+        positive = new AtomicReferenceArray<>(MAX_EXPONENT - MIN_EXPONENT);
+        negative = new AtomicReferenceArray<>(MAX_EXPONENT - MIN_EXPONENT);
+    }
+
+    void record(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            record(value.doubleValue());
+        } else {
+            record(value.longValue());
+        }
+    }
+
+    void record(long value) {
+        longSum.add(value);
+        latest = value;
+        latestFloating = false;
+        add(value);
+    }
+
+    void record(double value) {
+        floating = true;
+        doubleSum.add(value);
+        latest = Double.doubleToLongBits(value);
+        latestFloating = true;
+        add(value);
+    }
+
+    boolean isEmpty() {
+        return count.sum() == 0;
+    }
+
+    Metric latest() {
+        long value = latest;
+        if (latestFloating) {
+            return new Metric(name, Double.longBitsToDouble(value), unit, timestamp);
+        }
+        return new Metric(name, value, unit, timestamp);
+    }
+
+    double mean() {
+        long n = count.sum();
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return (longSum.sum() + doubleSum.sum()) / n;
+    }
+
+    Metric percentile(int percentile) {
+        long total = zeros.get() + total(negative) + total(positive);
+        long rank = total * percentile / 100;
+        double value;
+        if (rank <= 0) {
+            value = Double.longBitsToDouble(min.get());
+        } else if (rank >= total - 1) {
+            value = Double.longBitsToDouble(max.get());
+        } else {
+            value = valueAt(rank);
+            // the lower bound of a bucket may be outside of the recorded values
+            value = Math.max(value, Double.longBitsToDouble(min.get()));
+            value = Math.min(value, Double.longBitsToDouble(max.get()));
+        }
+        if (floating) {
+            return new Metric(name, value, unit);
+        }
+        return new Metric(name, (long) value, unit);
+    }
+
+    private void add(double value) {
+        timestamp = System.currentTimeMillis();
+        updateMin(value);
+        updateMax(value);
+        double magnitude = Math.abs(value);
+        int exponent = Math.getExponent(magnitude);
+        if (magnitude == 0 || exponent < MIN_EXPONENT) {
+            zeros.incrementAndGet();
+        } else {
+            int subBucket;
+            if (exponent >= MAX_EXPONENT) {
+                exponent = MAX_EXPONENT - 1;
+                subBucket = SUB_BUCKETS - 1;
+            } else {
+                long bits = Double.doubleToRawLongBits(magnitude);
+                subBucket = (int) (bits >>> (MANTISSA_BITS - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            }
+            AtomicReferenceArray<AtomicLongArray> octaves = value > 0 ? positive : negative;
+            int index = exponent - MIN_EXPONENT;
+            AtomicLongArray buckets = octaves.get(index);
+            if (buckets == null) {
+                octaves.compareAndSet(index, null, new AtomicLongArray(SUB_BUCKETS));
+                buckets = octaves.get(index);
+            }
+            buckets.incrementAndGet(subBucket);
+        }
+        // the count is updated last, so a reader that sees it also sees the bucket
+        count.increment();
+    }
+
+    private void updateMin(double value) {
+        long current = min.get();
+        while (value < Double.longBitsToDouble(current)
+                && !min.compareAndSet(current, Double.doubleToLongBits(value))) {
+            current = min.get();
+        }
+    }
+
+    private void updateMax(double value) {
+        long current = max.get();
+        while (value > Double.longBitsToDouble(current)
+                && !max.compareAndSet(current, Double.doubleToLongBits(value))) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the lower bound of the bucket that holds the value of the specified rank, the
+     * negative buckets are ordered from the largest magnitude to the smallest.
+     *
+     * @param rank the 0-based rank of the value in ascending order
+     * @return the lower bound of the magnitude of the bucket with the sign of its values
+     */
+    private double valueAt(long rank) {
+        long remaining = rank;
+        for (int i = negative.length() - 1; i >= 0; --i) {
+            AtomicLongArray buckets = negative.get(i);
+            if (buckets != null) {
+                for (int j = SUB_BUCKETS - 1; j >= 0; --j) {
+                    remaining -= buckets.get(j);
+                    if (remaining < 0) {
+                        return -lowerBound(i, j);
+                    }
+                }
+            }
+        }
+        remaining -= zeros.get();
+        if (remaining < 0) {
+            return 0;
+        }
+        for (int i = 0; i < positive.length(); ++i) {
+            AtomicLongArray buckets = positive.get(i);
+            if (buckets != null) {
+                for (int j = 0; j < SUB_BUCKETS; ++j) {
+                    remaining -= buckets.get(j);
+                    if (remaining < 0) {
+                        return lowerBound(i, j);
+                    }
+                }
+            }
+        }
+        // values recorded concurrently were not counted in the rank
+        return Double.longBitsToDouble(max.get());
+    }
+
+    private static double lowerBound(int index, int subBucket) {
+        return Math.scalb(1 + subBucket / (double) SUB_BUCKETS, index + MIN_EXPONENT);
+    }
+
+    private static long total(AtomicReferenceArray<AtomicLongArray> octaves) {
+        long total = 0;
+        for (int i = 0; i < octaves.length(); ++i) {
+            AtomicLongArray buckets = octaves.get(i);
+            if (buckets != null) {
+                for (int j = 0; j < SUB_BUCKETS; ++j) {
+                    total += buckets.get(j);
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -20,7 +20,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 /**
  * A collection of {@link Metric} objects organized by metric name.
@@ -35,6 +34,11 @@ import java.util.stream.Collectors;
  * performance indicators (KPIs) during inference and training runs. These KPIs include various
  * latencies, CPU and GPU memory consumption, losses, etc.
  *
+ * <p>{@code Metrics} is thread-safe. The time series can be disabled with {@link
+ * #Metrics(boolean)}, the statistics of each metric are then recorded with lock-free counters and a
+ * fixed memory histogram instead. The collected metrics can be cleared with {@link #reset()} to
+ * measure a window of time.
+ *
  * <p>For more details about using the metrics, see the <a
  * href="https://github.com/awslabs/djl/blob/master/docs/how_to_collect_metrics.md">metrics
  * tutorial</a>.
@@ -43,11 +47,30 @@ public class Metrics {
 
     private static final MetricValueComparator VALUE_COMPARATOR = new MetricValueComparator();
 
+    private boolean timeSeries;
     private Map<String, List<Metric>> metrics;
+    private Map<String, MetricRecorder> recorders;
 
-    /** Constructs an empty {@code Metrics} instance. */
+    /** Constructs an empty {@code Metrics} instance that keeps the time series of each metric. */
     public Metrics() {
+        this(true);
+    }
+
+    /**
+     * Constructs an empty {@code Metrics} instance.
+     *
+     * <p>If {@code timeSeries} is {@code false}, the individual {@link Metric}s are not kept, only
+     * the statistics of each metric, such as {@link #mean(String)} and {@link #percentile(String,
+     * int)}, are kept in fixed memory. Recording a primitive value, for example with {@link
+     * #addMetric(String, long, String)}, then does not allocate memory and never blocks, so metrics
+     * can stay enabled in long running processes.
+     *
+     * @param timeSeries whether to keep every {@link Metric} for metric-vs-timeline analysis
+     */
+    public Metrics(boolean timeSeries) {
+        this.timeSeries = timeSeries;
         metrics = new ConcurrentHashMap<>();
+        recorders = new ConcurrentHashMap<>();
     }
 
     /**
@@ -56,11 +79,15 @@ public class Metrics {
      * @param metric the {@link Metric} to be added
      */
     public void addMetric(Metric metric) {
-        List<Metric> list =
-                metrics.computeIfAbsent(
-                        metric.getMetricName(),
-                        v -> Collections.synchronizedList(new ArrayList<>()));
-        list.add(metric);
+        String name = metric.getMetricName();
+        if (timeSeries) {
+            List<Metric> list =
+                    metrics.computeIfAbsent(
+                            name, v -> Collections.synchronizedList(new ArrayList<>()));
+            list.add(metric);
+        } else {
+            getRecorder(name, metric.getUnit()).record(metric.getValue());
+        }
     }
 
     /**
@@ -70,7 +97,7 @@ public class Metrics {
      * @param value the metric value
      */
     public void addMetric(String name, Number value) {
-        addMetric(new Metric(name, value));
+        addMetric(name, value, "count");
     }
 
     /**
@@ -81,7 +108,75 @@ public class Metrics {
      * @param unit the metric unit
      */
     public void addMetric(String name, Number value, String unit) {
-        addMetric(new Metric(name, value, unit));
+        if (timeSeries) {
+            addMetric(new Metric(name, value, unit));
+        } else {
+            getRecorder(name, unit).record(value);
+        }
+    }
+
+    /**
+     * Adds a {@code Metric} with an {@code int} value given the metric's {@code name}, {@code
+     * value}, and {@code unit}.
+     *
+     * @param name the metric name
+     * @param value the metric value
+     * @param unit the metric unit
+     */
+    public void addMetric(String name, int value, String unit) {
+        if (timeSeries) {
+            addMetric(new Metric(name, value, unit));
+        } else {
+            getRecorder(name, unit).record((long) value);
+        }
+    }
+
+    /**
+     * Adds a {@code Metric} with a {@code long} value given the metric's {@code name}, {@code
+     * value}, and {@code unit}.
+     *
+     * @param name the metric name
+     * @param value the metric value
+     * @param unit the metric unit
+     */
+    public void addMetric(String name, long value, String unit) {
+        if (timeSeries) {
+            addMetric(new Metric(name, value, unit));
+        } else {
+            getRecorder(name, unit).record(value);
+        }
+    }
+
+    /**
+     * Adds a {@code Metric} with a {@code float} value given the metric's {@code name}, {@code
+     * value}, and {@code unit}.
+     *
+     * @param name the metric name
+     * @param value the metric value
+     * @param unit the metric unit
+     */
+    public void addMetric(String name, float value, String unit) {
+        if (timeSeries) {
+            addMetric(new Metric(name, value, unit));
+        } else {
+            getRecorder(name, unit).record((double) value);
+        }
+    }
+
+    /**
+     * Adds a {@code Metric} with a {@code double} value given the metric's {@code name}, {@code
+     * value}, and {@code unit}.
+     *
+     * @param name the metric name
+     * @param value the metric value
+     * @param unit the metric unit
+     */
+    public void addMetric(String name, double value, String unit) {
+        if (timeSeries) {
+            addMetric(new Metric(name, value, unit));
+        } else {
+            getRecorder(name, unit).record(value);
+        }
     }
 
     /**
@@ -91,16 +186,28 @@ public class Metrics {
      * @return {@code true} if the metrics object has a metric with the given name
      */
     public boolean hasMetric(String name) {
-        return metrics.containsKey(name);
+        if (timeSeries) {
+            return metrics.containsKey(name);
+        }
+        return recorders.containsKey(name);
     }
 
     /**
      * Returns all {@link Metric}s with the specified metric name.
      *
+     * <p>If the time series is not kept, the list only contains the latest {@link Metric}.
+     *
      * @param name the name of the metric
      * @return a list of {@link Metric} with the specified metric name
      */
     public List<Metric> getMetric(String name) {
+        if (!timeSeries) {
+            MetricRecorder recorder = recorders.get(name);
+            if (recorder == null || recorder.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(recorder.latest());
+        }
         List<Metric> list = metrics.get(name);
         if (list == null) {
             return Collections.emptyList();
@@ -114,7 +221,10 @@ public class Metrics {
      * @return a set of {@link String} metric names
      */
     public Set<String> getMetricNames() {
-        return metrics.keySet();
+        if (timeSeries) {
+            return metrics.keySet();
+        }
+        return recorders.keySet();
     }
 
     /**
@@ -125,6 +235,9 @@ public class Metrics {
      * @throws IllegalArgumentException if the given name is not found
      */
     public Metric latestMetric(String name) {
+        if (!timeSeries) {
+            return getNonEmptyRecorder(name).latest();
+        }
         List<Metric> list = metrics.get(name);
         if (list == null || list.isEmpty()) {
             throw new IllegalArgumentException("Could not find metric: " + name);
@@ -135,19 +248,20 @@ public class Metrics {
     /**
      * Returns a percentile {@link Metric} object for the specified metric name.
      *
+     * <p>If the time series is kept, the percentile is computed exactly from the sorted values.
+     * Otherwise, it is estimated from a histogram, its relative error is below 1%.
+     *
      * @param metricName the name of the metric
      * @param percentile the percentile
      * @return the {@link Metric} object at specified {@code percentile}
      */
     public Metric percentile(String metricName, int percentile) {
-        List<Metric> metric = metrics.get(metricName);
-        if (metric == null || metrics.isEmpty()) {
-            throw new IllegalArgumentException("Metric name not found: " + metricName);
+        if (!timeSeries) {
+            return getNonEmptyRecorder(metricName).percentile(percentile);
         }
-
-        List<Metric> list = new ArrayList<>(metric);
+        List<Metric> list = new ArrayList<>(getNonEmptyList(metricName));
         list.sort(VALUE_COMPARATOR);
-        int index = metric.size() * percentile / 100;
+        int index = Math.min(list.size() * percentile / 100, list.size() - 1);
         return list.get(index);
     }
 
@@ -158,12 +272,52 @@ public class Metrics {
      * @return the average value of the specified metric
      */
     public double mean(String metricName) {
-        List<Metric> metric = metrics.get(metricName);
-        if (metric == null || metrics.isEmpty()) {
+        if (!timeSeries) {
+            return getNonEmptyRecorder(metricName).mean();
+        }
+        List<Metric> list = getNonEmptyList(metricName);
+        synchronized (list) {
+            double sum = 0;
+            for (Metric metric : list) {
+                sum += metric.getValue().doubleValue();
+            }
+            return sum / list.size();
+        }
+    }
+
+    /**
+     * Removes all metrics.
+     *
+     * <p>Resetting the metrics periodically turns the statistics into the statistics of the last
+     * window, for example the p90 latency of the last minute.
+     */
+    public void reset() {
+        recorders.clear();
+        metrics.clear();
+    }
+
+    private MetricRecorder getRecorder(String name, String unit) {
+        MetricRecorder recorder = recorders.get(name);
+        if (recorder == null) {
+            recorder = recorders.computeIfAbsent(name, k -> new MetricRecorder(name, unit));
+        }
+        return recorder;
+    }
+
+    private List<Metric> getNonEmptyList(String metricName) {
+        List<Metric> list = metrics.get(metricName);
+        if (list == null || list.isEmpty()) {
             throw new IllegalArgumentException("Metric name not found: " + metricName);
         }
+        return list;
+    }
 
-        return metric.stream().collect(Collectors.averagingDouble(m -> m.getValue().doubleValue()));
+    private MetricRecorder getNonEmptyRecorder(String metricName) {
+        MetricRecorder recorder = recorders.get(metricName);
+        if (recorder == null || recorder.isEmpty()) {
+            throw new IllegalArgumentException("Metric name not found: " + metricName);
+        }
+        return recorder;
     }
 
     /** Comparator based on {@code Metric}'s value field. */
@@ -13,6 +13,7 @@
 package ai.djl.modality;
 
 import ai.djl.util.PairList;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -21,7 +22,7 @@ public class Input {
 
     private String requestId;
     private Map<String, String> properties;
-    private PairList<String, byte[]> content;
+    private PairList<String, ByteBuffer> content;
 
     /**
      * Constructs a {@code Input} with specified {@code requestId}.
@@ -77,12 +78,31 @@ public class Input {
     /**
      * Returns the content of the input.
      *
-     * <p>A {@code Input} may contains multiple data.
+     * <p>A {@code Input} may contains multiple data, they are returned in the order they were
+     * added. Data added as a {@link ByteBuffer} may be copied when this method is called, use
+     * {@link #getAsByteBuffers()} to access the data without copying. Changes to the returned list
+     * are not reflected in the input.
      *
      * @return the content of the input
      */
     public PairList<String, byte[]> getContent() {
-        return content;
+        PairList<String, byte[]> list = new PairList<>(content.size());
+        for (int i = 0; i < content.size(); ++i) {
+            ByteBuffer bb = content.valueAt(i);
+            byte[] data;
+            if (bb.hasArray()
+                    && bb.arrayOffset() == 0
+                    && bb.position() == 0
+                    && bb.remaining() == bb.array().length) {
+                // added as byte[]
+                data = bb.array();
+            } else {
+                data = new byte[bb.remaining()];
+                bb.duplicate().get(data);
+            }
+            list.add(content.keyAt(i), data);
+        }
+        return list;
     }
 
     /**
@@ -91,7 +111,12 @@ public class Input {
      * @param content the content of the input
      */
     public void setContent(PairList<String, byte[]> content) {
-        this.content = content;
+        this.content = new PairList<>();
+        if (content != null) {
+            for (int i = 0; i < content.size(); ++i) {
+                this.content.add(content.keyAt(i), ByteBuffer.wrap(content.valueAt(i)));
+            }
+        }
     }
 
     /**
@@ -110,10 +135,7 @@ public class Input {
      * @param data data to be added with the specified key
      */
     public void addData(String key, byte[] data) {
-        if (content == null) {
-            content = new PairList<>();
-        }
-        content.add(key, data);
+        content.add(key, ByteBuffer.wrap(data));
     }
 
     /**
@@ -123,9 +145,62 @@ public class Input {
      * @param data data to be added with the specified key
      */
     public void addData(int index, byte[] data) {
-        if (content == null) {
-            content = new PairList<>();
+        content.add(index, null, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Adds a key/value pair to the input content without copying the data.
+     *
+     * <p>The caller must keep the memory backing the {@code ByteBuffer} valid until the input is
+     * consumed.
+     *
+     * @param key key with which the specified data is to be added
+     * @param data data to be added with the specified key
+     */
+    public void addData(String key, ByteBuffer data) {
+        content.add(key, data);
+    }
+
+    /**
+     * Returns the data with the specified key as a {@code ByteBuffer} without copying.
+     *
+     * @param key the key of the data
+     * @return a view of the data, or {@code null} if the key is not found
+     */
+    public ByteBuffer getAsByteBuffer(String key) {
+        ByteBuffer bb = content.get(key);
+        return bb == null ? null : bb.duplicate();
+    }
+
+    /**
+     * Returns all data of the input as {@code ByteBuffer}s without copying.
+     *
+     * @return a list of key/value pairs with a view of each data, in the order they were added
+     */
+    public PairList<String, ByteBuffer> getAsByteBuffers() {
+        PairList<String, ByteBuffer> list = new PairList<>(content.size());
+        for (int i = 0; i < content.size(); ++i) {
+            list.add(content.keyAt(i), content.valueAt(i).duplicate());
+        }
+        return list;
+    }
+
+    /**
+     * Returns the default data of the input as a {@code ByteBuffer} without copying.
+     *
+     * <p>The default data is the data with key "data", then the data with key "body", otherwise
+     * the first item of the input.
+     *
+     * @return a view of the default data, or {@code null} if the input is empty
+     */
+    public ByteBuffer getAsByteBuffer() {
+        ByteBuffer bb = getAsByteBuffer("data");
+        if (bb == null) {
+            bb = getAsByteBuffer("body");
+        }
+        if (bb == null && !content.isEmpty()) {
+            bb = content.valueAt(0).duplicate();
         }
-        content.add(index, null, data);
+        return bb;
     }
 }
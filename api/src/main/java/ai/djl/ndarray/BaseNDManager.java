@@ -15,9 +15,13 @@ package ai.djl.ndarray;
 import ai.djl.Device;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,7 +41,9 @@ public abstract class BaseNDManager implements NDManager {
         this.parent = parent;
         this.device = Device.defaultIfNull(device);
         resources = new ConcurrentHashMap<>();
-        uid = UUID.randomUUID().toString();
+        // UUID.randomUUID() serializes all threads on a SecureRandom
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        uid = new UUID(random.nextLong(), random.nextLong()).toString();
     }
 
     /** {@inheritDoc} */
@@ -101,21 +107,44 @@ public abstract class BaseNDManager implements NDManager {
     @Override
     public synchronized void close() {
         if (!closed.getAndSet(true)) {
-            for (Reference<AutoCloseable> resource : resources.values()) {
-                AutoCloseable closeable = resource.get();
-                if (closeable != null) {
-                    try {
-                        closeable.close();
-                    } catch (Exception e) {
-                        logger.error("Resource close failed.", e);
-                    }
-                }
-            }
+            closeResources(resources.values());
             parent.detach(uid);
             resources.clear();
         }
     }
 
+    /**
+     * Closes all resources attached to this {@code NDManager} and keeps it open, so it can be
+     * reused for another set of resources.
+     *
+     * <p>Recycling a short-lived sub-manager, for example the manager of each inference request,
+     * saves creating and attaching a new manager and any per-manager state of the engine.
+     *
+     * @return {@code false} if this {@code NDManager} has been closed already and cannot be reused
+     */
+    public synchronized boolean recycle() {
+        if (closed.get()) {
+            return false;
+        }
+        List<Reference<AutoCloseable>> list = new ArrayList<>(resources.values());
+        resources.clear();
+        closeResources(list);
+        return true;
+    }
+
+    private void closeResources(Collection<Reference<AutoCloseable>> list) {
+        for (Reference<AutoCloseable> resource : list) {
+            AutoCloseable closeable = resource.get();
+            if (closeable != null) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.error("Resource close failed.", e);
+                }
+            }
+        }
+    }
+
     /**
      * Prints information about this {@link NDManager} and all sub-managers to the console.
      *
@@ -18,6 +18,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -86,6 +89,27 @@ public class NDList extends ArrayList<NDArray> implements AutoCloseable {
         }
     }
 
+    /**
+     * Decodes NDList from a {@link ByteBuffer} without copying the encoded data to the heap.
+     *
+     * @param manager manager assigned to {@link NDArray}
+     * @param byteBuffer byte buffer to load from, its position is not changed
+     * @return {@code NDList}
+     */
+    public static NDList decode(NDManager manager, ByteBuffer byteBuffer) {
+        ByteBuffer bb = byteBuffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            int size = bb.getInt();
+            NDList list = new NDList(size);
+            for (int i = 0; i < size; i++) {
+                list.add(i, NDSerializer.decode(manager, bb));
+            }
+            return list;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed data", e);
+        }
+    }
+
     /**
      * Removes the first occurrence of the specified element from this NDList if it is present.
      *
@@ -21,6 +21,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /** A class contains encoding and decoding logic for NDArray. */
 final class NDSerializer {
@@ -125,4 +126,48 @@ final class NDSerializer {
         }
         return manager.create(dataType.asDataType(data), shape);
     }
+
+    /**
+     * Decodes {@link NDArray} from a {@link ByteBuffer}.
+     *
+     * <p>The tensor data is copied with a single bulk copy into the direct buffer of the {@link
+     * NDArray}, the position of the {@code ByteBuffer} is advanced to the end of the encoded
+     * array.
+     *
+     * @param manager the {@link NDManager} assigned to the {@link NDArray}
+     * @param bb the big-endian byte buffer to load from
+     * @return {@link NDArray}
+     */
+    static NDArray decode(NDManager manager, ByteBuffer bb) {
+        // Newer version of NDArray
+        if (MAGIC_NUMBER.equals(readUTF(bb))) {
+            int version = bb.getInt();
+            if (version != 1) {
+                throw new IllegalArgumentException("Unexpected NDArray encode version " + version);
+            }
+            readUTF(bb); // ignore SparseFormat
+        }
+        // else ignored as reading SparseFormat for the old version
+
+        DataType dataType = DataType.valueOf(readUTF(bb));
+        Shape shape = Shape.decode(bb);
+
+        int length = bb.getInt();
+        ByteBuffer data = manager.allocateDirect(length);
+        if (length > 0) {
+            ByteBuffer src = bb.slice();
+            src.limit(length);
+            data.put(src);
+            data.rewind();
+            bb.position(bb.position() + length);
+        }
+        return manager.create(dataType.asDataType(data), shape);
+    }
+
+    private static String readUTF(ByteBuffer bb) {
+        int length = bb.getShort() & 0xFFFF;
+        byte[] buf = new byte[length];
+        bb.get(buf);
+        return new String(buf, StandardCharsets.UTF_8);
+    }
 }
@@ -25,6 +25,7 @@ import ai.djl.training.optimizer.Optimizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /** {@code DefaultTrainingConfig} is an implementation of the {@link TrainingConfig} interface. */
 public class DefaultTrainingConfig implements TrainingConfig {
@@ -36,6 +37,8 @@ public class DefaultTrainingConfig implements TrainingConfig {
     private DataManager dataManager;
     private List<Evaluator> evaluators;
     private List<TrainingListener> listeners;
+    private int gradientAccumulation;
+    private ExecutorService executorService;
 
     /**
      * Creates an instance of {@code DefaultTrainingConfig} with the given {@link Loss}. {@code
@@ -53,6 +56,7 @@ public class DefaultTrainingConfig implements TrainingConfig {
         dataManager = DataManager.DEFAULT_DATA_MANAGER;
         evaluators = new ArrayList<>();
         listeners = new ArrayList<>();
+        gradientAccumulation = 1;
     }
 
     /**
@@ -122,6 +126,36 @@ public class DefaultTrainingConfig implements TrainingConfig {
         return this;
     }
 
+    /**
+     * Sets the number of batches whose gradients are accumulated before the parameters are
+     * updated (default 1).
+     *
+     * @param gradientAccumulation the number of batches per update
+     * @return this {@code DefaultTrainingConfig}
+     */
+    public DefaultTrainingConfig optGradientAccumulation(int gradientAccumulation) {
+        if (gradientAccumulation < 1) {
+            throw new IllegalArgumentException(
+                    "Gradient accumulation must be positive: " + gradientAccumulation);
+        }
+        this.gradientAccumulation = gradientAccumulation;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ExecutorService} to run the splits of a batch concurrently on their devices.
+     *
+     * <p>The {@link ExecutorService} should have a thread for each device, it is not shut down by
+     * the {@link Trainer}.
+     *
+     * @param executorService the {@link ExecutorService} to run the splits of a batch
+     * @return this {@code DefaultTrainingConfig}
+     */
+    public DefaultTrainingConfig optExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Device[] getDevices() {
@@ -166,4 +200,16 @@ public class DefaultTrainingConfig implements TrainingConfig {
     public List<TrainingListener> getTrainingListeners() {
         return listeners;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getGradientAccumulation() {
+        return gradientAccumulation;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
 }
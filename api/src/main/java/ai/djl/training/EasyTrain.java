@@ -20,7 +20,12 @@ import ai.djl.training.listener.TrainingListener.BatchData;
 import ai.djl.translate.TranslateException;
 import ai.djl.util.Preconditions;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /** Helper for easy training of a whole model, a trainining batch, or a validation batch. */
 public final class EasyTrain {
@@ -46,6 +51,8 @@ public final class EasyTrain {
                 trainer.step();
                 batch.close();
             }
+            // apply the gradients accumulated by the last batches of the epoch
+            trainer.stepAccumulated();
 
             if (validateDataset != null) {
                 for (Batch batch : trainer.iterateDataset(validateDataset)) {
@@ -61,6 +68,10 @@ public final class EasyTrain {
     /**
      * Trains the model with one iteration of the given {@link Batch} of data.
      *
+     * <p>The batch is split across the devices of the trainer. If the trainer has an {@link
+     * ExecutorService}, the forward and backward passes of the splits run concurrently, each on
+     * its own thread.
+     *
      * @param trainer the trainer to validate the batch with
      * @param batch a {@link Batch} that contains data, and its respective labels
      * @throws IllegalArgumentException if the batch engine does not match the trainer engine
@@ -73,25 +84,82 @@ public final class EasyTrain {
         Batch[] splits = batch.split(trainer.getDevices(), false);
         BatchData batchData =
                 new BatchData(batch, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
-        try (GradientCollector collector = trainer.newGradientCollector()) {
+        ExecutorService executor = trainer.getExecutorService();
+        if (executor == null || splits.length == 1) {
+            try (GradientCollector collector = trainer.newGradientCollector()) {
+                for (Batch split : splits) {
+                    trainSplit(trainer, collector, batchData, split);
+                }
+            }
+        } else {
+            List<Future<?>> futures = new ArrayList<>(splits.length);
             for (Batch split : splits) {
-                NDList data = trainer.getDataManager().getData(split);
-                NDList labels = trainer.getDataManager().getLabels(split);
-                NDList preds = trainer.forward(data, labels);
-                long time = System.nanoTime();
-                NDArray lossValue = trainer.getLoss().evaluate(labels, preds);
-                collector.backward(lossValue);
-                trainer.addMetric("backward", time);
-                time = System.nanoTime();
-                batchData.getLabels().put(labels.get(0).getDevice(), labels);
-                batchData.getPredictions().put(preds.get(0).getDevice(), preds);
-                trainer.addMetric("training-metrics", time);
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    // gradient recording is enabled per thread
+                                    try (GradientCollector collector =
+                                            trainer.newGradientCollector()) {
+                                        trainSplit(trainer, collector, batchData, split);
+                                    }
+                                }));
             }
+            waitAll(futures);
         }
 
         trainer.notifyListeners(listener -> listener.onTrainingBatch(trainer, batchData));
     }
 
+    private static void trainSplit(
+            Trainer trainer, GradientCollector collector, BatchData batchData, Batch split) {
+        NDList data = trainer.getDataManager().getData(split);
+        NDList labels = trainer.getDataManager().getLabels(split);
+        NDList preds = trainer.forward(data, labels);
+        long time = System.nanoTime();
+        NDArray lossValue = trainer.getLoss().evaluate(labels, preds);
+        collector.backward(lossValue);
+        trainer.addMetric("backward", time);
+        time = System.nanoTime();
+        batchData.getLabels().put(labels.get(0).getDevice(), labels);
+        batchData.getPredictions().put(preds.get(0).getDevice(), preds);
+        trainer.addMetric("training-metrics", time);
+    }
+
+    /**
+     * Waits for all the splits of a batch, so none is still running when a failure is thrown.
+     *
+     * @param futures the futures of the splits
+     */
+    private static void waitAll(List<Future<?>> futures) {
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Training failed", failure);
+        }
+    }
+
     /**
      * Validates the given batch of data.
      *
@@ -14,6 +14,9 @@ package ai.djl.training;
 
 import ai.djl.Device;
 import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDArrays;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.types.DataType;
 import ai.djl.training.optimizer.Optimizer;
 import java.util.Arrays;
 
@@ -40,11 +43,7 @@ public class LocalParameterServer implements ParameterServer {
     public void update(String parameterId, NDArray[] grads, NDArray[] params) {
         Device firstDevice = params[0].getDevice();
         // reduce gradient from all devices to first device
-        for (int i = 1; i < grads.length; i++) {
-            try (NDArray gradCopy = grads[i].toDevice(firstDevice, true)) {
-                grads[0].addi(gradCopy);
-            }
-        }
+        reduce(grads);
         // update weights on different devices with reduced gradient
         // use duplicate because after the first optimizer.update
         // PyTorch optimizer will zero grads[0]
@@ -63,7 +62,90 @@ public class LocalParameterServer implements ParameterServer {
         Arrays.stream(grads).forEach(NDArray::close);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The gradients of the bucket are concatenated on each device, so they are copied between
+     * the devices once per bucket instead of once per parameter.
+     */
+    @Override
+    public void update(String[] parameterIds, NDArray[][] grads, NDArray[][] params) {
+        int numDevices = params[0].length;
+        if (numDevices == 1 || parameterIds.length == 1 || !isSameDataType(grads)) {
+            ParameterServer.super.update(parameterIds, grads, params);
+            return;
+        }
+
+        // the offsets of the gradients in the concatenated gradient
+        long[] indices = new long[parameterIds.length - 1];
+        long offset = 0;
+        for (int i = 0; i < indices.length; ++i) {
+            offset += grads[i][0].size();
+            indices[i] = offset;
+        }
+        NDArray[] fused = new NDArray[numDevices];
+        for (int d = 0; d < numDevices; ++d) {
+            try (NDList flat = new NDList(parameterIds.length)) {
+                for (NDArray[] grad : grads) {
+                    flat.add(grad[d].flatten());
+                }
+                fused[d] = NDArrays.concat(flat);
+            }
+        }
+        reduce(fused);
+
+        // update weights on different devices with the reduced gradient
+        for (int d = 0; d < numDevices; ++d) {
+            Device device = params[0][d].getDevice();
+            boolean copy = !fused[0].getDevice().equals(device);
+            NDArray sum = copy ? fused[0].toDevice(device, true) : fused[0];
+            try (NDList parts = sum.split(indices)) {
+                for (int i = 0; i < parameterIds.length; ++i) {
+                    NDArray param = params[i][d];
+                    try (NDArray grad = parts.get(i).reshape(param.getShape())) {
+                        optimizer.update(parameterIds[i], param, grad);
+                    }
+                }
+            }
+            if (copy) {
+                sum.close();
+            }
+        }
+        Arrays.stream(fused).forEach(NDArray::close);
+        for (NDArray[] grad : grads) {
+            Arrays.stream(grad).forEach(NDArray::close);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void close() {}
+
+    /**
+     * Sums the arrays of all devices into the array of the first device.
+     *
+     * <p>The arrays are summed pairwise in a tree, the copies of each level are independent, so an
+     * engine that runs operations asynchronously can run them in parallel.
+     *
+     * @param arrays the arrays of all devices
+     */
+    private static void reduce(NDArray[] arrays) {
+        for (int stride = 1; stride < arrays.length; stride *= 2) {
+            for (int i = 0; i + stride < arrays.length; i += 2 * stride) {
+                try (NDArray copy = arrays[i + stride].toDevice(arrays[i].getDevice(), true)) {
+                    arrays[i].addi(copy);
+                }
+            }
+        }
+    }
+
+    private static boolean isSameDataType(NDArray[][] grads) {
+        DataType dataType = grads[0][0].getDataType();
+        for (NDArray[] grad : grads) {
+            if (grad[0].getDataType() != dataType) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
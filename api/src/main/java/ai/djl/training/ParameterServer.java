@@ -46,6 +46,22 @@ public interface ParameterServer extends AutoCloseable {
      */
     void update(String parameterId, NDArray[] grads, NDArray[] params);
 
+    /**
+     * Updates the parameters of a bucket of keys from Parameter Server.
+     *
+     * <p>The gradients of a bucket are ready at the same time, so an implementation can reduce
+     * them across devices at once instead of one parameter at a time.
+     *
+     * @param parameterIds the keys to identify the parameters
+     * @param grads the gradient NDArrays of each parameter in different devices
+     * @param params the parameter NDArrays of each parameter in different devices to be updated
+     */
+    default void update(String[] parameterIds, NDArray[][] grads, NDArray[][] params) {
+        for (int i = 0; i < parameterIds.length; ++i) {
+            update(parameterIds[i], grads[i], params[i]);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     void close();
@@ -22,17 +22,26 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The {@code ParameterStore} contains a map from a parameter to the mirrors of it on other devices.
+ *
+ * <p>The parameters are updated in buckets of about {@code ai.djl.parameter_store.bucket_size}
+ * bytes, so a {@link ParameterServer} can reduce the gradients of a whole bucket at once.
  */
 public class ParameterStore {
 
+    private static final long BUCKET_SIZE =
+            Long.getLong("ai.djl.parameter_store.bucket_size", 25L << 20);
+
     private NDManager manager;
     private Map<String, ParameterData> parameterMap;
+    private List<String> parameterOrder;
     private Map<Device, Integer> deviceMap;
     private boolean copy;
     private ParameterServer parameterServer;
+    private int accumulatedSteps;
 
     /**
      * Constructs an empty {@code ParameterStore}.
@@ -44,6 +53,7 @@ public class ParameterStore {
         this.manager = manager;
         this.copy = copy;
         parameterMap = new ConcurrentHashMap<>();
+        parameterOrder = new CopyOnWriteArrayList<>();
         deviceMap = new ConcurrentHashMap<>();
         deviceMap.put(manager.getDevice(), 0);
     }
@@ -64,16 +74,93 @@ public class ParameterStore {
         }
     }
 
-    /** Updates all the mirrored parameters. */
+    /**
+     * Updates all the mirrored parameters with the mean of their accumulated gradients.
+     *
+     * <p>The parameters are updated in the reverse order of their first use. The backward pass
+     * computes the gradients of the last layers first, so their reduction can start on an engine
+     * that runs operations asynchronously while the gradients of the first layers are still being
+     * computed.
+     */
     public void updateAllParameters() {
-        for (Map.Entry<String, ParameterData> entry : parameterMap.entrySet()) {
-            String parameterId = entry.getKey();
-            ParameterData data = entry.getValue();
+        int steps = accumulatedSteps + 1;
+        accumulatedSteps = 0;
+        update(steps);
+    }
+
+    /**
+     * Updates all the mirrored parameters with the mean of the gradients accumulated by {@link
+     * #accumulateGradients()}, without the gradients of a new batch.
+     *
+     * <p>This applies a partial accumulation, for example the last batches of an epoch. It does
+     * nothing if no gradients are accumulated.
+     */
+    public void updateAccumulatedParameters() {
+        int steps = accumulatedSteps;
+        if (steps == 0) {
+            return;
+        }
+        accumulatedSteps = 0;
+        // the gradients are reset after each accumulation, so only the accumulated ones are added
+        update(steps);
+    }
+
+    /**
+     * Returns the number of batches whose gradients are accumulated for the next update.
+     *
+     * @return the number of batches whose gradients are accumulated for the next update
+     */
+    public int getAccumulatedSteps() {
+        return accumulatedSteps;
+    }
+
+    private void update(int steps) {
+        List<String> ids = new ArrayList<>();
+        List<NDArray[]> grads = new ArrayList<>();
+        List<NDArray[]> params = new ArrayList<>();
+        long bucketSize = 0;
+        for (int i = parameterOrder.size() - 1; i >= 0; --i) {
+            String parameterId = parameterOrder.get(i);
+            ParameterData data = parameterMap.get(parameterId);
+            if (!data.requireGradient() || data.isEmpty()) {
+                continue;
+            }
+            NDArray[] arrays = data.toArray();
+            ids.add(parameterId);
+            grads.add(data.getGradients(steps));
+            params.add(arrays);
+            bucketSize += arrays[0].size() * arrays[0].getDataType().getNumOfBytes();
+            if (bucketSize >= BUCKET_SIZE) {
+                updateBucket(ids, grads, params);
+                bucketSize = 0;
+            }
+        }
+        if (!ids.isEmpty()) {
+            updateBucket(ids, grads, params);
+        }
+    }
+
+    /**
+     * Accumulates the gradients of all the mirrored parameters for the next {@link
+     * #updateAllParameters()}, and resets the gradients.
+     */
+    public void accumulateGradients() {
+        for (ParameterData data : parameterMap.values()) {
             if (data.requireGradient()) {
-                NDArray[] params = data.toArray();
-                parameterServer.update(parameterId, params);
+                data.accumulate();
             }
         }
+        ++accumulatedSteps;
+    }
+
+    private void updateBucket(List<String> ids, List<NDArray[]> grads, List<NDArray[]> params) {
+        parameterServer.update(
+                ids.toArray(new String[0]),
+                grads.toArray(new NDArray[0][]),
+                params.toArray(new NDArray[0][]));
+        ids.clear();
+        grads.clear();
+        params.clear();
     }
 
     /**
@@ -91,46 +178,58 @@ public class ParameterStore {
         String parameterId = parameter.getId();
         int index = deviceMap.get(device);
         ParameterData data =
-                parameterMap.computeIfAbsent(parameterId, k -> new ParameterData(parameter));
+                parameterMap.computeIfAbsent(
+                        parameterId,
+                        k -> {
+                            parameterOrder.add(k);
+                            return new ParameterData(parameter);
+                        });
 
-        if (data.isEmpty()) {
-            NDArray array = parameter.getArray();
+        // the splits of a batch may run the forward pass concurrently
+        synchronized (data) {
+            if (data.isEmpty()) {
+                initialize(data, parameter, device, index);
+            }
+        }
+        return data.get(index);
+    }
 
-            if (parameterServer != null) {
-                // initialize on parameter store for first time
-                parameterServer.init(parameterId, new NDArray[] {array});
-                NDArray[] arrays = new NDArray[deviceMap.size()];
-                for (Map.Entry<Device, Integer> entry : deviceMap.entrySet()) {
-                    Device dev = entry.getKey();
-                    int i = entry.getValue();
-                    if (i == index && array.getDevice().equals(dev)) {
-                        arrays[i] = array;
-                    } else {
-                        arrays[i] = array.toDevice(dev, true);
-                        arrays[i].attach(manager);
-                        // some parameter doesn't require grad
-                        // for example running_mean in BatchNorm
-                        if (parameter.requireGradient()) {
-                            arrays[i].attachGradient();
-                        }
-                    }
-                    data.add(arrays[i]);
-                }
-            } else {
-                if (copy || !array.getDevice().equals(device)) {
-                    array = array.toDevice(device, true);
-                    array.attach(manager);
+    private void initialize(ParameterData data, Parameter parameter, Device device, int index) {
+        String parameterId = parameter.getId();
+        NDArray array = parameter.getArray();
+
+        if (parameterServer != null) {
+            // initialize on parameter store for first time
+            parameterServer.init(parameterId, new NDArray[] {array});
+            NDArray[] arrays = new NDArray[deviceMap.size()];
+            for (Map.Entry<Device, Integer> entry : deviceMap.entrySet()) {
+                Device dev = entry.getKey();
+                int i = entry.getValue();
+                if (i == index && array.getDevice().equals(dev)) {
+                    arrays[i] = array;
+                } else {
+                    arrays[i] = array.toDevice(dev, true);
+                    arrays[i].attach(manager);
                     // some parameter doesn't require grad
                     // for example running_mean in BatchNorm
                     if (parameter.requireGradient()) {
-                        array.attachGradient();
+                        arrays[i].attachGradient();
                     }
                 }
-                data.add(array);
+                data.add(arrays[i]);
             }
+        } else {
+            if (copy || !array.getDevice().equals(device)) {
+                array = array.toDevice(device, true);
+                array.attach(manager);
+                // some parameter doesn't require grad
+                // for example running_mean in BatchNorm
+                if (parameter.requireGradient()) {
+                    array.attachGradient();
+                }
+            }
+            data.add(array);
         }
-
-        return data.get(index);
     }
 
     /** Synchronizes the values on all mirrors with the main parameter. */
@@ -145,6 +244,7 @@ public class ParameterStore {
 
         private Parameter parameter;
         private List<NDArray> list;
+        private NDArray[] accumulated;
 
         private ParameterData(Parameter parameter) {
             this.parameter = parameter;
@@ -175,6 +275,45 @@ public class ParameterStore {
             return parameter.requireGradient();
         }
 
+        /**
+         * Returns the gradients on all devices, with the accumulated gradients added.
+         *
+         * @param steps the number of batches the gradients are accumulated over
+         * @return the mean gradients on all devices
+         */
+        private NDArray[] getGradients(int steps) {
+            NDArray[] grads = new NDArray[list.size()];
+            for (int i = 0; i < grads.length; ++i) {
+                grads[i] = list.get(i).getGradient();
+                if (accumulated != null) {
+                    grads[i].addi(accumulated[i]);
+                    accumulated[i].close();
+                }
+                if (steps > 1) {
+                    grads[i].divi(steps);
+                }
+            }
+            accumulated = null;
+            return grads;
+        }
+
+        private void accumulate() {
+            if (accumulated == null) {
+                accumulated = new NDArray[list.size()];
+            }
+            for (int i = 0; i < accumulated.length; ++i) {
+                try (NDArray grad = list.get(i).getGradient()) {
+                    if (accumulated[i] == null) {
+                        accumulated[i] = grad.duplicate();
+                    } else {
+                        accumulated[i].addi(grad);
+                    }
+                    // some engines add to the gradient in the backward pass instead of writing it
+                    grad.muli(0);
+                }
+            }
+        }
+
         private void sync() {
             NDArray array = parameter.getArray();
             Device device = array.getDevice();
@@ -23,6 +23,7 @@ import ai.djl.ndarray.types.Shape;
 import ai.djl.nn.Parameter;
 import ai.djl.training.dataset.Batch;
 import ai.djl.training.dataset.Dataset;
+import ai.djl.training.dataset.ParallelDataIterable;
 import ai.djl.training.evaluator.Evaluator;
 import ai.djl.training.listener.EpochTrainingListener;
 import ai.djl.training.listener.EvaluatorTrainingListener;
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +72,8 @@ public class Trainer implements AutoCloseable {
     private List<Evaluator> evaluators;
     private Loss loss;
     private DataManager dataManager;
+    private int gradientAccumulation;
+    private ExecutorService executorService;
 
     private boolean gradientsChecked;
 
@@ -86,6 +90,8 @@ public class Trainer implements AutoCloseable {
         devices = trainingConfig.getDevices();
         loss = trainingConfig.getLossFunction();
         dataManager = trainingConfig.getDataManager();
+        gradientAccumulation = trainingConfig.getGradientAccumulation();
+        executorService = trainingConfig.getExecutorService();
         Objects.requireNonNull(loss, "You must specify a loss for the trainer");
         evaluators = new ArrayList<>(trainingConfig.getEvaluators());
         evaluators.add(loss); // track loss as an evaluator by default
@@ -127,7 +133,11 @@ public class Trainer implements AutoCloseable {
      * @throws TranslateException if there is an error while processing input
      */
     public Iterable<Batch> iterateDataset(Dataset dataset) throws IOException, TranslateException {
-        return dataset.getData(getManager());
+        Iterable<Batch> data = dataset.getData(getManager());
+        if (metrics != null && data instanceof ParallelDataIterable) {
+            ((ParallelDataIterable) data).setMetrics(metrics);
+        }
+        return data;
     }
 
     /**
@@ -180,17 +190,47 @@ public class Trainer implements AutoCloseable {
         return model.getBlock().forward(parameterStore, input, false, null);
     }
 
-    /** Updates all of the parameters of the model once. */
+    /**
+     * Updates all of the parameters of the model once.
+     *
+     * <p>With {@link TrainingConfig#getGradientAccumulation() gradient accumulation}, the gradients
+     * of the batch are accumulated instead, and the parameters are only updated by every {@code
+     * n}-th call. The gradients accumulated by the last calls before the end of the data are
+     * applied by {@link #stepAccumulated()}.
+     */
     public void step() {
         if (!gradientsChecked) {
             checkGradients();
         }
 
         long begin = System.nanoTime();
+        if (parameterStore.getAccumulatedSteps() + 1 < gradientAccumulation) {
+            parameterStore.accumulateGradients();
+            addMetric("accumulate", begin);
+            return;
+        }
         parameterStore.updateAllParameters();
         addMetric("step", begin);
     }
 
+    /**
+     * Updates all of the parameters of the model with the gradients accumulated by {@link #step()}
+     * since the last update, if any.
+     *
+     * <p>The parameters are updated with the mean of the accumulated gradients, so a partial
+     * accumulation has the same scale as a full one. {@link EasyTrain#fit(Trainer, int, Dataset,
+     * Dataset)} calls it at the end of each epoch, so the gradients of an epoch are never applied
+     * with the ones of the next epoch.
+     */
+    public void stepAccumulated() {
+        if (parameterStore.getAccumulatedSteps() == 0) {
+            return;
+        }
+        long begin = System.nanoTime();
+        parameterStore.updateAccumulatedParameters();
+        addMetric("step", begin);
+    }
+
     /**
      * Returns the Metrics param used for benchmarking.
      *
@@ -209,6 +249,15 @@ public class Trainer implements AutoCloseable {
         this.metrics = metrics;
     }
 
+    /**
+     * Returns the {@link ExecutorService} that runs the splits of a batch concurrently.
+     *
+     * @return the {@link ExecutorService}, {@code null} to run the splits one after another
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
     /**
      * Returns the devices used for training.
      *
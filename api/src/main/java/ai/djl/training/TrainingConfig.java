@@ -19,6 +19,7 @@ import ai.djl.training.listener.TrainingListener;
 import ai.djl.training.loss.Loss;
 import ai.djl.training.optimizer.Optimizer;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * An interface that is responsible for holding the configuration required by {@link Trainer}.
@@ -82,4 +83,29 @@ public interface TrainingConfig {
      * @return a list of {@link TrainingListener}s
      */
     List<TrainingListener> getTrainingListeners();
+
+    /**
+     * Returns the number of batches whose gradients are accumulated before the parameters are
+     * updated.
+     *
+     * <p>With {@code n} batches of size {@code b}, the parameters are updated with the mean of the
+     * gradients of the {@code n} batches, like with a single batch of size {@code n * b} that
+     * would not fit in memory. The batches left at the end of an epoch are applied as the mean of
+     * their gradients by {@link Trainer#stepAccumulated()}.
+     *
+     * @return the number of batches per update, 1 to update the parameters after every batch
+     */
+    default int getGradientAccumulation() {
+        return 1;
+    }
+
+    /**
+     * Returns the {@link ExecutorService} that runs the forward and backward passes of the splits
+     * of a batch concurrently, one split per device.
+     *
+     * @return the {@link ExecutorService}, {@code null} to run the splits one after another
+     */
+    default ExecutorService getExecutorService() {
+        return null;
+    }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.training.dataset;
+
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.TranslateException;
+import ai.djl.util.Progress;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code CachedDataset} wraps a {@link RandomAccessDataset} and caches its decoded records, so the
+ * epochs after the first one do not read and decode the source files again.
+ *
+ * <p>The records are cached as returned by the wrapped dataset, before the {@link
+ * ai.djl.translate.Pipeline}s are applied: the pipelines are set on the {@code CachedDataset} and
+ * still run for every epoch, so random augmentations differ from one epoch to the next.
+ *
+ * <p>The records are stored in the {@link NDList#encode()} format in two bounded tiers. The memory
+ * tier holds the records in direct buffers outside of the Java heap, which count towards the
+ * {@code -XX:MaxDirectMemorySize} limit. Once it is full, the records are written to a file of the
+ * disk tier, which is deleted when the dataset is closed. The records that fit in neither tier are
+ * read from the wrapped dataset every time. Cached records are never evicted, since each record is
+ * read exactly once per epoch.
+ *
+ * <p>The following is an example of how to use CachedDataset:
+ *
+ * <pre>
+ *     CachedDataset dataset = new CachedDataset.Builder()
+ *                              .setDataset(imageFolder)
+ *                              .optMemoryCache(4L &lt;&lt; 30)
+ *                              .optDiskCache(Paths.get("/tmp"), 64L &lt;&lt; 30)
+ *                              .addTransform(new RandomFlipLeftRight())
+ *                              .setSampling(32, true)
+ *                              .build();
+ * </pre>
+ */
+public class CachedDataset extends RandomAccessDataset implements AutoCloseable {
+
+    private RandomAccessDataset dataset;
+    private long memoryLimit;
+    private Path diskDirectory;
+    private long diskLimit;
+
+    private AtomicReferenceArray<ByteBuffer> memory;
+    private AtomicLong memoryUsed;
+    private FileChannel disk;
+    private AtomicLongArray diskOffsets;
+    private AtomicLong diskUsed;
+
+    /**
+     * Creates a new instance of {@code CachedDataset} with the arguments in {@link Builder}.
+     *
+     * @param builder a builder with the required arguments
+     */
+    public CachedDataset(Builder builder) {
+        super(builder);
+        dataset = builder.dataset;
+        memoryLimit = builder.memoryLimit;
+        diskDirectory = builder.diskDirectory;
+        diskLimit = builder.diskLimit;
+        memoryUsed = new AtomicLong();
+        diskUsed = new AtomicLong();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long availableSize() {
+        return dataset.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Record get(NDManager manager, long index) throws IOException {
+        int i = Math.toIntExact(index);
+        ByteBuffer entry = memory.get(i);
+        if (entry == null) {
+            long offset = diskOffsets.get(i);
+            if (offset > 0) {
+                entry = readDisk(offset - 1);
+            }
+        }
+        if (entry != null) {
+            return decode(manager, entry);
+        }
+
+        Record record = dataset.get(manager, index);
+        cache(i, record);
+        return record;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void prepare(Progress progress) throws IOException, TranslateException {
+        if (memory != null) {
+            return;
+        }
+        dataset.prepare(progress);
+        int size = Math.toIntExact(dataset.size());
+        if (diskLimit > 0) {
+            Files.createDirectories(diskDirectory);
+            Path file = Files.createTempFile(diskDirectory, "dataset-cache", ".bin");
+            disk =
+                    FileChannel.open(
+                            file,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        diskOffsets = new AtomicLongArray(size);
+        memory = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Returns the number of bytes used by the memory tier.
+     *
+     * @return the number of bytes used by the memory tier
+     */
+    public long getMemoryUsage() {
+        return memoryUsed.get();
+    }
+
+    /**
+     * Returns the number of bytes used by the disk tier.
+     *
+     * @return the number of bytes used by the disk tier
+     */
+    public long getDiskUsage() {
+        return diskUsed.get();
+    }
+
+    /**
+     * Releases the memory tier and deletes the file of the disk tier.
+     *
+     * <p>The wrapped dataset is not closed.
+     *
+     * @throws IOException if failed to delete the file of the disk tier
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (memory == null) {
+            return;
+        }
+        memory = null;
+        diskOffsets = null;
+        memoryUsed.set(0);
+        diskUsed.set(0);
+        if (disk != null) {
+            disk.close();
+            disk = null;
+        }
+    }
+
+    private void cache(int index, Record record) throws IOException {
+        byte[] data = record.getData().encode();
+        byte[] labels = record.getLabels().encode();
+        // the length of the data, the data and the labels
+        int length = 4 + data.length + labels.length;
+
+        if (reserve(memoryUsed, length, memoryLimit) >= 0) {
+            ByteBuffer entry = ByteBuffer.allocateDirect(length);
+            entry.putInt(data.length).put(data).put(labels);
+            entry.flip();
+            if (!memory.compareAndSet(index, null, entry)) {
+                // cached by another thread in the meantime
+                memoryUsed.addAndGet(-length);
+            }
+            return;
+        }
+        if (disk == null || diskOffsets.get(index) > 0) {
+            return;
+        }
+        // the length of the entry followed by the entry
+        long offset = reserve(diskUsed, 4 + length, diskLimit);
+        if (offset < 0) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4 + length);
+        buf.putInt(length).putInt(data.length).put(data).put(labels);
+        buf.flip();
+        long position = offset;
+        while (buf.hasRemaining()) {
+            position += disk.write(buf, position);
+        }
+        diskOffsets.compareAndSet(index, 0, offset + 1);
+    }
+
+    private ByteBuffer readDisk(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, offset);
+        ByteBuffer entry = ByteBuffer.allocate(header.getInt(0));
+        readFully(entry, offset + 4);
+        entry.flip();
+        return entry;
+    }
+
+    private void readFully(ByteBuffer buf, long offset) throws IOException {
+        long position = offset;
+        while (buf.hasRemaining()) {
+            int read = disk.read(buf, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the dataset cache.");
+            }
+            position += read;
+        }
+    }
+
+    private static Record decode(NDManager manager, ByteBuffer entry) {
+        ByteBuffer bb = entry.duplicate();
+        int dataLength = bb.getInt(0);
+        bb.position(4);
+        NDList data = NDList.decode(manager, bb);
+        bb.position(4 + dataLength);
+        NDList labels = NDList.decode(manager, bb);
+        return new Record(data, labels);
+    }
+
+    /**
+     * Reserves space in a tier.
+     *
+     * @param used the number of bytes used by the tier
+     * @param length the number of bytes to reserve
+     * @param limit the maximum size in bytes of the tier
+     * @return the offset of the reserved space, -1 if the tier is full
+     */
+    private static long reserve(AtomicLong used, long length, long limit) {
+        while (true) {
+            long current = used.get();
+            if (current + length > limit) {
+                return -1;
+            }
+            if (used.compareAndSet(current, current + length)) {
+                return current;
+            }
+        }
+    }
+
+    /** A builder for a {@link CachedDataset}. */
+    public static final class Builder extends BaseBuilder<Builder> {
+
+        RandomAccessDataset dataset;
+        long memoryLimit;
+        Path diskDirectory;
+        long diskLimit;
+
+        /** {@inheritDoc} */
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        /**
+         * Sets the dataset whose records are cached.
+         *
+         * @param dataset the dataset whose records are cached
+         * @return this builder
+         */
+        public Builder setDataset(RandomAccessDataset dataset) {
+            this.dataset = dataset;
+            return self();
+        }
+
+        /**
+         * Sets the maximum size of the memory tier.
+         *
+         * @param maxBytes the maximum size in bytes of the memory tier, 0 to disable it
+         * @return this builder
+         */
+        public Builder optMemoryCache(long maxBytes) {
+            this.memoryLimit = maxBytes;
+            return self();
+        }
+
+        /**
+         * Sets the directory and the maximum size of the disk tier.
+         *
+         * @param directory the directory of the file of the disk tier
+         * @param maxBytes the maximum size in bytes of the disk tier, 0 to disable it
+         * @return this builder
+         */
+        public Builder optDiskCache(Path directory, long maxBytes) {
+            this.diskDirectory = directory;
+            this.diskLimit = maxBytes;
+            return self();
+        }
+
+        /**
+         * Builds the {@link CachedDataset}.
+         *
+         * @return the {@link CachedDataset}
+         */
+        public CachedDataset build() {
+            Objects.requireNonNull(dataset, "The dataset must be set");
+            if (diskLimit > 0) {
+                Objects.requireNonNull(diskDirectory, "The disk cache directory must be set");
+            }
+            return new CachedDataset(this);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.training.dataset;
+
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.TranslateException;
+import ai.djl.util.Progress;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * {@code MappedDataset} is an implementation of {@link RandomAccessDataset} that reads its records
+ * from memory-mapped files.
+ *
+ * <p>The records of any {@link RandomAccessDataset} are written once with {@link
+ * #write(RandomAccessDataset, NDManager, Path, long)}, after which the dataset can be read again
+ * without downloading or parsing the original files. The records are stored in shard files of a
+ * bounded size, and an index file holds the location of each record, so any record is read in
+ * constant time. The files are mapped into memory instead of being read into the heap, the
+ * operating system pages them in on demand, so the dataset can be much larger than the memory.
+ *
+ * <p>Each record is stored as its data {@link NDList} followed by its labels {@link NDList} in the
+ * {@link NDList#encode()} format, and decoded with a single bulk copy per array from the mapped
+ * file into the buffer of the {@link ai.djl.ndarray.NDArray}.
+ *
+ * <p>The following is an example of how to use MappedDataset:
+ *
+ * <pre>
+ *     MappedDataset.write(mnist, manager, dir, MappedDataset.DEFAULT_SHARD_SIZE);
+ *     MappedDataset dataset = new MappedDataset.Builder()
+ *                              .setDirectory(dir)
+ *                              .setSampling(32, true)
+ *                              .build();
+ * </pre>
+ *
+ * @see Dataset
+ */
+public class MappedDataset extends RandomAccessDataset {
+
+    /** The default maximum size in bytes of a shard file. */
+    public static final long DEFAULT_SHARD_SIZE = 1L << 30;
+
+    private static final String INDEX_FILE = "index.bin";
+    private static final String MAGIC_NUMBER = "DJLD";
+    private static final int VERSION = 1;
+    // magic number, version, number of records and number of shards
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    // shard, offset in the shard and length of the data
+    private static final int ENTRY_SIZE = 4 + 4 + 4;
+
+    private Path directory;
+    private ByteBuffer index;
+    private MappedByteBuffer[] shards;
+    private long size;
+
+    /**
+     * Creates a new instance of {@code MappedDataset} with the arguments in {@link Builder}.
+     *
+     * @param builder a builder with the required arguments
+     */
+    public MappedDataset(Builder builder) {
+        super(builder);
+        directory = builder.directory;
+    }
+
+    /**
+     * Writes the records of a dataset to a directory in the format read by {@code MappedDataset}.
+     *
+     * <p>The records are written without the {@link ai.djl.translate.Pipeline}s of the dataset, the
+     * pipelines are set on the {@code MappedDataset} that reads them. The index file is written
+     * last, so an interrupted write does not leave a readable dataset behind.
+     *
+     * @param dataset the dataset to write
+     * @param manager the manager used to read the records
+     * @param directory the directory to write the files to
+     * @param shardSize the maximum size in bytes of a shard file, a record larger than that is
+     *     written to a shard of its own
+     * @throws IOException if failed to read the dataset or to write the files
+     * @throws TranslateException if there is an error while preparing the dataset
+     */
+    public static void write(
+            RandomAccessDataset dataset, NDManager manager, Path directory, long shardSize)
+            throws IOException, TranslateException {
+        if (shardSize <= 0 || shardSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid shard size: " + shardSize);
+        }
+        dataset.prepare();
+        Files.createDirectories(directory);
+        long size = dataset.size();
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path tmpFile = directory.resolve(INDEX_FILE + ".tmp");
+        int shard = -1;
+        try (DataOutputStream index = newOutputStream(tmpFile)) {
+            index.write(MAGIC_NUMBER.getBytes(StandardCharsets.US_ASCII));
+            index.writeInt(VERSION);
+            index.writeLong(size);
+            // the number of shards is known at the end
+            index.writeInt(0);
+
+            long offset = 0;
+            OutputStream os = null;
+            try {
+                for (long i = 0; i < size; ++i) {
+                    byte[] data;
+                    byte[] labels;
+                    try (NDManager subManager = manager.newSubManager()) {
+                        Record record = dataset.get(subManager, i);
+                        data = record.getData().encode();
+                        labels = record.getLabels().encode();
+                    }
+                    long length = (long) data.length + labels.length;
+                    if (os == null || offset > 0 && offset + length > shardSize) {
+                        if (os != null) {
+                            os.close();
+                        }
+                        os = newOutputStream(directory.resolve(getShardName(++shard)));
+                        offset = 0;
+                    }
+                    if (offset + length > Integer.MAX_VALUE) {
+                        throw new IOException("Record " + i + " is too large: " + length);
+                    }
+                    os.write(data);
+                    os.write(labels);
+                    index.writeInt(shard);
+                    index.writeInt((int) offset);
+                    index.writeInt(data.length);
+                    offset += length;
+                }
+            } finally {
+                if (os != null) {
+                    os.close();
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+            ByteBuffer numShards = ByteBuffer.allocate(4);
+            numShards.putInt(0, shard + 1);
+            channel.write(numShards, HEADER_SIZE - 4);
+        }
+        Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long availableSize() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Record get(NDManager manager, long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index(" + index + ") > size(" + size + ").");
+        }
+        int pos = Math.toIntExact(HEADER_SIZE + index * ENTRY_SIZE);
+        ByteBuffer bb = shards[this.index.getInt(pos)].duplicate();
+        int offset = this.index.getInt(pos + 4);
+        bb.position(offset);
+        NDList data = NDList.decode(manager, bb);
+        bb.position(offset + this.index.getInt(pos + 8));
+        NDList labels = NDList.decode(manager, bb);
+        return new Record(data, labels);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void prepare(Progress progress) throws IOException {
+        if (shards != null) {
+            return;
+        }
+        ByteBuffer header = map(directory.resolve(INDEX_FILE));
+        byte[] magic = new byte[4];
+        header.get(magic);
+        if (!MAGIC_NUMBER.equals(new String(magic, StandardCharsets.US_ASCII))) {
+            throw new IOException("Not a MappedDataset index file: " + directory);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported MappedDataset version: " + version);
+        }
+        long count = header.getLong();
+        int numShards = header.getInt();
+        if (header.capacity() != HEADER_SIZE + count * ENTRY_SIZE) {
+            throw new IOException("Malformed MappedDataset index file: " + directory);
+        }
+        MappedByteBuffer[] mapped = new MappedByteBuffer[numShards];
+        for (int i = 0; i < numShards; ++i) {
+            mapped[i] = map(directory.resolve(getShardName(i)));
+        }
+        index = header;
+        size = count;
+        shards = mapped;
+    }
+
+    private static DataOutputStream newOutputStream(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String getShardName(int shard) {
+        return String.format("shard-%05d.bin", shard);
+    }
+
+    /** The Builder to construct a {@link MappedDataset}. */
+    public static final class Builder extends BaseBuilder<Builder> {
+
+        private Path directory;
+
+        /** {@inheritDoc} */
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        /**
+         * Sets the directory that the dataset was written to.
+         *
+         * @param directory the directory written by {@link MappedDataset#write(RandomAccessDataset,
+         *     NDManager, Path, long)}
+         * @return this Builder
+         */
+        public Builder setDirectory(Path directory) {
+            this.directory = directory;
+            return self();
+        }
+
+        /**
+         * Builds a new instance of {@code MappedDataset}.
+         *
+         * @return a new instance of {@code MappedDataset}
+         */
+        public MappedDataset build() {
+            Objects.requireNonNull(directory, "The directory must be set");
+            return new MappedDataset(this);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.training.dataset;
+
+import ai.djl.Device;
+import ai.djl.metric.Metrics;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Pipeline;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code ParallelDataIterable} is a data loader that loads the records of a {@link
+ * RandomAccessDataset} in parallel on a work stealing {@link ForkJoinPool}.
+ *
+ * <p>{@link DataIterable} builds each batch in a single task, so the records of a batch are loaded
+ * one after another. Here, the task of a batch forks a task for each of its records, which the
+ * idle workers of the pool steal. The records of a batch are loaded and transformed concurrently,
+ * and a slow record does not hold back the other records or the following batches. The batch is
+ * assembled by the worker that finishes its last record, and the batches are returned in the order
+ * of the {@link Sampler}.
+ *
+ * <p>Batches are loaded ahead as long as the memory of the batches being loaded or waiting to be
+ * consumed stays within a budget in bytes. The memory of a batch that is not loaded yet is
+ * estimated from the average size of the records loaded so far, and at least one batch is always
+ * being loaded.
+ *
+ * <p>The time that {@link #next()} waits for a batch that is not loaded yet is the stall time of
+ * the loader. When it is a significant part of the training time, the training is input-bound. It
+ * is reported as the {@code loader-stall} metric if {@link Metrics} are attached, the {@link
+ * ai.djl.training.Trainer} attaches its own metrics when it iterates a dataset.
+ */
+public class ParallelDataIterable implements Iterable<Batch>, Iterator<Batch> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelDataIterable.class);
+
+    private RandomAccessDataset dataset;
+    private NDManager manager;
+    private Batchifier dataBatchifier;
+    private Batchifier labelBatchifier;
+    private Pipeline pipeline;
+    private Pipeline targetPipeline;
+    private ForkJoinPool pool;
+    private long maxBytes;
+    private Device device;
+    private Metrics metrics;
+
+    private Iterator<List<Long>> sample;
+    private Queue<BatchTask> pending;
+    private int lastBatchSize;
+    private long progress;
+    private long stallTime;
+    private boolean autoClose;
+
+    private AtomicLong reservedBytes;
+    private AtomicLong loadedBytes;
+    private AtomicLong loadedRecords;
+
+    /**
+     * Creates a new instance of {@code ParallelDataIterable} with the given parameters.
+     *
+     * @param dataset the dataset to iterate on
+     * @param manager the manager to create the arrays
+     * @param sampler a sampler to sample data with
+     * @param dataBatchifier a batchifier for data
+     * @param labelBatchifier a batchifier for labels
+     * @param pipeline the pipeline of transforms to apply on the data
+     * @param targetPipeline the pipeline of transforms to apply on the labels
+     * @param pool the {@link ForkJoinPool} that loads the records
+     * @param maxBytes the memory budget in bytes of the batches loaded ahead
+     * @param device the {@link Device}
+     */
+    public ParallelDataIterable(
+            RandomAccessDataset dataset,
+            NDManager manager,
+            Sampler sampler,
+            Batchifier dataBatchifier,
+            Batchifier labelBatchifier,
+            Pipeline pipeline,
+            Pipeline targetPipeline,
+            ForkJoinPool pool,
+            long maxBytes,
+            Device device) {
+        this.dataset = dataset;
+        this.manager = manager.newSubManager();
+        this.dataBatchifier = dataBatchifier;
+        this.labelBatchifier = labelBatchifier;
+        this.pipeline = pipeline;
+        this.targetPipeline = targetPipeline;
+        this.pool = pool;
+        this.maxBytes = maxBytes;
+        this.device = device;
+        String close = System.getProperty("ai.djl.dataiterator.autoclose", "true");
+        autoClose = Boolean.parseBoolean(close);
+        pending = new ArrayDeque<>();
+        reservedBytes = new AtomicLong();
+        loadedBytes = new AtomicLong();
+        loadedRecords = new AtomicLong();
+
+        sample = sampler.sample(dataset);
+        fill();
+    }
+
+    /**
+     * Attaches the {@link Metrics} to report the stall time of the loader to.
+     *
+     * @param metrics the {@link Metrics} to report to, {@code null} to stop reporting
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the total time that {@link #next()} has waited for batches to be loaded.
+     *
+     * @return the total stall time in nanoseconds
+     */
+    public long getStallTime() {
+        return stallTime;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<Batch> iterator() {
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+        if (pending.isEmpty()) {
+            if (autoClose) {
+                manager.close();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Batch next() {
+        BatchTask task = pending.poll();
+        if (task == null) {
+            throw new NoSuchElementException("No more batches.");
+        }
+        long begin = System.nanoTime();
+        try {
+            Batch batch = task.future.get();
+            long stall = System.nanoTime() - begin;
+            stallTime += stall;
+            if (metrics != null) {
+                metrics.addMetric("loader-stall", stall, "nano");
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Data loading interrupted", e);
+        } catch (ExecutionException e) {
+            logger.error(e.getMessage());
+            throw new IllegalStateException("Data loading failed", e.getCause());
+        } finally {
+            if (task.future.isDone()) {
+                // the batch is owned by the caller now, its memory leaves the budget
+                reservedBytes.addAndGet(-task.reserved);
+            }
+            fill();
+        }
+    }
+
+    /** Starts loading batches until the memory budget is used up. */
+    private void fill() {
+        while (sample.hasNext()) {
+            long estimate = estimateBytes(lastBatchSize);
+            if (!pending.isEmpty() && reservedBytes.get() + estimate > maxBytes) {
+                return;
+            }
+            List<Long> indices = sample.next();
+            lastBatchSize = indices.size();
+            progress += lastBatchSize;
+            BatchTask task = new BatchTask(indices, progress);
+            task.reserved = estimateBytes(lastBatchSize);
+            reservedBytes.addAndGet(task.reserved);
+            pending.add(task);
+            pool.execute(task);
+        }
+    }
+
+    /**
+     * Estimates the memory of a batch from the records loaded so far.
+     *
+     * @param batchSize the number of records of the batch
+     * @return the estimated memory in bytes, the whole budget if no record is loaded yet
+     */
+    private long estimateBytes(int batchSize) {
+        long records = loadedRecords.get();
+        if (records == 0) {
+            return maxBytes;
+        }
+        return loadedBytes.get() / records * batchSize;
+    }
+
+    private static long getBytes(NDList list) {
+        long bytes = 0;
+        for (NDArray array : list) {
+            bytes += array.getShape().size() * array.getDataType().getNumOfBytes();
+        }
+        return bytes;
+    }
+
+    /** Loads a batch by forking a {@link RecordTask} for each record, then assembles it. */
+    private final class BatchTask extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        List<Long> indices;
+        long progress;
+        CompletableFuture<Batch> future;
+        // the memory of the batch in the budget, the estimate until the batch is loaded
+        volatile long reserved;
+        NDManager subManager;
+        NDList[] data;
+        NDList[] labels;
+
+        BatchTask(List<Long> indices, long progress) {
+            this.indices = indices;
+            this.progress = progress;
+            future = new CompletableFuture<>();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void compute() {
+            int size = indices.size();
+            subManager = manager.newSubManager();
+            data = new NDList[size];
+            labels = new NDList[size];
+            // the records and this task each call tryComplete, the last call assembles the batch
+            setPendingCount(size);
+            for (int i = 0; i < size; ++i) {
+                new RecordTask(this, i).fork();
+            }
+            tryComplete();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (future.isDone()) {
+                // a record failed already
+                return;
+            }
+            try {
+                Batch batch = assemble();
+                long bytes = getBytes(batch.getData()) + getBytes(batch.getLabels());
+                loadedBytes.addAndGet(bytes);
+                loadedRecords.addAndGet(indices.size());
+                // replace the estimate with the actual memory of the batch
+                reservedBytes.addAndGet(bytes - reserved);
+                reserved = bytes;
+                future.complete(batch);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+            fail(ex instanceof UncheckedIOException ? ex.getCause() : ex);
+            return true;
+        }
+
+        private void fail(Throwable t) {
+            if (!future.isDone()) {
+                reservedBytes.addAndGet(-reserved);
+                reserved = 0;
+                future.completeExceptionally(t);
+            }
+        }
+
+        private Batch assemble() {
+            NDList batchData = dataBatchifier.batchify(data);
+            NDList batchLabels = labelBatchifier.batchify(labels);
+
+            Arrays.stream(data).forEach(NDList::close);
+            Arrays.stream(labels).forEach(NDList::close);
+
+            // apply label transform
+            if (targetPipeline != null) {
+                batchLabels = targetPipeline.transform(batchLabels);
+            }
+            // pin to a specific device
+            if (device != null) {
+                batchData = batchData.toDevice(device, false);
+                batchLabels = batchLabels.toDevice(device, false);
+            }
+            return new Batch(
+                    batchData,
+                    batchLabels,
+                    indices.size(),
+                    dataBatchifier,
+                    labelBatchifier,
+                    progress,
+                    dataset.size());
+        }
+    }
+
+    /** Loads and transforms a single record of a batch. */
+    private final class RecordTask extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private BatchTask batch;
+        private int index;
+
+        RecordTask(BatchTask batch, int index) {
+            super(batch);
+            this.batch = batch;
+            this.index = index;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void compute() {
+            try {
+                Record record = dataset.get(batch.subManager, batch.indices.get(index));
+                NDList data = record.getData();
+                // apply transform
+                if (pipeline != null) {
+                    data = pipeline.transform(data);
+                }
+                batch.data[index] = data;
+                batch.labels[index] = record.getLabels();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            tryComplete();
+        }
+    }
+}
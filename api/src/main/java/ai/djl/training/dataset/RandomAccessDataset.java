@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 /**
@@ -39,6 +40,8 @@ public abstract class RandomAccessDataset implements Dataset {
     protected Pipeline targetPipeline;
     protected ExecutorService executor;
     protected int prefetchNumber;
+    protected ForkJoinPool loaderPool;
+    protected long maxBytesInFlight;
     protected long limit;
     protected Device device;
 
@@ -58,6 +61,8 @@ public abstract class RandomAccessDataset implements Dataset {
         this.targetPipeline = builder.targetPipeline;
         this.executor = builder.executor;
         this.prefetchNumber = builder.prefetchNumber;
+        this.loaderPool = builder.loaderPool;
+        this.maxBytesInFlight = builder.maxBytesInFlight;
         this.limit = builder.limit;
         this.device = builder.device;
     }
@@ -75,18 +80,7 @@ public abstract class RandomAccessDataset implements Dataset {
     /** {@inheritDoc} */
     @Override
     public Iterable<Batch> getData(NDManager manager) throws IOException, TranslateException {
-        prepare();
-        return new DataIterable(
-                this,
-                manager,
-                sampler,
-                dataBatchifier,
-                labelBatchifier,
-                pipeline,
-                targetPipeline,
-                executor,
-                prefetchNumber,
-                device);
+        return getData(manager, sampler);
     }
 
     /**
@@ -101,6 +95,19 @@ public abstract class RandomAccessDataset implements Dataset {
     public Iterable<Batch> getData(NDManager manager, Sampler sampler)
             throws IOException, TranslateException {
         prepare();
+        if (loaderPool != null) {
+            return new ParallelDataIterable(
+                    this,
+                    manager,
+                    sampler,
+                    dataBatchifier,
+                    labelBatchifier,
+                    pipeline,
+                    targetPipeline,
+                    loaderPool,
+                    maxBytesInFlight,
+                    device);
+        }
         return new DataIterable(
                 this,
                 manager,
@@ -178,6 +185,8 @@ public abstract class RandomAccessDataset implements Dataset {
         protected Pipeline targetPipeline;
         protected ExecutorService executor;
         protected int prefetchNumber;
+        protected ForkJoinPool loaderPool;
+        protected long maxBytesInFlight;
         protected long limit = Long.MAX_VALUE;
         protected Device device;
 
@@ -319,6 +328,22 @@ public abstract class RandomAccessDataset implements Dataset {
             return self();
         }
 
+        /**
+         * Sets the {@link ForkJoinPool} to load the records of each batch in parallel.
+         *
+         * <p>The records are loaded by a {@link ParallelDataIterable}, which takes precedence over
+         * the {@link ExecutorService} set with {@link #optExecutor(ExecutorService, int)}.
+         *
+         * @param loaderPool the work stealing {@link ForkJoinPool} to load the records
+         * @param maxBytesInFlight the memory budget in bytes of the batches loaded ahead
+         * @return this {@code BaseBuilder}
+         */
+        public T optParallelLoader(ForkJoinPool loaderPool, long maxBytesInFlight) {
+            this.loaderPool = loaderPool;
+            this.maxBytesInFlight = maxBytesInFlight;
+            return self();
+        }
+
         /**
          * Sets the {@link Device}.
          *
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.training.dataset;
+
+import ai.djl.Device;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Pipeline;
+import ai.djl.translate.Transform;
+import ai.djl.translate.TranslateException;
+import ai.djl.util.RandomUtils;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code StreamingDataset} represents a dataset that can only be read sequentially, in a single
+ * pass, such as log dumps or large text files that cannot be indexed up front.
+ *
+ * <p>The dataset is split into shards that are read one after another. Each raw item read from a
+ * shard goes through a shuffle buffer: the buffer is filled with the first items, and each
+ * following item replaces a randomly chosen item of the buffer, which is emitted. A larger buffer
+ * gives a more uniform shuffle at the cost of memory, the shard order is shuffled as well. The
+ * items of a batch are decoded into {@link Record}s and batchified on the {@link ExecutorService}
+ * if one is set, while the next batches are being read.
+ *
+ * <p>A shard is closed when it has been read to the end. The size of the dataset is unknown, the
+ * progress of an epoch is reported against the estimated size if one is set.
+ *
+ * @param <T> the type of the raw items read from the shards
+ */
+public abstract class StreamingDataset<T> implements Dataset {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingDataset.class);
+
+    protected int batchSize;
+    protected boolean dropLast;
+    protected int shuffleBufferSize;
+    protected Batchifier dataBatchifier;
+    protected Batchifier labelBatchifier;
+    protected Pipeline pipeline;
+    protected Pipeline targetPipeline;
+    protected ExecutorService executor;
+    protected int prefetchNumber;
+    protected long limit;
+    protected long estimatedSize;
+    protected Device device;
+
+    /**
+     * Creates a new instance of {@link StreamingDataset} with the given necessary configurations.
+     *
+     * @param builder a builder with the necessary configurations
+     */
+    public StreamingDataset(BaseBuilder<?> builder) {
+        if (builder.batchSize <= 0) {
+            throw new IllegalArgumentException("The sampling must be set");
+        }
+        this.batchSize = builder.batchSize;
+        this.dropLast = builder.dropLast;
+        this.shuffleBufferSize = builder.shuffleBufferSize;
+        this.dataBatchifier = builder.dataBatchifier;
+        this.labelBatchifier = builder.labelBatchifier;
+        this.pipeline = builder.pipeline;
+        this.targetPipeline = builder.targetPipeline;
+        this.executor = builder.executor;
+        this.prefetchNumber = builder.prefetchNumber;
+        this.limit = builder.limit;
+        this.estimatedSize = builder.estimatedSize;
+        this.device = builder.device;
+    }
+
+    /**
+     * Returns the number of shards of the dataset.
+     *
+     * @return the number of shards of the dataset
+     */
+    protected abstract int getShardCount();
+
+    /**
+     * Opens a shard for sequential reading.
+     *
+     * @param shard the index of the shard
+     * @return a {@link Stream} of the raw items of the shard, closed after it has been read
+     * @throws IOException if the shard cannot be opened
+     */
+    protected abstract Stream<T> readShard(int shard) throws IOException;
+
+    /**
+     * Decodes a raw item into a {@link Record}.
+     *
+     * <p>This method may be called concurrently from the threads of the {@link ExecutorService}.
+     *
+     * @param manager the manager used to create the arrays
+     * @param item the raw item read from a shard
+     * @return a {@link Record} that contains the data and label of the item
+     * @throws IOException if the item cannot be decoded
+     */
+    protected abstract Record decode(NDManager manager, T item) throws IOException;
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterable<Batch> getData(NDManager manager) throws IOException, TranslateException {
+        prepare();
+        return new StreamingIterable(manager);
+    }
+
+    /** The Builder to construct a {@link StreamingDataset}. */
+    @SuppressWarnings("rawtypes")
+    public abstract static class BaseBuilder<B extends BaseBuilder> {
+
+        protected int batchSize;
+        protected boolean dropLast;
+        protected int shuffleBufferSize;
+        protected Batchifier dataBatchifier = Batchifier.STACK;
+        protected Batchifier labelBatchifier = Batchifier.STACK;
+        protected Pipeline pipeline;
+        protected Pipeline targetPipeline;
+        protected ExecutorService executor;
+        protected int prefetchNumber;
+        protected long limit = Long.MAX_VALUE;
+        protected long estimatedSize;
+        protected Device device;
+
+        /**
+         * Sets the batch size and the size of the shuffle buffer.
+         *
+         * @param batchSize the batch size
+         * @param shuffleBufferSize the number of items to shuffle, 0 to read the shards in order
+         * @return this {@code BaseBuilder}
+         */
+        public B setSampling(int batchSize, int shuffleBufferSize) {
+            return setSampling(batchSize, shuffleBufferSize, false);
+        }
+
+        /**
+         * Sets the batch size and the size of the shuffle buffer.
+         *
+         * @param batchSize the batch size
+         * @param shuffleBufferSize the number of items to shuffle, 0 to read the shards in order
+         * @param dropLast whether to drop the last incomplete batch
+         * @return this {@code BaseBuilder}
+         */
+        public B setSampling(int batchSize, int shuffleBufferSize, boolean dropLast) {
+            this.batchSize = batchSize;
+            this.shuffleBufferSize = shuffleBufferSize;
+            this.dropLast = dropLast;
+            return self();
+        }
+
+        /**
+         * Sets the {@link Batchifier} for the data.
+         *
+         * @param dataBatchifier the {@link Batchifier} to be set
+         * @return this {@code BaseBuilder}
+         */
+        public B optDataBatchifier(Batchifier dataBatchifier) {
+            this.dataBatchifier = dataBatchifier;
+            return self();
+        }
+
+        /**
+         * Sets the {@link Batchifier} for the labels.
+         *
+         * @param labelBatchifier the {@link Batchifier} to be set
+         * @return this {@code BaseBuilder}
+         */
+        public B optLabelBatchifier(Batchifier labelBatchifier) {
+            this.labelBatchifier = labelBatchifier;
+            return self();
+        }
+
+        /**
+         * Sets the {@link Pipeline} of {@link ai.djl.translate.Transform} to be applied on the
+         * data.
+         *
+         * @param pipeline the {@link Pipeline} of {@link ai.djl.translate.Transform} to be applied
+         *     on the data
+         * @return this {@code BaseBuilder}
+         */
+        public B optPipeline(Pipeline pipeline) {
+            this.pipeline = pipeline;
+            return self();
+        }
+
+        /**
+         * Adds the {@link Transform} to the {@link Pipeline} to be applied on the data.
+         *
+         * @param transform the {@link Transform} to be added
+         * @return this builder
+         */
+        public B addTransform(Transform transform) {
+            if (pipeline == null) {
+                pipeline = new Pipeline();
+            }
+            pipeline.add(transform);
+            return self();
+        }
+
+        /**
+         * Sets the {@link Pipeline} of {@link ai.djl.translate.Transform} to be applied on the
+         * labels.
+         *
+         * @param targetPipeline the {@link Pipeline} of {@link ai.djl.translate.Transform} to be
+         *     applied on the labels
+         * @return this {@code BaseBuilder}
+         */
+        public B optTargetPipeline(Pipeline targetPipeline) {
+            this.targetPipeline = targetPipeline;
+            return self();
+        }
+
+        /**
+         * Adds the {@link Transform} to the target {@link Pipeline} to be applied on the labels.
+         *
+         * @param transform the {@link Transform} to be added
+         * @return this builder
+         */
+        public B addTargetTransform(Transform transform) {
+            if (targetPipeline == null) {
+                targetPipeline = new Pipeline();
+            }
+            targetPipeline.add(transform);
+            return self();
+        }
+
+        /**
+         * Sets the {@link ExecutorService} to decode the batches in parallel.
+         *
+         * @param executor the {@link ExecutorService} to decode the batches
+         * @param prefetchNumber the number of batches to decode ahead
+         * @return this {@code BaseBuilder}
+         */
+        public B optExecutor(ExecutorService executor, int prefetchNumber) {
+            this.executor = executor;
+            this.prefetchNumber = prefetchNumber;
+            return self();
+        }
+
+        /**
+         * Sets the {@link Device}.
+         *
+         * @param device the device
+         * @return this {@code BaseBuilder}
+         */
+        public B optDevice(Device device) {
+            this.device = device;
+            return self();
+        }
+
+        /**
+         * Sets this dataset's limit.
+         *
+         * <p>The limit is usually used for testing purposes to test only with a subset of the
+         * dataset.
+         *
+         * @param limit the limit of this dataset's records
+         * @return this {@code BaseBuilder}
+         */
+        public B optLimit(long limit) {
+            this.limit = limit;
+            return self();
+        }
+
+        /**
+         * Sets the estimated number of records of the dataset, which is used to report the
+         * progress of an epoch.
+         *
+         * @param estimatedSize the estimated number of records
+         * @return this {@code BaseBuilder}
+         */
+        public B optEstimatedSize(long estimatedSize) {
+            this.estimatedSize = estimatedSize;
+            return self();
+        }
+
+        /**
+         * Returns this {code Builder} object.
+         *
+         * @return this {@code BaseBuilder}
+         */
+        protected abstract B self();
+    }
+
+    /** Reads the shards in a single pass and returns the batches in order. */
+    private final class StreamingIterable implements Iterable<Batch>, Iterator<Batch> {
+
+        private NDManager manager;
+        private int[] shards;
+        private int shardIndex;
+        private Stream<T> stream;
+        private Iterator<T> source;
+        private List<T> buffer;
+        private long read;
+        private long progress;
+        private long progressTotal;
+        private Queue<Future<Batch>> queue;
+        private List<T> pending;
+
+        StreamingIterable(NDManager manager) {
+            this.manager = manager.newSubManager();
+            shards = new int[getShardCount()];
+            for (int i = 0; i < shards.length; ++i) {
+                shards[i] = i;
+            }
+            if (shuffleBufferSize > 1) {
+                for (int i = shards.length - 1; i > 0; --i) {
+                    int j = RandomUtils.nextInt(i + 1);
+                    int tmp = shards[i];
+                    shards[i] = shards[j];
+                    shards[j] = tmp;
+                }
+            }
+            buffer = new ArrayList<>(Math.max(shuffleBufferSize, 1));
+            progressTotal = estimatedSize > 0 ? Math.min(estimatedSize, limit) : 0;
+            if (executor != null) {
+                queue = new ArrayDeque<>();
+                for (int i = 0; i < prefetchNumber; ++i) {
+                    preFetch();
+                }
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Iterator<Batch> iterator() {
+            return this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            boolean hasNext;
+            if (executor != null) {
+                hasNext = !queue.isEmpty();
+            } else {
+                if (pending == null) {
+                    pending = nextItems();
+                }
+                hasNext = pending != null;
+            }
+            if (!hasNext) {
+                // the limit may end the iteration in the middle of a shard
+                closeShard();
+                manager.close();
+            }
+            return hasNext;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Batch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (executor == null) {
+                List<T> items = pending;
+                pending = null;
+                progress += items.size();
+                try {
+                    return fetch(items, progress);
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                    throw new IllegalStateException("Data loading failed", e);
+                }
+            }
+            preFetch();
+            Future<Batch> future = queue.poll();
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                logger.error(e.getMessage());
+                throw new IllegalStateException("Data loading failed", e);
+            }
+        }
+
+        private void preFetch() {
+            List<T> items = nextItems();
+            if (items == null) {
+                return;
+            }
+            progress += items.size();
+            long batchProgress = progress;
+            queue.offer(executor.submit(() -> fetch(items, batchProgress)));
+        }
+
+        /**
+         * Reads the raw items of the next batch on the calling thread.
+         *
+         * @return the raw items of the next batch, {@code null} if the dataset has been read
+         */
+        private List<T> nextItems() {
+            List<T> items = new ArrayList<>(batchSize);
+            while (items.size() < batchSize) {
+                T item = nextItem();
+                if (item == null) {
+                    break;
+                }
+                items.add(item);
+            }
+            if (items.isEmpty() || (dropLast && items.size() < batchSize)) {
+                return null;
+            }
+            return items;
+        }
+
+        private T nextItem() {
+            if (shuffleBufferSize <= 1) {
+                return read < limit ? nextSourceItem() : null;
+            }
+            while (buffer.size() < shuffleBufferSize && read < limit) {
+                T item = nextSourceItem();
+                if (item == null) {
+                    break;
+                }
+                buffer.add(item);
+            }
+            if (buffer.isEmpty()) {
+                return null;
+            }
+            // swap a random item with the last one, so the removal does not shift the buffer
+            int last = buffer.size() - 1;
+            int index = RandomUtils.nextInt(last + 1);
+            T item = buffer.get(index);
+            buffer.set(index, buffer.get(last));
+            buffer.remove(last);
+            return item;
+        }
+
+        private T nextSourceItem() {
+            while (source == null || !source.hasNext()) {
+                closeShard();
+                if (shardIndex >= shards.length) {
+                    return null;
+                }
+                try {
+                    stream = readShard(shards[shardIndex++]);
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                    throw new IllegalStateException("Data loading failed", e);
+                }
+                source = stream.iterator();
+            }
+            ++read;
+            return source.next();
+        }
+
+        private void closeShard() {
+            if (stream != null) {
+                stream.close();
+                stream = null;
+                source = null;
+            }
+        }
+
+        private Batch fetch(List<T> items, long batchProgress) throws IOException {
+            NDManager subManager = manager.newSubManager();
+            int size = items.size();
+            NDList[] data = new NDList[size];
+            NDList[] labels = new NDList[size];
+            for (int i = 0; i < size; i++) {
+                Record record = decode(subManager, items.get(i));
+                data[i] = record.getData();
+                // apply transform
+                if (pipeline != null) {
+                    data[i] = pipeline.transform(data[i]);
+                }
+
+                labels[i] = record.getLabels();
+            }
+            NDList batchData = dataBatchifier.batchify(data);
+            NDList batchLabels = labelBatchifier.batchify(labels);
+
+            Arrays.stream(data).forEach(NDList::close);
+            Arrays.stream(labels).forEach(NDList::close);
+
+            // apply label transform
+            if (targetPipeline != null) {
+                batchLabels = targetPipeline.transform(batchLabels);
+            }
+            // pin to a specific device
+            if (device != null) {
+                batchData = batchData.toDevice(device, false);
+                batchLabels = batchLabels.toDevice(device, false);
+            }
+            return new Batch(
+                    batchData,
+                    batchLabels,
+                    size,
+                    dataBatchifier,
+                    labelBatchifier,
+                    batchProgress,
+                    progressTotal);
+        }
+    }
+}
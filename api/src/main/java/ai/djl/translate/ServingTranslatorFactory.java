@@ -26,36 +26,65 @@ import ai.djl.modality.cv.translator.ImageClassificationTranslator;
 import ai.djl.modality.cv.translator.SingleShotDetectionTranslator;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
+import ai.djl.util.Hex;
 import ai.djl.util.JsonUtils;
-import ai.djl.util.PairList;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.tools.JavaCompiler;
 import javax.tools.ToolProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** A {@link TranslatorFactory} that creates an generic {@link Translator}. */
+/**
+ * A {@link TranslatorFactory} that creates an generic {@link Translator}.
+ *
+ * <p>A custom {@link ServingTranslator} can be bundled in the {@code libs} directory of the model,
+ * as java files or classes in {@code libs/classes}, or in jar files. The translator class is the
+ * {@code translator} property of {@code serving.properties} if set, otherwise the first class
+ * listed in {@code META-INF/services/ai.djl.translate.ServingTranslator}, otherwise the first
+ * translator class found by scanning the bundled classes. The java files are only compiled again
+ * when they change or their classes are missing.
+ *
+ * <p>The translator class is cached while a loaded model uses it and until a bundled file changes.
+ * The cache only holds the class weakly, so the class loader of the bundled libraries is released
+ * once all models using it are closed.
+ */
 public class ServingTranslatorFactory implements TranslatorFactory<Input, Output> {
 
     private static final Logger logger = LoggerFactory.getLogger(ServingTranslatorFactory.class);
 
+    private static final String SERVICE_FILE =
+            "META-INF/services/" + ServingTranslator.class.getName();
+    private static final String SOURCE_HASH_FILE = ".sources.sha256";
+
+    private static final Map<String, CachedTranslator> CACHE = new ConcurrentHashMap<>();
+
     /** {@inheritDoc} */
     @Override
     public Translator<Input, Output> newInstance(Model model, Map<String, Object> arguments)
@@ -96,62 +125,106 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
             Path classesDir = path.resolve("classes");
             compileJavaClass(classesDir);
 
-            List<Path> jarFiles =
-                    Files.list(path)
-                            .filter(p -> p.toString().endsWith(".jar"))
-                            .collect(Collectors.toList());
-            List<URL> urls = new ArrayList<>(jarFiles.size() + 1);
-            urls.add(classesDir.toUri().toURL());
-            for (Path p : jarFiles) {
-                urls.add(p.toUri().toURL());
-            }
-
-            ClassLoader parentCl = Thread.currentThread().getContextClassLoader();
-            ClassLoader cl = new URLClassLoader(urls.toArray(new URL[0]), parentCl);
-            if (className != null && !className.isEmpty()) {
-                return initTranslator(cl, className);
+            List<Path> jarFiles;
+            try (Stream<Path> stream = Files.list(path)) {
+                jarFiles =
+                        stream.filter(p -> p.toString().endsWith(".jar"))
+                                .sorted()
+                                .collect(Collectors.toList());
             }
-
-            ServingTranslator translator = scanDirectory(cl, classesDir);
-            if (translator != null) {
-                return translator;
+            String key = path.toAbsolutePath().normalize().toString() + '#' + className;
+            String fingerprint = fingerprint(classesDir, jarFiles);
+            // drops the classes of the models that are closed already
+            CACHE.values().removeIf(c -> c.clazz.get() == null);
+            CachedTranslator cached = CACHE.get(key);
+            Class<? extends ServingTranslator> clazz = null;
+            if (cached != null && cached.fingerprint.equals(fingerprint)) {
+                clazz = cached.clazz.get();
             }
-
-            for (Path p : jarFiles) {
-                translator = scanJarFile(cl, p);
-                if (translator != null) {
-                    return translator;
+            if (clazz == null) {
+                clazz = loadTranslatorClass(classesDir, jarFiles, className);
+                if (clazz == null) {
+                    CACHE.remove(key);
+                    return null;
                 }
+                CACHE.put(key, new CachedTranslator(fingerprint, clazz));
+            } else {
+                logger.debug("Using cached translator: {}", clazz.getName());
             }
+            return newTranslator(clazz);
         } catch (IOException e) {
             logger.debug("Failed to find Translator", e);
         }
         return null;
     }
 
-    private ServingTranslator scanDirectory(ClassLoader cl, Path dir) throws IOException {
+    private Class<? extends ServingTranslator> loadTranslatorClass(
+            Path classesDir, List<Path> jarFiles, String className) throws IOException {
+        List<URL> urls = new ArrayList<>(jarFiles.size() + 1);
+        urls.add(classesDir.toUri().toURL());
+        for (Path p : jarFiles) {
+            urls.add(p.toUri().toURL());
+        }
+
+        ClassLoader parentCl = Thread.currentThread().getContextClassLoader();
+        URLClassLoader cl = new URLClassLoader(urls.toArray(new URL[0]), parentCl);
+        if (className != null && !className.isEmpty()) {
+            return getTranslatorClass(cl, className);
+        }
+
+        // translators declared as a service are found without loading any other class
+        Enumeration<URL> en = cl.findResources(SERVICE_FILE);
+        while (en.hasMoreElements()) {
+            for (String name : readServiceFile(en.nextElement())) {
+                Class<? extends ServingTranslator> clazz = getTranslatorClass(cl, name);
+                if (clazz != null) {
+                    return clazz;
+                }
+            }
+        }
+
+        Class<? extends ServingTranslator> clazz = scanDirectory(cl, classesDir);
+        if (clazz != null) {
+            return clazz;
+        }
+
+        for (Path p : jarFiles) {
+            clazz = scanJarFile(cl, p);
+            if (clazz != null) {
+                return clazz;
+            }
+        }
+        return null;
+    }
+
+    private Class<? extends ServingTranslator> scanDirectory(ClassLoader cl, Path dir)
+            throws IOException {
         if (!Files.isDirectory(dir)) {
             logger.debug("Directory not exists: {}", dir);
             return null;
         }
-        Collection<Path> files =
-                Files.walk(dir)
-                        .filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".class"))
-                        .collect(Collectors.toList());
+        Collection<Path> files;
+        try (Stream<Path> stream = Files.walk(dir)) {
+            files =
+                    stream.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".class"))
+                            .sorted()
+                            .collect(Collectors.toList());
+        }
         for (Path file : files) {
             Path p = dir.relativize(file);
             String className = p.toString();
             className = className.substring(0, className.lastIndexOf('.'));
             className = className.replace(File.separatorChar, '.');
-            ServingTranslator translator = initTranslator(cl, className);
-            if (translator != null) {
-                return translator;
+            Class<? extends ServingTranslator> clazz = getTranslatorClass(cl, className);
+            if (clazz != null) {
+                return clazz;
             }
         }
         return null;
     }
 
-    private ServingTranslator scanJarFile(ClassLoader cl, Path path) throws IOException {
+    private Class<? extends ServingTranslator> scanJarFile(ClassLoader cl, Path path)
+            throws IOException {
         try (JarFile jarFile = new JarFile(path.toFile())) {
             Enumeration<JarEntry> en = jarFile.entries();
             while (en.hasMoreElements()) {
@@ -160,9 +233,9 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
                 if (fileName.endsWith(".class")) {
                     fileName = fileName.substring(0, fileName.lastIndexOf('.'));
                     fileName = fileName.replace('/', '.');
-                    ServingTranslator translator = initTranslator(cl, fileName);
-                    if (translator != null) {
-                        return translator;
+                    Class<? extends ServingTranslator> clazz = getTranslatorClass(cl, fileName);
+                    if (clazz != null) {
+                        return clazz;
                     }
                 }
             }
@@ -170,18 +243,80 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
         return null;
     }
 
-    private ServingTranslator initTranslator(ClassLoader cl, String className) {
+    private Class<? extends ServingTranslator> getTranslatorClass(
+            ClassLoader cl, String className) {
         try {
-            Class<?> clazz = Class.forName(className, true, cl);
-            Class<? extends ServingTranslator> subclass = clazz.asSubclass(ServingTranslator.class);
-            Constructor<? extends ServingTranslator> constructor = subclass.getConstructor();
-            return constructor.newInstance();
+            // the class is not initialized unless it is a translator
+            Class<?> clazz = Class.forName(className, false, cl);
+            if (ServingTranslator.class.isAssignableFrom(clazz)
+                    && !clazz.isInterface()
+                    && !Modifier.isAbstract(clazz.getModifiers())) {
+                return clazz.asSubclass(ServingTranslator.class);
+            }
         } catch (Throwable e) {
             logger.trace("Not able to load ModelServerTranslator", e);
         }
         return null;
     }
 
+    private ServingTranslator newTranslator(Class<? extends ServingTranslator> clazz) {
+        try {
+            Constructor<? extends ServingTranslator> constructor = clazz.getConstructor();
+            return constructor.newInstance();
+        } catch (Throwable e) {
+            logger.warn("Not able to create ModelServerTranslator: {}", clazz.getName(), e);
+        }
+        return null;
+    }
+
+    private static List<String> readServiceFile(URL url) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (InputStream is = url.openStream();
+                BufferedReader reader =
+                        new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int pos = line.indexOf('#');
+                if (pos >= 0) {
+                    line = line.substring(0, pos);
+                }
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns a fingerprint of the translator libraries, it changes when a file is added, removed
+     * or modified.
+     *
+     * @param classesDir the directory of the bundled classes
+     * @param jarFiles the sorted bundled jar files
+     * @return the fingerprint of the translator libraries
+     * @throws IOException if failed to read the file attributes
+     */
+    private static String fingerprint(Path classesDir, List<Path> jarFiles) throws IOException {
+        List<Path> files = new ArrayList<>(jarFiles);
+        if (Files.isDirectory(classesDir)) {
+            try (Stream<Path> stream = Files.walk(classesDir)) {
+                stream.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Path file : files) {
+            sb.append(file)
+                    .append(':')
+                    .append(Files.size(file))
+                    .append(':')
+                    .append(Files.getLastModifiedTime(file).toMillis())
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
     private Translator<Input, Output> loadDefaultTranslator(Map<String, Object> arguments) {
         String appName = (String) arguments.get("application");
         if (appName != null) {
@@ -233,26 +368,63 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
         return new ImageServingTranslator(translator);
     }
 
+    /**
+     * Compiles the bundled java files, unless the same sources have been compiled already and the
+     * class of each java file exists.
+     *
+     * @param dir the directory of the bundled classes
+     */
     private void compileJavaClass(Path dir) {
         try {
             if (!Files.isDirectory(dir)) {
                 logger.debug("Directory not exists: {}", dir);
                 return;
             }
-            String[] files =
-                    Files.walk(dir)
-                            .filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
-                            .map(p -> p.toAbsolutePath().toString())
-                            .toArray(String[]::new);
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(dir)) {
+                files =
+                        stream.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
+                                .sorted()
+                                .collect(Collectors.toList());
+            }
+            if (files.isEmpty()) {
+                return;
+            }
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (Path file : files) {
+                md.update(dir.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                md.update(Files.readAllBytes(file));
+            }
+            String hash = Hex.toHexString(md.digest());
+            Path stampFile = dir.resolve(SOURCE_HASH_FILE);
+            if (Files.isRegularFile(stampFile)
+                    && hash.equals(
+                            new String(Files.readAllBytes(stampFile), StandardCharsets.UTF_8))
+                    && files.stream().allMatch(ServingTranslatorFactory::isCompiled)) {
+                logger.debug("Bundled java files are compiled already: {}", dir);
+                return;
+            }
+            String[] args =
+                    files.stream().map(p -> p.toAbsolutePath().toString()).toArray(String[]::new);
             JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            if (files.length > 0) {
-                compiler.run(null, null, null, files);
+            if (compiler.run(null, null, null, args) == 0) {
+                try {
+                    Files.write(stampFile, hash.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    logger.debug("Failed to save the hash of the bundled java files", e);
+                }
             }
         } catch (Throwable e) {
             logger.warn("Failed to compile bundled java file", e);
         }
     }
 
+    private static boolean isCompiled(Path javaFile) {
+        String name = javaFile.getFileName().toString();
+        name = name.substring(0, name.length() - ".java".length()) + ".class";
+        return Files.isRegularFile(javaFile.resolveSibling(name));
+    }
+
     private static Double getOrDefault(
             Map<String, Object> arguments, String key, double defaultValue) {
         Object value = arguments.get(key);
@@ -262,6 +434,21 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
         return Double.valueOf(value.toString());
     }
 
+    /**
+     * A translator class found in the libraries of a model, it is only reachable while a model
+     * holds an instance of it.
+     */
+    private static final class CachedTranslator {
+
+        String fingerprint;
+        WeakReference<Class<? extends ServingTranslator>> clazz;
+
+        CachedTranslator(String fingerprint, Class<? extends ServingTranslator> clazz) {
+            this.fingerprint = fingerprint;
+            this.clazz = new WeakReference<>(clazz);
+        }
+    }
+
     private static final class ImageServingTranslator implements Translator<Input, Output> {
 
         private Translator<Image, ?> translator;
@@ -292,15 +479,18 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
         @Override
         public NDList processInput(TranslatorContext ctx, Input input) throws Exception {
             ctx.setAttachment("input", input);
-            PairList<String, byte[]> inputs = input.getContent();
-            byte[] data = inputs.get("data");
-            if (data == null) {
-                data = inputs.get("body");
+            ByteBuffer data = getData(input);
+            byte[] buf;
+            int offset = 0;
+            if (data.hasArray()) {
+                buf = data.array();
+                offset = data.arrayOffset() + data.position();
+            } else {
+                buf = new byte[data.remaining()];
+                data.get(buf);
             }
-            if (data == null) {
-                data = input.getContent().valueAt(0);
-            }
-            Image image = factory.fromInputStream(new ByteArrayInputStream(data));
+            InputStream is = new ByteArrayInputStream(buf, offset, data.remaining());
+            Image image = factory.fromInputStream(is);
             return translator.processInput(ctx, image);
         }
 
@@ -323,16 +513,8 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
         @Override
         public NDList processInput(TranslatorContext ctx, Input input) throws IOException {
             ctx.setAttachment("input", input);
-            PairList<String, byte[]> inputs = input.getContent();
-            byte[] data = inputs.get("data");
-            if (data == null) {
-                data = inputs.get("body");
-            }
-            if (data == null) {
-                data = input.getContent().valueAt(0);
-            }
             NDManager manager = ctx.getNDManager();
-            return NDList.decode(manager, data);
+            return NDList.decode(manager, getData(input));
         }
 
         /** {@inheritDoc} */
@@ -344,4 +526,12 @@ public class ServingTranslatorFactory implements TranslatorFactory<Input, Output
             return output;
         }
     }
+
+    private static ByteBuffer getData(Input input) {
+        ByteBuffer data = input.getAsByteBuffer();
+        if (data == null) {
+            throw new IllegalArgumentException("Input data is empty.");
+        }
+        return data;
+    }
 }
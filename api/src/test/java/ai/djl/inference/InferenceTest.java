@@ -20,10 +20,12 @@ import ai.djl.modality.cv.Image;
 import ai.djl.modality.cv.ImageFactory;
 import ai.djl.modality.cv.output.DetectedObjects;
 import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
 import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
 import ai.djl.ndarray.types.SparseFormat;
 import ai.djl.test.mock.EchoTranslator;
+import ai.djl.test.mock.MockBaseNDManager;
 import ai.djl.test.mock.MockImageTranslator;
 import ai.djl.test.mock.MockModel;
 import ai.djl.test.mock.MockNDArray;
@@ -36,7 +38,15 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -119,6 +129,199 @@ public class InferenceTest {
         }
     }
 
+    @Test
+    public void testPipelinedPredictor()
+            throws ExecutionException, InterruptedException, TranslateException {
+        Model model = new MockModel();
+        try (Predictor<String, String> predictor = model.newPredictor(new NameTranslator());
+                PipelinedPredictor<String, String> pipeline =
+                        new PipelinedPredictor<>(predictor, 1)) {
+            List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; ++i) {
+                futures.add(pipeline.submit(Arrays.asList("a" + i, "b" + i)));
+            }
+            CompletableFuture<List<String>> failed =
+                    pipeline.submit(Collections.singletonList("bad"));
+            for (int i = 0; i < 10; ++i) {
+                Assert.assertEquals(futures.get(i).get(), Arrays.asList("a" + i, "b" + i));
+            }
+            Assert.assertThrows(ExecutionException.class, failed::get);
+
+            PredictionBatch batch = predictor.preprocess(Collections.singletonList("c"));
+            predictor.forward(batch);
+            Assert.assertEquals(predictor.postprocess(batch), Collections.singletonList("c"));
+        }
+    }
+
+    @Test
+    public void testAsyncPredictor() throws ExecutionException, InterruptedException {
+        Model model = new MockModel();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AsyncPredictor.Stats stats;
+        CountDownLatch gate = new CountDownLatch(1);
+        try (AsyncPredictor<String, String> predictor =
+                AsyncPredictor.builder(() -> model.newPredictor(new NameTranslator(gate)))
+                        .optPoolSize(2)
+                        .optMaxBatchSize(4)
+                        .optMaxBatchDelay(10, TimeUnit.MILLISECONDS)
+                        .build()) {
+            for (int i = 0; i < 20; ++i) {
+                futures.add(predictor.predict("input" + i));
+            }
+            // the workers are blocked until all inputs are queued, so the queued inputs coalesce
+            gate.countDown();
+            for (int i = 0; i < 20; ++i) {
+                Assert.assertEquals(futures.get(i).get(), "input" + i);
+            }
+            // a failed input fails the batch it is coalesced into
+            CompletableFuture<String> failed = predictor.predict("bad");
+            Assert.assertThrows(ExecutionException.class, failed::get);
+            stats = predictor.getStats();
+        }
+        Assert.assertEquals(stats.getSubmitted(), 21);
+        Assert.assertEquals(stats.getCompleted() + stats.getFailed(), 21);
+        Assert.assertTrue(stats.getBatches() < 21);
+        Assert.assertTrue(stats.getAverageBatchSize() > 1);
+    }
+
+    @Test
+    public void testBucketBatcher() {
+        BucketBatcher<String> batcher =
+                new BucketBatcher<>(new int[] {2, 4}, String::length, s -> 0);
+        for (String item : Arrays.asList("a", "abcde", "abc", "b", "abcd", "c")) {
+            batcher.add(item);
+        }
+        Assert.assertEquals(batcher.size(), 6);
+        Assert.assertEquals(batcher.getWaitTime(10, 4), 6);
+
+        // only the bucket of short items holds a full batch before the delay
+        List<String> batch = new ArrayList<>();
+        Assert.assertTrue(batcher.poll(batch, 3, 3, 10, 5));
+        Assert.assertEquals(batch, Arrays.asList("a", "b", "c"));
+        batch.clear();
+        Assert.assertFalse(batcher.poll(batch, 3, 3, 10, 5));
+
+        // the partial buckets are dispatched after the delay
+        Assert.assertTrue(batcher.poll(batch, 3, 3, 10, 10));
+        Assert.assertEquals(batch, Arrays.asList("abc", "abcd"));
+        batch.clear();
+        Assert.assertTrue(batcher.poll(batch, 3, 3, 10, 10));
+        Assert.assertEquals(batch, Collections.singletonList("abcde"));
+        Assert.assertEquals(batcher.size(), 0);
+        Assert.assertEquals(batcher.getWaitTime(10, 10), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testBucketBatcherCapacity() {
+        BucketBatcher<String> batcher =
+                new BucketBatcher<>(new int[] {2}, String::length, String::length, 2);
+        batcher.add("abc");
+        Assert.assertEquals(batcher.remainingCapacity(), 1);
+        batcher.add("a");
+        Assert.assertEquals(batcher.remainingCapacity(), 0);
+
+        // full buckets are dispatched before they hold a batch or reach the delay
+        List<String> batch = new ArrayList<>();
+        Assert.assertTrue(batcher.poll(batch, 3, 3, 10, 0));
+        Assert.assertEquals(batch, Collections.singletonList("a"));
+        Assert.assertEquals(batcher.remainingCapacity(), 1);
+        batch.clear();
+        Assert.assertFalse(batcher.poll(batch, 3, 3, 10, 0));
+    }
+
+    @Test
+    public void testBucketedQueueFull() throws InterruptedException {
+        Model model = new MockModel();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AsyncPredictor.Stats stats;
+        CountDownLatch gate = new CountDownLatch(1);
+        try (AsyncPredictor<String, String> predictor =
+                AsyncPredictor.builder(() -> model.newPredictor(new NameTranslator(gate)))
+                        .optPoolSize(1)
+                        .optMaxBatchSize(4)
+                        .optMaxBatchDelay(1, TimeUnit.MINUTES)
+                        .optQueueSize(2)
+                        .optLengthBuckets(String::length, 6)
+                        .build()) {
+            // no bucket is ready before the delay, so only the capacity stops the buckets from
+            // taking all queued inputs while the worker has time to move them
+            for (int i = 0; i < 20; ++i) {
+                futures.add(predictor.predict("input" + i % 10));
+                Thread.sleep(5);
+            }
+            stats = predictor.getStats();
+            gate.countDown();
+        }
+        for (CompletableFuture<String> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        // the full buckets are dispatched and the worker is blocked, then the queue fills up
+        Assert.assertEquals(stats.getSubmitted(), 20);
+        Assert.assertTrue(stats.getRejected() >= 20 - 2 - 2 - 1);
+    }
+
+    @Test
+    public void testBucketedAsyncPredictor() throws ExecutionException, InterruptedException {
+        Model model = new MockModel();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AsyncPredictor.Stats stats;
+        try (AsyncPredictor<String, String> predictor =
+                AsyncPredictor.builder(() -> model.newPredictor(new NameTranslator()))
+                        .optMaxBatchSize(4)
+                        .optMaxBatchDelay(10, TimeUnit.MILLISECONDS)
+                        .optLengthBuckets(String::length, 6, 10)
+                        .build()) {
+            for (int i = 0; i < 20; ++i) {
+                futures.add(predictor.predict(i % 2 == 0 ? "input" + i : "long-input" + i));
+            }
+            for (int i = 0; i < 20; ++i) {
+                String expected = i % 2 == 0 ? "input" + i : "long-input" + i;
+                Assert.assertEquals(futures.get(i).get(), expected);
+            }
+            stats = predictor.getStats();
+        }
+        Assert.assertEquals(stats.getSubmitted(), 20);
+        Assert.assertTrue(stats.getBatches() >= 5);
+    }
+
+    @Test
+    public void testManagerPool() throws TranslateException {
+        MockBaseNDManager root = new MockBaseNDManager();
+        Model model =
+                new MockModel() {
+                    /** {@inheritDoc} */
+                    @Override
+                    public NDManager getNDManager() {
+                        return root;
+                    }
+                };
+        ManagerTranslator translator = new ManagerTranslator();
+        System.setProperty("ai.djl.predictor.manager_pool_size", "1");
+        try (Predictor<String, String> predictor = model.newPredictor(translator)) {
+            // the manager of a request is recycled, its resources and sub-managers are released
+            Assert.assertEquals(predictor.predict("first"), "first");
+            NDManager first = translator.manager;
+            Assert.assertTrue(first.isOpen());
+            Assert.assertTrue(translator.resource.closed);
+            Assert.assertFalse(translator.subManager.isOpen());
+
+            Assert.assertEquals(predictor.predict("second"), "second");
+            Assert.assertSame(translator.manager, first);
+
+            // a manager closed by the request is not returned to the pool
+            Assert.assertEquals(predictor.predict("close"), "close");
+            Assert.assertFalse(first.isOpen());
+            Assert.assertEquals(predictor.predict("third"), "third");
+            Assert.assertNotSame(translator.manager, first);
+        } finally {
+            System.clearProperty("ai.djl.predictor.manager_pool_size");
+        }
+    }
+
     @Test(expectedExceptions = TranslateException.class)
     public void testTranslateException() throws TranslateException {
         EchoTranslator<String> translator = new EchoTranslator<>();
@@ -138,4 +341,88 @@ public class InferenceTest {
             model.load(modelDir);
         }
     }
+
+    private static final class ManagerTranslator implements Translator<String, String> {
+
+        NDManager manager;
+        NDManager subManager;
+        Resource resource;
+
+        /** {@inheritDoc} */
+        @Override
+        public NDList processInput(TranslatorContext ctx, String input) {
+            manager = ctx.getNDManager();
+            resource = new Resource();
+            manager.attach("resource", resource);
+            subManager = manager.newSubManager();
+            if ("close".equals(input)) {
+                manager.close();
+            }
+            MockNDArray array = new MockNDArray();
+            array.setName(input);
+            return new NDList(array);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String processOutput(TranslatorContext ctx, NDList list) {
+            return list.singletonOrThrow().getName();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Batchifier getBatchifier() {
+            return null;
+        }
+    }
+
+    private static final class Resource implements AutoCloseable {
+
+        boolean closed;
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static final class NameTranslator implements Translator<String, String> {
+
+        private CountDownLatch gate;
+
+        NameTranslator() {
+            this(new CountDownLatch(0));
+        }
+
+        NameTranslator(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public NDList processInput(TranslatorContext ctx, String input)
+                throws InterruptedException {
+            gate.await();
+            MockNDArray array = new MockNDArray();
+            array.setName(input);
+            return new NDList(array);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String processOutput(TranslatorContext ctx, NDList list) throws TranslateException {
+            String name = list.singletonOrThrow().getName();
+            if ("bad".equals(name)) {
+                throw new TranslateException("Bad input");
+            }
+            return name;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Batchifier getBatchifier() {
+            return null;
+        }
+    }
 }
@@ -33,6 +33,7 @@ public class MetricsTest {
         metrics.addMetric("m2", 2f);
         p50 = metrics.percentile("m2", 50);
         Assert.assertEquals(p50.getValue().floatValue(), 2f);
+        Assert.assertTrue(metrics.getMetric("m2").get(1).getValue() instanceof Float);
 
         metrics.addMetric(new Metric("m3", 1d));
         metrics.addMetric("m3", 3d, "count");
@@ -40,6 +41,10 @@ public class MetricsTest {
         p50 = metrics.percentile("m3", 50);
         Assert.assertEquals(p50.getValue().doubleValue(), 2d);
 
+        metrics.addMetric("m5", 1, "count");
+        Assert.assertTrue(metrics.latestMetric("m5").getValue() instanceof Integer);
+        Assert.assertEquals(metrics.percentile("m1", 100).getValue().longValue(), 3L);
+
         List<Metric> list = metrics.getMetric("m1");
         Assert.assertEquals(list.size(), 3);
 
@@ -47,7 +52,7 @@ public class MetricsTest {
         Assert.assertEquals(list.size(), 0);
 
         Set<String> metricNames = metrics.getMetricNames();
-        Assert.assertEquals(metricNames.size(), 3);
+        Assert.assertEquals(metricNames.size(), 4);
         Assert.assertEquals(metricNames.contains("m1"), true);
         Assert.assertEquals(metricNames.contains("m2"), true);
         Assert.assertEquals(metricNames.contains("m3"), true);
@@ -64,6 +69,35 @@ public class MetricsTest {
         Assert.assertEquals(mean, 1.5d);
     }
 
+    @Test
+    public void testAggregatedMetrics() {
+        Metrics metrics = new Metrics(false);
+        for (int i = 1000; i > 0; --i) {
+            metrics.addMetric("latency", i * 1000L, "nano");
+        }
+        metrics.addMetric("loss", -0.5d, "count");
+        metrics.addMetric("loss", 0.25d, "count");
+
+        Assert.assertEquals(metrics.mean("latency"), 500500d);
+        long p50 = metrics.percentile("latency", 50).getValue().longValue();
+        Assert.assertTrue(Math.abs(p50 - 500000) <= 500000 / 100, "p50: " + p50);
+        long p90 = metrics.percentile("latency", 90).getValue().longValue();
+        Assert.assertTrue(Math.abs(p90 - 900000) <= 900000 / 100, "p90: " + p90);
+        Assert.assertEquals(metrics.percentile("latency", 100).getValue().longValue(), 1000000L);
+        Assert.assertEquals(metrics.percentile("loss", 0).getValue().doubleValue(), -0.5d);
+
+        Metric latest = metrics.latestMetric("latency");
+        Assert.assertEquals(latest.getValue().longValue(), 1000L);
+        Assert.assertEquals(latest.getUnit(), "nano");
+        Assert.assertEquals(metrics.getMetric("loss").size(), 1);
+        Assert.assertEquals(metrics.getMetricNames().size(), 2);
+
+        metrics.reset();
+        Assert.assertFalse(metrics.hasMetric("latency"));
+        metrics.addMetric("latency", 7L, "nano");
+        Assert.assertEquals(metrics.percentile("latency", 50).getValue().longValue(), 7L);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testMeanException() {
         Metrics metrics = new Metrics();
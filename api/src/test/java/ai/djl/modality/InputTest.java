@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.modality;
+
+import ai.djl.util.PairList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class InputTest {
+
+    @Test
+    public void testContentOrder() {
+        Input input = new Input("requestId");
+        input.addData("a", bytes("1"));
+        input.addData("b", ByteBuffer.wrap(bytes("x2x"), 1, 1));
+        input.addData("c", bytes("3"));
+        ByteBuffer direct = ByteBuffer.allocateDirect(1);
+        direct.put(bytes("4")).flip();
+        input.addData("d", direct);
+        input.addData(0, bytes("0"));
+
+        PairList<String, byte[]> content = input.getContent();
+        Assert.assertEquals(content.keys().toArray(), new Object[] {null, "a", "b", "c", "d"});
+        for (int i = 0; i < content.size(); ++i) {
+            Assert.assertEquals(content.valueAt(i), bytes(String.valueOf(i)));
+        }
+
+        PairList<String, ByteBuffer> buffers = input.getAsByteBuffers();
+        Assert.assertEquals(buffers.keys(), content.keys());
+        for (int i = 0; i < buffers.size(); ++i) {
+            Assert.assertEquals(buffers.valueAt(i), ByteBuffer.wrap(content.valueAt(i)));
+        }
+        // the views do not consume the data
+        Assert.assertEquals(input.getContent().valueAt(2), bytes("2"));
+    }
+
+    @Test
+    public void testDefaultData() {
+        Input input = new Input("requestId");
+        Assert.assertNull(input.getAsByteBuffer());
+        input.addData("first", ByteBuffer.wrap(bytes("first")));
+        Assert.assertEquals(input.getAsByteBuffer(), ByteBuffer.wrap(bytes("first")));
+        input.addData("body", bytes("body"));
+        Assert.assertEquals(input.getAsByteBuffer(), ByteBuffer.wrap(bytes("body")));
+        input.addData("data", ByteBuffer.wrap(bytes("data")));
+        Assert.assertEquals(input.getAsByteBuffer(), ByteBuffer.wrap(bytes("data")));
+        Assert.assertNull(input.getAsByteBuffer("missing"));
+
+        PairList<String, byte[]> content = new PairList<>();
+        content.add("data", bytes("replaced"));
+        input.setContent(content);
+        Assert.assertEquals(input.getContent().size(), 1);
+        Assert.assertEquals(input.getAsByteBuffer(), ByteBuffer.wrap(bytes("replaced")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
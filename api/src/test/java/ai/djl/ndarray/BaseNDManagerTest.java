@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.ndarray;
+
+import ai.djl.test.mock.MockBaseNDManager;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BaseNDManagerTest {
+
+    @Test
+    public void testRecycle() {
+        BaseNDManager manager = (BaseNDManager) new MockBaseNDManager().newSubManager();
+        Resource resource = new Resource();
+        manager.attach("resource", resource);
+        NDManager subManager = manager.newSubManager();
+
+        // the resources and sub-managers are closed, the manager stays open
+        Assert.assertTrue(manager.recycle());
+        Assert.assertTrue(resource.closed);
+        Assert.assertFalse(subManager.isOpen());
+        Assert.assertTrue(manager.isOpen());
+
+        // the recycled manager tracks new resources
+        Resource next = new Resource();
+        manager.attach("next", next);
+        manager.close();
+        Assert.assertTrue(next.closed);
+
+        // a closed manager cannot be recycled
+        Assert.assertFalse(manager.recycle());
+    }
+
+    private static final class Resource implements AutoCloseable {
+
+        boolean closed;
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
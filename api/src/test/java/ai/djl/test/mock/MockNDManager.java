@@ -19,6 +19,7 @@ import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
 import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
+import ai.djl.ndarray.types.SparseFormat;
 import ai.djl.util.PairList;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -35,7 +36,7 @@ public class MockNDManager implements NDManager {
     /** {@inheritDoc} */
     @Override
     public NDArray create(Shape shape, DataType dataType) {
-        return new MockNDArray(this, getDevice(), shape, dataType, null);
+        return new MockNDArray(this, getDevice(), shape, dataType, SparseFormat.DENSE);
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.translate;
+
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.test.mock.MockModel;
+import ai.djl.util.Utils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ServingTranslatorFactoryTest {
+
+    private Path modelDir = Paths.get("build/tmp/translatorModel/");
+    private Path classesDir = modelDir.resolve("libs/classes");
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        Utils.deleteQuietly(modelDir);
+        Path dir = classesDir.resolve("test");
+        Files.createDirectories(dir);
+        // the scan finds First before Second, the service file declares Second
+        writeTranslator(dir, "First");
+        writeTranslator(dir, "Second");
+        Path services = classesDir.resolve("META-INF/services");
+        Files.createDirectories(services);
+        Files.write(
+                services.resolve(ServingTranslator.class.getName()),
+                "# the declared translator\ntest.Second\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testServiceFile() throws TranslateException {
+        Translator<Input, Output> translator = newTranslator();
+        Assert.assertEquals(translator.getClass().getName(), "test.Second");
+    }
+
+    @Test
+    public void testCache() throws IOException, TranslateException {
+        Translator<Input, Output> translator = newTranslator();
+        Assert.assertSame(newTranslator().getClass(), translator.getClass());
+
+        // the sources are compiled again if their classes are missing, even if unchanged
+        Path classFile = classesDir.resolve("test/Second.class");
+        Files.delete(classFile);
+        Translator<Input, Output> reloaded = newTranslator();
+        Assert.assertTrue(Files.isRegularFile(classFile));
+        Assert.assertEquals(reloaded.getClass().getName(), "test.Second");
+        Assert.assertNotSame(reloaded.getClass(), translator.getClass());
+    }
+
+    @Test
+    public void testRawTranslatorBatch() throws IOException, TranslateException {
+        Path rawModelDir = Paths.get("build/tmp/rawModel/");
+        Files.createDirectories(rawModelDir);
+        Model model =
+                new MockModel() {
+                    /** {@inheritDoc} */
+                    @Override
+                    public Path getModelPath() {
+                        return rawModelDir;
+                    }
+                };
+        Translator<Input, Output> translator =
+                new ServingTranslatorFactory().newInstance(model, new HashMap<>());
+        List<Input> inputs = new ArrayList<>();
+        try (NDManager manager = model.getNDManager().newSubManager()) {
+            for (int i = 0; i < 3; ++i) {
+                Input input = new Input("request-" + i);
+                input.addData(new NDList(manager.create(new float[] {i})).encode());
+                inputs.add(input);
+            }
+        }
+
+        // the translator has no batchifier, each input of a batch keeps its own request
+        try (Predictor<Input, Output> predictor = model.newPredictor(translator)) {
+            List<Output> outputs = predictor.batchPredict(inputs);
+            Assert.assertEquals(outputs.size(), inputs.size());
+            for (int i = 0; i < outputs.size(); ++i) {
+                Assert.assertEquals(outputs.get(i).getRequestId(), "request-" + i);
+            }
+        }
+    }
+
+    private Translator<Input, Output> newTranslator() throws TranslateException {
+        Model model =
+                new MockModel() {
+                    /** {@inheritDoc} */
+                    @Override
+                    public Path getModelPath() {
+                        return modelDir;
+                    }
+                };
+        return new ServingTranslatorFactory().newInstance(model, new HashMap<>());
+    }
+
+    private static void writeTranslator(Path dir, String name) throws IOException {
+        String source =
+                "package test;\n"
+                        + "public class "
+                        + name
+                        + " implements ai.djl.translate.ServingTranslator {\n"
+                        + "    public void setArguments(java.util.Map<String, Object> args) {}\n"
+                        + "    public ai.djl.translate.Batchifier getBatchifier() {\n"
+                        + "        return null;\n"
+                        + "    }\n"
+                        + "    public ai.djl.ndarray.NDList processInput(\n"
+                        + "            ai.djl.translate.TranslatorContext ctx,"
+                        + " ai.djl.modality.Input input) {\n"
+                        + "        return null;\n"
+                        + "    }\n"
+                        + "    public ai.djl.modality.Output processOutput(\n"
+                        + "            ai.djl.translate.TranslatorContext ctx,"
+                        + " ai.djl.ndarray.NDList list) {\n"
+                        + "        return null;\n"
+                        + "    }\n"
+                        + "}\n";
+        Files.write(dir.resolve(name + ".java"), source.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -21,6 +21,7 @@ import ai.djl.ndarray.NDManager;
 import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
 import ai.djl.testing.Assertions;
+import java.nio.ByteBuffer;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -731,6 +732,15 @@ public class NDArrayOtherOpTest {
             byte[] bytes = array.encode();
             NDArray recovered = NDArray.decode(manager, bytes);
             Assert.assertEquals(recovered, array);
+
+            bytes = new NDList(array, array).encode();
+            ByteBuffer bb = ByteBuffer.allocateDirect(bytes.length);
+            bb.put(bytes);
+            bb.flip();
+            NDList list = NDList.decode(manager, bb);
+            Assert.assertEquals(list.size(), 2);
+            Assert.assertEquals(list.get(1), array);
+            Assert.assertEquals(bb.position(), 0);
         }
     }
 }
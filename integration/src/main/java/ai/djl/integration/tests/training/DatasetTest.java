@@ -15,7 +15,9 @@ package ai.djl.integration.tests.training;
 import ai.djl.Device;
 import ai.djl.Model;
 import ai.djl.basicdataset.Cifar10;
+import ai.djl.metric.Metrics;
 import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
 import ai.djl.ndarray.types.DataType;
 import ai.djl.nn.Blocks;
@@ -25,21 +27,32 @@ import ai.djl.training.TrainingConfig;
 import ai.djl.training.dataset.ArrayDataset;
 import ai.djl.training.dataset.Batch;
 import ai.djl.training.dataset.BatchSampler;
+import ai.djl.training.dataset.CachedDataset;
 import ai.djl.training.dataset.Dataset;
+import ai.djl.training.dataset.MappedDataset;
 import ai.djl.training.dataset.RandomSampler;
+import ai.djl.training.dataset.Record;
 import ai.djl.training.dataset.SequenceSampler;
+import ai.djl.training.dataset.StreamingDataset;
 import ai.djl.training.initializer.Initializer;
 import ai.djl.training.loss.Loss;
 import ai.djl.translate.TranslateException;
+import ai.djl.util.Progress;
+import ai.djl.util.Utils;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -265,6 +278,179 @@ public class DatasetTest {
         }
     }
 
+    @Test
+    public void testParallelLoader() throws IOException, TranslateException {
+        try (Model model = Model.newInstance("model")) {
+            model.setBlock(Blocks.identityBlock());
+            NDManager manager = model.getNDManager();
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            ArrayDataset dataset =
+                    new ArrayDataset.Builder()
+                            .setData(
+                                    manager.arange(
+                                            0, 100, 1, DataType.INT64, Device.defaultDevice()))
+                            .setSampling(7, false)
+                            // budget for about three batches of 7 int64 records
+                            .optParallelLoader(pool, 3 * 7 * 8)
+                            .build();
+
+            List<Long> original = new ArrayList<>();
+            try (Trainer trainer = model.newTrainer(config)) {
+                trainer.setMetrics(new Metrics());
+                for (Batch batch : trainer.iterateDataset(dataset)) {
+                    for (long value : batch.getData().singletonOrThrow().toLongArray()) {
+                        original.add(value);
+                    }
+                    batch.close();
+                }
+                List<Long> expected = LongStream.range(0, 100).boxed().collect(Collectors.toList());
+                Assert.assertEquals(original, expected, "ParallelDataIterable test failed");
+                Assert.assertEquals(trainer.getMetrics().getMetric("loader-stall").size(), 15);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testMappedDataset() throws IOException, TranslateException {
+        Path dir = Files.createTempDirectory("mapped-dataset");
+        try (Model model = Model.newInstance("model")) {
+            model.setBlock(Blocks.identityBlock());
+            NDManager manager = model.getNDManager();
+
+            ArrayDataset arrayDataset =
+                    new ArrayDataset.Builder()
+                            .setData(manager.arange(200).reshape(100, 2))
+                            .optLabels(manager.arange(100))
+                            .setSampling(1, false)
+                            .build();
+            // small shards, so the records are spread over several files
+            MappedDataset.write(arrayDataset, manager, dir, 1024);
+
+            MappedDataset dataset =
+                    new MappedDataset.Builder().setDirectory(dir).setSampling(10, false).build();
+            try (Trainer trainer = model.newTrainer(config)) {
+                int index = 0;
+                for (Batch batch : trainer.iterateDataset(dataset)) {
+                    Assert.assertEquals(
+                            batch.getData().singletonOrThrow(),
+                            manager.arange(2 * index, 2 * index + 20).reshape(10, 2));
+                    Assert.assertEquals(
+                            batch.getLabels().singletonOrThrow(),
+                            manager.arange(index, index + 10).reshape(10));
+                    index += 10;
+                    batch.close();
+                }
+                Assert.assertEquals(index, 100);
+            }
+            Assert.assertThrows(IndexOutOfBoundsException.class, () -> dataset.get(manager, 100));
+        } finally {
+            Utils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void testCachedDataset() throws IOException, TranslateException {
+        Path dir = Files.createTempDirectory("cached-dataset");
+        try (Model model = Model.newInstance("model")) {
+            model.setBlock(Blocks.identityBlock());
+            NDManager manager = model.getNDManager();
+
+            ArrayDataset arrayDataset =
+                    new ArrayDataset.Builder()
+                            .setData(manager.arange(200).reshape(100, 2))
+                            .optLabels(manager.arange(100))
+                            .setSampling(1, false)
+                            .build();
+            // the memory tier holds only some of the records, the others spill to disk
+            try (CachedDataset dataset =
+                            new CachedDataset.Builder()
+                                    .setDataset(arrayDataset)
+                                    .optMemoryCache(2048)
+                                    .optDiskCache(dir, 1L << 20)
+                                    .setSampling(10, false)
+                                    .build();
+                    Trainer trainer = model.newTrainer(config)) {
+                for (int epoch = 0; epoch < 2; ++epoch) {
+                    int index = 0;
+                    for (Batch batch : trainer.iterateDataset(dataset)) {
+                        Assert.assertEquals(
+                                batch.getData().singletonOrThrow(),
+                                manager.arange(2 * index, 2 * index + 20).reshape(10, 2));
+                        Assert.assertEquals(
+                                batch.getLabels().singletonOrThrow(),
+                                manager.arange(index, index + 10).reshape(10));
+                        index += 10;
+                        batch.close();
+                    }
+                    Assert.assertEquals(index, 100);
+                }
+                Assert.assertTrue(dataset.getMemoryUsage() > 0);
+                Assert.assertTrue(dataset.getDiskUsage() > 0);
+            }
+        } finally {
+            Utils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void testStreamingDataset() throws IOException, TranslateException {
+        try (Model model = Model.newInstance("model")) {
+            model.setBlock(Blocks.identityBlock());
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            RangeDataset dataset =
+                    new RangeDataset.Builder()
+                            .setSampling(7, 20)
+                            .optExecutor(executor, 2)
+                            .optEstimatedSize(100)
+                            .build();
+
+            List<Long> original = new ArrayList<>();
+            try (Trainer trainer = model.newTrainer(config)) {
+                for (Batch batch : trainer.iterateDataset(dataset)) {
+                    for (long value : batch.getData().singletonOrThrow().toLongArray()) {
+                        original.add(value);
+                    }
+                    Assert.assertEquals(batch.getProgress(), original.size());
+                    batch.close();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            Assert.assertNotEquals(
+                    original, LongStream.range(0, 100).boxed().collect(Collectors.toList()));
+            original.sort(Long::compare);
+            Assert.assertEquals(
+                    original, LongStream.range(0, 100).boxed().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testStreamingDatasetLimit() throws IOException, TranslateException {
+        try (Model model = Model.newInstance("model")) {
+            model.setBlock(Blocks.identityBlock());
+
+            RangeDataset dataset =
+                    new RangeDataset.Builder().setSampling(10, 1).optLimit(30).build();
+
+            try (Trainer trainer = model.newTrainer(config)) {
+                for (int epoch = 0; epoch < 2; ++epoch) {
+                    long size = 0;
+                    for (Batch batch : trainer.iterateDataset(dataset)) {
+                        size += batch.getSize();
+                        batch.close();
+                    }
+                    Assert.assertEquals(size, 30);
+                    // the shard the limit ended in is closed with the iteration
+                    Assert.assertEquals(dataset.openShards.get(), 0);
+                }
+            }
+        }
+    }
+
     @Test
     public void testMultithreading() throws IOException, InterruptedException, TranslateException {
         try (Model model = Model.newInstance("model")) {
@@ -293,4 +479,53 @@ public class DatasetTest {
             }
         }
     }
+
+    /** A streaming dataset of the numbers from 0 to 99 in four shards. */
+    private static final class RangeDataset extends StreamingDataset<Long> {
+
+        private AtomicInteger openShards = new AtomicInteger();
+
+        RangeDataset(Builder builder) {
+            super(builder);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected int getShardCount() {
+            return 4;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Stream<Long> readShard(int shard) {
+            openShards.incrementAndGet();
+            return LongStream.range(shard * 25L, shard * 25L + 25)
+                    .boxed()
+                    .onClose(openShards::decrementAndGet);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Record decode(NDManager manager, Long item) {
+            return new Record(
+                    new NDList(manager.create(item)), new NDList(manager.create(item)));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void prepare(Progress progress) {}
+
+        static final class Builder extends StreamingDataset.BaseBuilder<Builder> {
+
+            /** {@inheritDoc} */
+            @Override
+            protected Builder self() {
+                return this;
+            }
+
+            RangeDataset build() {
+                return new RangeDataset(this);
+            }
+        }
+    }
 }
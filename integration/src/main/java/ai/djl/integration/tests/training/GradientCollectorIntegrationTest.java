@@ -12,6 +12,7 @@
  */
 package ai.djl.integration.tests.training;
 
+import ai.djl.Device;
 import ai.djl.Model;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDArrays;
@@ -35,7 +36,10 @@ import ai.djl.training.optimizer.Optimizer;
 import ai.djl.training.tracker.Tracker;
 import ai.djl.translate.TranslateException;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.Test;
 
 public class GradientCollectorIntegrationTest {
@@ -132,4 +136,71 @@ public class GradientCollectorIntegrationTest {
                             lossValue, expectedLoss));
         }
     }
+
+    @Test
+    public void testGradientAccumulation() throws IOException, TranslateException {
+        // one update with a batch of 20 equals one update accumulated over two batches of 10
+        Device[] devices = {Device.defaultDevice()};
+        assertWeights(trainLinear(10, 2, devices), trainLinear(20, 1, devices));
+    }
+
+    @Test
+    public void testPartialGradientAccumulation() throws IOException, TranslateException {
+        // the two batches of the epoch are applied at the end of the epoch, as the mean of two
+        Device[] devices = {Device.defaultDevice()};
+        assertWeights(trainLinear(10, 3, devices), trainLinear(20, 1, devices));
+    }
+
+    @Test
+    public void testMultiDeviceGradientAccumulation() throws IOException, TranslateException {
+        // all CPU device ids are the same device, so multiple devices require GPUs
+        if (Device.getGpuCount() < 2) {
+            throw new SkipException("Multiple devices are not available.");
+        }
+        Device[] devices = Device.getDevices(2);
+        // the splits of each batch run concurrently, and the weight and bias are updated as one
+        // bucket of the parameter server
+        assertWeights(trainLinear(10, 2, devices), trainLinear(20, 1, devices));
+    }
+
+    private static void assertWeights(float[] actual, float[] expected) {
+        Assert.assertEquals(actual.length, expected.length);
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertEquals(actual[i], expected[i], 1e-5f);
+        }
+    }
+
+    private float[] trainLinear(int batchSize, int gradientAccumulation, Device[] devices)
+            throws IOException, TranslateException {
+        Optimizer optimizer = Optimizer.sgd().setLearningRateTracker(Tracker.fixed(.03f)).build();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        TrainingConfig config =
+                new DefaultTrainingConfig(Loss.l2Loss())
+                        .optInitializer(Initializer.ONES)
+                        .optOptimizer(optimizer)
+                        .optDevices(devices)
+                        .optGradientAccumulation(gradientAccumulation)
+                        .optExecutorService(executor);
+
+        try (Model model = Model.newInstance("linear")) {
+            model.setBlock(Linear.builder().setUnits(1).build());
+            NDManager manager = model.getNDManager();
+
+            NDArray data = manager.arange(40f).reshape(20, 2).div(40);
+            NDArray label = data.dot(manager.create(new float[] {2f, -3.4f}, new Shape(2, 1)));
+            ArrayDataset dataset =
+                    new ArrayDataset.Builder()
+                            .setData(data)
+                            .optLabels(label)
+                            .setSampling(batchSize, false)
+                            .build();
+            try (Trainer trainer = model.newTrainer(config)) {
+                trainer.initialize(new Shape(batchSize, 2));
+                EasyTrain.fit(trainer, 1, dataset, null);
+            } finally {
+                executor.shutdown();
+            }
+            return model.getBlock().getParameters().get("weight").getArray().toFloatArray();
+        }
+    }
 }
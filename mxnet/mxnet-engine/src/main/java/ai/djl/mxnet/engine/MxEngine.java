@@ -121,6 +121,24 @@ public final class MxEngine extends Engine {
         RandomUtils.RANDOM.setSeed(seed);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setNumThreads(int numThreads) {
+        JnaUtils.setOmpThreads(numThreads);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>{@code MXSetNumOMPThreads} limits the operators that run on the calling thread. They only
+     * run on the calling thread with the {@code NaiveEngine}, the default {@code ThreadedEngine}
+     * runs them on its own threads.
+     */
+    @Override
+    public boolean isNumThreadsPerThread() {
+        return "NaiveEngine".equals(System.getenv("MXNET_ENGINE_TYPE"));
+    }
+
     /** {@inheritDoc} */
     @Override
     public void debugEnvironment() {
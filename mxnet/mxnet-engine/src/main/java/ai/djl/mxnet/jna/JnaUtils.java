@@ -202,11 +202,11 @@ public final class JnaUtils {
         return ret;
     }
 
-    /* Need tests
     public static void setOmpThreads(int threads) {
         checkCall(LIB.MXSetNumOMPThreads(threads));
     }
 
+    /* Need tests
     public static int setBulkSize(int bulkSize) {
         IntBuffer prevBulkSize = IntBuffer.allocate(1);
         checkCall(LIB.MXEngineSetBulkSize(bulkSize, prevBulkSize));
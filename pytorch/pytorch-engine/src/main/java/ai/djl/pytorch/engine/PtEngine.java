@@ -103,4 +103,15 @@ public final class PtEngine extends Engine {
     public void setRandomSeed(int seed) {
         JniUtils.setSeed(seed);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>{@code torch::set_num_threads} is process-global: it sets the intra-op thread pool size
+     * shared by all threads, not a limit of the current thread.
+     */
+    @Override
+    public void setNumThreads(int numThreads) {
+        JniUtils.setNumThreads(numThreads);
+    }
 }
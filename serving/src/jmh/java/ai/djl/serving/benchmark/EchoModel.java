@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.benchmark;
+
+import ai.djl.Model;
+import ai.djl.mxnet.engine.MxNDManager;
+import ai.djl.mxnet.engine.MxSymbolBlock;
+import ai.djl.mxnet.engine.Symbol;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Properties;
+
+/**
+ * Creates an echo model, an MXNet model whose graph copies its input to its output.
+ *
+ * <p>The model is served with the {@link EchoTranslator}, so a request returns its own body and
+ * nearly all of the latency is spent in the model server rather than in the engine.
+ */
+final class EchoModel {
+
+    static final String NAME = "echo";
+
+    private static final String SYMBOL =
+            "{\"nodes\":["
+                    + "{\"op\":\"null\",\"name\":\"data\",\"inputs\":[]},"
+                    + "{\"op\":\"_copy\",\"name\":\"echo\",\"inputs\":[[0,0,0]]}],"
+                    + "\"arg_nodes\":[0],"
+                    + "\"node_row_ptr\":[0,1,2],"
+                    + "\"heads\":[[1,0,0]],"
+                    + "\"attrs\":{\"mxnet_version\":[\"int\",10700]}}";
+
+    private EchoModel() {}
+
+    /**
+     * Writes the echo model to a directory.
+     *
+     * @param modelDir the directory of the model
+     * @throws IOException if failed to write the model files
+     */
+    static void create(Path modelDir) throws IOException {
+        // an empty libs directory makes the model server look up the translator class
+        Files.createDirectories(modelDir.resolve("libs"));
+        Path symbolFile = modelDir.resolve(NAME + "-symbol.json");
+        Files.write(symbolFile, SYMBOL.getBytes(StandardCharsets.UTF_8));
+
+        try (Model model = Model.newInstance(NAME)) {
+            MxNDManager manager = (MxNDManager) model.getNDManager();
+            Symbol symbol = Symbol.load(manager, symbolFile.toAbsolutePath().toString());
+            MxSymbolBlock block = new MxSymbolBlock(manager, symbol);
+            block.setInputNames(Collections.singletonList("data"));
+            model.setBlock(block);
+            // the graph has no parameters, only the input names are saved
+            model.save(modelDir, NAME);
+        }
+
+        Properties prop = new Properties();
+        prop.setProperty("translator", EchoTranslator.class.getName());
+        try (Writer writer = Files.newBufferedWriter(modelDir.resolve("serving.properties"))) {
+            prop.store(writer, null);
+        }
+    }
+}
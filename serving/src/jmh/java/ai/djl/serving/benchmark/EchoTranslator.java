@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.benchmark;
+
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.ServingTranslator;
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.TranslatorContext;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * A {@link ServingTranslator} that returns the request body unchanged.
+ *
+ * <p>Like {@link ai.djl.translate.NoopTranslator}, it does no pre- or post-processing beyond
+ * copying the bytes into and out of an {@code uint8} array, so the engine time of the echo model is
+ * negligible compared to the time spent in the model server.
+ */
+public class EchoTranslator implements ServingTranslator {
+
+    private static final String REQUEST_IDS = "requestIds";
+
+    /** {@inheritDoc} */
+    @Override
+    public void setArguments(Map<String, Object> arguments) {}
+
+    /** {@inheritDoc} */
+    @Override
+    public NDList processInput(TranslatorContext ctx, Input input) throws TranslateException {
+        getRequestIds(ctx).addLast(input.getRequestId());
+        ByteBuffer data = input.getAsByteBuffer();
+        if (data == null || !data.hasRemaining()) {
+            throw new TranslateException("Request body is empty.");
+        }
+        Shape shape = new Shape(data.remaining());
+        return new NDList(ctx.getNDManager().create(data, shape, DataType.UINT8));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Output processOutput(TranslatorContext ctx, NDList list) {
+        // the outputs are processed in the same order as the inputs
+        Output output = new Output(getRequestIds(ctx).pollFirst(), 200, "OK");
+        output.setContent(list.singletonOrThrow().toByteArray());
+        return output;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Batchifier getBatchifier() {
+        // the payloads may have different lengths
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Deque<String> getRequestIds(TranslatorContext ctx) {
+        Deque<String> requestIds = (Deque<String>) ctx.getAttachment(REQUEST_IDS);
+        if (requestIds == null) {
+            requestIds = new ArrayDeque<>();
+            ctx.setAttachment(REQUEST_IDS, requestIds);
+        }
+        return requestIds;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.benchmark;
+
+import ai.djl.serving.Arguments;
+import ai.djl.serving.ModelServer;
+import ai.djl.serving.util.ConfigManager;
+import ai.djl.serving.util.Connector;
+import ai.djl.util.Utils;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+import io.netty.util.internal.logging.Slf4JLoggerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput and latency of the model server with an echo model.
+ *
+ * <p>The benchmark writes an {@link EchoModel}, starts a model server in the same process unless
+ * {@code --external} is set, registers the model through the management API and sends requests
+ * with a {@link LoadGenerator}. Since the echo model does no work, the results measure the
+ * overhead of the HTTP handling, batching and worker scheduling of the model server, and can be
+ * compared between builds on the same machine.
+ *
+ * <p>Run with: {@code ./gradlew :serving:benchmark -Dbenchmark.args="-c 64 -d 60"}
+ */
+public final class HttpBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpBenchmark.class);
+
+    private HttpBenchmark() {}
+
+    /**
+     * The entry point for the benchmark.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        Options options = getOptions();
+        try {
+            DefaultParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args, null, false);
+            if (cmd.hasOption("help")) {
+                printHelp("benchmark [OPTIONS]", options);
+                return;
+            }
+            run(cmd);
+        } catch (ParseException e) {
+            printHelp(e.getMessage(), options);
+            System.exit(1); // NOPMD
+        } catch (Throwable t) {
+            logger.error("Unexpected error", t);
+            System.exit(1); // NOPMD
+        }
+    }
+
+    private static void run(CommandLine cmd)
+            throws IOException, InterruptedException, GeneralSecurityException, ParseException {
+        String url = cmd.getOptionValue("url", "http://127.0.0.1:8080");
+        String managementUrl = cmd.getOptionValue("management-url", url);
+        int concurrency = Integer.parseInt(cmd.getOptionValue("concurrency", "16"));
+        double rate = Double.parseDouble(cmd.getOptionValue("rate", "0"));
+        long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(cmd.getOptionValue("warmup", "5")));
+        long duration =
+                TimeUnit.SECONDS.toNanos(Long.parseLong(cmd.getOptionValue("duration", "30")));
+        int threads = Integer.parseInt(cmd.getOptionValue("client-threads", "1"));
+        List<byte[]> corpus = loadCorpus(cmd);
+
+        Path workDir = Files.createTempDirectory("djl-benchmark");
+        try {
+            Path modelDir = workDir.resolve(EchoModel.NAME);
+            EchoModel.create(modelDir);
+            initConfig(workDir, url, managementUrl);
+
+            ModelServer server = null;
+            if (!cmd.hasOption("external")) {
+                InternalLoggerFactory.setDefaultFactory(Slf4JLoggerFactory.INSTANCE);
+                server = new ModelServer(ConfigManager.getInstance());
+                server.start();
+            }
+            try {
+                registerModel(managementUrl, modelDir, cmd);
+                Connector connector = Connector.parse(url, Connector.ConnectorType.INFERENCE);
+                String path = "/predictions/" + EchoModel.NAME;
+                try (LoadGenerator generator =
+                        new LoadGenerator(connector, path, corpus, rate, threads)) {
+                    generator.connect(concurrency);
+                    LoadGenerator.Result result = generator.run(warmup, duration);
+                    report(result, concurrency, rate, corpus);
+                }
+            } finally {
+                if (server == null) {
+                    request(managementUrl + "/models/" + EchoModel.NAME, "DELETE");
+                } else {
+                    server.stop();
+                }
+            }
+        } finally {
+            Utils.deleteQuietly(workDir);
+        }
+    }
+
+    private static List<byte[]> loadCorpus(CommandLine cmd) throws IOException {
+        List<byte[]> corpus = new ArrayList<>();
+        String dir = cmd.getOptionValue("corpus");
+        if (dir != null) {
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(Paths.get(dir))) {
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                byte[] data = Files.readAllBytes(file);
+                if (data.length > 0) {
+                    corpus.add(data);
+                }
+            }
+            return corpus;
+        }
+        // a fixed seed makes the generated corpus the same for every run
+        Random random = new Random(0);
+        for (String size : cmd.getOptionValue("payload-sizes", "1024").split(",")) {
+            byte[] data = new byte[Integer.parseInt(size.trim())];
+            random.nextBytes(data);
+            corpus.add(data);
+        }
+        return corpus;
+    }
+
+    private static void initConfig(Path workDir, String url, String managementUrl)
+            throws IOException, ParseException {
+        Properties prop = new Properties();
+        prop.setProperty("inference_address", url);
+        prop.setProperty("management_address", managementUrl);
+        Path configFile = workDir.resolve("config.properties");
+        try (Writer writer = Files.newBufferedWriter(configFile)) {
+            prop.store(writer, null);
+        }
+        String[] args = {"-f", configFile.toString()};
+        DefaultParser parser = new DefaultParser();
+        ConfigManager.init(new Arguments(parser.parse(Arguments.getOptions(), args)));
+    }
+
+    private static void registerModel(String managementUrl, Path modelDir, CommandLine cmd)
+            throws IOException {
+        String query =
+                "url="
+                        + URLEncoder.encode(modelDir.toUri().toString(), "UTF-8")
+                        + "&model_name="
+                        + EchoModel.NAME
+                        + "&batch_size="
+                        + cmd.getOptionValue("batch-size", "1")
+                        + "&max_batch_delay="
+                        + cmd.getOptionValue("max-batch-delay", "100")
+                        + "&initial_workers="
+                        + cmd.getOptionValue("workers", "1")
+                        + "&synchronous=true";
+        request(managementUrl + "/models?" + query, "POST");
+    }
+
+    private static void request(String url, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setRequestMethod(method);
+            int code = conn.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                String message;
+                try (InputStream is = conn.getErrorStream()) {
+                    message = is == null ? "" : Utils.toString(is);
+                }
+                throw new IOException(method + ' ' + url + " failed with " + code + ": " + message);
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static void report(
+            LoadGenerator.Result result, int concurrency, double rate, List<byte[]> corpus) {
+        if (rate > 0) {
+            logger.info(
+                    "Open loop at {} requests/s over {} connections, {} payloads.",
+                    rate,
+                    concurrency,
+                    corpus.size());
+        } else {
+            logger.info(
+                    "Closed loop with {} connections, {} payloads.", concurrency, corpus.size());
+        }
+        logger.info(
+                String.format(
+                        "Throughput: %.2f requests/s, %.3f MB/s, %d responses: %s",
+                        result.getThroughput(),
+                        result.getBytesPerSecond() / 1024 / 1024,
+                        result.getCount(),
+                        result.getStatuses()));
+        logger.info(
+                String.format(
+                        "latency P50: %.3f ms, P90: %.3f ms, P99: %.3f ms, P99.9: %.3f ms,"
+                                + " max: %.3f ms",
+                        result.getLatency(50) / 1_000_000f,
+                        result.getLatency(90) / 1_000_000f,
+                        result.getLatency(99) / 1_000_000f,
+                        result.getLatency(99.9) / 1_000_000f,
+                        result.getLatency(100) / 1_000_000f));
+        if (result.getErrors() > 0) {
+            logger.warn("{} requests failed without a response.", result.getErrors());
+        }
+        if (result.getMaxBacklog() > 0) {
+            // the server could not keep up with the rate, the latency includes the wait
+            logger.warn(
+                    "Up to {} due requests waited for a free connection, {} were never sent.",
+                    result.getMaxBacklog(),
+                    result.getUnsent());
+        }
+    }
+
+    private static void printHelp(String msg, Options options) {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.setLeftPadding(1);
+        formatter.setWidth(120);
+        formatter.printHelp(msg, options);
+    }
+
+    private static Options getOptions() {
+        Options options = new Options();
+        options.addOption(
+                Option.builder("h").longOpt("help").hasArg(false).desc("Print this help.").build());
+        options.addOption(
+                Option.builder("u")
+                        .longOpt("url")
+                        .hasArg()
+                        .argName("URL")
+                        .desc("Inference address of the model server.")
+                        .build());
+        options.addOption(
+                Option.builder("m")
+                        .longOpt("management-url")
+                        .hasArg()
+                        .argName("URL")
+                        .desc("Management address of the model server, defaults to the url.")
+                        .build());
+        options.addOption(
+                Option.builder("e")
+                        .longOpt("external")
+                        .hasArg(false)
+                        .desc("Use a running model server instead of starting one.")
+                        .build());
+        options.addOption(
+                Option.builder("c")
+                        .longOpt("concurrency")
+                        .hasArg()
+                        .argName("CONNECTIONS")
+                        .desc("Number of keep-alive connections, each with one request in flight.")
+                        .build());
+        options.addOption(
+                Option.builder("r")
+                        .longOpt("rate")
+                        .hasArg()
+                        .argName("REQUESTS-PER-SECOND")
+                        .desc("Request rate of the open loop, closed loop if not set.")
+                        .build());
+        options.addOption(
+                Option.builder("w")
+                        .longOpt("warmup")
+                        .hasArg()
+                        .argName("SECONDS")
+                        .desc("Warmup time that is not measured.")
+                        .build());
+        options.addOption(
+                Option.builder("d")
+                        .longOpt("duration")
+                        .hasArg()
+                        .argName("SECONDS")
+                        .desc("Measurement time.")
+                        .build());
+        options.addOption(
+                Option.builder("t")
+                        .longOpt("client-threads")
+                        .hasArg()
+                        .argName("THREADS")
+                        .desc("Number of client I/O threads.")
+                        .build());
+        options.addOption(
+                Option.builder("p")
+                        .longOpt("corpus")
+                        .hasArg()
+                        .argName("DIRECTORY")
+                        .desc("Directory of request bodies, sent in turn in file name order.")
+                        .build());
+        options.addOption(
+                Option.builder("s")
+                        .longOpt("payload-sizes")
+                        .hasArg()
+                        .argName("BYTES")
+                        .desc("Comma separated sizes of random request bodies if no corpus.")
+                        .build());
+        options.addOption(
+                Option.builder("b")
+                        .longOpt("batch-size")
+                        .hasArg()
+                        .argName("SIZE")
+                        .desc("Batch size of the echo model.")
+                        .build());
+        options.addOption(
+                Option.builder("l")
+                        .longOpt("max-batch-delay")
+                        .hasArg()
+                        .argName("MILLISECONDS")
+                        .desc("Maximum batch delay of the echo model.")
+                        .build());
+        options.addOption(
+                Option.builder("n")
+                        .longOpt("workers")
+                        .hasArg()
+                        .argName("WORKERS")
+                        .desc("Number of workers of the echo model.")
+                        .build());
+        return options;
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.benchmark;
+
+import ai.djl.serving.util.Connector;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.net.ssl.SSLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Netty HTTP client that sends requests over keep-alive connections and records their latency.
+ *
+ * <p>In closed-loop mode, each connection sends its next request as soon as it receives the
+ * response to the previous one, so the throughput is the maximum the server sustains with that
+ * number of concurrent requests.
+ *
+ * <p>In open-loop mode, requests are due at a fixed rate regardless of how fast the server
+ * responds. A request that is due while all connections are busy waits for a free connection, and
+ * its latency is measured from the time it was due, so a stalled server shows up in the latency
+ * percentiles instead of silently lowering the request rate.
+ *
+ * <p>Only the requests that are due after the warmup and complete before the end of the
+ * measurement are recorded.
+ */
+final class LoadGenerator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final int MAX_CONTENT_LENGTH = 64 * 1024 * 1024;
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private Connector connector;
+    private String host;
+    private String path;
+    private List<byte[]> corpus;
+    private double rate;
+    private EventLoopGroup group;
+    private List<Connection> connections;
+    private AtomicInteger nextPayload;
+    private AtomicInteger inFlight;
+
+    private volatile boolean running;
+    private volatile long measureBegin;
+    private volatile long measureEnd;
+
+    // guarded by this
+    private Deque<Connection> idle;
+    private Deque<Long> backlog;
+    private int maxBacklog;
+
+    /**
+     * Constructs a new {@code LoadGenerator} instance.
+     *
+     * @param connector the inference address of the model server
+     * @param path the request path
+     * @param corpus the request bodies, which are sent in turn
+     * @param rate the number of requests per second in open-loop mode, 0 for closed-loop mode
+     * @param threads the number of client I/O threads
+     */
+    LoadGenerator(Connector connector, String path, List<byte[]> corpus, double rate, int threads) {
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("The payload corpus is empty.");
+        }
+        this.connector = connector;
+        this.path = path;
+        this.corpus = corpus;
+        this.rate = rate;
+        if (connector.isUds()) {
+            host = "localhost";
+        } else {
+            InetSocketAddress address = (InetSocketAddress) connector.getSocketAddress();
+            host = address.getHostString() + ':' + address.getPort();
+        }
+        group = Connector.newEventLoopGroup(threads);
+        connections = new ArrayList<>();
+        nextPayload = new AtomicInteger();
+        inFlight = new AtomicInteger();
+        idle = new ArrayDeque<>();
+        backlog = new ArrayDeque<>();
+    }
+
+    /**
+     * Opens the keep-alive connections to the server.
+     *
+     * @param concurrency the number of connections, which is the maximum number of requests in
+     *     flight
+     * @throws InterruptedException if interrupted
+     * @throws SSLException if failed to create the SSL context
+     */
+    void connect(int concurrency) throws InterruptedException, SSLException {
+        SslContext sslCtx = null;
+        if (connector.isSsl()) {
+            // the benchmark measures the server, the certificate is not verified
+            sslCtx =
+                    SslContextBuilder.forClient()
+                            .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                            .build();
+        }
+        for (int i = 0; i < concurrency; ++i) {
+            Connection connection = new Connection();
+            SslContext ssl = sslCtx;
+            Bootstrap b = new Bootstrap();
+            b.group(group)
+                    .channel(connector.getClientChannel())
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
+                    .handler(
+                            new ChannelInitializer<Channel>() {
+
+                                /** {@inheritDoc} */
+                                @Override
+                                public void initChannel(Channel ch) {
+                                    ChannelPipeline p = ch.pipeline();
+                                    if (ssl != null) {
+                                        p.addLast(ssl.newHandler(ch.alloc()));
+                                    }
+                                    p.addLast(new HttpClientCodec());
+                                    p.addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+                                    p.addLast(connection);
+                                }
+                            });
+            connection.channel = b.connect(connector.getSocketAddress()).sync().channel();
+            connections.add(connection);
+        }
+    }
+
+    /**
+     * Sends requests for the warmup and the measurement period, and waits for the responses.
+     *
+     * @param warmup the warmup time in nanoseconds
+     * @param duration the measurement time in nanoseconds
+     * @return the result of the measurement
+     */
+    Result run(long warmup, long duration) {
+        if (connections.isEmpty()) {
+            throw new IllegalStateException("Not connected.");
+        }
+        long begin = System.nanoTime();
+        measureBegin = begin + warmup;
+        measureEnd = measureBegin + duration;
+        running = true;
+        if (rate > 0) {
+            synchronized (this) {
+                idle.addAll(connections);
+            }
+            issue(begin);
+        } else {
+            for (Connection connection : connections) {
+                connection.channel.eventLoop().execute(() -> connection.send(System.nanoTime()));
+            }
+            sleepUntil(measureEnd);
+        }
+        running = false;
+
+        int unsent;
+        synchronized (this) {
+            unsent = backlog.size();
+            backlog.clear();
+            idle.clear();
+        }
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT;
+        while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        if (inFlight.get() > 0) {
+            logger.warn("{} requests did not complete.", inFlight.get());
+        }
+
+        // the recorders are no longer updated once the requests in flight are drained
+        List<Recorder> recorders = new ArrayList<>(connections.size());
+        for (Connection connection : connections) {
+            recorders.add(connection.recorder);
+        }
+        return new Result(duration, unsent, maxBacklog, recorders);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        running = false;
+        for (Connection connection : connections) {
+            connection.channel.close();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    /**
+     * Issues requests at a fixed rate until the end of the measurement.
+     *
+     * @param begin the time when the first request is due
+     */
+    private void issue(long begin) {
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (long i = 0; ; ++i) {
+            // computed from the start time, so the rate does not drift
+            long due = begin + (long) (i * interval);
+            if (due - measureEnd >= 0) {
+                return;
+            }
+            sleepUntil(due);
+            Connection connection;
+            synchronized (this) {
+                connection = idle.pollFirst();
+                if (connection == null) {
+                    backlog.addLast(due);
+                    maxBacklog = Math.max(maxBacklog, backlog.size());
+                }
+            }
+            if (connection != null) {
+                connection.channel.eventLoop().execute(() -> connection.send(due));
+            }
+        }
+    }
+
+    /**
+     * Returns the next due request for a connection that is free in open-loop mode.
+     *
+     * @param connection the free connection
+     * @return the time when the request was due, {@code null} if no request is due
+     */
+    private synchronized Long nextDue(Connection connection) {
+        Long due = backlog.pollFirst();
+        if (due == null && running) {
+            idle.addLast(connection);
+        }
+        return due;
+    }
+
+    private static void sleepUntil(long time) {
+        long wait;
+        while ((wait = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /** A keep-alive connection with at most one request in flight. */
+    private final class Connection extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        Channel channel;
+        Recorder recorder = new Recorder();
+        private long start;
+        private boolean pending;
+
+        void send(long due) {
+            if (!running) {
+                return;
+            }
+            if (!channel.isActive()) {
+                ++recorder.errors;
+                return;
+            }
+            start = due;
+            pending = true;
+            inFlight.incrementAndGet();
+            int index = Math.floorMod(nextPayload.getAndIncrement(), corpus.size());
+            byte[] payload = corpus.get(index);
+            FullHttpRequest req =
+                    new DefaultFullHttpRequest(
+                            HttpVersion.HTTP_1_1,
+                            HttpMethod.POST,
+                            path,
+                            Unpooled.wrappedBuffer(payload));
+            req.headers()
+                    .set(HttpHeaderNames.HOST, host)
+                    .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_OCTET_STREAM)
+                    .setInt(HttpHeaderNames.CONTENT_LENGTH, payload.length);
+            // a failed write closes the connection, which fails the pending request
+            channel.writeAndFlush(req).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            long end = System.nanoTime();
+            if (!pending) {
+                return;
+            }
+            if (start - measureBegin >= 0 && end - measureEnd <= 0) {
+                recorder.record(end - start, msg.status().code(), msg.content().readableBytes());
+            }
+            complete();
+            if (!running) {
+                return;
+            }
+            if (rate > 0) {
+                Long due = nextDue(this);
+                if (due != null) {
+                    send(due);
+                }
+            } else {
+                send(end);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (running) {
+                logger.warn("Connection closed by the server, the concurrency drops.");
+            }
+            if (pending) {
+                ++recorder.errors;
+                complete();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.warn("Request failed.", cause);
+            ctx.close();
+        }
+
+        private void complete() {
+            pending = false;
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /** Records the responses of a connection, only accessed by the I/O thread of the connection. */
+    private static final class Recorder {
+
+        long[] latencies = new long[1024];
+        int count;
+        long bytes;
+        int errors;
+        Map<Integer, Integer> statuses = new TreeMap<>();
+
+        void record(long latency, int status, int length) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            bytes += length;
+            statuses.merge(status, 1, Integer::sum);
+        }
+    }
+
+    /** The result of a measurement. */
+    static final class Result {
+
+        private long duration;
+        private int unsent;
+        private int maxBacklog;
+        private long[] latencies;
+        private int count;
+        private long bytes;
+        private int errors;
+        private Map<Integer, Integer> statuses;
+
+        Result(long duration, int unsent, int maxBacklog, List<Recorder> recorders) {
+            this.duration = duration;
+            this.unsent = unsent;
+            this.maxBacklog = maxBacklog;
+            statuses = new TreeMap<>();
+            for (Recorder recorder : recorders) {
+                count += recorder.count;
+            }
+            latencies = new long[count];
+            int offset = 0;
+            for (Recorder recorder : recorders) {
+                System.arraycopy(recorder.latencies, 0, latencies, offset, recorder.count);
+                offset += recorder.count;
+                bytes += recorder.bytes;
+                errors += recorder.errors;
+                recorder.statuses.forEach((k, v) -> statuses.merge(k, v, Integer::sum));
+            }
+            Arrays.sort(latencies);
+        }
+
+        /**
+         * Returns the number of responses per second.
+         *
+         * @return the number of responses per second
+         */
+        double getThroughput() {
+            return count * (double) TimeUnit.SECONDS.toNanos(1) / duration;
+        }
+
+        /**
+         * Returns the number of response bytes per second.
+         *
+         * @return the number of response bytes per second
+         */
+        double getBytesPerSecond() {
+            return bytes * (double) TimeUnit.SECONDS.toNanos(1) / duration;
+        }
+
+        /**
+         * Returns a latency percentile with the nearest-rank method.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the latency in nanoseconds, 0 if no response was recorded
+         */
+        long getLatency(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * count);
+            return latencies[Math.min(Math.max(rank, 1), count) - 1];
+        }
+
+        /**
+         * Returns the number of recorded responses.
+         *
+         * @return the number of recorded responses
+         */
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the number of requests that failed without a response.
+         *
+         * @return the number of requests that failed without a response
+         */
+        int getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the number of responses of each HTTP status code.
+         *
+         * @return the number of responses of each HTTP status code
+         */
+        Map<Integer, Integer> getStatuses() {
+            return statuses;
+        }
+
+        /**
+         * Returns the number of due requests that were never sent in open-loop mode.
+         *
+         * @return the number of due requests that were never sent
+         */
+        int getUnsent() {
+            return unsent;
+        }
+
+        /**
+         * Returns the maximum number of due requests that waited for a free connection.
+         *
+         * @return the maximum number of due requests that waited for a free connection
+         */
+        int getMaxBacklog() {
+            return maxBacklog;
+        }
+    }
+}
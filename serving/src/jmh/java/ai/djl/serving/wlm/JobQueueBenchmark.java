@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.modality.Input;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the job queue throughput of {@link JobQueue} with the previous {@code ReentrantLock} and
+ * {@code LinkedBlockingDeque} based implementation.
+ *
+ * <p>The benchmark threads act as model workers that form batches, while a configurable number of
+ * producer threads keep offering jobs like Netty I/O threads do. The {@code jobs} counter reports
+ * the end-to-end enqueue/drain throughput.
+ *
+ * <p>Run with: {@code ./gradlew :serving:jmh -Djmh.args="JobQueueBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JobQueueBenchmark {
+
+    private static final int QUEUE_SIZE = 100;
+    private static final int BATCH_SIZE = 8;
+
+    @Param({"ring", "locked"})
+    String queueType;
+
+    @Param({"1", "4", "16", "64"})
+    int producers;
+
+    private BenchmarkQueue queue;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    /** Starts the producer threads. */
+    @Setup(Level.Iteration)
+    public void setup() {
+        if ("ring".equals(queueType)) {
+            queue = new RingQueue();
+        } else {
+            queue = new LockedQueue();
+        }
+
+        running = true;
+        executor = Executors.newFixedThreadPool(producers);
+        for (int i = 0; i < producers; ++i) {
+            executor.submit(
+                    () -> {
+                        Job job = new Job(null, "benchmark", new Input("benchmark"));
+                        while (running) {
+                            if (!queue.offer(job)) {
+                                Thread.yield();
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Stops the producer threads.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Forms a batch of jobs the way a worker does.
+     *
+     * @param worker the per thread worker state
+     * @return the size of the batch
+     * @throws InterruptedException if interrupted
+     */
+    @Benchmark
+    public int pollBatch(Worker worker) throws InterruptedException {
+        List<Job> batch = worker.batch;
+        batch.clear();
+        queue.pollBatch(batch);
+        worker.count += batch.size();
+        return batch.size();
+    }
+
+    /** The per thread state that counts the drained jobs. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Worker {
+
+        long count;
+        List<Job> batch = new ArrayList<>(BATCH_SIZE);
+
+        /** Resets the counter. */
+        @Setup(Level.Iteration)
+        public void reset() {
+            count = 0;
+        }
+
+        /**
+         * Returns the number of jobs drained by this worker.
+         *
+         * @return the number of jobs drained by this worker
+         */
+        public long jobs() {
+            return count;
+        }
+    }
+
+    private interface BenchmarkQueue {
+
+        boolean offer(Job job);
+
+        void pollBatch(List<Job> list) throws InterruptedException;
+    }
+
+    private static final class RingQueue implements BenchmarkQueue {
+
+        private JobQueue jobs = new JobQueue(QUEUE_SIZE);
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean offer(Job job) {
+            return jobs.offer(job);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void pollBatch(List<Job> list) throws InterruptedException {
+            Job job = jobs.poll(1, TimeUnit.MILLISECONDS);
+            if (job != null) {
+                list.add(job);
+                jobs.drainTo(list, BATCH_SIZE - 1);
+            }
+        }
+    }
+
+    private static final class LockedQueue implements BenchmarkQueue {
+
+        private LinkedBlockingDeque<Job> jobs = new LinkedBlockingDeque<>(QUEUE_SIZE);
+        private ReentrantLock lock = new ReentrantLock();
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean offer(Job job) {
+            return jobs.offer(job);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void pollBatch(List<Job> list) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                Job job = jobs.poll(1, TimeUnit.MILLISECONDS);
+                if (job == null) {
+                    return;
+                }
+                list.add(job);
+                for (int i = 1; i < BATCH_SIZE; ++i) {
+                    job = jobs.poll();
+                    if (job == null) {
+                        break;
+                    }
+                    list.add(job);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
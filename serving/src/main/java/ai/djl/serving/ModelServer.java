@@ -296,7 +296,7 @@ public class ModelServer {
 
         for (String url : urls) {
             int workers = configManager.getDefaultWorkers();
-            CompletableFuture<ModelInfo> future = modelManager.registerModel(null, url, 1, 100);
+            CompletableFuture<ModelInfo> future = modelManager.registerModel(null, url, 1, 1, 100);
             ModelInfo info = future.join();
             String modelName = info.getModelName();
             modelManager.updateModel(modelName, workers, workers);
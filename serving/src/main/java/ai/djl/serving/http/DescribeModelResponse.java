@@ -20,11 +20,19 @@ import java.util.List;
 public class DescribeModelResponse {
 
     private String modelName;
+    private String version;
     private String modelUrl;
+    private int traffic;
     private int minWorkers;
     private int maxWorkers;
     private int batchSize;
+    private int maxBatchSize;
     private int maxBatchDelay;
+    private int weight;
+    private int cacheSize;
+    private int cacheTtl;
+    private int[] lengthBuckets;
+    private long memoryUsage;
     private String status;
     private boolean loadedAtStartup;
 
@@ -71,6 +79,42 @@ public class DescribeModelResponse {
         this.loadedAtStartup = loadedAtStartup;
     }
 
+    /**
+     * Returns the model version.
+     *
+     * @return the model version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the model version.
+     *
+     * @param version the model version
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the percentage of the traffic of the model name that this version receives.
+     *
+     * @return the percentage of the traffic
+     */
+    public int getTraffic() {
+        return traffic;
+    }
+
+    /**
+     * Sets the percentage of the traffic of the model name that this version receives.
+     *
+     * @param traffic the percentage of the traffic
+     */
+    public void setTraffic(int traffic) {
+        this.traffic = traffic;
+    }
+
     /**
      * Returns the model URL.
      *
@@ -143,6 +187,24 @@ public class DescribeModelResponse {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Returns the maximum batch size when requests are queued up.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum batch size when requests are queued up.
+     *
+     * @param maxBatchSize the maximum batch size
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
     /**
      * Returns the maximum delay in milliseconds to aggregate a batch.
      *
@@ -161,6 +223,96 @@ public class DescribeModelResponse {
         this.maxBatchDelay = maxBatchDelay;
     }
 
+    /**
+     * Returns the scheduling weight of the model.
+     *
+     * @return the scheduling weight of the model
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets the scheduling weight of the model.
+     *
+     * @param weight the scheduling weight of the model
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     *
+     * @return the maximum number of cached responses
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets the maximum number of cached responses.
+     *
+     * @param cacheSize the maximum number of cached responses
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Returns the time to live in seconds of a cached response.
+     *
+     * @return the time to live in seconds of a cached response
+     */
+    public int getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Sets the time to live in seconds of a cached response.
+     *
+     * @param cacheTtl the time to live in seconds of a cached response
+     */
+    public void setCacheTtl(int cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    /**
+     * Returns the length bucket boundaries of the model.
+     *
+     * @return the inclusive upper bounds of the input size of the buckets
+     */
+    public int[] getLengthBuckets() {
+        return lengthBuckets;
+    }
+
+    /**
+     * Sets the length bucket boundaries of the model.
+     *
+     * @param lengthBuckets the inclusive upper bounds of the input size of the buckets
+     */
+    public void setLengthBuckets(int[] lengthBuckets) {
+        this.lengthBuckets = lengthBuckets;
+    }
+
+    /**
+     * Returns the estimated memory usage in bytes of the model when it is loaded.
+     *
+     * @return the estimated memory usage in bytes of the model
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Sets the estimated memory usage in bytes of the model when it is loaded.
+     *
+     * @param memoryUsage the estimated memory usage in bytes of the model
+     */
+    public void setMemoryUsage(long memoryUsage) {
+        this.memoryUsage = memoryUsage;
+    }
+
     /**
      * Returns the model's status.
      *
@@ -195,13 +347,15 @@ public class DescribeModelResponse {
      * @param startTime the worker's start time
      * @param isRunning {@code true} if worker is running
      * @param gpuId the GPU id assigned to the worker, -1 for CPU
+     * @param threads the number of intra-op threads of a CPU worker, 0 if not limited
      */
-    public void addWorker(int id, long startTime, boolean isRunning, int gpuId) {
+    public void addWorker(int id, long startTime, boolean isRunning, int gpuId, int threads) {
         Worker worker = new Worker();
         worker.setId(id);
         worker.setStartTime(new Date(startTime));
         worker.setStatus(isRunning ? "READY" : "UNLOADING");
         worker.setGpu(gpuId >= 0);
+        worker.setThreads(threads);
         workers.add(worker);
     }
 
@@ -212,6 +366,7 @@ public class DescribeModelResponse {
         private Date startTime;
         private String status;
         private boolean gpu;
+        private int threads;
 
         /**
          * Returns the worker's ID.
@@ -284,5 +439,23 @@ public class DescribeModelResponse {
         public void setGpu(boolean gpu) {
             this.gpu = gpu;
         }
+
+        /**
+         * Returns the number of intra-op threads of the worker.
+         *
+         * @return the number of intra-op threads of the worker, 0 if not limited
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Sets the number of intra-op threads of the worker.
+         *
+         * @param threads the number of intra-op threads of the worker
+         */
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
     }
 }
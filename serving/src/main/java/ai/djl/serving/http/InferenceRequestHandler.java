@@ -19,6 +19,8 @@ import ai.djl.serving.util.NettyUtils;
 import ai.djl.serving.wlm.Job;
 import ai.djl.serving.wlm.ModelInfo;
 import ai.djl.serving.wlm.ModelManager;
+import ai.djl.serving.wlm.Priority;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderValues;
@@ -29,6 +31,7 @@ import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
 import io.netty.handler.codec.http.multipart.HttpDataFactory;
 import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -42,6 +45,11 @@ public class InferenceRequestHandler extends HttpRequestHandler {
 
     private static final Pattern PATTERN =
             Pattern.compile("^/(ping|invocations|predictions)([/?].*)?");
+    private static final String REQUEST_TIMEOUT = "x-request-timeout";
+    private static final String REQUEST_PRIORITY = "x-request-priority";
+
+    // the request size is already limited by the aggregator, keep uploads in memory
+    private static final HttpDataFactory FACTORY = new DefaultHttpDataFactory(false);
 
     /** {@inheritDoc} */
     @Override
@@ -82,7 +90,8 @@ public class InferenceRequestHandler extends HttpRequestHandler {
         if (segments.length < 3) {
             throw new ResourceNotFoundException();
         }
-        predict(ctx, req, null, segments[2]);
+        String version = segments.length > 3 ? segments[3] : null;
+        predict(ctx, req, null, segments[2], version);
     }
 
     private void handleInvocations(
@@ -94,40 +103,87 @@ public class InferenceRequestHandler extends HttpRequestHandler {
                 modelName = ModelManager.getInstance().getStartupModels().iterator().next();
             }
         }
-        predict(ctx, req, decoder, modelName);
+        String version = NettyUtils.getParameter(decoder, "model_version", null);
+        predict(ctx, req, decoder, modelName, version);
     }
 
     private void predict(
             ChannelHandlerContext ctx,
             FullHttpRequest req,
             QueryStringDecoder decoder,
-            String modelName)
+            String modelName,
+            String version)
             throws ModelNotFoundException {
-        Input input = parseRequest(ctx, req, decoder);
-        if (modelName == null) {
-            throw new BadRequestException("Parameter model_name is required.");
-        }
+        // the request body is retained until the job is completed to avoid copying it
+        List<ByteBuf> buffers = new ArrayList<>();
+        boolean submitted = false;
+        try {
+            Input input = parseRequest(ctx, req, decoder, buffers);
+            if (modelName == null) {
+                throw new BadRequestException("Parameter model_name is required.");
+            }
+
+            if (HttpMethod.OPTIONS.equals(req.method())) {
+                ModelManager modelManager = ModelManager.getInstance();
+                ModelInfo model = modelManager.getModel(modelName, version);
+                if (model == null) {
+                    throw new ModelNotFoundException("Model not found: " + modelName);
+                }
 
-        if (HttpMethod.OPTIONS.equals(req.method())) {
-            ModelManager modelManager = ModelManager.getInstance();
-            ModelInfo model = modelManager.getModels().get(modelName);
-            if (model == null) {
-                throw new ModelNotFoundException("Model not found: " + modelName);
+                NettyUtils.sendJsonResponse(ctx, "{}");
+                return;
             }
 
-            NettyUtils.sendJsonResponse(ctx, "{}");
-            return;
+            long timeout = getRequestTimeout(req);
+            Job job = new Job(ctx, modelName, input, timeout);
+            job.setPriority(getRequestPriority(req));
+            job.setVersion(version);
+            for (ByteBuf buf : buffers) {
+                job.addResource(buf);
+            }
+            if (!ModelManager.getInstance().addJob(job)) {
+                throw new ServiceUnavailableException(
+                        "No worker is available to serve request: " + modelName);
+            }
+            submitted = true;
+        } finally {
+            if (!submitted) {
+                for (ByteBuf buf : buffers) {
+                    buf.release();
+                }
+            }
         }
+    }
 
-        Job job = new Job(ctx, modelName, input);
-        if (!ModelManager.getInstance().addJob(job)) {
-            throw new ServiceUnavailableException(
-                    "No worker is available to serve request: " + modelName);
+    private static long getRequestTimeout(FullHttpRequest req) {
+        String value = req.headers().get(REQUEST_TIMEOUT);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid " + REQUEST_TIMEOUT + " header: " + value);
+        }
+    }
+
+    private static Priority getRequestPriority(FullHttpRequest req) {
+        String value = req.headers().get(REQUEST_PRIORITY);
+        if (value == null) {
+            return Priority.INTERACTIVE;
+        }
+        try {
+            return Priority.fromString(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid " + REQUEST_PRIORITY + " header: " + value);
         }
     }
 
     private static Input parseRequest(
-            ChannelHandlerContext ctx, FullHttpRequest req, QueryStringDecoder decoder) {
+            ChannelHandlerContext ctx,
+            FullHttpRequest req,
+            QueryStringDecoder decoder,
+            List<ByteBuf> buffers) {
         String requestId = NettyUtils.getRequestId(ctx.channel());
         Input input = new Input(requestId);
         if (decoder != null) {
@@ -147,11 +203,10 @@ public class InferenceRequestHandler extends HttpRequestHandler {
         if (HttpPostRequestDecoder.isMultipart(req)
                 || HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED.contentEqualsIgnoreCase(
                         contentType)) {
-            HttpDataFactory factory = new DefaultHttpDataFactory(6553500);
-            HttpPostRequestDecoder form = new HttpPostRequestDecoder(factory, req);
+            HttpPostRequestDecoder form = new HttpPostRequestDecoder(FACTORY, req);
             try {
                 while (form.hasNext()) {
-                    NettyUtils.addFormData(form.next(), input);
+                    NettyUtils.addFormData(form.next(), input, buffers);
                 }
             } catch (HttpPostRequestDecoder.EndOfDataDecoderException ignore) {
                 logger.trace("End of multipart items.");
@@ -160,8 +215,14 @@ public class InferenceRequestHandler extends HttpRequestHandler {
                 form.destroy();
             }
         } else {
-            byte[] content = NettyUtils.getBytes(req.content());
-            input.addData("body", content);
+            if (NDListContent.CONTENT_TYPE.contentEquals(contentType)) {
+                boolean batched =
+                        Boolean.parseBoolean(req.headers().get(NDListContent.BATCHED_HEADER));
+                NDListContent.setNDList(input, batched);
+            }
+            ByteBuf content = req.content().retain();
+            buffers.add(content);
+            input.addData("body", content.nioBuffer());
         }
         return input;
     }
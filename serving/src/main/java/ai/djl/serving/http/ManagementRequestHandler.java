@@ -14,18 +14,30 @@ package ai.djl.serving.http;
 
 import ai.djl.ModelException;
 import ai.djl.repository.zoo.ModelNotFoundException;
+import ai.djl.serving.metrics.ModelMetrics;
+import ai.djl.serving.metrics.PrometheusWriter;
+import ai.djl.serving.util.ConfigManager;
 import ai.djl.serving.util.NettyUtils;
+import ai.djl.serving.wlm.Endpoint;
 import ai.djl.serving.wlm.ModelInfo;
 import ai.djl.serving.wlm.ModelManager;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Pattern;
 
 /**
@@ -35,7 +47,7 @@ import java.util.regex.Pattern;
  */
 public class ManagementRequestHandler extends HttpRequestHandler {
 
-    private static final Pattern PATTERN = Pattern.compile("^/models([/?].*)?");
+    private static final Pattern PATTERN = Pattern.compile("^/(models|metrics)([/?].*)?");
 
     /** {@inheritDoc} */
     @Override
@@ -55,6 +67,13 @@ public class ManagementRequestHandler extends HttpRequestHandler {
             String[] segments)
             throws ModelException {
         HttpMethod method = req.method();
+        if ("metrics".equals(segments[1])) {
+            if (!HttpMethod.GET.equals(method)) {
+                throw new MethodNotAllowedException();
+            }
+            handleMetrics(ctx);
+            return;
+        }
         if (segments.length < 3) {
             if (HttpMethod.GET.equals(method)) {
                 handleListModels(ctx, decoder);
@@ -66,12 +85,13 @@ public class ManagementRequestHandler extends HttpRequestHandler {
             throw new MethodNotAllowedException();
         }
 
+        String version = segments.length > 3 ? segments[3] : null;
         if (HttpMethod.GET.equals(method)) {
-            handleDescribeModel(ctx, segments[2]);
+            handleDescribeModel(ctx, segments[2], version);
         } else if (HttpMethod.PUT.equals(method)) {
-            handleScaleModel(ctx, decoder, segments[2]);
+            handleScaleModel(ctx, decoder, segments[2], version);
         } else if (HttpMethod.DELETE.equals(method)) {
-            handleUnregisterModel(ctx, segments[2]);
+            handleUnregisterModel(ctx, segments[2], version);
         } else {
             throw new MethodNotAllowedException();
         }
@@ -88,9 +108,9 @@ public class ManagementRequestHandler extends HttpRequestHandler {
         }
 
         ModelManager modelManager = ModelManager.getInstance();
-        Map<String, ModelInfo> models = modelManager.getModels();
+        Map<String, Endpoint> endpoints = modelManager.getEndpoints();
 
-        List<String> keys = new ArrayList<>(models.keySet());
+        List<String> keys = new ArrayList<>(endpoints.keySet());
         Collections.sort(keys);
         ListModelsResponse list = new ListModelsResponse();
 
@@ -103,17 +123,36 @@ public class ManagementRequestHandler extends HttpRequestHandler {
 
         for (int i = pageToken; i < last; ++i) {
             String modelName = keys.get(i);
-            ModelInfo model = models.get(modelName);
-            list.addModel(modelName, model.getModelUrl());
+            ModelInfo model = endpoints.get(modelName).getPrimary();
+            if (model != null) {
+                list.addModel(modelName, model.getModelUrl());
+            }
         }
 
         NettyUtils.sendJsonResponse(ctx, list);
     }
 
-    private void handleDescribeModel(ChannelHandlerContext ctx, String modelName)
+    private void handleMetrics(ChannelHandlerContext ctx) {
+        Map<String, Endpoint> endpoints = ModelManager.getInstance().getEndpoints();
+        Map<String, ModelMetrics> metrics = new TreeMap<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            for (ModelInfo model : endpoint.getModels()) {
+                String labels = PrometheusWriter.labels(model.getModelName(), model.getVersion());
+                metrics.put(labels, model.getMetrics());
+            }
+        }
+
+        FullHttpResponse resp =
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, false);
+        resp.headers().set(HttpHeaderNames.CONTENT_TYPE, PrometheusWriter.CONTENT_TYPE);
+        resp.content().writeCharSequence(PrometheusWriter.write(metrics), StandardCharsets.UTF_8);
+        NettyUtils.sendHttpResponse(ctx, resp, true);
+    }
+
+    private void handleDescribeModel(ChannelHandlerContext ctx, String modelName, String version)
             throws ModelNotFoundException {
         ModelManager modelManager = ModelManager.getInstance();
-        DescribeModelResponse resp = modelManager.describeModel(modelName);
+        DescribeModelResponse resp = modelManager.describeModel(modelName, version);
         NettyUtils.sendJsonResponse(ctx, resp);
     }
 
@@ -124,18 +163,50 @@ public class ManagementRequestHandler extends HttpRequestHandler {
         }
 
         final String modelName = NettyUtils.getParameter(decoder, "model_name", null);
+        String version = NettyUtils.getParameter(decoder, "version", null);
+        final int traffic = NettyUtils.getIntParameter(decoder, "traffic", -1);
+        if (traffic > 100) {
+            throw new BadRequestException("traffic must be between 0 and 100.");
+        }
         int batchSize = NettyUtils.getIntParameter(decoder, "batch_size", 1);
+        int maxBatchSize = NettyUtils.getIntParameter(decoder, "max_batch_size", batchSize);
         int maxBatchDelay = NettyUtils.getIntParameter(decoder, "max_batch_delay", 100);
         final int initialWorkers = NettyUtils.getIntParameter(decoder, "initial_workers", 1);
+        final int weight = NettyUtils.getIntParameter(decoder, "weight", 1);
+        if (weight < 1) {
+            throw new BadRequestException("weight must be a positive integer.");
+        }
+        ConfigManager configManager = ConfigManager.getInstance();
+        final int cacheSize =
+                NettyUtils.getIntParameter(decoder, "cache_size", configManager.getCacheSize());
+        final int cacheTtl =
+                NettyUtils.getIntParameter(decoder, "cache_ttl", configManager.getCacheTtl());
+        final int[] lengthBuckets =
+                parseLengthBuckets(NettyUtils.getParameter(decoder, "length_buckets", null));
         boolean synchronous =
                 Boolean.parseBoolean(NettyUtils.getParameter(decoder, "synchronous", "true"));
 
         final ModelManager modelManager = ModelManager.getInstance();
         CompletableFuture<ModelInfo> future =
-                modelManager.registerModel(modelName, modelUrl, batchSize, maxBatchDelay);
+                modelManager.registerModel(
+                        modelName, version, modelUrl, batchSize, maxBatchSize, maxBatchDelay);
         CompletableFuture<Void> f =
                 future.thenAccept(
-                        m -> modelManager.updateModel(modelName, initialWorkers, initialWorkers));
+                        m -> {
+                            m.setWeight(weight);
+                            m.setResponseCache(cacheSize, cacheTtl);
+                            m.setLengthBuckets(lengthBuckets);
+                            String name = m.getModelName();
+                            modelManager.updateModel(
+                                    name, m.getVersion(), initialWorkers, initialWorkers);
+                            if (traffic >= 0) {
+                                try {
+                                    modelManager.setTraffic(name, m.getVersion(), traffic);
+                                } catch (ModelNotFoundException e) {
+                                    throw new CompletionException(e);
+                                }
+                            }
+                        });
 
         if (synchronous) {
             final String msg = "Model \"" + modelName + "\" registered.";
@@ -152,10 +223,37 @@ public class ManagementRequestHandler extends HttpRequestHandler {
                 });
     }
 
-    private void handleUnregisterModel(ChannelHandlerContext ctx, String modelName)
+    private static int[] parseLengthBuckets(String value) {
+        if (value == null || value.isEmpty()) {
+            return new int[0];
+        }
+        String[] tokens = value.split(",");
+        int[] boundaries = new int[tokens.length];
+        try {
+            for (int i = 0; i < tokens.length; ++i) {
+                boundaries[i] = Integer.parseInt(tokens[i].trim());
+                if (i > 0 && boundaries[i] <= boundaries[i - 1]) {
+                    throw new BadRequestException("length_buckets must be strictly ascending.");
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("length_buckets must be a list of integers.");
+        }
+        return boundaries;
+    }
+
+    private void handleUnregisterModel(
+            ChannelHandlerContext ctx, String modelName, String version)
             throws ModelNotFoundException {
         ModelManager modelManager = ModelManager.getInstance();
-        if (!modelManager.unregisterModel(modelName)) {
+        boolean found;
+        if (version == null) {
+            found = modelManager.unregisterModel(modelName);
+        } else {
+            found = modelManager.unregisterModel(modelName, version);
+            modelName = modelName + ':' + version;
+        }
+        if (!found) {
             throw new ModelNotFoundException("Model not found: " + modelName);
         }
         String msg = "Model \"" + modelName + "\" unregistered";
@@ -163,20 +261,36 @@ public class ManagementRequestHandler extends HttpRequestHandler {
     }
 
     private void handleScaleModel(
-            ChannelHandlerContext ctx, QueryStringDecoder decoder, String modelName)
+            ChannelHandlerContext ctx, QueryStringDecoder decoder, String modelName, String version)
             throws ModelNotFoundException {
-        int minWorkers = NettyUtils.getIntParameter(decoder, "min_worker", 1);
-        int maxWorkers = NettyUtils.getIntParameter(decoder, "max_worker", minWorkers);
-        if (maxWorkers < minWorkers) {
-            throw new BadRequestException("max_worker cannot be less than min_worker.");
-        }
         ModelManager modelManager = ModelManager.getInstance();
-        ModelInfo modelInfo = modelManager.getModels().get(modelName);
+        ModelInfo modelInfo = modelManager.getModel(modelName, version);
         if (modelInfo == null) {
             throw new ModelNotFoundException("Model not found: " + modelName);
         }
-        modelManager.updateModel(modelName, minWorkers, maxWorkers);
-        String msg = "Model \"" + modelName + "\" worker scaled.";
+        version = modelInfo.getVersion();
+
+        String msg;
+        int traffic = NettyUtils.getIntParameter(decoder, "traffic", -1);
+        if (traffic > 100) {
+            throw new BadRequestException("traffic must be between 0 and 100.");
+        }
+        if (traffic >= 0 && !decoder.parameters().containsKey("min_worker")) {
+            // only change the traffic split
+            modelManager.setTraffic(modelName, version, traffic);
+            msg = "Model \"" + modelName + "\" traffic updated.";
+        } else {
+            int minWorkers = NettyUtils.getIntParameter(decoder, "min_worker", 1);
+            int maxWorkers = NettyUtils.getIntParameter(decoder, "max_worker", minWorkers);
+            if (maxWorkers < minWorkers) {
+                throw new BadRequestException("max_worker cannot be less than min_worker.");
+            }
+            modelManager.updateModel(modelName, version, minWorkers, maxWorkers);
+            if (traffic >= 0) {
+                modelManager.setTraffic(modelName, version, traffic);
+            }
+            msg = "Model \"" + modelName + "\" worker scaled.";
+        }
         NettyUtils.sendJsonResponse(ctx, new StatusResponse(msg));
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.http;
+
+import ai.djl.modality.Input;
+
+/**
+ * A class defines the binary tensor content type of the inference API.
+ *
+ * <p>A request with the {@link #CONTENT_TYPE} content type carries an {@link
+ * ai.djl.ndarray.NDList} encoded with {@link ai.djl.ndarray.NDList#encode()} as body. It is fed to
+ * the model as is, bypassing the model's translator, and the response body is the encoded output
+ * {@code NDList}.
+ *
+ * <p>By default, the request is a single sample that is stacked with other requests into a batch.
+ * If the {@link #BATCHED_HEADER} header is {@code true}, the {@code NDList} already has the batch
+ * dimension and is executed as its own batch.
+ */
+public final class NDListContent {
+
+    /** The content type of an encoded {@code NDList}. */
+    public static final String CONTENT_TYPE = "tensor/ndlist";
+
+    /** The request header that marks the {@code NDList} as already batched. */
+    public static final String BATCHED_HEADER = "x-batched";
+
+    private static final String PROPERTY = "x-djl-ndlist";
+    private static final String SINGLE = "single";
+    private static final String BATCHED = "batched";
+
+    private NDListContent() {}
+
+    /**
+     * Marks the {@link Input} as an encoded {@code NDList}.
+     *
+     * @param input the input to mark
+     * @param batched {@code true} if the {@code NDList} already has the batch dimension
+     */
+    public static void setNDList(Input input, boolean batched) {
+        input.addProperty(PROPERTY, batched ? BATCHED : SINGLE);
+    }
+
+    /**
+     * Returns {@code true} if the {@link Input} is an encoded {@code NDList}.
+     *
+     * @param input the input to check
+     * @return {@code true} if the {@link Input} is an encoded {@code NDList}
+     */
+    public static boolean isNDList(Input input) {
+        return input.getProperties().containsKey(PROPERTY);
+    }
+
+    /**
+     * Returns {@code true} if the {@link Input} is an encoded {@code NDList} that already has the
+     * batch dimension.
+     *
+     * @param input the input to check
+     * @return {@code true} if the {@code NDList} already has the batch dimension
+     */
+    public static boolean isBatched(Input input) {
+        return BATCHED.equals(input.getProperties().get(PROPERTY));
+    }
+}
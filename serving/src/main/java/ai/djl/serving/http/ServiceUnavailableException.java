@@ -17,6 +17,8 @@ public class ServiceUnavailableException extends RuntimeException {
 
     static final long serialVersionUID = 1L;
 
+    private final long retryAfter;
+
     /**
      * Constructs an {@code ServiceUnavailableException} with the specified detail message.
      *
@@ -24,6 +26,28 @@ public class ServiceUnavailableException extends RuntimeException {
      *     #getMessage()} method)
      */
     public ServiceUnavailableException(String message) {
+        this(message, 0);
+    }
+
+    /**
+     * Constructs an {@code ServiceUnavailableException} with the specified detail message and the
+     * time after which the client may retry.
+     *
+     * @param message The detail message (which is saved for later retrieval by the {@link
+     *     #getMessage()} method)
+     * @param retryAfter the time in seconds after which the client may retry, 0 if unknown
+     */
+    public ServiceUnavailableException(String message, long retryAfter) {
         super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the time in seconds after which the client may retry.
+     *
+     * @return the time in seconds after which the client may retry, 0 if unknown
+     */
+    public long getRetryAfter() {
+        return retryAfter;
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of long values with a fixed set of buckets.
+ *
+ * <p>The bucket bounds are inclusive upper bounds, they are fixed when the histogram is created so
+ * the same buckets are exported on every scrape and for every model, and can be aggregated. A last
+ * bucket counts the values larger than all bounds. Recording a value is a binary search and a
+ * single atomic increment.
+ */
+public final class Histogram {
+
+    private long[] bounds;
+    private AtomicLongArray counts;
+    private LongAdder sum;
+
+    /**
+     * Constructs a new {@code Histogram} instance.
+     *
+     * @param bounds the inclusive upper bounds of the buckets in ascending order
+     */
+    public Histogram(long... bounds) {
+        this.bounds = bounds.clone();
+        counts = new AtomicLongArray(bounds.length + 1);
+        sum = new LongAdder();
+    }
+
+    /**
+     * Records a value, negative values are recorded as 0.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        int index = Arrays.binarySearch(bounds, v);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counts.incrementAndGet(index);
+        sum.add(v);
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of all recorded values
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the inclusive upper bounds of the buckets.
+     *
+     * @return the inclusive upper bounds of the buckets
+     */
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Returns a snapshot of the number of values recorded in each bucket.
+     *
+     * <p>The last element is the number of values larger than all bounds.
+     *
+     * @return the number of values recorded in each bucket
+     */
+    public long[] getCounts() {
+        long[] ret = new long[counts.length()];
+        for (int i = 0; i < ret.length; ++i) {
+            ret[i] = counts.get(i);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/** A class that records the serving metrics of a model. */
+public class ModelMetrics {
+
+    private static final long[] TIME_BOUNDS = {
+        TimeUnit.MICROSECONDS.toNanos(100),
+        TimeUnit.MICROSECONDS.toNanos(250),
+        TimeUnit.MICROSECONDS.toNanos(500),
+        TimeUnit.MILLISECONDS.toNanos(1),
+        TimeUnit.MICROSECONDS.toNanos(2500),
+        TimeUnit.MILLISECONDS.toNanos(5),
+        TimeUnit.MILLISECONDS.toNanos(10),
+        TimeUnit.MILLISECONDS.toNanos(25),
+        TimeUnit.MILLISECONDS.toNanos(50),
+        TimeUnit.MILLISECONDS.toNanos(100),
+        TimeUnit.MILLISECONDS.toNanos(250),
+        TimeUnit.MILLISECONDS.toNanos(500),
+        TimeUnit.SECONDS.toNanos(1),
+        TimeUnit.MILLISECONDS.toNanos(2500),
+        TimeUnit.SECONDS.toNanos(5),
+        TimeUnit.SECONDS.toNanos(10)
+    };
+    private static final long[] BATCH_SIZE_BOUNDS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+    private Histogram queueTime;
+    private Histogram inferenceTime;
+    private Histogram writeTime;
+    private Histogram batchSize;
+    private Histogram warmupTime;
+    private LongAdder[] rejections;
+    private LongAdder[] cacheLookups;
+    private IntSupplier queueDepth;
+
+    /**
+     * Constructs a new {@code ModelMetrics} instance.
+     *
+     * @param queueDepth the supplier of the current number of queued jobs
+     */
+    public ModelMetrics(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+        queueTime = new Histogram(TIME_BOUNDS);
+        inferenceTime = new Histogram(TIME_BOUNDS);
+        writeTime = new Histogram(TIME_BOUNDS);
+        batchSize = new Histogram(BATCH_SIZE_BOUNDS);
+        warmupTime = new Histogram(TIME_BOUNDS);
+        rejections = new LongAdder[Rejection.values().length];
+        for (int i = 0; i < rejections.length; ++i) {
+            rejections[i] = new LongAdder();
+        }
+        cacheLookups = new LongAdder[CacheLookup.values().length];
+        for (int i = 0; i < cacheLookups.length; ++i) {
+            cacheLookups[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the time a job spent in the queue before it was scheduled.
+     *
+     * @param nanos the queue time in nanoseconds
+     */
+    public void recordQueueTime(long nanos) {
+        queueTime.record(nanos);
+    }
+
+    /**
+     * Records the inference time of a batch.
+     *
+     * @param nanos the inference time in nanoseconds
+     */
+    public void recordInferenceTime(long nanos) {
+        inferenceTime.record(nanos);
+    }
+
+    /**
+     * Records the time spent on writing a response to the client.
+     *
+     * @param nanos the write time in nanoseconds
+     */
+    public void recordWriteTime(long nanos) {
+        writeTime.record(nanos);
+    }
+
+    /**
+     * Records the size of a dispatched batch.
+     *
+     * @param size the size of the batch
+     */
+    public void recordBatchSize(int size) {
+        batchSize.record(size);
+    }
+
+    /**
+     * Records the time a new worker spent on warming up, the warmup inputs are not counted as
+     * requests.
+     *
+     * @param nanos the warmup time in nanoseconds
+     */
+    public void recordWarmupTime(long nanos) {
+        warmupTime.record(nanos);
+    }
+
+    /**
+     * Counts a rejected request.
+     *
+     * @param reason the reason the request was rejected
+     */
+    public void onRejected(Rejection reason) {
+        rejections[reason.ordinal()].increment();
+    }
+
+    /**
+     * Counts a lookup of the response cache.
+     *
+     * @param result the result of the lookup
+     */
+    public void onCacheLookup(CacheLookup result) {
+        cacheLookups[result.ordinal()].increment();
+    }
+
+    /**
+     * Returns the queue time histogram in nanoseconds.
+     *
+     * @return the queue time histogram in nanoseconds
+     */
+    public Histogram getQueueTime() {
+        return queueTime;
+    }
+
+    /**
+     * Returns the inference time histogram in nanoseconds.
+     *
+     * @return the inference time histogram in nanoseconds
+     */
+    public Histogram getInferenceTime() {
+        return inferenceTime;
+    }
+
+    /**
+     * Returns the response write time histogram in nanoseconds.
+     *
+     * @return the response write time histogram in nanoseconds
+     */
+    public Histogram getWriteTime() {
+        return writeTime;
+    }
+
+    /**
+     * Returns the batch size histogram.
+     *
+     * @return the batch size histogram
+     */
+    public Histogram getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the warmup time histogram of the workers in nanoseconds.
+     *
+     * @return the warmup time histogram of the workers in nanoseconds
+     */
+    public Histogram getWarmupTime() {
+        return warmupTime;
+    }
+
+    /**
+     * Returns the number of rejected requests for the specified reason.
+     *
+     * @param reason the reason the requests were rejected
+     * @return the number of rejected requests
+     */
+    public long getRejections(Rejection reason) {
+        return rejections[reason.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of response cache lookups with the specified result.
+     *
+     * @param result the result of the lookups
+     * @return the number of response cache lookups
+     */
+    public long getCacheLookups(CacheLookup result) {
+        return cacheLookups[result.ordinal()].sum();
+    }
+
+    /**
+     * Returns the current number of queued jobs.
+     *
+     * @return the current number of queued jobs
+     */
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    /** An enum represents the reason a request was rejected. */
+    public enum Rejection {
+        /** The job queue of the model is full. */
+        QUEUE_FULL,
+        /** The model has no worker. */
+        NO_WORKER,
+        /** The request cannot be completed before its deadline. */
+        DEADLINE_EXCEEDED,
+        /** The estimated queue time exceeds the maximum queue time. */
+        OVERLOADED,
+        /** The client closed the connection before the request was served. */
+        CLIENT_CLOSED
+    }
+
+    /** An enum represents the result of a response cache lookup. */
+    public enum CacheLookup {
+        /** The response was served from the cache. */
+        HIT,
+        /** The request waited for an identical request in flight. */
+        COALESCED,
+        /** The request was queued for inference. */
+        MISS
+    }
+}
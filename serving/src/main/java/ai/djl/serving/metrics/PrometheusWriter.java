@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.metrics;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/** A utility class that writes {@link ModelMetrics} in the Prometheus text exposition format. */
+public final class PrometheusWriter {
+
+    /** The content type of the Prometheus text exposition format. */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private PrometheusWriter() {}
+
+    /**
+     * Returns the labels that identify a model.
+     *
+     * @param model the model name
+     * @param version the model version, {@code null} for an unversioned model
+     * @return the labels that identify the model
+     */
+    public static String labels(String model, String version) {
+        String labels = "model=\"" + escape(model) + '"';
+        if (version != null) {
+            labels += ",version=\"" + escape(version) + '"';
+        }
+        return labels;
+    }
+
+    /**
+     * Writes the metrics of all models.
+     *
+     * @param metrics the metrics of each model by the labels of the model, see {@link
+     *     #labels(String, String)}
+     * @return the metrics in Prometheus text format
+     */
+    public static String write(Map<String, ModelMetrics> metrics) {
+        StringBuilder sb = new StringBuilder(4096);
+        writeHistogram(
+                sb,
+                metrics,
+                "djl_queue_time_seconds",
+                "Time requests spent in the job queue.",
+                ModelMetrics::getQueueTime,
+                NANOS_PER_SECOND);
+        writeHistogram(
+                sb,
+                metrics,
+                "djl_inference_time_seconds",
+                "Time spent on running inference of a batch.",
+                ModelMetrics::getInferenceTime,
+                NANOS_PER_SECOND);
+        writeHistogram(
+                sb,
+                metrics,
+                "djl_response_write_time_seconds",
+                "Time spent on writing responses.",
+                ModelMetrics::getWriteTime,
+                NANOS_PER_SECOND);
+        writeHistogram(
+                sb,
+                metrics,
+                "djl_batch_size",
+                "Size of the dispatched batches.",
+                ModelMetrics::getBatchSize,
+                1);
+        writeHistogram(
+                sb,
+                metrics,
+                "djl_warmup_time_seconds",
+                "Time new workers spent on warming up.",
+                ModelMetrics::getWarmupTime,
+                NANOS_PER_SECOND);
+
+        writeHeader(sb, "djl_queue_depth", "gauge", "Number of requests in the job queue.");
+        for (Map.Entry<String, ModelMetrics> entry : metrics.entrySet()) {
+            int depth = entry.getValue().getQueueDepth();
+            writeSample(sb, "djl_queue_depth", entry.getKey(), null, depth);
+        }
+
+        writeHeader(sb, "djl_requests_rejected_total", "counter", "Number of rejected requests.");
+        for (Map.Entry<String, ModelMetrics> entry : metrics.entrySet()) {
+            for (ModelMetrics.Rejection reason : ModelMetrics.Rejection.values()) {
+                String label = "reason=\"" + reason.name().toLowerCase(Locale.ROOT) + '"';
+                long value = entry.getValue().getRejections(reason);
+                writeSample(sb, "djl_requests_rejected_total", entry.getKey(), label, value);
+            }
+        }
+
+        writeHeader(sb, "djl_cache_requests_total", "counter", "Number of response cache lookups.");
+        for (Map.Entry<String, ModelMetrics> entry : metrics.entrySet()) {
+            for (ModelMetrics.CacheLookup result : ModelMetrics.CacheLookup.values()) {
+                String label = "result=\"" + result.name().toLowerCase(Locale.ROOT) + '"';
+                long value = entry.getValue().getCacheLookups(result);
+                writeSample(sb, "djl_cache_requests_total", entry.getKey(), label, value);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void writeHistogram(
+            StringBuilder sb,
+            Map<String, ModelMetrics> metrics,
+            String name,
+            String help,
+            Function<ModelMetrics, Histogram> getter,
+            double scale) {
+        writeHeader(sb, name, "histogram", help);
+        for (Map.Entry<String, ModelMetrics> entry : metrics.entrySet()) {
+            String labels = entry.getKey();
+            Histogram histogram = getter.apply(entry.getValue());
+            long[] bounds = histogram.getBounds();
+            long[] counts = histogram.getCounts();
+            long count = 0;
+            for (int i = 0; i < bounds.length; ++i) {
+                count += counts[i];
+                String le = "le=\"" + format(bounds[i] / scale) + '"';
+                writeSample(sb, name + "_bucket", labels, le, count);
+            }
+            count += counts[bounds.length];
+            writeSample(sb, name + "_bucket", labels, "le=\"+Inf\"", count);
+            sb.append(name).append("_sum{").append(labels).append("} ");
+            sb.append(format(histogram.getSum() / scale)).append('\n');
+            writeSample(sb, name + "_count", labels, null, count);
+        }
+    }
+
+    private static void writeHeader(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(
+            StringBuilder sb, String name, String labels, String label, long value) {
+        sb.append(name).append('{').append(labels);
+        if (label != null) {
+            sb.append(',').append(label);
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
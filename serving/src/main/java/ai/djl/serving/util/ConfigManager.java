@@ -52,6 +52,17 @@ public final class ConfigManager {
     private static final String NETTY_CLIENT_THREADS = "netty_client_threads";
     private static final String JOB_QUEUE_SIZE = "job_queue_size";
     private static final String NUMBER_OF_GPU = "number_of_gpu";
+    private static final String NUMBER_OF_CPU_CORES = "number_of_cpu_cores";
+    private static final String THREADS_PER_WORKER = "threads_per_worker";
+    private static final String MAX_CONCURRENT_BATCHES = "max_concurrent_batches";
+    private static final String MAX_PRIORITY_WAIT = "max_priority_wait";
+    private static final String AUTOSCALE_INTERVAL = "autoscale_interval";
+    private static final String MODEL_IDLE_TIMEOUT = "model_idle_timeout";
+    private static final String MAX_QUEUE_TIME = "max_queue_time";
+    private static final String MODEL_MEMORY_BUDGET = "model_memory_budget";
+    private static final String CACHE_SIZE = "cache_size";
+    private static final String CACHE_TTL = "cache_ttl";
+    private static final String WORKER_PIPELINING = "worker_pipelining";
     private static final String CORS_ALLOWED_ORIGIN = "cors_allowed_origin";
     private static final String CORS_ALLOWED_METHODS = "cors_allowed_methods";
     private static final String CORS_ALLOWED_HEADERS = "cors_allowed_headers";
@@ -172,6 +183,8 @@ public final class ConfigManager {
     /**
      * Returns the default job queue size.
      *
+     * <p>It bounds the queued jobs of each model, the jobs of all priorities share it.
+     *
      * @return the default job queue size
      */
     public int getJobQueueSize() {
@@ -187,6 +200,125 @@ public final class ConfigManager {
         return getIntProperty(NUMBER_OF_GPU, 0);
     }
 
+    /**
+     * Returns the number of CPU cores that the CPU workers share.
+     *
+     * @return the number of CPU cores that the CPU workers share
+     */
+    public int getNumberOfCpuCores() {
+        int value = getIntProperty(NUMBER_OF_CPU_CORES, 0);
+        if (value <= 0) {
+            value = Runtime.getRuntime().availableProcessors();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the configured number of intra-op threads of each CPU worker.
+     *
+     * <p>By default the CPU cores are divided evenly among all CPU workers of all models, so the
+     * engine thread pools of the workers do not oversubscribe the cores. A per-worker budget only
+     * applies to engines that limit the threads of each calling thread, such as MXNet with the
+     * {@code NaiveEngine}. Engines with a thread pool shared by the process, such as PyTorch, get
+     * a single pool of all cores for all workers.
+     *
+     * @return the number of intra-op threads of each CPU worker, 0 to divide the cores evenly
+     */
+    public int getThreadsPerWorker() {
+        return Math.max(getIntProperty(THREADS_PER_WORKER, 0), 0);
+    }
+
+    /**
+     * Returns the maximum number of batches that can run inference concurrently across all models.
+     *
+     * <p>The batches of different models are only scheduled by their weights and priorities when
+     * there is a limit, the default of 0 lets every worker run inference as soon as its batch is
+     * ready.
+     *
+     * @return the maximum number of batches that can run inference concurrently, 0 if unlimited
+     */
+    public int getMaxConcurrentBatches() {
+        return Math.max(getIntProperty(MAX_CONCURRENT_BATCHES, 0), 0);
+    }
+
+    /**
+     * Returns the time in milliseconds after which a waiting batch runs regardless of its priority.
+     *
+     * @return the time in milliseconds after which a waiting batch runs regardless of its priority
+     */
+    public int getMaxPriorityWait() {
+        return getIntProperty(MAX_PRIORITY_WAIT, 1000);
+    }
+
+    /**
+     * Returns the interval in milliseconds between two autoscaling checks, 0 disables autoscaling.
+     *
+     * @return the interval in milliseconds between two autoscaling checks
+     */
+    public int getAutoscaleInterval() {
+        return getIntProperty(AUTOSCALE_INTERVAL, 1000);
+    }
+
+    /**
+     * Returns the idle time in seconds before a model with no minimum workers is unloaded.
+     *
+     * <p>The workers of an idle model are stopped and its memory is released, the next request
+     * loads the model again.
+     *
+     * @return the idle time in seconds before a model is unloaded, 0 to keep idle models loaded
+     */
+    public int getModelIdleTimeout() {
+        return getIntProperty(MODEL_IDLE_TIMEOUT, 600);
+    }
+
+    /**
+     * Returns the maximum time in milliseconds that a new request is expected to wait in the queue,
+     * requests beyond it are rejected on arrival, 0 disables the limit.
+     *
+     * @return the maximum expected queue time in milliseconds
+     */
+    public int getMaxQueueTime() {
+        return getIntProperty(MAX_QUEUE_TIME, 0);
+    }
+
+    /**
+     * Returns the memory budget in bytes of all loaded models, the least recently used models are
+     * unloaded to stay within it, 0 for no limit.
+     *
+     * @return the memory budget in bytes of all loaded models
+     */
+    public long getModelMemoryBudget() {
+        return getIntProperty(MODEL_MEMORY_BUDGET, 0) * 1024L * 1024L;
+    }
+
+    /**
+     * Returns the default maximum number of cached responses per model.
+     *
+     * @return the default maximum number of cached responses, 0 if the cache is disabled
+     */
+    public int getCacheSize() {
+        return getIntProperty(CACHE_SIZE, 0);
+    }
+
+    /**
+     * Returns the default time to live in seconds of a cached response.
+     *
+     * @return the default time to live of a cached response, 0 for no expiration
+     */
+    public int getCacheTtl() {
+        return getIntProperty(CACHE_TTL, 0);
+    }
+
+    /**
+     * Returns if workers overlap the pre-processing, inference and post-processing of consecutive
+     * batches.
+     *
+     * @return {@code true} if workers run the stages of a batch on separate threads
+     */
+    public boolean isWorkerPipelining() {
+        return Boolean.parseBoolean(prop.getProperty(WORKER_PIPELINING, "false"));
+    }
+
     /**
      * Returns the default number of workers for a new registered model.
      *
@@ -368,6 +500,8 @@ public final class ConfigManager {
                 + getNumberOfGpu()
                 + "\nNumber of CPUs: "
                 + runtime.availableProcessors()
+                + "\nThreads per CPU worker: "
+                + getThreadsPerWorker()
                 + "\nMax heap size: "
                 + (runtime.maxMemory() / 1024 / 1024)
                 + "\nConfig file: "
@@ -386,6 +520,20 @@ public final class ConfigManager {
                 + getNettyClientThreads()
                 + "\nDefault workers per model: "
                 + getDefaultWorkers()
+                + "\nMax concurrent batches: "
+                + (getMaxConcurrentBatches() == 0 ? "unlimited" : getMaxConcurrentBatches())
+                + "\nMax priority wait: "
+                + getMaxPriorityWait()
+                + "\nAutoscale interval: "
+                + getAutoscaleInterval()
+                + "\nMax queue time: "
+                + getMaxQueueTime()
+                + "\nModel memory budget (MB): "
+                + getIntProperty(MODEL_MEMORY_BUDGET, 0)
+                + "\nResponse cache size: "
+                + getCacheSize()
+                + "\nWorker pipelining: "
+                + isWorkerPipelining()
                 + "\nMaximum Request Size: "
                 + prop.getProperty(MAX_REQUEST_SIZE, "6553500");
     }
@@ -136,12 +136,7 @@ public final class NettyUtils {
      */
     public static void sendJsonResponse(
             ChannelHandlerContext ctx, String json, HttpResponseStatus status) {
-        FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, false);
-        resp.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
-        ByteBuf content = resp.content();
-        content.writeCharSequence(json, CharsetUtil.UTF_8);
-        content.writeByte('\n');
-        sendHttpResponse(ctx, resp, true);
+        sendHttpResponse(ctx, newJsonResponse(json, status), true);
     }
 
     /**
@@ -162,7 +157,15 @@ public final class NettyUtils {
             NettyUtils.sendError(ctx, HttpResponseStatus.METHOD_NOT_ALLOWED, t);
         } else if (t instanceof ServiceUnavailableException) {
             logger.trace("", t);
-            NettyUtils.sendError(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, t);
+            long retryAfter = ((ServiceUnavailableException) t).getRetryAfter();
+            if (retryAfter > 0) {
+                HttpResponseStatus status = HttpResponseStatus.SERVICE_UNAVAILABLE;
+                FullHttpResponse resp = newErrorResponse(status, t);
+                resp.headers().set(HttpHeaderNames.RETRY_AFTER, retryAfter);
+                sendHttpResponse(ctx, resp, true);
+            } else {
+                NettyUtils.sendError(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE, t);
+            }
         } else {
             logger.error("", t);
             NettyUtils.sendError(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, t);
@@ -178,9 +181,22 @@ public final class NettyUtils {
      */
     public static void sendError(
             ChannelHandlerContext ctx, HttpResponseStatus status, Throwable t) {
+        sendHttpResponse(ctx, newErrorResponse(status, t), true);
+    }
+
+    private static FullHttpResponse newErrorResponse(HttpResponseStatus status, Throwable t) {
         ErrorResponse error =
                 new ErrorResponse(status.code(), t.getClass().getSimpleName(), t.getMessage());
-        sendJsonResponse(ctx, error, status);
+        return newJsonResponse(JsonUtils.GSON_PRETTY.toJson(error), status);
+    }
+
+    private static FullHttpResponse newJsonResponse(String json, HttpResponseStatus status) {
+        FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, false);
+        resp.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        ByteBuf content = resp.content();
+        content.writeCharSequence(json, CharsetUtil.UTF_8);
+        content.writeByte('\n');
+        return resp;
     }
 
     /**
@@ -189,8 +205,9 @@ public final class NettyUtils {
      * @param ctx ChannelHandlerContext
      * @param resp HttpResponse to send
      * @param keepAlive if keep the connection
+     * @return the future of the write operation
      */
-    public static void sendHttpResponse(
+    public static ChannelFuture sendHttpResponse(
             ChannelHandlerContext ctx, FullHttpResponse resp, boolean keepAlive) {
         // Send the response and close the connection if necessary.
         Channel channel = ctx.channel();
@@ -238,10 +255,10 @@ public final class NettyUtils {
             headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
             ChannelFuture f = channel.writeAndFlush(resp);
             f.addListener(ChannelFutureListener.CLOSE);
-        } else {
-            headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
-            channel.writeAndFlush(resp);
+            return f;
         }
+        headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        return channel.writeAndFlush(resp);
     }
 
     /**
@@ -311,10 +328,14 @@ public final class NettyUtils {
     /**
      * Parses form data and added to the {@link Input} object.
      *
+     * <p>File uploads are added to the input without copying, their buffers are retained and
+     * added to {@code buffers}, the caller must release them once the input is consumed.
+     *
      * @param data the form data
      * @param input the {@link Input} object to be added to
+     * @param buffers the list to add the retained buffers to
      */
-    public static void addFormData(InterfaceHttpData data, Input input) {
+    public static void addFormData(InterfaceHttpData data, Input input, List<ByteBuf> buffers) {
         if (data == null) {
             return;
         }
@@ -327,7 +348,9 @@ public final class NettyUtils {
                     break;
                 case FileUpload:
                     FileUpload fileUpload = (FileUpload) data;
-                    input.addData(name, getBytes(fileUpload.getByteBuf()));
+                    ByteBuf buf = fileUpload.getByteBuf().retain();
+                    buffers.add(buf);
+                    input.addData(name, buf.nioBuffer());
                     break;
                 default:
                     throw new IllegalArgumentException(
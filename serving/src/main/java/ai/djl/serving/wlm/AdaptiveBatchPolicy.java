@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A batching policy that decides how long a worker should wait for more jobs based on the observed
+ * request arrival rate, the measured batch inference latency and the deadlines of the jobs in the
+ * batch.
+ *
+ * <p>The statistics are exponentially weighted moving averages. They are updated without locking,
+ * a lost update only makes the estimation slightly less accurate.
+ */
+class AdaptiveBatchPolicy {
+
+    private static final double ALPHA = 0.2;
+
+    private AtomicLong lastArrival;
+    private volatile double arrivalGap;
+    private volatile double[] latencies;
+
+    AdaptiveBatchPolicy() {
+        lastArrival = new AtomicLong();
+        latencies = new double[0];
+    }
+
+    /**
+     * Records the arrival of a new job.
+     *
+     * @param now the arrival time in nanoseconds
+     */
+    void onArrival(long now) {
+        long last = lastArrival.getAndSet(now);
+        if (last > 0) {
+            arrivalGap = ewma(arrivalGap, now - last);
+        }
+    }
+
+    /**
+     * Records the time spent on inference of a batch.
+     *
+     * @param batchSize the size of the batch
+     * @param latency the inference latency in nanoseconds
+     */
+    void onBatchCompleted(int batchSize, long latency) {
+        double[] array = latencies;
+        if (array.length <= batchSize) {
+            double[] tmp = new double[batchSize + 1];
+            System.arraycopy(array, 0, tmp, 0, array.length);
+            array = tmp;
+            latencies = array;
+        }
+        array[batchSize] = ewma(array[batchSize], latency);
+    }
+
+    /**
+     * Returns the estimated inference latency in nanoseconds for the specified batch size.
+     *
+     * <p>If the batch size has never been observed, the latency is extrapolated linearly from the
+     * largest smaller batch size that has been observed.
+     *
+     * @param batchSize the batch size
+     * @return the estimated inference latency in nanoseconds, 0 if unknown
+     */
+    long estimateLatency(int batchSize) {
+        double[] array = latencies;
+        if (batchSize < array.length && array[batchSize] > 0) {
+            return (long) array[batchSize];
+        }
+        for (int i = Math.min(batchSize, array.length) - 1; i > 0; --i) {
+            if (array[i] > 0) {
+                return (long) (array[i] * batchSize / i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the expected interval in nanoseconds between two arrivals.
+     *
+     * @return the expected interval in nanoseconds between two arrivals, 0 if unknown
+     */
+    long getArrivalGap() {
+        return (long) arrivalGap;
+    }
+
+    /**
+     * Returns if a job can no longer meet its deadline even if it is dispatched immediately.
+     *
+     * @param job the job to check
+     * @param now the current time in nanoseconds
+     * @return {@code true} if the job will miss its deadline
+     */
+    boolean isExpired(Job job, long now) {
+        return now + estimateLatency(1) > job.getDeadline();
+    }
+
+    /**
+     * Returns how long the worker should wait for the next job before dispatching the batch.
+     *
+     * @param batch the jobs already collected in the batch
+     * @param start the time in nanoseconds the first job of the batch was taken
+     * @param maxBatchDelay the configured maximum batch delay in milliseconds
+     * @param now the current time in nanoseconds
+     * @return the time to wait in nanoseconds, the batch should be dispatched if not positive
+     */
+    long getWaitTime(List<Job> batch, long start, int maxBatchDelay, long now) {
+        long wait = start + TimeUnit.MILLISECONDS.toNanos(maxBatchDelay) - now;
+        if (wait <= 0) {
+            return 0;
+        }
+
+        long gap = getArrivalGap();
+        if (gap > wait) {
+            // The next job is not likely to arrive in time, waiting only adds latency.
+            return 0;
+        }
+
+        long deadline = Long.MAX_VALUE;
+        for (Job job : batch) {
+            deadline = Math.min(deadline, job.getDeadline());
+        }
+        if (deadline != Long.MAX_VALUE) {
+            long slack = deadline - now - estimateLatency(batch.size() + 1);
+            wait = Math.min(wait, slack);
+        }
+        return wait;
+    }
+
+    private static double ewma(double average, double value) {
+        if (average <= 0) {
+            return value;
+        }
+        return average + ALPHA * (value - average);
+    }
+}
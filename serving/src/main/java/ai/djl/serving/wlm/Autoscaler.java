@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A periodic task that scales the number of workers of each model between its minimum and maximum
+ * number of workers.
+ *
+ * <p>A model is considered overloaded when jobs are queued up and either its workers are almost
+ * always busy or the estimated time to drain the queue exceeds the maximum batch delay. It is
+ * considered underloaded when the queue is empty and the workers are mostly idle. Both conditions
+ * must hold for several consecutive ticks before a worker is added or removed, and scaling down
+ * requires a much longer streak than scaling up, so short bursts do not cause workers to flap.
+ *
+ * <p>A model with a minimum of zero workers is unloaded after it has been idle for the configured
+ * idle timeout: its workers are stopped and its native memory is released. The first job that
+ * arrives afterwards loads the model again in the background, see {@link ModelResidency}.
+ */
+class Autoscaler implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Autoscaler.class);
+
+    private static final double HIGH_UTILIZATION = 0.8;
+    private static final double LOW_UTILIZATION = 0.3;
+    private static final int SCALE_UP_TICKS = 2;
+    private static final int SCALE_DOWN_TICKS = 30;
+
+    private WorkLoadManager wlm;
+    private Map<String, Endpoint> endpoints;
+    private ModelResidency residency;
+    private long interval;
+    private long idleTimeout;
+    private Map<ModelInfo, Stats> stats;
+
+    /**
+     * Constructs a new {@code Autoscaler} instance.
+     *
+     * @param wlm the {@link WorkLoadManager} that owns the workers
+     * @param endpoints the registry of all models
+     * @param residency the {@link ModelResidency} that unloads and loads the models
+     * @param interval the interval between two ticks in milliseconds
+     * @param idleTimeout the idle time in seconds before a model is unloaded
+     */
+    Autoscaler(
+            WorkLoadManager wlm,
+            Map<String, Endpoint> endpoints,
+            ModelResidency residency,
+            long interval,
+            long idleTimeout) {
+        this.wlm = wlm;
+        this.endpoints = endpoints;
+        this.residency = residency;
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.idleTimeout = TimeUnit.SECONDS.toNanos(idleTimeout);
+        stats = new ConcurrentHashMap<>();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        Set<ModelInfo> models = new HashSet<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            models.addAll(endpoint.getModels());
+        }
+        stats.keySet().retainAll(models);
+        for (ModelInfo model : models) {
+            try {
+                scale(model);
+            } catch (RuntimeException e) {
+                // never let an exception cancel the periodic task
+                logger.warn("Failed to scale model: " + model.getModelName(), e);
+            }
+        }
+    }
+
+    private void scale(ModelInfo model) {
+        String modelName = model.getModelName();
+        Stats stat = stats.computeIfAbsent(model, k -> new Stats(model.getBusyTime()));
+        long busyTime = model.getBusyTime();
+        long busy = busyTime - stat.busyTime;
+        stat.busyTime = busyTime;
+
+        int minWorkers = model.getMinWorkers();
+        int maxWorkers = model.getMaxWorkers();
+        int workers = wlm.getNumWorkers(model);
+        int queueSize = model.getQueueSize();
+
+        if (workers == 0) {
+            stat.reset();
+            if (queueSize > 0 && maxWorkers > 0 && !wlm.addWorker(model)) {
+                // jobs were queued up while the idle model was being unloaded
+                residency.scheduleLoad(model);
+            }
+            return;
+        }
+
+        double utilization = (double) busy / interval / workers;
+        if (queueSize > 0 && isOverloaded(model, workers, queueSize, utilization)) {
+            stat.idle = 0;
+            stat.underloaded = 0;
+            if (++stat.overloaded >= SCALE_UP_TICKS && workers < maxWorkers) {
+                stat.overloaded = 0;
+                logger.debug("Scaling up model {} to {} workers.", modelName, workers + 1);
+                wlm.addWorker(model);
+            }
+            return;
+        }
+        stat.overloaded = 0;
+
+        if (queueSize > 0 || utilization > LOW_UTILIZATION) {
+            stat.idle = 0;
+            stat.underloaded = 0;
+            return;
+        }
+
+        stat.idle = busy == 0 ? stat.idle + interval : 0;
+        if (minWorkers == 0 && idleTimeout > 0 && stat.idle >= idleTimeout) {
+            logger.info("Model {} is idle, unloading it.", modelName);
+            residency.unloadIdle(model);
+            stat.reset();
+            return;
+        }
+        if (++stat.underloaded >= SCALE_DOWN_TICKS && workers > Math.max(minWorkers, 1)) {
+            stat.underloaded = 0;
+            logger.debug("Scaling down model {} to {} workers.", modelName, workers - 1);
+            wlm.removeWorker(model);
+        }
+    }
+
+    private boolean isOverloaded(ModelInfo model, int workers, int queueSize, double utilization) {
+        if (utilization > HIGH_UTILIZATION) {
+            return true;
+        }
+        int maxBatchSize = model.getMaxBatchSize();
+        long latency = model.estimateLatency(maxBatchSize);
+        long batches = (queueSize + maxBatchSize - 1) / maxBatchSize;
+        long drainTime = batches * latency / workers;
+        return drainTime > TimeUnit.MILLISECONDS.toNanos(model.getMaxBatchDelay());
+    }
+
+    /** The scaling state of a model between two ticks. */
+    private static final class Stats {
+
+        long busyTime;
+        int overloaded;
+        int underloaded;
+        long idle;
+
+        Stats(long busyTime) {
+            this.busyTime = busyTime;
+        }
+
+        void reset() {
+            overloaded = 0;
+            underloaded = 0;
+            idle = 0;
+        }
+    }
+}
@@ -14,6 +14,8 @@ package ai.djl.serving.wlm;
 
 import ai.djl.modality.Input;
 import ai.djl.modality.Output;
+import ai.djl.serving.metrics.ModelMetrics;
+import io.netty.channel.ChannelFuture;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,34 +33,59 @@ class BatchAggregator {
     public List<Input> getRequest() throws InterruptedException {
         model.pollBatch(jobs);
 
+        ModelMetrics metrics = model.getMetrics();
+        metrics.recordBatchSize(jobs.size());
         List<Input> list = new ArrayList<>(jobs.size());
         for (Job job : jobs) {
             job.setScheduled();
+            metrics.recordQueueTime(job.getQueueTime());
             list.add(job.getInput());
         }
         return list;
     }
 
+    public Priority getPriority() {
+        Priority priority = Priority.BATCH;
+        for (Job job : jobs) {
+            if (job.getPriority().compareTo(priority) < 0) {
+                priority = job.getPriority();
+            }
+        }
+        return priority;
+    }
+
     public void sendResponse(List<Output> outputs) {
         if (jobs.size() != outputs.size()) {
             throw new IllegalStateException("Not all jobs get response.");
         }
 
+        // all outputs are checked before any is sent, so the jobs can still be failed
+        for (int i = 0; i < outputs.size(); ++i) {
+            if (!jobs.get(i).getRequestId().equals(outputs.get(i).getRequestId())) {
+                throw new IllegalStateException("Request response mismatched.");
+            }
+        }
+
+        ModelMetrics metrics = model.getMetrics();
         int i = 0;
         for (Output output : outputs) {
-            String requestId = output.getRequestId();
             Job job = jobs.get(i++);
-            if (!job.getRequestId().equals(requestId)) {
-                throw new IllegalStateException("Request response mismatched.");
+            long begin = System.nanoTime();
+            ChannelFuture future = job.sendOutput(output);
+            if (future != null) {
+                future.addListener(f -> metrics.recordWriteTime(System.nanoTime() - begin));
             }
-            job.sendOutput(output);
         }
         jobs.clear();
     }
 
     public void sendError() {
+        sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+    }
+
+    public void sendError(HttpResponseStatus status, String error) {
         for (Job job : jobs) {
-            job.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+            job.sendError(status, error);
         }
         jobs.clear();
     }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A class represents the HTTP endpoint of a model name, it routes the requests to the versions
+ * of the model.
+ *
+ * <p>Each version receives a percentage of the traffic of the endpoint. The versions and their
+ * traffic are swapped as one immutable snapshot, so a request never observes a partially applied
+ * traffic change: setting the traffic of a version to 100 switches all new requests to it at once.
+ */
+public class Endpoint {
+
+    private String name;
+    private volatile Routes routes;
+
+    /**
+     * Constructs a new {@code Endpoint} instance.
+     *
+     * @param name the model name of the endpoint
+     */
+    public Endpoint(String name) {
+        this.name = name;
+        routes = new Routes(new ModelInfo[0], new int[0]);
+    }
+
+    /**
+     * Returns the model name of the endpoint.
+     *
+     * @return the model name of the endpoint
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns all versions of the model in the order they were added.
+     *
+     * @return all versions of the model
+     */
+    public List<ModelInfo> getModels() {
+        return Collections.unmodifiableList(Arrays.asList(routes.models));
+    }
+
+    /**
+     * Returns {@code true} if the endpoint has no version.
+     *
+     * @return {@code true} if the endpoint has no version
+     */
+    public boolean isEmpty() {
+        return routes.models.length == 0;
+    }
+
+    /**
+     * Returns the model with the specified version.
+     *
+     * @param version the version of the model, {@code null} for the unversioned model
+     * @return the model, {@code null} if the version is not found
+     */
+    public ModelInfo get(String version) {
+        Routes current = routes;
+        int index = current.indexOf(version);
+        return index < 0 ? null : current.models[index];
+    }
+
+    /**
+     * Returns the version that receives the largest share of the traffic, the latest version wins
+     * a tie.
+     *
+     * @return the primary version, {@code null} if the endpoint has no version
+     */
+    public ModelInfo getPrimary() {
+        Routes current = routes;
+        int best = -1;
+        for (int i = 0; i < current.models.length; ++i) {
+            if (best < 0 || current.traffic[i] >= current.traffic[best]) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : current.models[best];
+    }
+
+    /**
+     * Selects the version that serves a request according to the traffic split.
+     *
+     * @return the selected version, {@code null} if the endpoint has no version
+     */
+    public ModelInfo select() {
+        Routes current = routes;
+        ModelInfo[] models = current.models;
+        if (models.length <= 1) {
+            return models.length == 0 ? null : models[0];
+        }
+        int value = ThreadLocalRandom.current().nextInt(100);
+        for (int i = 0; i < models.length; ++i) {
+            value -= current.traffic[i];
+            if (value < 0) {
+                return models[i];
+            }
+        }
+        return getPrimary();
+    }
+
+    /**
+     * Returns the percentage of the traffic that the model receives.
+     *
+     * @param model the model
+     * @return the percentage of the traffic, 0 if the model is not a version of this endpoint
+     */
+    public int getTraffic(ModelInfo model) {
+        Routes current = routes;
+        for (int i = 0; i < current.models.length; ++i) {
+            if (current.models[i] == model) {
+                return current.traffic[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds a new version, the first version receives all the traffic, later versions receive no
+     * traffic until {@link #setTraffic(String, int)} is called.
+     *
+     * @param model the new version
+     * @return {@code false} if the version already exists
+     */
+    synchronized boolean add(ModelInfo model) {
+        Routes current = routes;
+        if (current.indexOf(model.getVersion()) >= 0) {
+            return false;
+        }
+        int size = current.models.length;
+        ModelInfo[] models = Arrays.copyOf(current.models, size + 1);
+        int[] traffic = Arrays.copyOf(current.traffic, size + 1);
+        models[size] = model;
+        traffic[size] = size == 0 ? 100 : 0;
+        routes = new Routes(models, traffic);
+        return true;
+    }
+
+    /**
+     * Removes a version, its traffic is split across the remaining versions in proportion to their
+     * current traffic.
+     *
+     * @param version the version to remove
+     * @return the removed version, {@code null} if the version is not found
+     */
+    synchronized ModelInfo remove(String version) {
+        Routes current = routes;
+        int index = current.indexOf(version);
+        if (index < 0) {
+            return null;
+        }
+        List<ModelInfo> models = new ArrayList<>(Arrays.asList(current.models));
+        ModelInfo removed = models.remove(index);
+        int[] traffic = new int[models.size()];
+        for (int i = 0, j = 0; i < current.traffic.length; ++i) {
+            if (i != index) {
+                traffic[j++] = current.traffic[i];
+            }
+        }
+        routes = new Routes(models.toArray(new ModelInfo[0]), distribute(traffic, -1, 100));
+        return removed;
+    }
+
+    /**
+     * Sets the percentage of the traffic that a version receives, the rest of the traffic is split
+     * across the other versions in proportion to their current traffic.
+     *
+     * @param version the version
+     * @param percentage the percentage of the traffic between 0 and 100
+     * @return {@code false} if the version is not found
+     */
+    synchronized boolean setTraffic(String version, int percentage) {
+        if (percentage < 0 || percentage > 100) {
+            throw new IllegalArgumentException("Traffic must be between 0 and 100: " + percentage);
+        }
+        Routes current = routes;
+        int index = current.indexOf(version);
+        if (index < 0) {
+            return false;
+        }
+        int[] traffic = current.traffic.clone();
+        traffic[index] = percentage;
+        routes = new Routes(current.models, distribute(traffic, index, 100 - percentage));
+        return true;
+    }
+
+    /**
+     * Scales the traffic of all versions except the fixed one so they add up to the total.
+     *
+     * @param traffic the traffic of each version
+     * @param fixed the index of the version whose traffic is kept, -1 if none
+     * @param total the traffic to split across the other versions
+     * @return the traffic of each version
+     */
+    private static int[] distribute(int[] traffic, int fixed, int total) {
+        int count = 0;
+        long sum = 0;
+        for (int i = 0; i < traffic.length; ++i) {
+            if (i != fixed) {
+                ++count;
+                sum += traffic[i];
+            }
+        }
+        if (count == 0) {
+            return traffic;
+        }
+        int remaining = total;
+        int last = -1;
+        for (int i = 0; i < traffic.length; ++i) {
+            if (i != fixed) {
+                // split evenly if none of the other versions had traffic
+                traffic[i] = (int) (sum == 0 ? total / count : traffic[i] * total / sum);
+                remaining -= traffic[i];
+                last = i;
+            }
+        }
+        // the rounding error goes to the latest version
+        traffic[last] += remaining;
+        return traffic;
+    }
+
+    /** An immutable snapshot of the versions and their traffic. */
+    private static final class Routes {
+
+        ModelInfo[] models;
+        int[] traffic;
+
+        Routes(ModelInfo[] models, int[] traffic) {
+            this.models = models;
+            this.traffic = traffic;
+        }
+
+        int indexOf(String version) {
+            for (int i = 0; i < models.length; ++i) {
+                if (Objects.equals(models[i].getVersion(), version)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
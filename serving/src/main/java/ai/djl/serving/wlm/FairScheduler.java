@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A weighted fair scheduler that limits the number of batches executed concurrently across all
+ * models.
+ *
+ * <p>The scheduler implements start-time fair queuing: each model keeps a virtual finish tag that
+ * advances by the batch inference time divided by the model's weight. Waiting batches are granted
+ * in the order of their {@link Priority} first, then of their virtual start tag, so a hot model
+ * cannot starve other models, and {@link Priority#BATCH} traffic mostly uses the capacity left over
+ * by {@link Priority#INTERACTIVE} traffic.
+ *
+ * <p>A batch that has waited longer than the maximum priority wait is aged: the aged batches are
+ * granted in their arrival order regardless of their priority, so {@link Priority#BATCH} traffic
+ * still makes progress when {@link Priority#INTERACTIVE} traffic saturates the capacity.
+ */
+class FairScheduler {
+
+    private static final Comparator<Ticket> ORDER =
+            Comparator.comparingLong((Ticket t) -> t.startTag).thenComparingLong(t -> t.sequence);
+
+    private int permits;
+    private long maxPriorityWait;
+    private long virtualTime;
+    private long sequence;
+    private Map<Priority, PriorityQueue<Ticket>> waiters;
+    private Map<String, Long> finishTags;
+    private ReentrantLock lock;
+
+    /**
+     * Constructs a new {@code FairScheduler} instance.
+     *
+     * @param maxConcurrentBatches the maximum number of batches executed concurrently, 0 for no
+     *     limit
+     * @param maxPriorityWait the time in milliseconds after which a waiting batch is granted
+     *     regardless of its priority
+     */
+    FairScheduler(int maxConcurrentBatches, long maxPriorityWait) {
+        permits = maxConcurrentBatches > 0 ? maxConcurrentBatches : Integer.MAX_VALUE;
+        this.maxPriorityWait = TimeUnit.MILLISECONDS.toNanos(maxPriorityWait);
+        waiters = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            waiters.put(priority, new PriorityQueue<>(ORDER));
+        }
+        finishTags = new ConcurrentHashMap<>();
+        lock = new ReentrantLock();
+    }
+
+    /**
+     * Waits until the batch is allowed to run.
+     *
+     * @param modelName the name of the model that executes the batch
+     * @param weight the scheduling weight of the model
+     * @param priority the priority of the batch
+     * @param cost the estimated inference time of the batch in nanoseconds
+     * @return a ticket that must be passed to {@link #release(Ticket, long)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Ticket acquire(String modelName, int weight, Priority priority, long cost)
+            throws InterruptedException {
+        lock.lock();
+        try {
+            int w = Math.max(weight, 1);
+            long startTag = Math.max(virtualTime, finishTags.getOrDefault(modelName, 0L));
+            Ticket ticket = new Ticket(modelName, w, priority, startTag, cost, lock.newCondition());
+            ticket.sequence = sequence++;
+            ticket.arrival = System.nanoTime();
+            finishTags.put(modelName, startTag + cost / w);
+            waiters.get(priority).add(ticket);
+            dispatch();
+
+            try {
+                while (!ticket.granted) {
+                    ticket.condition.await();
+                }
+            } catch (InterruptedException e) {
+                if (ticket.granted) {
+                    releaseLocked(ticket, 0);
+                } else {
+                    waiters.get(priority).remove(ticket);
+                }
+                throw e;
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the capacity held by a batch.
+     *
+     * @param ticket the ticket returned by {@link #acquire(String, int, Priority, long)}
+     * @param elapsed the actual inference time of the batch in nanoseconds
+     */
+    void release(Ticket ticket, long elapsed) {
+        lock.lock();
+        try {
+            releaseLocked(ticket, elapsed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the accounting of a model that is no longer served.
+     *
+     * @param modelName the name of the model
+     */
+    void remove(String modelName) {
+        finishTags.remove(modelName);
+    }
+
+    private void releaseLocked(Ticket ticket, long elapsed) {
+        ++permits;
+        // correct the finish tag with the actual cost of the batch
+        long correction = (elapsed - ticket.cost) / ticket.weight;
+        finishTags.computeIfPresent(ticket.modelName, (k, v) -> v + correction);
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (permits > 0) {
+            PriorityQueue<Ticket> queue = nextQueue();
+            if (queue == null) {
+                return;
+            }
+            Ticket ticket = queue.poll();
+            --permits;
+            virtualTime = Math.max(virtualTime, ticket.startTag);
+            ticket.granted = true;
+            ticket.condition.signal();
+        }
+    }
+
+    /**
+     * Returns the queue of the next batch to be granted.
+     *
+     * @return the queue of the next batch to be granted, {@code null} if no batch is waiting
+     */
+    private PriorityQueue<Ticket> nextQueue() {
+        long now = System.nanoTime();
+        PriorityQueue<Ticket> next = null;
+        Ticket aged = null;
+        for (PriorityQueue<Ticket> queue : waiters.values()) {
+            Ticket head = queue.peek();
+            if (head == null) {
+                continue;
+            }
+            if (next == null) {
+                next = queue;
+            }
+            if (now - head.arrival > maxPriorityWait
+                    && (aged == null || head.arrival - aged.arrival < 0)) {
+                aged = head;
+                next = queue;
+            }
+        }
+        return next;
+    }
+
+    /** A class represents a batch waiting for or holding execution capacity. */
+    static final class Ticket {
+
+        String modelName;
+        int weight;
+        Priority priority;
+        long startTag;
+        long cost;
+        long sequence;
+        long arrival;
+        boolean granted;
+        Condition condition;
+
+        Ticket(
+                String modelName,
+                int weight,
+                Priority priority,
+                long startTag,
+                long cost,
+                Condition condition) {
+            this.modelName = modelName;
+            this.weight = weight;
+            this.priority = priority;
+            this.startTag = startTag;
+            this.cost = cost;
+            this.condition = condition;
+        }
+    }
+}
@@ -16,12 +16,19 @@ import ai.djl.modality.Input;
 import ai.djl.modality.Output;
 import ai.djl.serving.http.InternalServerException;
 import ai.djl.serving.util.NettyUtils;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,9 +40,17 @@ public class Job {
     private ChannelHandlerContext ctx;
 
     private String modelName;
+    private String version;
     private Input input;
     private long begin;
     private long scheduled;
+    private long created;
+    private long queueTime;
+    private long deadline;
+    private Priority priority;
+    private List<ReferenceCounted> resources;
+    private ResponseCache cache;
+    private ByteBuffer cacheKey;
 
     /**
      * Constructs an new {@code Job} instance.
@@ -45,12 +60,31 @@ public class Job {
      * @param input the input data
      */
     public Job(ChannelHandlerContext ctx, String modelName, Input input) {
+        this(ctx, modelName, input, 0);
+    }
+
+    /**
+     * Constructs an new {@code Job} instance with a deadline.
+     *
+     * @param ctx the {@code ChannelHandlerContext}
+     * @param modelName the model name
+     * @param input the input data
+     * @param timeout the maximum time in milliseconds the client is willing to wait, 0 for no limit
+     */
+    public Job(ChannelHandlerContext ctx, String modelName, Input input, long timeout) {
         this.ctx = ctx;
         this.modelName = modelName;
         this.input = input;
 
         begin = System.currentTimeMillis();
         scheduled = begin;
+        created = System.nanoTime();
+        priority = Priority.INTERACTIVE;
+        if (timeout > 0) {
+            deadline = created + TimeUnit.MILLISECONDS.toNanos(timeout);
+        } else {
+            deadline = Long.MAX_VALUE;
+        }
     }
 
     /**
@@ -71,6 +105,24 @@ public class Job {
         return modelName;
     }
 
+    /**
+     * Returns the model version that the job is pinned to.
+     *
+     * @return the model version, {@code null} if the job can be served by any version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Pins the job to a model version.
+     *
+     * @param version the model version, {@code null} if the job can be served by any version
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
     /**
      * Returns the input data.
      *
@@ -80,17 +132,125 @@ public class Job {
         return input;
     }
 
+    /**
+     * Returns the time the job was created in {@link System#nanoTime()} time base.
+     *
+     * @return the time the job was created
+     */
+    public long getArrivalTime() {
+        return created;
+    }
+
+    /**
+     * Returns if the client has closed the connection, so the response can no longer be delivered.
+     *
+     * <p>A job whose response is cached for identical jobs is never abandoned, its response is
+     * still used by the other jobs.
+     *
+     * @return {@code true} if nobody waits for the response of the job
+     */
+    public boolean isAbandoned() {
+        return ctx != null && cache == null && !ctx.channel().isActive();
+    }
+
+    /**
+     * Returns the deadline of the job in {@link System#nanoTime()} time base.
+     *
+     * @return the deadline of the job, {@code Long.MAX_VALUE} if the job has no deadline
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns the priority class of the job.
+     *
+     * @return the priority class of the job
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority class of the job.
+     *
+     * @param priority the priority class of the job
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Keeps a reference counted buffer that backs the input data alive until the job is completed.
+     *
+     * @param resource the buffer to be released when the job is completed
+     */
+    public void addResource(ReferenceCounted resource) {
+        if (resources == null) {
+            resources = new ArrayList<>();
+        }
+        resources.add(resource);
+    }
+
+    /** Releases the buffers that back the input data, the input must not be used afterwards. */
+    public void release() {
+        if (resources != null) {
+            for (ReferenceCounted resource : resources) {
+                ReferenceCountUtil.release(resource);
+            }
+            resources = null;
+        }
+    }
+
+    /**
+     * Makes the job the one that identical jobs wait for, its response is cached and shared with
+     * them once the job is completed.
+     *
+     * @param cache the response cache of the model
+     * @param cacheKey the hash of the input data
+     */
+    void setResponseCache(ResponseCache cache, ByteBuffer cacheKey) {
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * Fails the identical jobs that wait for this job, it is used when the job is rejected before
+     * it is queued.
+     *
+     * @param status the HTTP status
+     * @param error the error message
+     */
+    void failWaitingJobs(HttpResponseStatus status, String error) {
+        if (cache != null) {
+            cache.fail(cacheKey, status, error);
+            cache = null;
+        }
+    }
+
     /** Marks the job has been scheduled. */
     public void setScheduled() {
         scheduled = System.currentTimeMillis();
+        queueTime = System.nanoTime() - created;
+    }
+
+    /**
+     * Returns the time in nanoseconds the job spent in the queue before it was scheduled.
+     *
+     * @return the time in nanoseconds the job spent in the queue
+     */
+    public long getQueueTime() {
+        return queueTime;
     }
 
     /**
      * Sends the response back to the client.
      *
      * @param output the output
+     * @return the future of the write operation, {@code null} if the job has no client
      */
-    public void sendOutput(Output output) {
+    public ChannelFuture sendOutput(Output output) {
+        release();
         FullHttpResponse resp =
                 new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, false);
         for (Map.Entry<String, String> entry : output.getProperties().entrySet()) {
@@ -104,14 +264,20 @@ public class Job {
          * this job. We shouldn't try to send a response to ctx if this is not triggered
          * by external clients.
          */
+        ChannelFuture future = null;
         if (ctx != null) {
-            NettyUtils.sendHttpResponse(ctx, resp, true);
+            future = NettyUtils.sendHttpResponse(ctx, resp, true);
         }
 
         logger.debug(
                 "Waiting time: {}, Backend time: {}",
                 scheduled - begin,
                 System.currentTimeMillis() - scheduled);
+        if (cache != null) {
+            cache.complete(cacheKey, output);
+            cache = null;
+        }
+        return future;
     }
 
     /**
@@ -121,6 +287,7 @@ public class Job {
      * @param error the error message
      */
     public void sendError(HttpResponseStatus status, String error) {
+        release();
         /*
          * We can load the models based on the configuration file.Since this Job is
          * not driven by the external connections, we could have a empty context for
@@ -135,5 +302,6 @@ public class Job {
                 "Waiting time: {}, Inference time: {}",
                 scheduled - begin,
                 System.currentTimeMillis() - begin);
+        failWaitingJobs(status, error);
     }
 }
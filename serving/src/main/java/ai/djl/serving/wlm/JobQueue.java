@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded multi-producer multi-consumer job queue backed by lock-free ring buffers.
+ *
+ * <p>Producers and consumers claim slots with a single CAS on the tail and head counters, each slot
+ * carries a sequence number that tells whether it is ready to be written or read. A {@link
+ * Semaphore} counts the published jobs so that idle workers can block, it only falls back to
+ * parking threads when the queue is empty. This allows multiple workers to form batches
+ * concurrently.
+ *
+ * <p>Each {@link Priority} has its own ring buffer and jobs with a higher priority are always
+ * dequeued first. The capacity bounds the jobs of all priorities together, a shared counter
+ * reserves the space before a job is written to the ring buffer of its priority.
+ */
+class JobQueue {
+
+    private int capacity;
+    private Ring[] rings;
+    private AtomicInteger size;
+    private Semaphore available;
+
+    /**
+     * Constructs a new {@code JobQueue} instance.
+     *
+     * @param capacity the maximum number of jobs in the queue of all priorities together
+     */
+    JobQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid job queue size: " + capacity);
+        }
+        this.capacity = capacity;
+        Priority[] priorities = Priority.values();
+        rings = new Ring[priorities.length];
+        for (int i = 0; i < rings.length; ++i) {
+            // the shared bound ensures that a single ring never holds more than the capacity
+            rings[i] = new Ring(capacity);
+        }
+        size = new AtomicInteger();
+        available = new Semaphore(0);
+    }
+
+    /**
+     * Inserts a job at the tail of the queue of its priority if the queue is not full.
+     *
+     * @param job the job to add
+     * @return {@code true} if the job was added, {@code false} if the queue is full
+     */
+    boolean offer(Job job) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        rings[job.getPriority().ordinal()].offer(job);
+        available.release();
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of the queue, waiting if necessary until a job is available.
+     *
+     * @return the head of the queue
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Job take() throws InterruptedException {
+        available.acquire();
+        return dequeue();
+    }
+
+    /**
+     * Retrieves and removes the head of the queue if a job is available.
+     *
+     * @return the head of the queue, or {@code null} if the queue is empty
+     */
+    Job poll() {
+        if (available.tryAcquire()) {
+            return dequeue();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves and removes the head of the queue, waiting up to the specified time if necessary.
+     *
+     * @param timeout how long to wait before giving up
+     * @param unit the {@code TimeUnit} of the timeout
+     * @return the head of the queue, or {@code null} if the specified waiting time elapses
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Job poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (available.tryAcquire(timeout, unit)) {
+            return dequeue();
+        }
+        return null;
+    }
+
+    /**
+     * Removes at most the given number of available jobs and adds them to the given list.
+     *
+     * @param list the list to transfer jobs into
+     * @param maxJobs the maximum number of jobs to transfer
+     * @return the number of jobs transferred
+     */
+    int drainTo(List<Job> list, int maxJobs) {
+        int count = Math.min(maxJobs, available.availablePermits());
+        while (count > 0 && !available.tryAcquire(count)) {
+            count = Math.min(maxJobs, available.availablePermits());
+        }
+        if (count <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < count; ++i) {
+            list.add(dequeue());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of jobs in the queue.
+     *
+     * @return the number of jobs in the queue
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns {@code true} if the queue contains no jobs.
+     *
+     * @return {@code true} if the queue contains no jobs
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes a published job, the caller must have acquired a permit from {@code available}.
+     *
+     * @return the removed job
+     */
+    private Job dequeue() {
+        while (true) {
+            for (Ring ring : rings) {
+                Job job = ring.poll();
+                if (job != null) {
+                    size.decrementAndGet();
+                    return job;
+                }
+            }
+            // A producer claimed a slot but has not published the job yet.
+            Thread.yield();
+        }
+    }
+
+    /**
+     * A lock-free ring buffer, the caller must have reserved a slot in the queue before offering a
+     * job.
+     */
+    private static final class Ring {
+
+        private int mask;
+        private AtomicReferenceArray<Job> buffer;
+        private AtomicLongArray sequences;
+        private AtomicLong head;
+        private AtomicLong tail;
+
+        Ring(int capacity) {
+            int length = Integer.highestOneBit(capacity);
+            if (length < capacity) {
+                length <<= 1;
+            }
+            mask = length - 1;
+            buffer = new AtomicReferenceArray<>(length);
+            sequences = new AtomicLongArray(length);
+            for (int i = 0; i < length; ++i) {
+                sequences.set(i, i);
+            }
+            head = new AtomicLong();
+            tail = new AtomicLong();
+        }
+
+        void offer(Job job) {
+            long pos = tail.get();
+            while (true) {
+                int index = (int) pos & mask;
+                long diff = sequences.get(index) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        buffer.set(index, job);
+                        sequences.set(index, pos + 1);
+                        return;
+                    }
+                } else if (diff < 0) {
+                    // The slot is still being read by a consumer, it will be released shortly.
+                    Thread.yield();
+                }
+                pos = tail.get();
+            }
+        }
+
+        /**
+         * Removes the head of the ring if it has been published.
+         *
+         * @return the head of the ring, or {@code null} if the ring is empty or the head is not
+         *     published yet
+         */
+        Job poll() {
+            long pos = head.get();
+            while (true) {
+                int index = (int) pos & mask;
+                long diff = sequences.get(index) - (pos + 1);
+                if (diff == 0) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        Job job = buffer.get(index);
+                        buffer.set(index, null);
+                        sequences.set(index, pos + mask + 1);
+                        return job;
+                    }
+                } else if (diff < 0) {
+                    return null;
+                }
+                pos = head.get();
+            }
+        }
+    }
+}
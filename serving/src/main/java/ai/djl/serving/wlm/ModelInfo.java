@@ -12,14 +12,28 @@
  */
 package ai.djl.serving.wlm;
 
+import ai.djl.ModelException;
+import ai.djl.inference.BucketBatcher;
 import ai.djl.modality.Input;
 import ai.djl.modality.Output;
+import ai.djl.ndarray.NDArray;
+import ai.djl.nn.Block;
+import ai.djl.nn.Parameter;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
+import ai.djl.serving.metrics.ModelMetrics;
+import ai.djl.util.Pair;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,18 +42,33 @@ public class ModelInfo implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(ModelInfo.class);
 
+    private static final long MIN_POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
     private String modelName;
+    private String version;
     private String modelUrl;
 
     private int minWorkers;
     private int maxWorkers;
     private int batchSize;
+    private int maxBatchSize;
     private int maxBatchDelay;
-    private ReentrantLock lock;
+    private int weight;
+    private AdaptiveBatchPolicy batchPolicy;
+    private LongAdder busyTime;
+    private ModelMetrics metrics;
+    private volatile ResponseCache responseCache;
+    private List<Input> warmupInputs;
+    private volatile boolean retired;
+    private volatile BucketBatcher<Job> batcher;
 
-    private LinkedBlockingDeque<Job> jobs;
+    private JobQueue jobs;
+    private int queueCapacity;
 
-    private ZooModel<Input, Output> model;
+    private volatile ZooModel<Input, Output> model;
+    private Path modelDir;
+    private volatile long memoryUsage;
+    private volatile long lastAccess;
 
     /**
      * Constructs a new {@code ModelInfo} instance.
@@ -51,24 +80,128 @@ public class ModelInfo implements AutoCloseable {
      */
     public ModelInfo(
             String modelName, String modelUrl, ZooModel<Input, Output> model, int queueSize) {
+        this(modelName, null, modelUrl, model, queueSize);
+    }
+
+    /**
+     * Constructs a new {@code ModelInfo} instance of a model version.
+     *
+     * @param modelName the name of the model that will be used as HTTP endpoint
+     * @param version the version of the model, {@code null} for an unversioned model
+     * @param modelUrl the model url
+     * @param model the {@link ZooModel}
+     * @param queueSize the maximum request queue size
+     */
+    public ModelInfo(
+            String modelName,
+            String version,
+            String modelUrl,
+            ZooModel<Input, Output> model,
+            int queueSize) {
         this.modelName = modelName;
+        this.version = version;
         this.modelUrl = modelUrl;
         this.model = model;
+        modelDir = model.getModelPath();
+        memoryUsage = estimateMemoryUsage(model);
+        lastAccess = System.nanoTime();
         batchSize = 1;
         maxBatchDelay = 100;
-        jobs = new LinkedBlockingDeque<>(queueSize);
-        lock = new ReentrantLock();
+        weight = 1;
+        jobs = new JobQueue(queueSize);
+        queueCapacity = queueSize;
+        batchPolicy = new AdaptiveBatchPolicy();
+        busyTime = new LongAdder();
+        metrics = new ModelMetrics(this::getQueueSize);
     }
 
     /**
-     * Returns the loaded {@link ZooModel}.
+     * Loads a model for serving from its url.
+     *
+     * <p>The model artifacts are downloaded to the local model cache the first time, so loading the
+     * same url again only reads the local files.
      *
+     * @param modelUrl the model url
      * @return the loaded {@link ZooModel}
+     * @throws ModelException if the model is malformed
+     * @throws IOException if failed to read the model
+     */
+    static ZooModel<Input, Output> loadModel(String modelUrl) throws ModelException, IOException {
+        Criteria<Input, Output> criteria =
+                Criteria.builder()
+                        .setTypes(Input.class, Output.class)
+                        .optModelUrls(modelUrl)
+                        .build();
+        return ModelZoo.loadModel(criteria);
+    }
+
+    /**
+     * Returns the loaded {@link ZooModel}.
+     *
+     * @return the loaded {@link ZooModel}, {@code null} if the model has been unloaded
      */
     public ZooModel<Input, Output> getModel() {
         return model;
     }
 
+    /**
+     * Returns if the model is loaded in memory.
+     *
+     * @return {@code true} if the model is loaded in memory
+     */
+    public boolean isLoaded() {
+        return model != null;
+    }
+
+    /**
+     * Loads the model again after it has been unloaded.
+     *
+     * @throws ModelException if the model is malformed
+     * @throws IOException if failed to read the model
+     */
+    synchronized void load() throws ModelException, IOException {
+        if (model == null) {
+            ZooModel<Input, Output> loaded = loadModel(modelUrl);
+            modelDir = loaded.getModelPath();
+            memoryUsage = estimateMemoryUsage(loaded);
+            model = loaded;
+        }
+    }
+
+    /**
+     * Releases the memory of the model, the job queue and the settings of the model are kept.
+     *
+     * <p>All workers of the model must have been stopped.
+     */
+    synchronized void unload() {
+        ZooModel<Input, Output> loaded = model;
+        if (loaded != null) {
+            model = null;
+            loaded.close();
+        }
+    }
+
+    /**
+     * Returns the estimated memory usage in bytes of the model when it is loaded.
+     *
+     * <p>The workers of a model share the parameters of the model, so the memory usage does not
+     * grow with the number of workers.
+     *
+     * @return the estimated memory usage in bytes of the model
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Returns the time of the last request to the model.
+     *
+     * @return the time of the last request in {@link System#nanoTime()} time base
+     */
+    long getLastAccess() {
+        return lastAccess;
+    }
+
     /**
      * Returns the model name.
      *
@@ -78,6 +211,15 @@ public class ModelInfo implements AutoCloseable {
         return modelName;
     }
 
+    /**
+     * Returns the version of the model.
+     *
+     * @return the version of the model, {@code null} for an unversioned model
+     */
+    public String getVersion() {
+        return version;
+    }
+
     /**
      * Returns the model url.
      *
@@ -93,7 +235,7 @@ public class ModelInfo implements AutoCloseable {
      * @return the model cache directory
      */
     public Path getModelDir() {
-        return model.getModelPath();
+        return modelDir;
     }
 
     /**
@@ -150,6 +292,28 @@ public class ModelInfo implements AutoCloseable {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Returns the maximum batch size that can be formed when requests are queued up.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return Math.max(maxBatchSize, batchSize);
+    }
+
+    /**
+     * Sets the maximum batch size that can be formed when requests are queued up.
+     *
+     * <p>A worker waits at most {@code maxBatchDelay} to fill a batch of {@code batchSize}. If more
+     * jobs are already waiting in the queue, the batch grows up to the maximum batch size without
+     * any further delay.
+     *
+     * @param maxBatchSize the maximum batch size
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
     /**
      * Returns the maximum delay in milliseconds to aggregate a batch.
      *
@@ -168,6 +332,125 @@ public class ModelInfo implements AutoCloseable {
         this.maxBatchDelay = maxBatchDelay;
     }
 
+    /**
+     * Returns the scheduling weight of the model relative to other models.
+     *
+     * @return the scheduling weight of the model
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Sets the scheduling weight of the model relative to other models.
+     *
+     * <p>When the server is overloaded, each model gets a share of the inference capacity that is
+     * proportional to its weight.
+     *
+     * @param weight the scheduling weight of the model
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     *
+     * @return the maximum number of cached responses, 0 if the response cache is disabled
+     */
+    public int getCacheSize() {
+        ResponseCache cache = responseCache;
+        return cache == null ? 0 : cache.getMaxSize();
+    }
+
+    /**
+     * Returns the time to live of a cached response in seconds.
+     *
+     * @return the time to live of a cached response in seconds, 0 for no expiration
+     */
+    public int getCacheTtl() {
+        ResponseCache cache = responseCache;
+        return cache == null ? 0 : cache.getTtl();
+    }
+
+    /**
+     * Sets the response cache of the model.
+     *
+     * <p>Only enable the cache for models whose output is fully determined by the input data, the
+     * cache is keyed by the hash of the input data. Changing the cache discards all cached
+     * responses.
+     *
+     * @param cacheSize the maximum number of cached responses, 0 to disable the cache
+     * @param cacheTtl the time to live of a cached response in seconds, 0 for no expiration
+     */
+    public void setResponseCache(int cacheSize, int cacheTtl) {
+        if (cacheSize > 0) {
+            responseCache = new ResponseCache(cacheSize, cacheTtl, metrics);
+        } else {
+            responseCache = null;
+        }
+    }
+
+    /**
+     * Returns the response cache of the model.
+     *
+     * @return the response cache of the model, {@code null} if the cache is disabled
+     */
+    ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Returns the length bucket boundaries of the model.
+     *
+     * @return the inclusive upper bounds of the input size of the buckets, {@code null} if length
+     *     bucketing is disabled
+     */
+    public int[] getLengthBuckets() {
+        BucketBatcher<Job> bb = batcher;
+        return bb == null ? null : bb.getBoundaries();
+    }
+
+    /**
+     * Sets the length buckets of the model, so jobs are only batched with jobs of similar input
+     * size.
+     *
+     * <p>Models that pad variable length inputs, such as text models, waste the compute spent on
+     * the padding when short and long inputs share a batch. The length of a job is the size in
+     * bytes of its default input data. A bucket is dispatched when it holds a batch of {@code
+     * batchSize} jobs, or when its oldest job waited for {@code maxBatchDelay}. The buckets hold
+     * up to the job queue size of jobs, the jobs beyond it stay in the job queue, so the job queue
+     * still rejects new jobs once it is full. The buckets must be set before the workers of the
+     * model are started.
+     *
+     * @param boundaries the strictly ascending inclusive upper bounds of the input size of the
+     *     buckets, {@code null} or empty to disable length bucketing
+     */
+    public void setLengthBuckets(int[] boundaries) {
+        if (boundaries == null || boundaries.length == 0) {
+            batcher = null;
+        } else {
+            batcher =
+                    new BucketBatcher<>(
+                            boundaries,
+                            ModelInfo::getInputLength,
+                            Job::getArrivalTime,
+                            queueCapacity);
+        }
+    }
+
+    /**
+     * Returns the sample inputs that a new worker runs before it starts serving jobs.
+     *
+     * @return the warmup inputs, empty if the model has no warmup inputs
+     */
+    synchronized List<Input> getWarmupInputs() {
+        if (warmupInputs == null) {
+            warmupInputs = ModelWarmup.loadInputs(model);
+        }
+        return warmupInputs;
+    }
+
     /**
      * Adds a job to the queue.
      *
@@ -175,45 +458,286 @@ public class ModelInfo implements AutoCloseable {
      * @return {@code true} if the queue is full
      */
     public boolean addJob(Job job) {
+        if (retired) {
+            return false;
+        }
+        long now = System.nanoTime();
+        lastAccess = now;
+        batchPolicy.onArrival(now);
         return jobs.offer(job);
     }
 
+    /**
+     * Stops accepting new jobs, the jobs already in the queue are still served.
+     *
+     * <p>A retired model has been removed from its {@link Endpoint} and is draining its queue
+     * before its workers are stopped.
+     */
+    void retire() {
+        retired = true;
+    }
+
+    /**
+     * Rejects all jobs in the queue.
+     *
+     * @param status the HTTP status
+     * @param error the error message
+     */
+    void rejectQueuedJobs(HttpResponseStatus status, String error) {
+        List<Job> list = new ArrayList<>();
+        BucketBatcher<Job> bb = batcher;
+        if (bb != null) {
+            bb.drainTo(list);
+        }
+        while (!list.isEmpty() || jobs.drainTo(list, Integer.MAX_VALUE) > 0) {
+            for (Job job : list) {
+                job.sendError(status, error);
+            }
+            list.clear();
+        }
+    }
+
     /**
      * Fills in the list with a batch of jobs.
      *
+     * <p>Multiple workers may form their batches concurrently. Jobs that can no longer meet their
+     * deadline are rejected and jobs whose client has disconnected are dropped instead of being
+     * added to the batch. The batch is dispatched as soon as waiting for more jobs is not expected
+     * to pay off or would cause a job in the batch to miss its deadline.
+     *
      * @param list the batch queue to be filled
      * @throws InterruptedException if interrupted
      */
     public void pollBatch(List<Job> list) throws InterruptedException {
-        try {
-            lock.lockInterruptibly();
+        BucketBatcher<Job> bb = batcher;
+        if (bb != null) {
+            pollBucketedBatch(bb, list);
+            return;
+        }
+        long begin = 0;
+        while (list.isEmpty()) {
             Job job = jobs.take();
-            logger.trace("get first job: {}", job.getRequestId());
+            begin = System.nanoTime();
+            if (isServable(job, begin)) {
+                logger.trace("get first job: {}", job.getRequestId());
+                list.add(job);
+            }
+        }
 
-            list.add(job);
-            long begin = System.currentTimeMillis();
-            long maxDelay = maxBatchDelay;
-            for (int i = 0; i < batchSize - 1 && maxDelay > 0; ++i) {
-                job = jobs.poll(maxDelay, TimeUnit.MILLISECONDS);
+        int maxSize = getMaxBatchSize();
+        while (list.size() < maxSize) {
+            int size = list.size();
+            if (jobs.drainTo(list, maxSize - size) == 0) {
+                if (size >= batchSize) {
+                    break;
+                }
+                long now = System.nanoTime();
+                long wait = batchPolicy.getWaitTime(list, begin, maxBatchDelay, now);
+                if (wait <= 0) {
+                    break;
+                }
+                Job job;
+                try {
+                    job = jobs.poll(wait, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    // dispatch the jobs that are already taken, the worker stops afterwards
+                    Thread.currentThread().interrupt();
+                    break;
+                }
                 if (job == null) {
                     break;
                 }
-                long end = System.currentTimeMillis();
-                maxDelay -= end - begin;
-                begin = end;
                 list.add(job);
             }
-            logger.trace("sending jobs, size: {}", list.size());
-        } finally {
-            lock.unlock();
+            removeUnservable(list, size);
+        }
+        logger.trace("sending jobs, size: {}", list.size());
+    }
+
+    /**
+     * Fills in the list with the jobs of the first length bucket that is ready.
+     *
+     * @param bb the length buckets
+     * @param list the batch queue to be filled
+     * @throws InterruptedException if interrupted
+     */
+    private void pollBucketedBatch(BucketBatcher<Job> bb, List<Job> list)
+            throws InterruptedException {
+        long delay = TimeUnit.MILLISECONDS.toNanos(maxBatchDelay);
+        int maxSize = getMaxBatchSize();
+        List<Job> arrived = new ArrayList<>();
+        while (list.isEmpty()) {
+            // the jobs stay in the bounded job queue while the buckets are full
+            jobs.drainTo(arrived, bb.remainingCapacity());
+            for (Job job : arrived) {
+                bb.add(job);
+            }
+            arrived.clear();
+            long now = System.nanoTime();
+            if (bb.poll(list, batchSize, maxSize, delay, now)) {
+                removeUnservable(list, 0);
+                continue;
+            }
+            // the buckets are shared by all workers, another worker may stage jobs meanwhile
+            if (bb.remainingCapacity() == 0) {
+                // the buckets were filled meanwhile, the next poll dispatches them without waiting
+                Thread.yield();
+                continue;
+            }
+            long wait = Math.min(bb.getWaitTime(delay, now), Math.max(delay, MIN_POLL_INTERVAL));
+            Job job = jobs.poll(wait, TimeUnit.NANOSECONDS);
+            if (job != null) {
+                bb.add(job);
+            }
+        }
+        logger.trace("sending bucketed jobs, size: {}", list.size());
+    }
+
+    /**
+     * Records the inference latency of a batch, it is used to estimate the latency of future
+     * batches.
+     *
+     * @param batchSize the size of the batch
+     * @param latency the inference latency in nanoseconds
+     */
+    void onBatchCompleted(int batchSize, long latency) {
+        batchPolicy.onBatchCompleted(batchSize, latency);
+        busyTime.add(latency);
+        metrics.recordInferenceTime(latency);
+    }
+
+    /**
+     * Returns the serving metrics of this model.
+     *
+     * @return the serving metrics of this model
+     */
+    public ModelMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the accumulated inference time in nanoseconds of all workers of this model.
+     *
+     * @return the accumulated inference time in nanoseconds
+     */
+    long getBusyTime() {
+        return busyTime.sum();
+    }
+
+    /**
+     * Returns the number of jobs waiting in the queue.
+     *
+     * @return the number of jobs waiting in the queue
+     */
+    public int getQueueSize() {
+        BucketBatcher<Job> bb = batcher;
+        return bb == null ? jobs.size() : jobs.size() + bb.size();
+    }
+
+    /**
+     * Returns the estimated inference latency in nanoseconds for the specified batch size.
+     *
+     * @param batchSize the batch size
+     * @return the estimated inference latency in nanoseconds, 0 if unknown
+     */
+    long estimateLatency(int batchSize) {
+        return batchPolicy.estimateLatency(batchSize);
+    }
+
+    /**
+     * Returns the size of the parameters of a model, or the size of its files if the engine does
+     * not expose the parameters.
+     *
+     * @param model the loaded model
+     * @return the estimated memory usage in bytes of the model
+     */
+    private static long estimateMemoryUsage(ZooModel<Input, Output> model) {
+        long bytes = 0;
+        Block block = model.getBlock();
+        if (block != null) {
+            for (Pair<String, Parameter> pair : block.getParameters()) {
+                Parameter parameter = pair.getValue();
+                if (parameter.isInitialized()) {
+                    NDArray array = parameter.getArray();
+                    bytes += array.size() * array.getDataType().getNumOfBytes();
+                }
+            }
+        }
+        if (bytes == 0) {
+            Path dir = model.getModelPath();
+            try (Stream<Path> stream = Files.walk(dir)) {
+                bytes =
+                        stream.filter(Files::isRegularFile)
+                                .mapToLong(p -> p.toFile().length())
+                                .sum();
+            } catch (IOException e) {
+                logger.debug("Failed to read model directory: {}", dir, e);
+            }
+        }
+        return bytes;
+    }
+
+    private static int getInputLength(Job job) {
+        ByteBuffer data = job.getInput().getAsByteBuffer();
+        return data == null ? 0 : data.remaining();
+    }
+
+    /**
+     * Returns the estimated time in nanoseconds that a new job waits in the queue before its batch
+     * is dispatched, based on the recent inference latency of the model.
+     *
+     * @param workers the number of workers of the model
+     * @return the estimated queue time in nanoseconds, 0 if unknown
+     */
+    long estimateQueueTime(int workers) {
+        int queueSize = getQueueSize();
+        if (queueSize == 0) {
+            return 0;
+        }
+        int size = Math.min(queueSize, getMaxBatchSize());
+        long perRound = (long) size * Math.max(workers, 1);
+        long rounds = (queueSize + perRound - 1) / perRound;
+        return rounds * batchPolicy.estimateLatency(size);
+    }
+
+    private void removeUnservable(List<Job> list, int fromIndex) {
+        long now = System.nanoTime();
+        for (int i = list.size() - 1; i >= fromIndex; --i) {
+            if (!isServable(list.get(i), now)) {
+                list.remove(i);
+            }
         }
     }
 
+    /**
+     * Returns if a job should be served, a job that should not is dropped.
+     *
+     * <p>A job whose client has disconnected is dropped silently, and a job that can no longer
+     * meet its deadline is rejected, so no inference time is spent on either.
+     *
+     * @param job the job to check
+     * @param now the current time in nanoseconds
+     * @return {@code true} if the job should be served
+     */
+    private boolean isServable(Job job, long now) {
+        if (job.isAbandoned()) {
+            logger.debug("Client of job {} has disconnected, dropped.", job.getRequestId());
+            metrics.onRejected(ModelMetrics.Rejection.CLIENT_CLOSED);
+            job.release();
+            return false;
+        }
+        if (batchPolicy.isExpired(job, now)) {
+            logger.debug("Job {} will miss its deadline, rejected.", job.getRequestId());
+            metrics.onRejected(ModelMetrics.Rejection.DEADLINE_EXCEEDED);
+            job.sendError(HttpResponseStatus.SERVICE_UNAVAILABLE, "Request deadline exceeded.");
+            return false;
+        }
+        return true;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void close() {
-        if (model != null) {
-            model.close();
-        }
+        unload();
     }
 }
@@ -15,13 +15,13 @@ package ai.djl.serving.wlm;
 import ai.djl.ModelException;
 import ai.djl.modality.Input;
 import ai.djl.modality.Output;
-import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ModelNotFoundException;
-import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.serving.http.BadRequestException;
 import ai.djl.serving.http.DescribeModelResponse;
+import ai.djl.serving.http.ServiceUnavailableException;
 import ai.djl.serving.http.StatusResponse;
+import ai.djl.serving.metrics.ModelMetrics;
 import ai.djl.serving.util.ConfigManager;
 import ai.djl.serving.util.NettyUtils;
 import io.netty.channel.ChannelHandlerContext;
@@ -34,6 +34,9 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,18 +45,43 @@ public final class ModelManager {
 
     private static final Logger logger = LoggerFactory.getLogger(ModelManager.class);
 
+    private static final long DRAIN_TIMEOUT = 60000;
+    private static final long DRAIN_INTERVAL = 100;
+
     private static ModelManager modelManager;
 
     private ConfigManager configManager;
     private WorkLoadManager wlm;
-    private ConcurrentHashMap<String, ModelInfo> models;
+    private ModelResidency residency;
+    private ConcurrentHashMap<String, Endpoint> endpoints;
     private Set<String> startupModels;
 
     private ModelManager(ConfigManager configManager) {
         this.configManager = configManager;
         wlm = new WorkLoadManager(configManager);
-        models = new ConcurrentHashMap<>();
+        endpoints = new ConcurrentHashMap<>();
         startupModels = new HashSet<>();
+        residency = new ModelResidency(wlm, endpoints, configManager.getModelMemoryBudget());
+
+        long interval = configManager.getAutoscaleInterval();
+        if (interval > 0) {
+            Autoscaler autoscaler =
+                    new Autoscaler(
+                            wlm,
+                            endpoints,
+                            residency,
+                            interval,
+                            configManager.getModelIdleTimeout());
+            ScheduledExecutorService executor =
+                    Executors.newSingleThreadScheduledExecutor(
+                            r -> {
+                                Thread thread = new Thread(r, "autoscaler");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            executor.scheduleWithFixedDelay(
+                    autoscaler, interval, interval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -74,29 +102,70 @@ public final class ModelManager {
         return modelManager;
     }
 
+    /**
+     * Registers and loads a model whose batches do not grow beyond the batch size when requests
+     * are queued up.
+     *
+     * @param modelName the name of the model for HTTP endpoint
+     * @param modelUrl the model url
+     * @param batchSize the batch size
+     * @param maxBatchDelay the maximum delay for batching
+     * @return a {@code CompletableFuture} instance
+     */
+    public CompletableFuture<ModelInfo> registerModel(
+            final String modelName,
+            final String modelUrl,
+            final int batchSize,
+            final int maxBatchDelay) {
+        return registerModel(modelName, modelUrl, batchSize, batchSize, maxBatchDelay);
+    }
+
     /**
      * Registers and loads a model.
      *
      * @param modelName the name of the model for HTTP endpoint
      * @param modelUrl the model url
      * @param batchSize the batch size
+     * @param maxBatchSize the maximum batch size when requests are queued up
+     * @param maxBatchDelay the maximum delay for batching
+     * @return a {@code CompletableFuture} instance
+     */
+    public CompletableFuture<ModelInfo> registerModel(
+            final String modelName,
+            final String modelUrl,
+            final int batchSize,
+            final int maxBatchSize,
+            final int maxBatchDelay) {
+        return registerModel(modelName, null, modelUrl, batchSize, maxBatchSize, maxBatchDelay);
+    }
+
+    /**
+     * Registers and loads a version of a model.
+     *
+     * <p>Multiple versions can be registered under the same model name. The first version receives
+     * all the traffic of the model name, a later version receives no traffic until {@link
+     * #setTraffic(String, String, int)} is called, so it can be loaded and warmed up while the
+     * current version keeps serving.
+     *
+     * @param modelName the name of the model for HTTP endpoint
+     * @param version the version of the model, {@code null} for an unversioned model
+     * @param modelUrl the model url
+     * @param batchSize the batch size
+     * @param maxBatchSize the maximum batch size when requests are queued up
      * @param maxBatchDelay the maximum delay for batching
      * @return a {@code CompletableFuture} instance
      */
     public CompletableFuture<ModelInfo> registerModel(
             final String modelName,
+            final String version,
             final String modelUrl,
             final int batchSize,
+            final int maxBatchSize,
             final int maxBatchDelay) {
         return CompletableFuture.supplyAsync(
                 () -> {
                     try {
-                        Criteria<Input, Output> criteria =
-                                Criteria.builder()
-                                        .setTypes(Input.class, Output.class)
-                                        .optModelUrls(modelUrl)
-                                        .build();
-                        ZooModel<Input, Output> model = ModelZoo.loadModel(criteria);
+                        ZooModel<Input, Output> model = ModelInfo.loadModel(modelUrl);
                         String actualModelName;
                         if (modelName == null || modelName.isEmpty()) {
                             actualModelName = model.getName();
@@ -108,19 +177,34 @@ public final class ModelManager {
                         ModelInfo modelInfo =
                                 new ModelInfo(
                                         actualModelName,
+                                        version,
                                         modelUrl,
                                         model,
                                         configManager.getJobQueueSize());
                         modelInfo.setBatchSize(batchSize);
+                        modelInfo.setMaxBatchSize(maxBatchSize);
                         modelInfo.setMaxBatchDelay(maxBatchDelay);
-                        ModelInfo existingModel = models.putIfAbsent(actualModelName, modelInfo);
-                        if (existingModel != null) {
+                        modelInfo.setResponseCache(
+                                configManager.getCacheSize(), configManager.getCacheTtl());
+                        Endpoint endpoint =
+                                endpoints.compute(
+                                        actualModelName,
+                                        (k, v) -> {
+                                            Endpoint e = v == null ? new Endpoint(k) : v;
+                                            e.add(modelInfo);
+                                            return e;
+                                        });
+                        if (endpoint.get(version) != modelInfo) {
                             // model already exists
                             model.close();
                             throw new BadRequestException(
-                                    "Model " + actualModelName + " is already registered.");
+                                    "Model "
+                                            + getDisplayName(actualModelName, version)
+                                            + " is already registered.");
                         }
-                        logger.info("Model {} loaded.", modelInfo.getModelName());
+                        logger.info(
+                                "Model {} loaded.", getDisplayName(actualModelName, version));
+                        residency.onLoaded(modelInfo);
 
                         return modelInfo;
                     } catch (ModelException | IOException e) {
@@ -130,52 +214,129 @@ public final class ModelManager {
     }
 
     /**
-     * Unregisters a model by its name.
+     * Unregisters all versions of a model by its name.
+     *
+     * <p>The models stop accepting new jobs immediately, the jobs already in their queues are
+     * served before the workers are stopped.
      *
      * @param modelName the model name to be unregistered
      * @return {@code true} if unregister success
      */
     public boolean unregisterModel(String modelName) {
-        ModelInfo model = models.remove(modelName);
-        if (model == null) {
+        Endpoint endpoint = endpoints.remove(modelName);
+        if (endpoint == null) {
             logger.warn("Model not found: " + modelName);
             return false;
         }
-
-        model.setMinWorkers(0);
-        model.setMaxWorkers(0);
-        wlm.modelChanged(model);
         startupModels.remove(modelName);
-        model.close();
-        logger.info("Model {} unregistered.", modelName);
+        for (ModelInfo model : endpoint.getModels()) {
+            retireModel(model);
+        }
+        return true;
+    }
+
+    /**
+     * Unregisters a version of a model.
+     *
+     * <p>The traffic of the version is split across the remaining versions, the jobs already in
+     * its queue are served before its workers are stopped.
+     *
+     * @param modelName the model name
+     * @param version the version to be unregistered
+     * @return {@code true} if unregister success
+     */
+    public boolean unregisterModel(String modelName, String version) {
+        Endpoint endpoint = endpoints.get(modelName);
+        ModelInfo model = endpoint == null ? null : endpoint.remove(version);
+        if (model == null) {
+            logger.warn("Model not found: " + getDisplayName(modelName, version));
+            return false;
+        }
+        if (endpoints.computeIfPresent(modelName, (k, v) -> v.isEmpty() ? null : v) == null) {
+            startupModels.remove(modelName);
+        }
+        retireModel(model);
         return true;
     }
 
     /**
-     * Update model workers.
+     * Update model workers of the version that receives the most traffic.
      *
      * @param modelName the model name to be updated
      * @param minWorkers the minimum number of workers
      * @param maxWorkers the maximum number of workers
      */
     public void updateModel(String modelName, int minWorkers, int maxWorkers) {
-        ModelInfo model = models.get(modelName);
-        if (model == null) {
+        Endpoint endpoint = endpoints.get(modelName);
+        if (endpoint == null || endpoint.isEmpty()) {
             throw new AssertionError("Model not found: " + modelName);
         }
-        model.setMinWorkers(minWorkers);
-        model.setMaxWorkers(maxWorkers);
-        logger.debug("updateModel: {}, count: {}", modelName, minWorkers);
-        wlm.modelChanged(model);
+        updateModel(endpoint.getPrimary(), minWorkers, maxWorkers);
     }
 
     /**
-     * Returns the registry of all models.
+     * Update model workers of a version.
+     *
+     * @param modelName the model name to be updated
+     * @param version the version to be updated, {@code null} for the unversioned model
+     * @param minWorkers the minimum number of workers
+     * @param maxWorkers the maximum number of workers
+     */
+    public void updateModel(String modelName, String version, int minWorkers, int maxWorkers) {
+        Endpoint endpoint = endpoints.get(modelName);
+        ModelInfo model = endpoint == null ? null : endpoint.get(version);
+        if (model == null) {
+            throw new AssertionError("Model not found: " + getDisplayName(modelName, version));
+        }
+        updateModel(model, minWorkers, maxWorkers);
+    }
+
+    /**
+     * Sets the percentage of the traffic of a model name that a version receives.
+     *
+     * <p>The rest of the traffic is split across the other versions in proportion to their current
+     * traffic, setting 100 switches all new requests to the version at once.
+     *
+     * @param modelName the model name
+     * @param version the version
+     * @param percentage the percentage of the traffic between 0 and 100
+     * @throws ModelNotFoundException if the version is not found
+     */
+    public void setTraffic(String modelName, String version, int percentage)
+            throws ModelNotFoundException {
+        Endpoint endpoint = endpoints.get(modelName);
+        if (endpoint == null || !endpoint.setTraffic(version, percentage)) {
+            throw new ModelNotFoundException(
+                    "Model not found: " + getDisplayName(modelName, version));
+        }
+        logger.info(
+                "Model {} receives {}% of traffic.",
+                getDisplayName(modelName, version),
+                percentage);
+    }
+
+    /**
+     * Returns the registry of all models by model name.
      *
      * @return the registry of all models
      */
-    public Map<String, ModelInfo> getModels() {
-        return models;
+    public Map<String, Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Returns a version of a model.
+     *
+     * @param modelName the model name
+     * @param version the version, {@code null} for the version that receives the most traffic
+     * @return the model, {@code null} if not found
+     */
+    public ModelInfo getModel(String modelName, String version) {
+        Endpoint endpoint = endpoints.get(modelName);
+        if (endpoint == null) {
+            return null;
+        }
+        return version == null ? endpoint.getPrimary() : endpoint.get(version);
     }
 
     /**
@@ -190,58 +351,148 @@ public final class ModelManager {
     /**
      * Adds an inference job to the job queue.
      *
+     * <p>A job without a version is routed to one of the versions of the model according to their
+     * traffic split.
+     *
+     * <p>A job is rejected on arrival if the queue of the model is expected to delay it beyond the
+     * maximum queue time or beyond its deadline.
+     *
      * @param job an inference job to be executed
      * @return {@code true} if submit success
      * @throws ModelNotFoundException if the model is not registered
+     * @throws ServiceUnavailableException if the model is overloaded
      */
     public boolean addJob(Job job) throws ModelNotFoundException {
         String modelName = job.getModelName();
-        ModelInfo model = models.get(modelName);
+        String version = job.getVersion();
+        Endpoint endpoint = endpoints.get(modelName);
+        ModelInfo model = null;
+        if (endpoint != null) {
+            model = version == null ? endpoint.select() : endpoint.get(version);
+        }
         if (model == null) {
-            throw new ModelNotFoundException("Model not found: " + modelName);
+            throw new ModelNotFoundException(
+                    "Model not found: " + getDisplayName(modelName, version));
+        }
+
+        ResponseCache cache = model.getResponseCache();
+        if (cache != null && cache.lookup(job)) {
+            return true;
         }
 
-        if (wlm.hasWorker(modelName)) {
-            return model.addJob(job);
+        if (wlm.hasWorker(model) || wlm.addWorker(model) || residency.scheduleLoad(model)) {
+            // a model that was scaled down to zero workers or unloaded is lazily started again
+            admit(model, job);
+            if (model.addJob(job)) {
+                // the workers may have been stopped to unload the model meanwhile
+                if (!wlm.hasWorker(model) && !wlm.addWorker(model)) {
+                    residency.scheduleLoad(model);
+                }
+                return true;
+            }
+            model.getMetrics().onRejected(ModelMetrics.Rejection.QUEUE_FULL);
+        } else {
+            model.getMetrics().onRejected(ModelMetrics.Rejection.NO_WORKER);
         }
+        job.failWaitingJobs(
+                HttpResponseStatus.SERVICE_UNAVAILABLE,
+                "No worker is available to serve request: " + modelName);
         return false;
     }
 
+    /**
+     * Rejects a job early if it is expected to wait too long in the queue.
+     *
+     * @param model the model that serves the job
+     * @param job the new job
+     * @throws ServiceUnavailableException if the job is rejected
+     */
+    private void admit(ModelInfo model, Job job) {
+        long queueTime = model.estimateQueueTime(wlm.getNumRunningWorkers(model));
+        if (queueTime == 0) {
+            return;
+        }
+        long maxQueueTime = TimeUnit.MILLISECONDS.toNanos(configManager.getMaxQueueTime());
+        if (maxQueueTime > 0 && queueTime > maxQueueTime) {
+            model.getMetrics().onRejected(ModelMetrics.Rejection.OVERLOADED);
+            String msg = "Model is overloaded: " + job.getModelName();
+            job.failWaitingJobs(HttpResponseStatus.SERVICE_UNAVAILABLE, msg);
+            // the backlog beyond the limit is expected to be served by then
+            long excess = queueTime - maxQueueTime;
+            throw new ServiceUnavailableException(
+                    msg, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(excess + 999_999_999L)));
+        }
+        if (System.nanoTime() + queueTime + model.estimateLatency(1) > job.getDeadline()) {
+            model.getMetrics().onRejected(ModelMetrics.Rejection.DEADLINE_EXCEEDED);
+            String msg = "Request deadline exceeded.";
+            job.failWaitingJobs(HttpResponseStatus.SERVICE_UNAVAILABLE, msg);
+            throw new ServiceUnavailableException(msg);
+        }
+    }
+
     /**
      * Returns a list of worker information for specified model.
      *
      * @param modelName the model to be queried
+     * @param version the version to be queried, {@code null} for the version that receives the
+     *     most traffic
      * @return a list of worker information for specified model
      * @throws ModelNotFoundException if specified model not found
      */
-    public DescribeModelResponse describeModel(String modelName) throws ModelNotFoundException {
-        ModelInfo model = models.get(modelName);
+    public DescribeModelResponse describeModel(String modelName, String version)
+            throws ModelNotFoundException {
+        Endpoint endpoint = endpoints.get(modelName);
+        ModelInfo model = getModel(modelName, version);
         if (model == null) {
-            throw new ModelNotFoundException("Model not found: " + modelName);
+            throw new ModelNotFoundException(
+                    "Model not found: " + getDisplayName(modelName, version));
         }
 
         DescribeModelResponse resp = new DescribeModelResponse();
         resp.setModelName(modelName);
+        resp.setVersion(model.getVersion());
         resp.setModelUrl(model.getModelUrl());
+        resp.setTraffic(endpoint.getTraffic(model));
         resp.setBatchSize(model.getBatchSize());
+        resp.setMaxBatchSize(model.getMaxBatchSize());
         resp.setMaxBatchDelay(model.getMaxBatchDelay());
+        resp.setWeight(model.getWeight());
+        resp.setCacheSize(model.getCacheSize());
+        resp.setCacheTtl(model.getCacheTtl());
+        resp.setLengthBuckets(model.getLengthBuckets());
         resp.setMaxWorkers(model.getMaxWorkers());
         resp.setMinWorkers(model.getMinWorkers());
         resp.setLoadedAtStartup(startupModels.contains(modelName));
 
-        int activeWorker = wlm.getNumRunningWorkers(modelName);
+        int activeWorker = wlm.getNumRunningWorkers(model);
         int targetWorker = model.getMinWorkers();
-        resp.setStatus(activeWorker >= targetWorker ? "Healthy" : "Unhealthy");
+        if (!model.isLoaded()) {
+            resp.setStatus("Unloaded");
+        } else {
+            resp.setStatus(activeWorker >= targetWorker ? "Healthy" : "Unhealthy");
+        }
+        resp.setMemoryUsage(model.getMemoryUsage());
+        describeWorkers(resp, wlm, model);
+        return resp;
+    }
 
-        List<WorkerThread> workers = wlm.getWorkers(modelName);
+    /**
+     * Adds the workers of a model to its description.
+     *
+     * @param resp the description of the model
+     * @param wlm the {@link WorkLoadManager} that owns the workers
+     * @param model the model
+     */
+    static void describeWorkers(DescribeModelResponse resp, WorkLoadManager wlm, ModelInfo model) {
+        List<WorkerThread> workers = wlm.getWorkers(model);
         for (WorkerThread worker : workers) {
             int workerId = worker.getWorkerId();
             long startTime = worker.getStartTime();
             boolean isRunning = worker.isRunning();
             int gpuId = worker.getGpuId();
-            resp.addWorker(workerId, startTime, isRunning, gpuId);
+            int threads = worker.getNumThreads();
+            resp.addWorker(workerId, startTime, isRunning, gpuId, threads);
         }
-        return resp;
     }
 
     /**
@@ -255,9 +506,15 @@ public final class ModelManager {
                     String response = "Healthy";
                     int numWorking = 0;
                     int numScaled = 0;
-                    for (Map.Entry<String, ModelInfo> m : models.entrySet()) {
-                        numScaled += m.getValue().getMinWorkers();
-                        numWorking += wlm.getNumRunningWorkers(m.getValue().getModelName());
+                    for (Endpoint endpoint : endpoints.values()) {
+                        for (ModelInfo model : endpoint.getModels()) {
+                            if (!model.isLoaded()) {
+                                // an unloaded model is started again on demand
+                                continue;
+                            }
+                            numScaled += model.getMinWorkers();
+                            numWorking += wlm.getNumRunningWorkers(model);
+                        }
                     }
 
                     if ((numWorking > 0) && (numWorking < numScaled)) {
@@ -273,4 +530,48 @@ public final class ModelManager {
                 };
         wlm.scheduleAsync(r);
     }
+
+    private void updateModel(ModelInfo model, int minWorkers, int maxWorkers) {
+        model.setMinWorkers(minWorkers);
+        model.setMaxWorkers(maxWorkers);
+        logger.debug(
+                "updateModel: {}, count: {}",
+                getDisplayName(model.getModelName(), model.getVersion()),
+                minWorkers);
+        wlm.modelChanged(model);
+    }
+
+    private void retireModel(ModelInfo model) {
+        String name = getDisplayName(model.getModelName(), model.getVersion());
+        model.retire();
+        model.setMinWorkers(0);
+        model.setMaxWorkers(0);
+        wlm.scheduleAsync(
+                () -> {
+                    try {
+                        // serve the queued jobs before the workers are stopped
+                        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+                        while (model.getQueueSize() > 0
+                                && wlm.hasWorker(model)
+                                && System.currentTimeMillis() < deadline) {
+                            Thread.sleep(DRAIN_INTERVAL);
+                        }
+                        if (!wlm.stopWorkers(model, DRAIN_TIMEOUT)) {
+                            logger.warn("Workers of model {} did not stop in time.", name);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        model.rejectQueuedJobs(
+                                HttpResponseStatus.SERVICE_UNAVAILABLE,
+                                "Model " + name + " is unregistered.");
+                        model.close();
+                        logger.info("Model {} unregistered.", name);
+                    }
+                });
+    }
+
+    private static String getDisplayName(String modelName, String version) {
+        return version == null ? modelName : modelName + ':' + version;
+    }
 }
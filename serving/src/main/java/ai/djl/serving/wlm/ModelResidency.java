@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.ModelException;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the total memory of the loaded models within a budget, so a server can host more models
+ * than fit in memory at once.
+ *
+ * <p>When loading a model would exceed the budget, the least recently used models whose queues
+ * are empty are unloaded: their workers are stopped and their native memory is released, while
+ * their registration, settings and statistics are kept. The first job for an unloaded model is
+ * queued and the model is loaded again from the local model cache in the background, its workers
+ * are started once it is loaded. The {@link Autoscaler} also unloads the models with no minimum
+ * workers that have been idle for the idle timeout.
+ */
+class ModelResidency {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelResidency.class);
+
+    private static final long STOP_TIMEOUT = 10000;
+
+    private WorkLoadManager wlm;
+    private Map<String, Endpoint> endpoints;
+    private long budget;
+    private Set<ModelInfo> loading;
+
+    /**
+     * Constructs a new {@code ModelResidency} instance.
+     *
+     * @param wlm the {@link WorkLoadManager} that owns the workers
+     * @param endpoints the registry of all models
+     * @param budget the memory budget in bytes of all loaded models, 0 for no limit
+     */
+    ModelResidency(WorkLoadManager wlm, Map<String, Endpoint> endpoints, long budget) {
+        this.wlm = wlm;
+        this.endpoints = endpoints;
+        this.budget = budget;
+        loading = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Loads an unloaded model in the background.
+     *
+     * @param model the model to load
+     * @return {@code true} if the model is being loaded, {@code false} if it is loaded already
+     */
+    boolean scheduleLoad(ModelInfo model) {
+        if (model.isLoaded()) {
+            return false;
+        }
+        if (loading.add(model)) {
+            wlm.scheduleAsync(() -> load(model));
+        }
+        return true;
+    }
+
+    /**
+     * Unloads other models if a newly loaded model exceeds the memory budget.
+     *
+     * @param model the newly loaded model
+     */
+    void onLoaded(ModelInfo model) {
+        makeRoom(model, 0);
+    }
+
+    /**
+     * Unloads a model that has been idle, it is loaded again by its next job.
+     *
+     * @param model the idle model
+     * @return {@code true} if the model has been unloaded
+     */
+    synchronized boolean unloadIdle(ModelInfo model) {
+        return model.isLoaded() && model.getQueueSize() == 0 && unload(model);
+    }
+
+    private void load(ModelInfo model) {
+        try {
+            makeRoom(model, model.getMemoryUsage());
+            model.load();
+            logger.info("Model {} loaded again.", model.getModelName());
+            makeRoom(model, 0);
+            wlm.modelChanged(model);
+            if (model.getQueueSize() > 0 && !wlm.hasWorker(model)) {
+                wlm.addWorker(model);
+            }
+        } catch (ModelException | IOException | RuntimeException e) {
+            logger.warn("Failed to load model: " + model.getModelName(), e);
+            model.rejectQueuedJobs(HttpResponseStatus.SERVICE_UNAVAILABLE, "Failed to load model.");
+        } finally {
+            loading.remove(model);
+        }
+        // a job queued after the checks above saw the load in progress and did not schedule one
+        if (model.getQueueSize() > 0) {
+            if (!model.isLoaded()) {
+                scheduleLoad(model);
+            } else if (!wlm.hasWorker(model)) {
+                wlm.addWorker(model);
+            }
+        }
+    }
+
+    /**
+     * Unloads the least recently used idle models until the required memory fits in the budget.
+     *
+     * @param keep the model that must stay loaded
+     * @param required the memory in bytes required in addition to the loaded models
+     */
+    private synchronized void makeRoom(ModelInfo keep, long required) {
+        if (budget <= 0) {
+            return;
+        }
+        List<ModelInfo> candidates = new ArrayList<>();
+        long used = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            for (ModelInfo model : endpoint.getModels()) {
+                if (model.isLoaded()) {
+                    used += model.getMemoryUsage();
+                    if (model != keep && model.getQueueSize() == 0) {
+                        candidates.add(model);
+                    }
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(ModelInfo::getLastAccess));
+        for (ModelInfo model : candidates) {
+            if (used + required <= budget) {
+                return;
+            }
+            long memory = model.getMemoryUsage();
+            if (unload(model)) {
+                used -= memory;
+            }
+        }
+        if (used + required > budget) {
+            logger.warn(
+                    "Loaded models use {} bytes, exceeding the memory budget of {} bytes.",
+                    used + required,
+                    budget);
+        }
+    }
+
+    private boolean unload(ModelInfo model) {
+        try {
+            if (!wlm.stopWorkers(model, STOP_TIMEOUT)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        // workers are only added while holding the lock of the model
+        synchronized (model) {
+            if (wlm.hasWorker(model)) {
+                return false;
+            }
+            if (model.getQueueSize() > 0) {
+                // a job arrived while the workers were stopping, the model is kept to serve it
+                wlm.modelChanged(model);
+                if (!wlm.hasWorker(model)) {
+                    wlm.addWorker(model);
+                }
+                return false;
+            }
+            model.unload();
+        }
+        logger.info("Model {} unloaded.", model.getModelName());
+        // a job queued before it saw the model unloaded loads it again
+        if (model.getQueueSize() > 0) {
+            scheduleLoad(model);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.serving.http.NDListContent;
+import ai.djl.util.PairList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A utility class that creates the sample inputs a new worker runs before it starts serving jobs.
+ *
+ * <p>Recorded requests are loaded from the {@value #WARMUP_DIR} directory of the model, each file
+ * is the body of one request. Files with the {@value #NDLIST_EXTENSION} extension are encoded
+ * {@link NDList}s that bypass the translator, like requests with the {@link
+ * NDListContent#CONTENT_TYPE} content type. If the model has no recorded requests, a zero filled
+ * {@code NDList} is synthesized from the input shapes of the model, the first dimension of each
+ * shape is the batch dimension.
+ */
+final class ModelWarmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelWarmup.class);
+
+    static final String WARMUP_DIR = "warmup";
+    static final String NDLIST_EXTENSION = ".ndlist";
+
+    private ModelWarmup() {}
+
+    /**
+     * Returns the warmup inputs of the model.
+     *
+     * @param model the model
+     * @return the warmup inputs, empty if the model has neither recorded requests nor known input
+     *     shapes
+     */
+    static List<Input> loadInputs(ZooModel<Input, Output> model) {
+        try {
+            List<Input> inputs = loadRecordedInputs(model.getModelPath().resolve(WARMUP_DIR));
+            if (inputs.isEmpty()) {
+                inputs = synthesizeInputs(model);
+            }
+            return inputs;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load warmup inputs of model: " + model.getName(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<Input> loadRecordedInputs(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        List<Input> inputs = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Input input = new Input(WARMUP_DIR);
+            input.addData("body", Files.readAllBytes(file));
+            if (file.toString().endsWith(NDLIST_EXTENSION)) {
+                NDListContent.setNDList(input, false);
+            }
+            inputs.add(input);
+        }
+        return inputs;
+    }
+
+    private static List<Input> synthesizeInputs(ZooModel<Input, Output> model) {
+        PairList<String, Shape> shapes = model.describeInput();
+        if (shapes == null || shapes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try (NDManager manager = model.getNDManager().newSubManager()) {
+            NDList list = new NDList(shapes.size());
+            for (Shape shape : shapes.values()) {
+                Shape sample = shape.slice(1);
+                for (long dim : sample.getShape()) {
+                    if (dim < 1) {
+                        // the shape is not fully known
+                        return Collections.emptyList();
+                    }
+                }
+                list.add(manager.zeros(sample));
+            }
+            Input input = new Input(WARMUP_DIR);
+            input.addData("body", list.encode());
+            NDListContent.setNDList(input, false);
+            return Collections.singletonList(input);
+        }
+    }
+}
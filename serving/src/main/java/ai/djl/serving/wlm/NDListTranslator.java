@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.ndarray.NDList;
+import ai.djl.serving.http.BadRequestException;
+import ai.djl.serving.http.NDListContent;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A {@link Translator} that feeds {@link NDListContent} requests to the model without any pre- or
+ * post-processing.
+ */
+class NDListTranslator implements Translator<Input, Output> {
+
+    private static final String REQUEST_IDS = "requestIds";
+
+    private Batchifier batchifier;
+
+    /**
+     * Constructs a new {@code NDListTranslator} instance.
+     *
+     * @param batchifier the {@link Batchifier} to use, {@code null} for already batched inputs
+     */
+    NDListTranslator(Batchifier batchifier) {
+        this.batchifier = batchifier;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NDList processInput(TranslatorContext ctx, Input input) {
+        getRequestIds(ctx).addLast(input.getRequestId());
+        ByteBuffer data = input.getAsByteBuffer();
+        if (data == null) {
+            throw new BadRequestException("Request body is empty.");
+        }
+        return NDList.decode(ctx.getNDManager(), data);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Output processOutput(TranslatorContext ctx, NDList list) {
+        // the outputs are processed in the same order as the inputs
+        String requestId = getRequestIds(ctx).pollFirst();
+        Output output = new Output(requestId, 200, "OK");
+        output.addProperty(HttpHeaderNames.CONTENT_TYPE.toString(), NDListContent.CONTENT_TYPE);
+        output.setContent(list.encode());
+        return output;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Batchifier getBatchifier() {
+        return batchifier;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Deque<String> getRequestIds(TranslatorContext ctx) {
+        Deque<String> requestIds = (Deque<String>) ctx.getAttachment(REQUEST_IDS);
+        if (requestIds == null) {
+            requestIds = new ArrayDeque<>();
+            ctx.setAttachment(REQUEST_IDS, requestIds);
+        }
+        return requestIds;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+/** An enum represents the priority class of an inference job. */
+public enum Priority {
+    /** Latency sensitive traffic, always scheduled before {@link #BATCH} traffic. */
+    INTERACTIVE,
+    /** Bulk traffic that uses the capacity left over by {@link #INTERACTIVE} traffic. */
+    BATCH;
+
+    /**
+     * Returns the {@code Priority} with the specified name.
+     *
+     * @param name the case insensitive name of the priority
+     * @return the {@code Priority} with the specified name
+     * @throws IllegalArgumentException if the name does not match any priority
+     */
+    public static Priority fromString(String name) {
+        for (Priority priority : values()) {
+            if (priority.name().equalsIgnoreCase(name)) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Invalid priority: " + name);
+    }
+}
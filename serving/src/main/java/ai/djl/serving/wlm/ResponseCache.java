@@ -0,0 +1,311 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.serving.metrics.ModelMetrics;
+import ai.djl.util.Pair;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of the successful responses of a model, keyed by the SHA-256 hash of the input data and
+ * of the input properties.
+ *
+ * <p>The properties hold the HTTP headers of the request, which a translator may use to decide how
+ * to read the data or what to return. All of them are part of the key except the headers that only
+ * concern the transport of the request, so requests that differ in any other header are never
+ * served each other's response.
+ *
+ * <p>The cache holds at most a fixed number of responses. Entries are evicted in least recently
+ * used order, and a new response is only admitted into a full cache if its input has been seen
+ * more often than the input of the entry it would evict (TinyLFU), so one-off requests cannot
+ * flush out frequently requested responses. Entries expire after the configured time to live.
+ *
+ * <p>Concurrent requests with the same input share one inference: the first request is queued as
+ * usual, and the requests that arrive while it is in flight wait for its response.
+ */
+class ResponseCache {
+
+    private static final Set<String> TRANSPORT_HEADERS =
+            new HashSet<>(
+                    Arrays.asList(
+                            "accept-encoding",
+                            "connection",
+                            "content-length",
+                            "date",
+                            "expect",
+                            "host",
+                            "keep-alive",
+                            "transfer-encoding",
+                            "user-agent",
+                            "x-request-id",
+                            "x-request-priority",
+                            "x-request-timeout"));
+
+    private int maxSize;
+    private long ttl;
+    private ModelMetrics metrics;
+    private LinkedHashMap<ByteBuffer, Entry> entries;
+    private Map<ByteBuffer, List<Job>> inflight;
+    private FrequencySketch sketch;
+
+    /**
+     * Constructs a new {@code ResponseCache} instance.
+     *
+     * @param maxSize the maximum number of cached responses
+     * @param ttl the time to live of a cached response in seconds, 0 for no expiration
+     * @param metrics the metrics of the model
+     */
+    ResponseCache(int maxSize, int ttl, ModelMetrics metrics) {
+        this.maxSize = maxSize;
+        this.ttl = ttl > 0 ? TimeUnit.SECONDS.toNanos(ttl) : Long.MAX_VALUE;
+        this.metrics = metrics;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        inflight = new HashMap<>();
+        sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     *
+     * @return the maximum number of cached responses
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the time to live of a cached response in seconds.
+     *
+     * @return the time to live of a cached response in seconds, 0 for no expiration
+     */
+    int getTtl() {
+        return ttl == Long.MAX_VALUE ? 0 : (int) TimeUnit.NANOSECONDS.toSeconds(ttl);
+    }
+
+    /**
+     * Serves the job from the cache or attaches it to an identical job in flight.
+     *
+     * <p>If the job is neither, it becomes the job that the later identical jobs wait for, and it
+     * must be queued by the caller.
+     *
+     * @param job the job to look up
+     * @return {@code true} if the job is handled by the cache and must not be queued
+     */
+    boolean lookup(Job job) {
+        ByteBuffer key = hash(job.getInput());
+        Output output;
+        synchronized (this) {
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expireAt - System.nanoTime() < 0) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry != null) {
+                output = entry.output;
+            } else {
+                List<Job> followers = inflight.get(key);
+                if (followers != null) {
+                    followers.add(job);
+                    metrics.onCacheLookup(ModelMetrics.CacheLookup.COALESCED);
+                    return true;
+                }
+                inflight.put(key, new ArrayList<>());
+                job.setResponseCache(this, key);
+                metrics.onCacheLookup(ModelMetrics.CacheLookup.MISS);
+                return false;
+            }
+        }
+        metrics.onCacheLookup(ModelMetrics.CacheLookup.HIT);
+        job.sendOutput(output);
+        return true;
+    }
+
+    /**
+     * Caches the response of a job and sends it to the identical jobs that waited for it.
+     *
+     * @param key the hash of the input of the job
+     * @param output the response of the job
+     */
+    void complete(ByteBuffer key, Output output) {
+        List<Job> followers;
+        synchronized (this) {
+            followers = inflight.remove(key);
+            if (output.getCode() == HttpResponseStatus.OK.code()) {
+                put(key, output);
+            }
+        }
+        if (followers != null) {
+            for (Job job : followers) {
+                job.sendOutput(output);
+            }
+        }
+    }
+
+    /**
+     * Sends an error to the identical jobs that waited for a failed job.
+     *
+     * @param key the hash of the input of the failed job
+     * @param status the HTTP status
+     * @param error the error message
+     */
+    void fail(ByteBuffer key, HttpResponseStatus status, String error) {
+        List<Job> followers;
+        synchronized (this) {
+            followers = inflight.remove(key);
+        }
+        if (followers != null) {
+            for (Job job : followers) {
+                job.sendError(status, error);
+            }
+        }
+    }
+
+    private void put(ByteBuffer key, Output output) {
+        if (entries.size() >= maxSize && !entries.containsKey(key)) {
+            Iterator<Map.Entry<ByteBuffer, Entry>> it = entries.entrySet().iterator();
+            ByteBuffer victim = it.next().getKey();
+            if (sketch.frequency(key) <= sketch.frequency(victim)) {
+                return;
+            }
+            it.remove();
+        }
+        entries.put(key, new Entry(output, System.nanoTime() + ttl));
+    }
+
+    private static ByteBuffer hash(Input input) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 algorithm not found.", e);
+        }
+        // the properties, such as the NDList marker, may change how the same bytes are interpreted
+        Map<String, String> properties = new TreeMap<>();
+        if (input.getProperties() != null) {
+            for (Map.Entry<String, String> entry : input.getProperties().entrySet()) {
+                String name = entry.getKey().toLowerCase(Locale.ROOT);
+                if (!TRANSPORT_HEADERS.contains(name)) {
+                    properties.put(name, entry.getValue());
+                }
+            }
+        }
+        ByteBuffer len = ByteBuffer.allocate(4);
+        update(md, len, properties.size());
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            update(md, len, entry.getKey());
+            update(md, len, entry.getValue());
+        }
+        for (Pair<String, ByteBuffer> pair : input.getAsByteBuffers()) {
+            update(md, len, pair.getKey());
+            ByteBuffer data = pair.getValue();
+            update(md, len, data.remaining());
+            md.update(data);
+        }
+        return ByteBuffer.wrap(md.digest());
+    }
+
+    private static void update(MessageDigest md, ByteBuffer len, String value) {
+        if (value == null) {
+            update(md, len, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(md, len, bytes.length);
+        md.update(bytes);
+    }
+
+    private static void update(MessageDigest md, ByteBuffer len, int value) {
+        len.clear();
+        md.update(len.putInt(value).array());
+    }
+
+    /** A cached response. */
+    private static final class Entry {
+
+        Output output;
+        long expireAt;
+
+        Entry(Output output, long expireAt) {
+            this.output = output;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters that estimates how often an input was requested.
+     *
+     * <p>All counters are halved after a number of increments proportional to the cache size, so
+     * the estimate follows the recent popularity of the inputs.
+     */
+    private static final class FrequencySketch {
+
+        private static final int MAX_COUNT = 15;
+
+        private byte[] table;
+        private int mask;
+        private int resetSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int size = Integer.highestOneBit(Math.max(maxSize, 8) * 8 - 1) << 1;
+            table = new byte[size];
+            mask = size - 1;
+            resetSize = Math.max(maxSize, 8) * 10;
+        }
+
+        void increment(ByteBuffer key) {
+            boolean added = false;
+            // the key is a SHA-256 hash, each 4 bytes of it is an independent hash
+            for (int i = 0; i < 4; ++i) {
+                int index = key.getInt(i * 4) & mask;
+                if (table[index] < MAX_COUNT) {
+                    ++table[index];
+                    added = true;
+                }
+            }
+            if (added && ++additions >= resetSize) {
+                for (int i = 0; i < table.length; ++i) {
+                    table[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(ByteBuffer key) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < 4; ++i) {
+                frequency = Math.min(frequency, table[key.getInt(i * 4) & mask]);
+            }
+            return frequency;
+        }
+    }
+}
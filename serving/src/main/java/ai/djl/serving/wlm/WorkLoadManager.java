@@ -12,45 +12,63 @@
  */
 package ai.djl.serving.wlm;
 
+import ai.djl.engine.Engine;
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.repository.zoo.ZooModel;
 import ai.djl.serving.util.ConfigManager;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class WorkLoadManager {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkLoadManager.class);
+
     private ConfigManager configManager;
     private AtomicInteger gpuCounter;
     private ExecutorService threadPool;
-    private ConcurrentHashMap<String, List<WorkerThread>> workers;
+    private FairScheduler scheduler;
+    private ConcurrentHashMap<ModelInfo, List<WorkerThread>> workers;
+    private Set<String> sharedThreadPools;
 
     public WorkLoadManager(ConfigManager configManager) {
         this.configManager = configManager;
         this.gpuCounter = new AtomicInteger(0);
         threadPool = Executors.newCachedThreadPool();
+        scheduler =
+                new FairScheduler(
+                        configManager.getMaxConcurrentBatches(),
+                        configManager.getMaxPriorityWait());
         workers = new ConcurrentHashMap<>();
+        sharedThreadPools = ConcurrentHashMap.newKeySet();
     }
 
-    public List<WorkerThread> getWorkers(String modelName) {
-        List<WorkerThread> list = workers.get(modelName);
+    public List<WorkerThread> getWorkers(ModelInfo modelInfo) {
+        List<WorkerThread> list = workers.get(modelInfo);
         if (list == null) {
             return Collections.emptyList();
         }
         return list;
     }
 
-    public boolean hasWorker(String modelName) {
-        List<WorkerThread> worker = workers.get(modelName);
+    public boolean hasWorker(ModelInfo modelInfo) {
+        List<WorkerThread> worker = workers.get(modelInfo);
         return worker != null && !worker.isEmpty();
     }
 
-    public int getNumRunningWorkers(String modelName) {
+    public int getNumRunningWorkers(ModelInfo modelInfo) {
         int numWorking = 0;
-        List<WorkerThread> threads = workers.get(modelName);
+        List<WorkerThread> threads = workers.get(modelInfo);
         if (threads != null) {
             for (WorkerThread thread : threads) {
                 if ((thread.getState() != WorkerState.WORKER_STOPPED)
@@ -63,18 +81,24 @@ class WorkLoadManager {
         return numWorking;
     }
 
+    public int getNumWorkers(ModelInfo modelInfo) {
+        List<WorkerThread> threads = workers.get(modelInfo);
+        return threads == null ? 0 : threads.size();
+    }
+
     public void modelChanged(ModelInfo modelInfo) {
-        synchronized (modelInfo.getModelName()) {
+        synchronized (modelInfo) {
             int minWorker = modelInfo.getMinWorkers();
             int maxWorker = modelInfo.getMaxWorkers();
             List<WorkerThread> threads;
-            if (minWorker == 0) {
-                threads = workers.remove(modelInfo.getModelName());
+            if (maxWorker == 0) {
+                threads = workers.remove(modelInfo);
+                scheduler.remove(modelInfo.getModelName());
                 if (threads == null) {
                     return;
                 }
             } else {
-                threads = workers.computeIfAbsent(modelInfo.getModelName(), k -> new ArrayList<>());
+                threads = workers.computeIfAbsent(modelInfo, k -> new CopyOnWriteArrayList<>());
             }
 
             int currentWorkers = threads.size();
@@ -85,27 +109,204 @@ class WorkLoadManager {
                     WorkerThread thread = threads.remove(i);
                     thread.shutdown();
                 }
+                divideCpuCores();
+            }
+        }
+    }
+
+    /**
+     * Adds a worker to the model if it has less than its maximum number of workers.
+     *
+     * @param modelInfo the model to scale up
+     * @return {@code true} if a worker was added
+     */
+    public boolean addWorker(ModelInfo modelInfo) {
+        synchronized (modelInfo) {
+            int maxWorker = modelInfo.getMaxWorkers();
+            if (maxWorker == 0) {
+                return false;
+            }
+            List<WorkerThread> threads =
+                    workers.computeIfAbsent(modelInfo, k -> new CopyOnWriteArrayList<>());
+            if (threads.size() >= maxWorker || !modelInfo.isLoaded()) {
+                return false;
+            }
+            addThreads(threads, modelInfo, 1);
+            return true;
+        }
+    }
+
+    /**
+     * Gracefully stops the most recently added worker of the model, the batch it is processing is
+     * completed first.
+     *
+     * @param modelInfo the model to scale down
+     * @return {@code true} if a worker was removed
+     */
+    public boolean removeWorker(ModelInfo modelInfo) {
+        synchronized (modelInfo) {
+            List<WorkerThread> threads = workers.get(modelInfo);
+            if (threads == null || threads.isEmpty()) {
+                return false;
             }
+            WorkerThread thread = threads.remove(threads.size() - 1);
+            thread.shutdown();
+            divideCpuCores();
+            return true;
         }
     }
 
+    /**
+     * Stops all workers of the model and waits until they have completed the batches they are
+     * processing.
+     *
+     * @param modelInfo the model to stop
+     * @param timeout the maximum time to wait in milliseconds
+     * @return {@code true} if all workers have stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean stopWorkers(ModelInfo modelInfo, long timeout) throws InterruptedException {
+        List<WorkerThread> threads;
+        synchronized (modelInfo) {
+            threads = workers.remove(modelInfo);
+            scheduler.remove(modelInfo.getModelName());
+        }
+        if (threads == null) {
+            return true;
+        }
+        divideCpuCores();
+        for (WorkerThread thread : threads) {
+            thread.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        for (WorkerThread thread : threads) {
+            if (!thread.awaitStop(Math.max(deadline - System.currentTimeMillis(), 0))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of intra-op threads of all CPU workers.
+     *
+     * @return the number of intra-op threads of all CPU workers
+     */
+    public int getCpuThreads() {
+        int total = 0;
+        // the worker lists are copied on write, so they are iterated over a snapshot
+        for (List<WorkerThread> threads : workers.values()) {
+            for (WorkerThread thread : threads) {
+                total += thread.getNumThreads();
+            }
+        }
+        return total;
+    }
+
     public void scheduleAsync(Runnable r) {
         threadPool.execute(r);
     }
 
     private void addThreads(List<WorkerThread> threads, ModelInfo model, int count) {
+        if (!model.isLoaded()) {
+            // the workers are started when the model is loaded again
+            return;
+        }
         int maxGpu = configManager.getNumberOfGpu();
+        List<WorkerThread> added = new ArrayList<>(count);
         for (int i = 0; i < count; ++i) {
             int gpuId = -1;
 
             if (maxGpu > 0) {
                 gpuId = gpuCounter.accumulateAndGet(maxGpu, (prev, maxGpuId) -> ++prev % maxGpuId);
+            } else if (!hasPerThreadLimit(model)) {
+                useAllCores(model.getModel().getNDManager().getEngine());
             }
 
             BatchAggregator aggregator = new BatchAggregator(model);
-            WorkerThread thread = new WorkerThread(gpuId, model, aggregator);
-            threads.add(thread);
+            WorkerThread thread =
+                    new WorkerThread(
+                            gpuId,
+                            model,
+                            aggregator,
+                            scheduler,
+                            configManager.isWorkerPipelining());
+            added.add(thread);
+        }
+        threads.addAll(added);
+        // the new workers start with their share of the cores
+        divideCpuCores();
+        for (WorkerThread thread : added) {
             threadPool.submit(thread);
         }
     }
+
+    /**
+     * Returns whether the engine of the model limits the intra-op threads of each worker, see
+     * {@link Engine#isNumThreadsPerThread()}.
+     *
+     * @param model the model
+     * @return {@code true} if each worker of the model can be given its own share of the cores
+     */
+    boolean hasPerThreadLimit(ModelInfo model) {
+        ZooModel<Input, Output> loaded = model.getModel();
+        return loaded != null && loaded.getNDManager().getEngine().isNumThreadsPerThread();
+    }
+
+    /**
+     * Sizes the thread pool that an engine shares among all threads of the process to all cores,
+     * once, since it cannot be divided among the workers.
+     *
+     * @param engine the engine with a shared thread pool
+     */
+    private void useAllCores(Engine engine) {
+        if (sharedThreadPools.add(engine.getEngineName())) {
+            engine.setNumThreads(configManager.getNumberOfCpuCores());
+        }
+    }
+
+    /**
+     * Divides the CPU cores evenly among the CPU workers of all models, the CPU analogue of the GPU
+     * assignment. It is called whenever workers are added or removed, and the workers apply their
+     * new share before their next batch.
+     *
+     * <p>Only the workers of engines that limit the threads of each calling thread get a share, the
+     * others use the thread pool of their engine that is shared by the process.
+     */
+    private synchronized void divideCpuCores() {
+        int cpuWorkers = 0;
+        for (Map.Entry<ModelInfo, List<WorkerThread>> entry : workers.entrySet()) {
+            if (hasPerThreadLimit(entry.getKey())) {
+                for (WorkerThread thread : entry.getValue()) {
+                    if (thread.getGpuId() < 0) {
+                        ++cpuWorkers;
+                    }
+                }
+            }
+        }
+        if (cpuWorkers == 0) {
+            return;
+        }
+        int cores = configManager.getNumberOfCpuCores();
+        int numThreads = configManager.getThreadsPerWorker();
+        if (numThreads == 0) {
+            numThreads = Math.max(1, cores / cpuWorkers);
+        }
+        if (numThreads * cpuWorkers > cores) {
+            logger.warn(
+                    "{} CPU workers use {} threads each on {} cores.",
+                    cpuWorkers,
+                    numThreads,
+                    cores);
+        }
+        for (Map.Entry<ModelInfo, List<WorkerThread>> entry : workers.entrySet()) {
+            if (hasPerThreadLimit(entry.getKey())) {
+                for (WorkerThread thread : entry.getValue()) {
+                    if (thread.getGpuId() < 0) {
+                        thread.setNumThreads(numThreads);
+                    }
+                }
+            }
+        }
+    }
 }
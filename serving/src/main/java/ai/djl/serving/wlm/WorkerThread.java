@@ -12,11 +12,25 @@
  */
 package ai.djl.serving.wlm;
 
+import ai.djl.inference.PredictionBatch;
 import ai.djl.inference.Predictor;
 import ai.djl.modality.Input;
 import ai.djl.modality.Output;
+import ai.djl.serving.http.NDListContent;
+import ai.djl.translate.Batchifier;
 import ai.djl.translate.TranslateException;
+import ai.djl.translate.Translator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -28,26 +42,42 @@ class WorkerThread implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(WorkerThread.class);
 
     private static final AtomicInteger WORKER_COUNTER = new AtomicInteger(1);
+    private static final PipelineBatch END = new PipelineBatch(null, null, null);
 
     private ModelInfo model;
     private Predictor<Input, Output> predictor;
+    private Predictor<Input, Output> ndListPredictor;
+    private Predictor<Input, Output> batchedPredictor;
 
     private AtomicBoolean running = new AtomicBoolean(true);
+    private volatile boolean waiting;
+    private CountDownLatch stopped = new CountDownLatch(1);
 
     private BatchAggregator aggregator;
+    private FairScheduler scheduler;
     private int gpuId;
+    private volatile int numThreads;
+    private boolean pipelined;
     private AtomicReference<Thread> currentThread = new AtomicReference<>();
     private WorkerState state;
     private int workerId;
     private long startTime;
 
-    public WorkerThread(int gpuId, ModelInfo model, BatchAggregator aggregator) {
+    public WorkerThread(
+            int gpuId,
+            ModelInfo model,
+            BatchAggregator aggregator,
+            FairScheduler scheduler,
+            boolean pipelined) {
         this.model = model;
         this.aggregator = aggregator;
+        this.scheduler = scheduler;
         this.gpuId = gpuId;
+        this.pipelined = pipelined;
         this.workerId = WORKER_COUNTER.getAndIncrement();
         this.startTime = System.currentTimeMillis();
         predictor = model.getModel().newPredictor();
+        state = WorkerState.WORKER_STARTED;
     }
 
     @Override
@@ -55,24 +85,410 @@ class WorkerThread implements Runnable {
         Thread thread = Thread.currentThread();
         thread.setName(getWorkerName());
         currentThread.set(thread);
+        int threads = limitThreads(0);
         List<Input> req = null;
         try {
-            while (isRunning()) {
+            warmup();
+            setState(WorkerState.WORKER_MODEL_LOADED);
+            if (pipelined) {
+                servePipelined();
+                return;
+            }
+            while (true) {
+                waiting = true;
+                if (!isRunning()) {
+                    break;
+                }
                 req = aggregator.getRequest();
-                List<Output> reply = predictor.batchPredict(req);
-                aggregator.sendResponse(reply);
+                onJobsTaken();
+                threads = limitThreads(threads);
+                int batchSize = req.size();
+                FairScheduler.Ticket ticket =
+                        scheduler.acquire(
+                                model.getModelName(),
+                                model.getWeight(),
+                                aggregator.getPriority(),
+                                model.estimateLatency(batchSize));
+                long begin = System.nanoTime();
+                List<Output> reply;
+                try {
+                    reply = predict(req);
+                } catch (IllegalArgumentException e) {
+                    // invalid client input only fails the batch
+                    logger.debug("Invalid input", e);
+                    aggregator.sendError(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+                    req = null;
+                    continue;
+                } catch (TranslateException | RuntimeException e) {
+                    // a failed batch must not stop the worker
+                    logger.warn("Failed to predict", e);
+                    aggregator.sendError();
+                    req = null;
+                    continue;
+                } finally {
+                    scheduler.release(ticket, System.nanoTime() - begin);
+                }
+                model.onBatchCompleted(batchSize, System.nanoTime() - begin);
+                try {
+                    aggregator.sendResponse(reply);
+                } catch (RuntimeException e) {
+                    // outputs that do not match the batch must not stop the worker
+                    logger.warn("Failed to send the response", e);
+                    aggregator.sendError();
+                }
                 req = null;
             }
         } catch (InterruptedException e) {
             logger.debug("Shutting down the thread .. Scaling down.");
-        } catch (TranslateException e) {
-            logger.warn("Failed to predict", e);
         } finally {
             currentThread.set(null);
             if (req != null) {
                 aggregator.sendError();
             }
+            predictor.close();
+            if (ndListPredictor != null) {
+                ndListPredictor.close();
+            }
+            if (batchedPredictor != null) {
+                batchedPredictor.close();
+            }
             setState(WorkerState.WORKER_STOPPED);
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Runs the warmup inputs of the model at each configured batch size, so the first jobs do not
+     * pay for lazy initialization in the translator and the engine.
+     *
+     * <p>The warmup runs before the worker is {@link WorkerState#WORKER_MODEL_LOADED}. It bypasses
+     * the {@link FairScheduler} and is neither counted in the request metrics nor in the latency
+     * estimate of the model, only its duration is recorded.
+     */
+    private void warmup() {
+        List<Input> samples = model.getWarmupInputs();
+        if (samples.isEmpty()) {
+            return;
+        }
+        long begin = System.nanoTime();
+        Set<Integer> batchSizes = new TreeSet<>();
+        batchSizes.add(model.getBatchSize());
+        batchSizes.add(model.getMaxBatchSize());
+        for (int batchSize : batchSizes) {
+            // every sample is run at least once at each batch size
+            for (int start = 0; start < samples.size(); start += batchSize) {
+                if (!isRunning()) {
+                    return;
+                }
+                List<Input> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; ++i) {
+                    batch.add(samples.get((start + i) % samples.size()));
+                }
+                try {
+                    predict(batch);
+                } catch (TranslateException | RuntimeException e) {
+                    // a failed warmup must not prevent the worker from serving
+                    logger.warn("Failed to warm up model: " + model.getModelName(), e);
+                    return;
+                }
+            }
+        }
+        long duration = System.nanoTime() - begin;
+        model.getMetrics().recordWarmupTime(duration);
+        logger.info(
+                "{} warmed up in {} ms.",
+                getWorkerName(),
+                TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+
+    /**
+     * Runs inference on a batch, requests in {@link NDListContent} format bypass the translator of
+     * the model.
+     *
+     * @param inputs the batch of inputs
+     * @return the outputs in the same order as the inputs
+     * @throws TranslateException if failed to run inference
+     */
+    private List<Output> predict(List<Input> inputs) throws TranslateException {
+        List<Group> groups = partition(inputs);
+        if (groups.size() == 1) {
+            return groups.get(0).predictor.batchPredict(inputs);
+        }
+
+        Map<Input, Output> outputs = new IdentityHashMap<>(inputs.size());
+        for (Group group : groups) {
+            collect(group.inputs, group.predictor.batchPredict(group.inputs), outputs);
+        }
+        return reorder(inputs, outputs);
+    }
+
+    /**
+     * Runs the worker as a pipeline of three threads, so the pre-processing of the next batch and
+     * the post-processing of the previous batch overlap the inference of the current batch.
+     *
+     * <p>This thread runs the inference stage. The pre-processing thread polls the jobs, it is the
+     * thread that {@link #shutdown()} interrupts. Only the inference stage is scheduled by the
+     * {@link FairScheduler} and counted in the latency estimate of the model.
+     *
+     * @throws InterruptedException if interrupted while waiting for the other stages
+     */
+    private void servePipelined() throws InterruptedException {
+        BlockingQueue<PipelineBatch> inferenceQueue = new ArrayBlockingQueue<>(1);
+        BlockingQueue<PipelineBatch> postprocessQueue = new ArrayBlockingQueue<>(1);
+        Thread preprocessor = startStage("-pre", () -> preprocessStage(inferenceQueue));
+        Thread postprocessor = startStage("-post", () -> postprocessStage(postprocessQueue));
+        boolean completed = false;
+        int threads = 0;
+        try {
+            while (true) {
+                PipelineBatch batch = inferenceQueue.take();
+                if (batch == END) {
+                    break;
+                }
+                threads = limitThreads(threads);
+                if (forward(batch)) {
+                    postprocessQueue.put(batch);
+                }
+            }
+            postprocessQueue.put(END);
+            completed = true;
+        } finally {
+            if (!completed) {
+                preprocessor.interrupt();
+                postprocessor.interrupt();
+            }
+            // the predictors are closed once all stages are done with them
+            preprocessor.join();
+            postprocessor.join();
+        }
+    }
+
+    /**
+     * Limits the operators called from the current thread to the CPU budget of the worker, so the
+     * workers of all models together do not use more threads than there are cores.
+     *
+     * <p>The budget changes when workers are added or removed, it is applied again before each
+     * batch if it changed since the last call from the current thread. The workers of engines that
+     * share one thread pool in the process have no budget, the pool is sized once by the {@link
+     * WorkLoadManager}.
+     *
+     * @param applied the budget applied by the last call from the current thread, 0 if none
+     * @return the budget applied to the current thread
+     */
+    private int limitThreads(int applied) {
+        int budget = numThreads;
+        if (budget > 0 && budget != applied) {
+            model.getModel().getNDManager().getEngine().setNumThreads(budget);
+            return budget;
+        }
+        return applied;
+    }
+
+    private Thread startStage(String suffix, Runnable stage) {
+        Thread thread = new Thread(stage, getWorkerName() + suffix);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void preprocessStage(BlockingQueue<PipelineBatch> out) {
+        currentThread.set(Thread.currentThread());
+        int threads = 0;
+        try {
+            while (true) {
+                waiting = true;
+                if (!isRunning()) {
+                    break;
+                }
+                BatchAggregator batchAggregator = new BatchAggregator(model);
+                List<Input> inputs = batchAggregator.getRequest();
+                onJobsTaken();
+                threads = limitThreads(threads);
+                PipelineBatch batch = preprocess(batchAggregator, inputs);
+                if (batch == null) {
+                    continue;
+                }
+                try {
+                    out.put(batch);
+                } catch (InterruptedException e) {
+                    fail(batch, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Shutting down the thread .. Scaling down.");
+        } finally {
+            currentThread.compareAndSet(Thread.currentThread(), null);
+            try {
+                out.put(END);
+            } catch (InterruptedException e) {
+                // the inference stage has stopped already
+                logger.trace("Inference stage stopped before the pre-processing stage.");
+            }
+        }
+    }
+
+    /**
+     * Clears the interrupt of a shutdown that arrived while the jobs were being taken, so it does
+     * not abort them. The worker stops after dispatching the jobs.
+     */
+    private synchronized void onJobsTaken() {
+        waiting = false;
+        Thread.interrupted();
+    }
+
+    private PipelineBatch preprocess(BatchAggregator batchAggregator, List<Input> inputs) {
+        PipelineBatch batch = new PipelineBatch(batchAggregator, inputs, partition(inputs));
+        try {
+            for (Group group : batch.groups) {
+                group.batch = group.predictor.preprocess(group.inputs);
+            }
+            return batch;
+        } catch (IllegalArgumentException e) {
+            // invalid client input only fails the batch
+            logger.debug("Invalid input", e);
+            fail(batch, HttpResponseStatus.BAD_REQUEST, e.getMessage());
+        } catch (TranslateException | RuntimeException e) {
+            logger.warn("Failed to predict", e);
+            fail(batch, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+        }
+        return null;
+    }
+
+    private boolean forward(PipelineBatch batch) throws InterruptedException {
+        int batchSize = batch.inputs.size();
+        FairScheduler.Ticket ticket;
+        try {
+            ticket =
+                    scheduler.acquire(
+                            model.getModelName(),
+                            model.getWeight(),
+                            batch.aggregator.getPriority(),
+                            model.estimateLatency(batchSize));
+        } catch (InterruptedException e) {
+            fail(batch, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+            throw e;
+        }
+        long begin = System.nanoTime();
+        try {
+            for (Group group : batch.groups) {
+                group.predictor.forward(group.batch);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to predict", e);
+            fail(batch, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+            return false;
+        } finally {
+            scheduler.release(ticket, System.nanoTime() - begin);
+        }
+        model.onBatchCompleted(batchSize, System.nanoTime() - begin);
+        return true;
+    }
+
+    private void postprocessStage(BlockingQueue<PipelineBatch> in) {
+        int threads = 0;
+        while (true) {
+            PipelineBatch batch;
+            try {
+                batch = in.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch == END) {
+                break;
+            }
+            threads = limitThreads(threads);
+            postprocess(batch);
+        }
+    }
+
+    private void postprocess(PipelineBatch batch) {
+        try {
+            Map<Input, Output> outputs = new IdentityHashMap<>(batch.inputs.size());
+            for (Group group : batch.groups) {
+                PredictionBatch predictionBatch = group.batch;
+                // postprocess releases the batch whether it succeeds or not
+                group.batch = null;
+                collect(group.inputs, group.predictor.postprocess(predictionBatch), outputs);
+            }
+            batch.aggregator.sendResponse(reorder(batch.inputs, outputs));
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid input", e);
+            fail(batch, HttpResponseStatus.BAD_REQUEST, e.getMessage());
+        } catch (TranslateException | RuntimeException e) {
+            logger.warn("Failed to predict", e);
+            fail(batch, HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+        }
+    }
+
+    private static void fail(PipelineBatch batch, HttpResponseStatus status, String error) {
+        for (Group group : batch.groups) {
+            if (group.batch != null) {
+                group.batch.close();
+                group.batch = null;
+            }
+        }
+        batch.aggregator.sendError(status, error);
+    }
+
+    /**
+     * Splits a batch by the predictor that processes the inputs, requests in {@link
+     * NDListContent} format bypass the translator of the model.
+     *
+     * @param inputs the batch of inputs
+     * @return the groups of inputs that share a predictor
+     */
+    private List<Group> partition(List<Input> inputs) {
+        List<Group> groups = new ArrayList<>(1);
+        Group others = null;
+        Group ndLists = null;
+        Group batched = null;
+        for (Input input : inputs) {
+            Group group;
+            if (!NDListContent.isNDList(input)) {
+                if (others == null) {
+                    others = new Group(predictor);
+                    groups.add(others);
+                }
+                group = others;
+            } else if (NDListContent.isBatched(input)) {
+                if (batched == null) {
+                    if (batchedPredictor == null) {
+                        batchedPredictor =
+                                model.getModel().newPredictor(new NDListTranslator(null));
+                    }
+                    batched = new Group(batchedPredictor);
+                    groups.add(batched);
+                }
+                group = batched;
+            } else {
+                if (ndLists == null) {
+                    if (ndListPredictor == null) {
+                        Translator<Input, Output> translator =
+                                new NDListTranslator(Batchifier.STACK);
+                        ndListPredictor = model.getModel().newPredictor(translator);
+                    }
+                    ndLists = new Group(ndListPredictor);
+                    groups.add(ndLists);
+                }
+                group = ndLists;
+            }
+            group.inputs.add(input);
+        }
+        return groups;
+    }
+
+    private static List<Output> reorder(List<Input> inputs, Map<Input, Output> outputs) {
+        List<Output> ret = new ArrayList<>(inputs.size());
+        for (Input input : inputs) {
+            ret.add(outputs.get(input));
+        }
+        return ret;
+    }
+
+    private static void collect(List<Input> inputs, List<Output> results, Map<Input, Output> map) {
+        for (int i = 0; i < inputs.size(); ++i) {
+            map.put(inputs.get(i), results.get(i));
         }
     }
 
@@ -88,6 +504,19 @@ class WorkerThread implements Runnable {
         return gpuId;
     }
 
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Sets the CPU budget of the worker, the worker applies it before its next batch.
+     *
+     * @param numThreads the number of intra-op threads
+     */
+    void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     public long getStartTime() {
         return startTime;
     }
@@ -96,16 +525,34 @@ class WorkerThread implements Runnable {
         return state;
     }
 
+    /**
+     * Stops the worker after the batch that is currently being processed, if any, is completed.
+     */
     public void shutdown() {
         running.set(false);
         setState(WorkerState.WORKER_SCALED_DOWN);
-        Thread thread = currentThread.getAndSet(null);
-        if (thread != null) {
-            thread.interrupt();
-            aggregator.sendError();
+        synchronized (this) {
+            if (waiting) {
+                // only interrupt the worker while it is waiting for jobs, never during inference
+                Thread thread = currentThread.get();
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
         }
     }
 
+    /**
+     * Waits until the worker has stopped and released its predictors.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @return {@code true} if the worker has stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitStop(long timeout) throws InterruptedException {
+        return stopped.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
     private String getWorkerName() {
         String modelName = model.getModelName();
         if (modelName.length() > 25) {
@@ -121,4 +568,31 @@ class WorkerThread implements Runnable {
             this.state = newState;
         }
     }
+
+    /** The inputs of a batch that are processed by the same predictor. */
+    private static final class Group {
+
+        Predictor<Input, Output> predictor;
+        List<Input> inputs;
+        PredictionBatch batch;
+
+        Group(Predictor<Input, Output> predictor) {
+            this.predictor = predictor;
+            inputs = new ArrayList<>();
+        }
+    }
+
+    /** A batch of jobs that flows through the stages of a pipelined worker. */
+    private static final class PipelineBatch {
+
+        BatchAggregator aggregator;
+        List<Input> inputs;
+        List<Group> groups;
+
+        PipelineBatch(BatchAggregator aggregator, List<Input> inputs, List<Group> groups) {
+            this.aggregator = aggregator;
+            this.inputs = inputs;
+            this.groups = groups;
+        }
+    }
 }
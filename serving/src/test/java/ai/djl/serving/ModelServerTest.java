@@ -12,26 +12,40 @@
  */
 package ai.djl.serving;
 
+import ai.djl.ModelException;
 import ai.djl.modality.Classifications;
+import ai.djl.modality.Input;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
 import ai.djl.serving.http.DescribeModelResponse;
 import ai.djl.serving.http.ErrorResponse;
 import ai.djl.serving.http.ListModelsResponse;
+import ai.djl.serving.http.NDListContent;
 import ai.djl.serving.http.StatusResponse;
+import ai.djl.serving.metrics.ModelMetrics;
 import ai.djl.serving.util.ConfigManager;
 import ai.djl.serving.util.Connector;
+import ai.djl.serving.wlm.Job;
+import ai.djl.serving.wlm.ModelInfo;
+import ai.djl.serving.wlm.ModelManager;
+import ai.djl.serving.wlm.ModelWarmupTest;
 import ai.djl.util.JsonUtils;
 import ai.djl.util.Utils;
 import ai.djl.util.cuda.CudaUtils;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpClientCodec;
@@ -87,6 +101,7 @@ public class ModelServerTest {
     CountDownLatch latch;
     HttpResponseStatus httpStatus;
     String result;
+    byte[] content;
     HttpHeaders headers;
 
     static {
@@ -131,7 +146,7 @@ public class ModelServerTest {
     @Test
     public void test()
             throws InterruptedException, HttpPostRequestEncoder.ErrorDataEncoderException,
-                    IOException {
+                    IOException, ModelException {
         Assert.assertTrue(server.isRunning());
 
         Channel channel = null;
@@ -152,6 +167,7 @@ public class ModelServerTest {
         testPredictions(channel);
         testInvocations(channel);
         testInvocationsMultipart(channel);
+        testPredictionsNDList(channel);
         testDescribeApi(channel);
 
         // management API
@@ -159,6 +175,10 @@ public class ModelServerTest {
         testRegisterModelAsync(channel);
         testScaleModel(channel);
         testDescribeModel(channel);
+        testPredictionsCached(channel);
+        testMetrics(channel);
+        testWarmup(channel);
+        testModelVersions(channel);
         testUnregisterModel(channel);
 
         testPredictionsInvalidRequestSize(channel);
@@ -181,6 +201,8 @@ public class ModelServerTest {
         testRegisterModelMissingUrl();
         testRegisterModelNotFound();
         testRegisterModelConflict();
+        testServiceUnavailableRetryAfter();
+        testClientDisconnected();
         testServiceUnavailable();
     }
 
@@ -222,6 +244,30 @@ public class ModelServerTest {
         Assert.assertEquals(classifications.best().getClassName(), "0");
     }
 
+    private void testPredictionsCached(Channel channel) throws InterruptedException {
+        // the third request differs in a header, so it is not served from the cache
+        for (int i = 0; i < 3; ++i) {
+            result = null;
+            latch = new CountDownLatch(1);
+            DefaultFullHttpRequest req =
+                    new DefaultFullHttpRequest(
+                            HttpVersion.HTTP_1_1, HttpMethod.POST, "/predictions/mlp_2");
+            req.content().writeBytes(testImage);
+            HttpUtil.setContentLength(req, req.content().readableBytes());
+            req.headers()
+                    .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_OCTET_STREAM);
+            if (i == 2) {
+                req.headers().set(HttpHeaderNames.ACCEPT, HttpHeaderValues.APPLICATION_JSON);
+            }
+            channel.writeAndFlush(req);
+
+            latch.await();
+            Classifications classifications =
+                    JsonUtils.GSON.fromJson(result, Classifications.class);
+            Assert.assertEquals(classifications.best().getClassName(), "0");
+        }
+    }
+
     private void testInvocations(Channel channel) throws InterruptedException {
         result = null;
         latch = new CountDownLatch(1);
@@ -266,6 +312,96 @@ public class ModelServerTest {
         Assert.assertEquals(classifications.best().getClassName(), "0");
     }
 
+    private void testPredictionsNDList(Channel channel) throws InterruptedException {
+        try (NDManager manager = NDManager.newBaseManager()) {
+            NDList list = new NDList(manager.zeros(new Shape(1, 28, 28)));
+            NDList output = predictNDList(channel, manager, list, false);
+            Assert.assertEquals(output.singletonOrThrow().getShape(), new Shape(10));
+
+            // pre-batched tensor
+            list = new NDList(manager.zeros(new Shape(2, 1, 28, 28)));
+            output = predictNDList(channel, manager, list, true);
+            Assert.assertEquals(output.singletonOrThrow().getShape(), new Shape(2, 10));
+
+            // a failed batch must not stop the worker
+            list = new NDList(manager.zeros(new Shape(1, 5, 5)));
+            sendNDList(channel, list, false);
+            Assert.assertEquals(httpStatus, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+
+            list = new NDList(manager.zeros(new Shape(1, 28, 28)));
+            output = predictNDList(channel, manager, list, false);
+            Assert.assertEquals(output.singletonOrThrow().getShape(), new Shape(10));
+        }
+    }
+
+    private NDList predictNDList(Channel channel, NDManager manager, NDList list, boolean batched)
+            throws InterruptedException {
+        sendNDList(channel, list, batched);
+        Assert.assertEquals(httpStatus, HttpResponseStatus.OK);
+        Assert.assertEquals(headers.get(HttpHeaderNames.CONTENT_TYPE), NDListContent.CONTENT_TYPE);
+        return NDList.decode(manager, content);
+    }
+
+    private void sendNDList(Channel channel, NDList list, boolean batched)
+            throws InterruptedException {
+        content = null;
+        latch = new CountDownLatch(1);
+        DefaultFullHttpRequest req =
+                new DefaultFullHttpRequest(
+                        HttpVersion.HTTP_1_1, HttpMethod.POST, "/predictions/mlp");
+        req.content().writeBytes(list.encode());
+        HttpUtil.setContentLength(req, req.content().readableBytes());
+        req.headers().set(HttpHeaderNames.CONTENT_TYPE, NDListContent.CONTENT_TYPE);
+        req.headers().set(NDListContent.BATCHED_HEADER, batched);
+        channel.writeAndFlush(req);
+        latch.await();
+    }
+
+    private void testMetrics(Channel channel) throws InterruptedException {
+        result = null;
+        latch = new CountDownLatch(1);
+        HttpRequest req =
+                new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/metrics");
+        channel.writeAndFlush(req);
+        latch.await();
+
+        Assert.assertEquals(httpStatus, HttpResponseStatus.OK);
+        Assert.assertTrue(result.contains("# TYPE djl_inference_time_seconds histogram"));
+        Assert.assertTrue(result.contains("djl_batch_size_bucket{model=\"mlp\",le=\"1\"}"));
+        Assert.assertTrue(result.contains("djl_queue_depth{model=\"mlp\"} 0"));
+        Assert.assertTrue(
+                result.contains("djl_cache_requests_total{model=\"mlp_2\",result=\"hit\"} 1"));
+        Assert.assertTrue(
+                result.contains("djl_cache_requests_total{model=\"mlp_2\",result=\"miss\"} 2"));
+    }
+
+    private void testWarmup(Channel channel)
+            throws InterruptedException, ModelException, IOException {
+        Path modelDir = ModelWarmupTest.createWarmupModel(Paths.get("build/tmp/warmup"));
+        String url = modelDir.toUri().toURL().toString();
+        String encodedUrl = URLEncoder.encode(url, StandardCharsets.UTF_8.name());
+        sendRequest(channel, HttpMethod.POST, "/models?model_name=mlp_warmup&url=" + encodedUrl);
+
+        // the worker replays the recorded request before it starts serving
+        String warmedUp = "djl_warmup_time_seconds_count{model=\"mlp_warmup\"} 1";
+        for (int i = 0; i < 100; ++i) {
+            sendRequest(channel, HttpMethod.GET, "/metrics");
+            if (result.contains(warmedUp)) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(result.contains(warmedUp));
+
+        // the warmup is not counted as requests
+        Assert.assertTrue(result.contains("djl_batch_size_count{model=\"mlp_warmup\"} 0"));
+        Assert.assertTrue(result.contains("djl_queue_time_seconds_count{model=\"mlp_warmup\"} 0"));
+        Assert.assertTrue(
+                result.contains("djl_inference_time_seconds_count{model=\"mlp_warmup\"} 0"));
+
+        sendRequest(channel, HttpMethod.DELETE, "/models/mlp_warmup");
+    }
+
     private void testRegisterModelAsync(Channel channel)
             throws InterruptedException, UnsupportedEncodingException {
         result = null;
@@ -325,7 +461,7 @@ public class ModelServerTest {
                 new DefaultFullHttpRequest(
                         HttpVersion.HTTP_1_1,
                         HttpMethod.POST,
-                        "/models?model_name=mlp_2&url="
+                        "/models?model_name=mlp_2&cache_size=16&url="
                                 + URLEncoder.encode(url, StandardCharsets.UTF_8.name()));
         channel.writeAndFlush(req);
         latch.await();
@@ -363,6 +499,10 @@ public class ModelServerTest {
         Assert.assertEquals(resp.getMinWorkers(), 2);
         Assert.assertEquals(resp.getMaxWorkers(), 2);
         Assert.assertEquals(resp.getBatchSize(), 1);
+        Assert.assertEquals(resp.getMaxBatchSize(), 1);
+        Assert.assertEquals(resp.getWeight(), 1);
+        Assert.assertEquals(resp.getCacheSize(), 16);
+        Assert.assertEquals(resp.getCacheTtl(), 0);
         Assert.assertEquals(resp.getMaxBatchDelay(), 100);
         Assert.assertEquals(resp.getStatus(), "Healthy");
         DescribeModelResponse.Worker worker = resp.getWorkers().get(0);
@@ -372,6 +512,47 @@ public class ModelServerTest {
         Assert.assertEquals(worker.isGpu(), CudaUtils.hasCuda());
     }
 
+    private void testModelVersions(Channel channel)
+            throws InterruptedException, UnsupportedEncodingException {
+        String url = "https://djl-ai.s3.amazonaws.com/resources/test-models/mlp.tar.gz";
+        String encodedUrl = URLEncoder.encode(url, StandardCharsets.UTF_8.name());
+        String uri = "/models?model_name=mlp_2&version=v2&url=" + encodedUrl;
+        sendRequest(channel, HttpMethod.POST, uri);
+        StatusResponse status = JsonUtils.GSON.fromJson(result, StatusResponse.class);
+        Assert.assertEquals(status.getStatus(), "Model \"mlp_2\" registered.");
+
+        // a new version receives no traffic until it is switched
+        sendRequest(channel, HttpMethod.GET, "/models/mlp_2/v2");
+        DescribeModelResponse resp = JsonUtils.GSON.fromJson(result, DescribeModelResponse.class);
+        Assert.assertEquals(resp.getVersion(), "v2");
+        Assert.assertEquals(resp.getTraffic(), 0);
+
+        sendRequest(channel, HttpMethod.PUT, "/models/mlp_2/v2?traffic=100");
+        sendRequest(channel, HttpMethod.GET, "/models/mlp_2");
+        resp = JsonUtils.GSON.fromJson(result, DescribeModelResponse.class);
+        Assert.assertEquals(resp.getVersion(), "v2");
+        Assert.assertEquals(resp.getTraffic(), 100);
+
+        sendRequest(channel, HttpMethod.DELETE, "/models/mlp_2/v2");
+        status = JsonUtils.GSON.fromJson(result, StatusResponse.class);
+        Assert.assertEquals(status.getStatus(), "Model \"mlp_2:v2\" unregistered");
+
+        // the traffic falls back to the remaining version
+        sendRequest(channel, HttpMethod.GET, "/models/mlp_2");
+        resp = JsonUtils.GSON.fromJson(result, DescribeModelResponse.class);
+        Assert.assertNull(resp.getVersion());
+        Assert.assertEquals(resp.getTraffic(), 100);
+    }
+
+    private void sendRequest(Channel channel, HttpMethod method, String uri)
+            throws InterruptedException {
+        result = null;
+        latch = new CountDownLatch(1);
+        channel.writeAndFlush(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri));
+        latch.await();
+        Assert.assertEquals(httpStatus, HttpResponseStatus.OK);
+    }
+
     private void testUnregisterModel(Channel channel) throws InterruptedException {
         result = null;
         latch = new CountDownLatch(1);
@@ -650,6 +831,63 @@ public class ModelServerTest {
         Assert.assertEquals(resp.getMessage(), "Model not found: fake");
     }
 
+    private void testServiceUnavailableRetryAfter() throws InterruptedException {
+        Channel channel = connect(Connector.ConnectorType.MANAGEMENT);
+        Assert.assertNotNull(channel);
+
+        // stops the workers, a worker is started again by the next request
+        sendRequest(channel, HttpMethod.PUT, "/models/mlp_2?min_worker=0&max_worker=0");
+        sendRequest(channel, HttpMethod.PUT, "/models/mlp_2?min_worker=0&max_worker=1");
+
+        // the jobs queued without a worker delay the next request beyond max_queue_time
+        ModelInfo model = ModelManager.getInstance().getModel("mlp_2", null);
+        for (int i = 0; i < 50; ++i) {
+            Assert.assertTrue(model.addJob(new Job(null, "mlp_2", new Input("queued" + i))));
+        }
+
+        result = null;
+        latch = new CountDownLatch(1);
+        DefaultFullHttpRequest req =
+                new DefaultFullHttpRequest(
+                        HttpVersion.HTTP_1_1, HttpMethod.POST, "/predictions/mlp_2");
+        req.content().writeBytes(testImage).writeByte(0);
+        HttpUtil.setContentLength(req, req.content().readableBytes());
+        req.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_OCTET_STREAM);
+        channel.writeAndFlush(req);
+        latch.await();
+
+        Assert.assertEquals(httpStatus, HttpResponseStatus.SERVICE_UNAVAILABLE);
+        Assert.assertTrue(headers.getInt(HttpHeaderNames.RETRY_AFTER) > 0);
+        ErrorResponse resp = JsonUtils.GSON.fromJson(result, ErrorResponse.class);
+        Assert.assertEquals(resp.getMessage(), "Model is overloaded: mlp_2");
+        Assert.assertTrue(model.getMetrics().getRejections(ModelMetrics.Rejection.OVERLOADED) > 0);
+        channel.close();
+    }
+
+    private void testClientDisconnected() throws InterruptedException {
+        ModelInfo model = ModelManager.getInstance().getModel("mlp_2", null);
+        ModelMetrics metrics = model.getMetrics();
+
+        // a client that has disconnected before its job is served
+        EmbeddedChannel client = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        client.close();
+        Input input = new Input("disconnected");
+        input.addData(testImage);
+        Assert.assertTrue(model.addJob(new Job(ctx, "mlp_2", input)));
+
+        // the job is dropped by the worker after the queued jobs, without running inference
+        for (int i = 0; i < 100; ++i) {
+            if (metrics.getRejections(ModelMetrics.Rejection.CLIENT_CLOSED) > 0) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(metrics.getRejections(ModelMetrics.Rejection.CLIENT_CLOSED), 1);
+        Assert.assertNull(client.readOutbound());
+        Assert.assertEquals(model.getQueueSize(), 0);
+    }
+
     private void testServiceUnavailable() throws InterruptedException {
         Channel channel = connect(Connector.ConnectorType.MANAGEMENT);
         Assert.assertNotNull(channel);
@@ -723,6 +961,7 @@ public class ModelServerTest {
         public void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
             httpStatus = msg.status();
             result = msg.content().toString(StandardCharsets.UTF_8);
+            content = ByteBufUtil.getBytes(msg.content());
             headers = msg.headers();
             latch.countDown();
         }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.modality.Input;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AdaptiveBatchPolicyTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testWaitTime() {
+        AdaptiveBatchPolicy policy = new AdaptiveBatchPolicy();
+        List<Job> batch = Collections.singletonList(newJob(0));
+        long start = System.nanoTime();
+
+        // without statistics the worker waits for the rest of the batch delay
+        Assert.assertEquals(policy.getWaitTime(batch, start, 100, start), 100 * MS);
+        Assert.assertEquals(policy.getWaitTime(batch, start, 100, start + 40 * MS), 60 * MS);
+
+        // the batch is dispatched once the batch delay has elapsed
+        Assert.assertEquals(policy.getWaitTime(batch, start, 100, start + 100 * MS), 0);
+        Assert.assertEquals(policy.getWaitTime(batch, start, 100, start + 200 * MS), 0);
+    }
+
+    @Test
+    public void testArrivalGap() {
+        AdaptiveBatchPolicy policy = new AdaptiveBatchPolicy();
+        List<Job> batch = Collections.singletonList(newJob(0));
+        long start = System.nanoTime();
+        policy.onArrival(start);
+        policy.onArrival(start + 50 * MS);
+        Assert.assertEquals(policy.getArrivalGap(), 50 * MS);
+
+        // the next job is expected in time
+        Assert.assertEquals(policy.getWaitTime(batch, start, 100, start), 100 * MS);
+        // the next job is not expected before the batch delay elapses, dispatch immediately
+        Assert.assertEquals(policy.getWaitTime(batch, start, 100, start + 60 * MS), 0);
+    }
+
+    @Test
+    public void testEstimateLatency() {
+        AdaptiveBatchPolicy policy = new AdaptiveBatchPolicy();
+        Assert.assertEquals(policy.estimateLatency(1), 0);
+
+        policy.onBatchCompleted(2, 10 * MS);
+        Assert.assertEquals(policy.estimateLatency(2), 10 * MS);
+        // extrapolated from the largest smaller batch size
+        Assert.assertEquals(policy.estimateLatency(4), 20 * MS);
+        // no smaller batch size has been observed
+        Assert.assertEquals(policy.estimateLatency(1), 0);
+
+        // moving average
+        policy.onBatchCompleted(2, 20 * MS);
+        Assert.assertEquals(policy.estimateLatency(2), 12 * MS);
+    }
+
+    @Test
+    public void testDeadline() {
+        AdaptiveBatchPolicy policy = new AdaptiveBatchPolicy();
+        policy.onBatchCompleted(1, 10 * MS);
+        policy.onBatchCompleted(2, 30 * MS);
+
+        Job job = newJob(1000);
+        long now = System.nanoTime();
+        long deadline = job.getDeadline();
+        List<Job> batch = Collections.singletonList(job);
+
+        // the deadline is far away, the batch delay applies
+        Assert.assertEquals(policy.getWaitTime(batch, now, 100, now), 100 * MS);
+
+        // waiting for a second job must leave enough time to run a batch of 2
+        long late = deadline - 80 * MS;
+        Assert.assertEquals(policy.getWaitTime(batch, late, 100, late), 50 * MS);
+
+        // a batch of 2 would miss the deadline, dispatch immediately
+        late = deadline - 20 * MS;
+        Assert.assertTrue(policy.getWaitTime(batch, late, 100, late) <= 0);
+    }
+
+    @Test
+    public void testExpired() {
+        AdaptiveBatchPolicy policy = new AdaptiveBatchPolicy();
+        Job job = newJob(1000);
+        Job noDeadline = newJob(0);
+        long deadline = job.getDeadline();
+
+        // without latency statistics, only the deadline itself counts
+        Assert.assertFalse(policy.isExpired(job, deadline));
+        Assert.assertTrue(policy.isExpired(job, deadline + 1));
+
+        policy.onBatchCompleted(1, 10 * MS);
+        Assert.assertFalse(policy.isExpired(job, deadline - 20 * MS));
+        Assert.assertTrue(policy.isExpired(job, deadline - 5 * MS));
+        Assert.assertFalse(policy.isExpired(noDeadline, System.nanoTime()));
+    }
+
+    private static Job newJob(long timeout) {
+        return new Job(null, "model", new Input("requestId"), timeout);
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.ModelException;
+import ai.djl.modality.Input;
+import ai.djl.serving.ConfigManagerTest;
+import ai.djl.serving.util.ConfigManager;
+import ai.djl.util.Utils;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.cli.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class AutoscalerTest {
+
+    private static final String MODEL_URL =
+            "https://djl-ai.s3.amazonaws.com/resources/test-models/mlp.tar.gz";
+
+    private static final long INTERVAL = 1000;
+
+    private ConfigManager configManager;
+
+    @BeforeClass
+    public void setUp() throws ParseException {
+        String[] args = {"-f", "src/test/resources/config.properties"};
+        ConfigManager.init(ConfigManagerTest.parseArguments(args));
+        configManager = ConfigManager.getInstance();
+    }
+
+    @Test
+    public void testScaleUpByUtilization() throws ModelException, IOException {
+        FakeWorkLoadManager wlm = new FakeWorkLoadManager(configManager);
+        FakeModel model = newModel("busy", 1, 3);
+        wlm.workers.put(model, 1);
+        Autoscaler autoscaler = newAutoscaler(wlm, model, 0);
+
+        // busy 90% of the time with a queue, a single overloaded tick does not scale up
+        model.queueSize = 10;
+        tick(autoscaler, model, 0.9);
+        Assert.assertEquals(wlm.getNumWorkers(model), 1);
+        tick(autoscaler, model, 0.9);
+        Assert.assertEquals(wlm.getNumWorkers(model), 2);
+
+        // the streak starts over after scaling up, and never exceeds the maximum
+        for (int i = 0; i < 10; ++i) {
+            tick(autoscaler, model, 0.9);
+        }
+        Assert.assertEquals(wlm.getNumWorkers(model), 3);
+        model.close();
+    }
+
+    @Test
+    public void testScaleUpHysteresis() throws ModelException, IOException {
+        FakeWorkLoadManager wlm = new FakeWorkLoadManager(configManager);
+        FakeModel model = newModel("bursty", 1, 3);
+        wlm.workers.put(model, 1);
+        Autoscaler autoscaler = newAutoscaler(wlm, model, 0);
+
+        // a burst that never lasts two consecutive ticks does not add a worker
+        model.queueSize = 10;
+        for (int i = 0; i < 10; ++i) {
+            tick(autoscaler, model, 0.9);
+            tick(autoscaler, model, 0.5);
+        }
+        Assert.assertEquals(wlm.getNumWorkers(model), 1);
+        model.close();
+    }
+
+    @Test
+    public void testScaleUpByDrainTime() throws ModelException, IOException {
+        FakeWorkLoadManager wlm = new FakeWorkLoadManager(configManager);
+        FakeModel model = newModel("slow", 1, 2);
+        wlm.workers.put(model, 1);
+        Autoscaler autoscaler = newAutoscaler(wlm, model, 0);
+
+        // 10 batches of 1ms drain within the maximum batch delay of 100ms
+        model.queueSize = 10;
+        model.latency = TimeUnit.MILLISECONDS.toNanos(1);
+        for (int i = 0; i < 10; ++i) {
+            tick(autoscaler, model, 0.5);
+        }
+        Assert.assertEquals(wlm.getNumWorkers(model), 1);
+
+        // 10 batches of 20ms do not, even if the worker is not mostly busy
+        model.latency = TimeUnit.MILLISECONDS.toNanos(20);
+        tick(autoscaler, model, 0.5);
+        tick(autoscaler, model, 0.5);
+        Assert.assertEquals(wlm.getNumWorkers(model), 2);
+        model.close();
+    }
+
+    @Test
+    public void testScaleDown() throws ModelException, IOException {
+        FakeWorkLoadManager wlm = new FakeWorkLoadManager(configManager);
+        FakeModel model = newModel("quiet", 1, 3);
+        wlm.workers.put(model, 3);
+        Autoscaler autoscaler = newAutoscaler(wlm, model, 0);
+
+        // a worker is removed after 30 consecutive underloaded ticks
+        for (int i = 0; i < 29; ++i) {
+            tick(autoscaler, model, 0.1);
+        }
+        Assert.assertEquals(wlm.getNumWorkers(model), 3);
+        tick(autoscaler, model, 0.1);
+        Assert.assertEquals(wlm.getNumWorkers(model), 2);
+
+        // a single loaded tick starts the streak over
+        for (int i = 0; i < 29; ++i) {
+            tick(autoscaler, model, 0.1);
+        }
+        tick(autoscaler, model, 0.5);
+        tick(autoscaler, model, 0.1);
+        Assert.assertEquals(wlm.getNumWorkers(model), 2);
+
+        // the minimum number of workers is kept
+        for (int i = 0; i < 100; ++i) {
+            tick(autoscaler, model, 0.1);
+        }
+        Assert.assertEquals(wlm.getNumWorkers(model), 1);
+        Assert.assertTrue(model.isLoaded());
+        model.close();
+    }
+
+    @Test
+    public void testIdleUnload() throws ModelException, IOException, InterruptedException {
+        FakeWorkLoadManager wlm = new FakeWorkLoadManager(configManager);
+        FakeModel model = newModel("idle", 0, 2);
+        wlm.workers.put(model, 2);
+        // idle for two ticks
+        Autoscaler autoscaler = newAutoscaler(wlm, model, 2);
+
+        tick(autoscaler, model, 0);
+        Assert.assertTrue(model.isLoaded());
+        tick(autoscaler, model, 0);
+        Assert.assertFalse(model.isLoaded());
+        Assert.assertEquals(wlm.getNumWorkers(model), 0);
+
+        // a queued job loads the model again and starts a worker
+        model.queueSize = 1;
+        tick(autoscaler, model, 0);
+        for (int i = 0; i < 300 && !wlm.hasWorker(model); ++i) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(model.isLoaded());
+        Assert.assertEquals(wlm.getNumWorkers(model), 1);
+        model.close();
+    }
+
+    @Test
+    public void testIdleModelWithMinWorkersKept() throws ModelException, IOException {
+        FakeWorkLoadManager wlm = new FakeWorkLoadManager(configManager);
+        FakeModel model = newModel("pinned", 1, 1);
+        wlm.workers.put(model, 1);
+        Autoscaler autoscaler = newAutoscaler(wlm, model, 1);
+
+        for (int i = 0; i < 10; ++i) {
+            tick(autoscaler, model, 0);
+        }
+        Assert.assertTrue(model.isLoaded());
+        Assert.assertEquals(wlm.getNumWorkers(model), 1);
+        model.close();
+    }
+
+    @Test
+    public void testScaleDownCompletesBatch()
+            throws ModelException, IOException, InterruptedException {
+        byte[] image;
+        Path imageFile = Paths.get("../examples/src/test/resources/0.png");
+        try (InputStream is = Files.newInputStream(imageFile)) {
+            image = Utils.toByteArray(is);
+        }
+        WorkLoadManager wlm = new WorkLoadManager(configManager);
+        ModelInfo model = new ModelInfo("scaled", MODEL_URL, ModelInfo.loadModel(MODEL_URL), 10);
+        model.setMaxWorkers(2);
+        Assert.assertTrue(wlm.addWorker(model));
+
+        // a worker that is removed right after it may have taken a job still completes it, the
+        // jobs it did not take are served by the other worker
+        for (int i = 0; i < 20; ++i) {
+            Assert.assertTrue(wlm.addWorker(model));
+            EmbeddedChannel client = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+            ChannelHandlerContext ctx = client.pipeline().firstContext();
+            Input input = new Input("job-" + i);
+            input.addData(image);
+            Assert.assertTrue(model.addJob(new Job(ctx, "scaled", input)));
+            Assert.assertTrue(wlm.removeWorker(model));
+
+            FullHttpResponse response = null;
+            for (int j = 0; j < 300 && response == null; ++j) {
+                response = client.readOutbound();
+                if (response == null) {
+                    Thread.sleep(10);
+                }
+            }
+            Assert.assertNotNull(response);
+            Assert.assertEquals(response.status(), HttpResponseStatus.OK);
+            response.release();
+            client.close();
+        }
+        Assert.assertTrue(wlm.stopWorkers(model, 10000));
+        model.close();
+    }
+
+    private static void tick(Autoscaler autoscaler, FakeModel model, double utilization) {
+        int workers = model.wlm.getNumWorkers(model);
+        model.busyTime +=
+                (long) (utilization * TimeUnit.MILLISECONDS.toNanos(INTERVAL) * workers);
+        autoscaler.run();
+    }
+
+    private static Autoscaler newAutoscaler(
+            FakeWorkLoadManager wlm, FakeModel model, long idleTimeout) {
+        Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+        Endpoint endpoint = new Endpoint(model.getModelName());
+        endpoint.add(model);
+        endpoints.put(model.getModelName(), endpoint);
+        model.wlm = wlm;
+        ModelResidency residency = new ModelResidency(wlm, endpoints, 0);
+        Autoscaler autoscaler = new Autoscaler(wlm, endpoints, residency, INTERVAL, idleTimeout);
+
+        // the first tick only records the busy time of the model, the queue keeps it neutral
+        model.queueSize = 1;
+        autoscaler.run();
+        model.queueSize = 0;
+        return autoscaler;
+    }
+
+    private static FakeModel newModel(String name, int minWorkers, int maxWorkers)
+            throws ModelException, IOException {
+        FakeModel model = new FakeModel(name);
+        model.setMinWorkers(minWorkers);
+        model.setMaxWorkers(maxWorkers);
+        return model;
+    }
+
+    /** A model whose load is set by the test instead of its workers. */
+    private static final class FakeModel extends ModelInfo {
+
+        FakeWorkLoadManager wlm;
+        volatile long busyTime;
+        volatile int queueSize;
+        volatile long latency;
+
+        FakeModel(String name) throws ModelException, IOException {
+            super(name, MODEL_URL, loadModel(MODEL_URL), 10);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        long getBusyTime() {
+            return busyTime;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        long estimateLatency(int batchSize) {
+            return latency;
+        }
+    }
+
+    /** A {@link WorkLoadManager} that only counts the workers of each model. */
+    private static final class FakeWorkLoadManager extends WorkLoadManager {
+
+        Map<ModelInfo, Integer> workers;
+
+        FakeWorkLoadManager(ConfigManager configManager) {
+            super(configManager);
+            workers = new ConcurrentHashMap<>();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasWorker(ModelInfo modelInfo) {
+            return getNumWorkers(modelInfo) > 0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getNumWorkers(ModelInfo modelInfo) {
+            return workers.getOrDefault(modelInfo, 0);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void modelChanged(ModelInfo modelInfo) {}
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean addWorker(ModelInfo modelInfo) {
+            int count = getNumWorkers(modelInfo);
+            if (count >= modelInfo.getMaxWorkers() || !modelInfo.isLoaded()) {
+                return false;
+            }
+            workers.put(modelInfo, count + 1);
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean removeWorker(ModelInfo modelInfo) {
+            int count = getNumWorkers(modelInfo);
+            if (count == 0) {
+                return false;
+            }
+            workers.put(modelInfo, count - 1);
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean stopWorkers(ModelInfo modelInfo, long timeout) {
+            workers.remove(modelInfo);
+            return true;
+        }
+    }
+}
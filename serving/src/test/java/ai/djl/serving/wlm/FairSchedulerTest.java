@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FairSchedulerTest {
+
+    @Test
+    public void testUnlimited() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(0, 1000);
+        List<FairScheduler.Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            tickets.add(scheduler.acquire("model", 1, Priority.INTERACTIVE, 10));
+        }
+        for (FairScheduler.Ticket ticket : tickets) {
+            Assert.assertTrue(ticket.granted);
+            scheduler.release(ticket, 10);
+        }
+    }
+
+    @Test
+    public void testLimit() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(1, 1000);
+        FairScheduler.Ticket ticket = scheduler.acquire("model", 1, Priority.INTERACTIVE, 10);
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        Thread waiter = waitFor(scheduler, "model", 1, Priority.INTERACTIVE, granted);
+        Assert.assertTrue(granted.isEmpty());
+
+        scheduler.release(ticket, 10);
+        waiter.join(10000);
+        Assert.assertEquals(granted, Collections.singletonList("model"));
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(1, 60000);
+        FairScheduler.Ticket ticket = scheduler.acquire("model", 1, Priority.INTERACTIVE, 10);
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        Thread bulk = waitFor(scheduler, "bulk", 1, Priority.BATCH, granted);
+        Thread interactive = waitFor(scheduler, "interactive", 1, Priority.INTERACTIVE, granted);
+
+        scheduler.release(ticket, 10);
+        bulk.join(10000);
+        interactive.join(10000);
+        Assert.assertEquals(granted.get(0), "interactive");
+        Assert.assertEquals(granted.get(1), "bulk");
+    }
+
+    @Test
+    public void testAging() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(1, 50);
+        FairScheduler.Ticket ticket = scheduler.acquire("model", 1, Priority.INTERACTIVE, 10);
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        Thread bulk = waitFor(scheduler, "bulk", 1, Priority.BATCH, granted);
+        TimeUnit.MILLISECONDS.sleep(100);
+        Thread interactive = waitFor(scheduler, "interactive", 1, Priority.INTERACTIVE, granted);
+
+        // the batch traffic has waited longer than the maximum priority wait
+        scheduler.release(ticket, 10);
+        bulk.join(10000);
+        interactive.join(10000);
+        Assert.assertEquals(granted.get(0), "bulk");
+        Assert.assertEquals(granted.get(1), "interactive");
+    }
+
+    @Test
+    public void testFairness() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(1, 60000);
+        // the hot model has already used its share of the capacity
+        scheduler.release(scheduler.acquire("hot", 1, Priority.INTERACTIVE, 1000), 1000);
+        FairScheduler.Ticket ticket = scheduler.acquire("hot", 1, Priority.INTERACTIVE, 1000);
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        Thread hot = waitFor(scheduler, "hot", 1, Priority.INTERACTIVE, granted);
+        Thread cold = waitFor(scheduler, "cold", 1, Priority.INTERACTIVE, granted);
+
+        scheduler.release(ticket, 1000);
+        hot.join(10000);
+        cold.join(10000);
+        Assert.assertEquals(granted.get(0), "cold");
+        Assert.assertEquals(granted.get(1), "hot");
+    }
+
+    @Test
+    public void testInterrupt() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(1, 1000);
+        FairScheduler.Ticket ticket = scheduler.acquire("model", 1, Priority.INTERACTIVE, 10);
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        Thread waiter = waitFor(scheduler, "interrupted", 1, Priority.INTERACTIVE, granted);
+        waiter.interrupt();
+        waiter.join(10000);
+
+        // the interrupted batch gives up its place in the queue
+        scheduler.release(ticket, 10);
+        FairScheduler.Ticket next = scheduler.acquire("model", 1, Priority.INTERACTIVE, 10);
+        Assert.assertTrue(next.granted);
+        Assert.assertTrue(granted.isEmpty());
+    }
+
+    /**
+     * Starts a thread that acquires and releases the capacity for a batch, and waits until it is
+     * blocked by the scheduler.
+     */
+    private static Thread waitFor(
+            FairScheduler scheduler,
+            String modelName,
+            int weight,
+            Priority priority,
+            List<String> granted)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try {
+                                started.countDown();
+                                FairScheduler.Ticket ticket =
+                                        scheduler.acquire(modelName, weight, priority, 1000);
+                                granted.add(modelName);
+                                scheduler.release(ticket, 1000);
+                            } catch (InterruptedException ignore) {
+                                // the batch is cancelled
+                            }
+                        });
+        thread.start();
+        started.await();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < end) {
+            Thread.yield();
+        }
+        Assert.assertEquals(thread.getState(), Thread.State.WAITING);
+        return thread;
+    }
+}
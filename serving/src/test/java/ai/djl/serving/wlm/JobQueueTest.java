@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.modality.Input;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JobQueueTest {
+
+    @Test
+    public void testSharedCapacity() {
+        JobQueue queue = new JobQueue(3);
+        Assert.assertTrue(queue.offer(newJob("batch-0", Priority.BATCH)));
+        Assert.assertTrue(queue.offer(newJob("batch-1", Priority.BATCH)));
+        Assert.assertTrue(queue.offer(newJob("interactive-0", Priority.INTERACTIVE)));
+
+        // the capacity bounds the jobs of all priorities together
+        Assert.assertFalse(queue.offer(newJob("interactive-1", Priority.INTERACTIVE)));
+        Assert.assertFalse(queue.offer(newJob("batch-2", Priority.BATCH)));
+        Assert.assertEquals(queue.size(), 3);
+
+        // jobs with a higher priority are dequeued first
+        Assert.assertEquals(queue.poll().getRequestId(), "interactive-0");
+        Assert.assertTrue(queue.offer(newJob("batch-2", Priority.BATCH)));
+        List<Job> jobs = new ArrayList<>();
+        Assert.assertEquals(queue.drainTo(jobs, 10), 3);
+        Assert.assertEquals(jobs.get(0).getRequestId(), "batch-0");
+        Assert.assertEquals(jobs.get(2).getRequestId(), "batch-2");
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertNull(queue.poll());
+    }
+
+    private static Job newJob(String requestId, Priority priority) {
+        Job job = new Job(null, "model", new Input(requestId));
+        job.setPriority(priority);
+        return job;
+    }
+}
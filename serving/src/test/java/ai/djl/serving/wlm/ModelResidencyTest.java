@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.ModelException;
+import ai.djl.modality.Input;
+import ai.djl.serving.ConfigManagerTest;
+import ai.djl.serving.util.ConfigManager;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.cli.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ModelResidencyTest {
+
+    private static final String MODEL_URL =
+            "https://djl-ai.s3.amazonaws.com/resources/test-models/mlp.tar.gz";
+
+    private WorkLoadManager wlm;
+
+    @BeforeClass
+    public void setUp() throws ParseException {
+        String[] args = {"-f", "src/test/resources/config.properties"};
+        ConfigManager.init(ConfigManagerTest.parseArguments(args));
+        wlm = new WorkLoadManager(ConfigManager.getInstance());
+    }
+
+    @Test
+    public void testUnloadAndReload() throws ModelException, IOException, InterruptedException {
+        Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+        ModelInfo first = register(endpoints, "first");
+        ModelInfo second = register(endpoints, "second");
+        // only one of the models fits in the budget
+        long budget = first.getMemoryUsage() * 3 / 2;
+        ModelResidency residency = new ModelResidency(wlm, endpoints, budget);
+
+        // the least recently used idle model is unloaded for the newly loaded one
+        residency.onLoaded(second);
+        Assert.assertFalse(first.isLoaded());
+        Assert.assertTrue(second.isLoaded());
+        Assert.assertFalse(residency.scheduleLoad(second));
+
+        // a job for the unloaded model loads it again and unloads the idle one
+        first.setMaxWorkers(1);
+        Assert.assertTrue(first.addJob(new Job(null, "first", new Input("reload"))));
+        Assert.assertTrue(residency.scheduleLoad(first));
+        for (int i = 0; i < 300 && first.getQueueSize() > 0; ++i) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(first.isLoaded());
+        Assert.assertFalse(second.isLoaded());
+        Assert.assertTrue(wlm.hasWorker(first));
+        Assert.assertEquals(first.getQueueSize(), 0);
+
+        Assert.assertTrue(wlm.stopWorkers(first, 10000));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testBusyModelKept() throws ModelException, IOException {
+        Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+        ModelInfo first = register(endpoints, "busy");
+        ModelInfo second = register(endpoints, "idle");
+        ModelResidency residency =
+                new ModelResidency(wlm, endpoints, first.getMemoryUsage() * 3 / 2);
+
+        // a model with queued jobs is never unloaded, even if the budget is exceeded
+        Assert.assertTrue(first.addJob(new Job(null, "busy", new Input("queued"))));
+        residency.onLoaded(second);
+        Assert.assertTrue(first.isLoaded());
+        Assert.assertTrue(second.isLoaded());
+
+        first.rejectQueuedJobs(HttpResponseStatus.SERVICE_UNAVAILABLE, "Test finished.");
+        first.close();
+        second.close();
+    }
+
+    private static ModelInfo register(Map<String, Endpoint> endpoints, String name)
+            throws ModelException, IOException {
+        ModelInfo model = new ModelInfo(name, MODEL_URL, ModelInfo.loadModel(MODEL_URL), 10);
+        Endpoint endpoint = new Endpoint(name);
+        endpoint.add(model);
+        endpoints.put(name, endpoint);
+        return model;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.ModelException;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.serving.ConfigManagerTest;
+import ai.djl.serving.metrics.Histogram;
+import ai.djl.serving.metrics.ModelMetrics;
+import ai.djl.serving.util.ConfigManager;
+import ai.djl.util.Utils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.cli.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ModelWarmupTest {
+
+    private static final String MODEL_URL =
+            "https://djl-ai.s3.amazonaws.com/resources/test-models/mlp.tar.gz";
+
+    @BeforeClass
+    public void setUp() throws ParseException {
+        String[] args = {"-f", "src/test/resources/config.properties"};
+        ConfigManager.init(ConfigManagerTest.parseArguments(args));
+    }
+
+    @Test
+    public void testWarmup() throws ModelException, IOException, InterruptedException {
+        String url = createWarmupModel(Paths.get("build/tmp/warmup")).toUri().toURL().toString();
+        ModelInfo model = new ModelInfo("warmup", url, ModelInfo.loadModel(url), 10);
+        model.setMaxWorkers(1);
+        Assert.assertEquals(model.getWarmupInputs().size(), 1);
+
+        WorkLoadManager wlm = new WorkLoadManager(ConfigManager.getInstance());
+        Assert.assertTrue(wlm.addWorker(model));
+        WorkerThread worker = wlm.getWorkers(model).get(0);
+        ModelMetrics metrics = model.getMetrics();
+        for (int i = 0; i < 100 && worker.getState() != WorkerState.WORKER_MODEL_LOADED; ++i) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(worker.getState(), WorkerState.WORKER_MODEL_LOADED);
+
+        // the worker is only loaded once the warmup has completed
+        Assert.assertEquals(count(metrics.getWarmupTime()), 1);
+
+        // the warmup is neither counted as requests nor in the latency estimate
+        Assert.assertEquals(count(metrics.getBatchSize()), 0);
+        Assert.assertEquals(count(metrics.getQueueTime()), 0);
+        Assert.assertEquals(count(metrics.getInferenceTime()), 0);
+        Assert.assertEquals(model.getBusyTime(), 0);
+        Assert.assertEquals(model.estimateLatency(1), 0);
+
+        Assert.assertTrue(wlm.stopWorkers(model, 10000));
+        model.close();
+    }
+
+    /**
+     * Copies the mlp test model into the directory with a recorded {@code NDList} request in its
+     * warmup directory.
+     *
+     * @param dir the parent directory of the model
+     * @return the directory of the model
+     * @throws ModelException if the mlp test model is malformed
+     * @throws IOException if failed to copy the model
+     */
+    public static Path createWarmupModel(Path dir) throws ModelException, IOException {
+        Path modelDir = dir.resolve("mlp");
+        Utils.deleteQuietly(modelDir);
+        Path warmupDir = modelDir.resolve(ModelWarmup.WARMUP_DIR);
+        Files.createDirectories(warmupDir);
+        try (ZooModel<?, ?> model = ModelInfo.loadModel(MODEL_URL)) {
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(model.getModelPath())) {
+                files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                Files.copy(file, modelDir.resolve(file.getFileName()));
+            }
+        }
+        try (NDManager manager = NDManager.newBaseManager()) {
+            NDList list = new NDList(manager.zeros(new Shape(1, 28, 28)));
+            Path file = warmupDir.resolve("0" + ModelWarmup.NDLIST_EXTENSION);
+            Files.write(file, list.encode());
+        }
+        return modelDir.toAbsolutePath();
+    }
+
+    private static long count(Histogram histogram) {
+        return Arrays.stream(histogram.getCounts()).sum();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ * with the License. A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package ai.djl.serving.wlm;
+
+import ai.djl.ModelException;
+import ai.djl.serving.ConfigManagerTest;
+import ai.djl.serving.http.DescribeModelResponse;
+import ai.djl.serving.util.ConfigManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.apache.commons.cli.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class WorkLoadManagerTest {
+
+    private static final String MODEL_URL =
+            "https://djl-ai.s3.amazonaws.com/resources/test-models/mlp.tar.gz";
+
+    @AfterClass
+    public void tearDown() throws ParseException {
+        String[] args = {"-f", "src/test/resources/config.properties"};
+        ConfigManager.init(ConfigManagerTest.parseArguments(args));
+    }
+
+    @Test
+    public void testDivideCpuCores()
+            throws ModelException, IOException, ParseException, InterruptedException {
+        WorkLoadManager wlm = newWorkLoadManager(true, "");
+        ModelInfo first = newModel("first");
+        ModelInfo second = newModel("second");
+
+        // the 12 cores are divided among the CPU workers of all models
+        Assert.assertTrue(wlm.addWorker(first));
+        assertThreads(wlm, first, 1, 12);
+        Assert.assertTrue(wlm.addWorker(first));
+        assertThreads(wlm, first, 2, 6);
+        Assert.assertTrue(wlm.addWorker(second));
+        Assert.assertTrue(wlm.addWorker(second));
+        assertThreads(wlm, first, 2, 3);
+        assertThreads(wlm, second, 2, 3);
+
+        // the cores of removed workers are given to the others
+        Assert.assertTrue(wlm.removeWorker(second));
+        assertThreads(wlm, first, 2, 4);
+        assertThreads(wlm, second, 1, 4);
+        Assert.assertTrue(wlm.stopWorkers(first, 10000));
+        assertThreads(wlm, second, 1, 12);
+
+        Assert.assertTrue(wlm.stopWorkers(second, 10000));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testThreadsPerWorker()
+            throws ModelException, IOException, ParseException, InterruptedException {
+        WorkLoadManager wlm = newWorkLoadManager(true, "threads_per_worker=5\n");
+        ModelInfo model = newModel("fixed");
+
+        // the configured budget is kept however many workers there are
+        Assert.assertTrue(wlm.addWorker(model));
+        assertThreads(wlm, model, 1, 5);
+        Assert.assertTrue(wlm.addWorker(model));
+        Assert.assertTrue(wlm.addWorker(model));
+        assertThreads(wlm, model, 3, 5);
+
+        Assert.assertTrue(wlm.stopWorkers(model, 10000));
+        model.close();
+    }
+
+    @Test
+    public void testSharedThreadPool()
+            throws ModelException, IOException, ParseException, InterruptedException {
+        WorkLoadManager wlm = newWorkLoadManager(false, "");
+        ModelInfo model = newModel("shared");
+
+        // the workers of an engine with a process-wide thread pool have no budget of their own
+        Assert.assertTrue(wlm.addWorker(model));
+        Assert.assertTrue(wlm.addWorker(model));
+        assertThreads(wlm, model, 2, 0);
+
+        Assert.assertTrue(wlm.stopWorkers(model, 10000));
+        model.close();
+    }
+
+    private static void assertThreads(
+            WorkLoadManager wlm, ModelInfo model, int numWorkers, int threads) {
+        DescribeModelResponse resp = new DescribeModelResponse();
+        ModelManager.describeWorkers(resp, wlm, model);
+        List<DescribeModelResponse.Worker> workers = resp.getWorkers();
+        Assert.assertEquals(workers.size(), numWorkers);
+        for (DescribeModelResponse.Worker worker : workers) {
+            Assert.assertFalse(worker.isGpu());
+            Assert.assertEquals(worker.getThreads(), threads);
+        }
+    }
+
+    private static WorkLoadManager newWorkLoadManager(boolean perThreadLimit, String properties)
+            throws IOException, ParseException {
+        Path dir = Paths.get("build/tmp/wlm");
+        Files.createDirectories(dir);
+        Path file = dir.resolve("config.properties");
+        String config = "number_of_cpu_cores=12\nnumber_of_gpu=0\n" + properties;
+        Files.write(file, config.getBytes(StandardCharsets.UTF_8));
+        String[] args = {"-f", file.toString()};
+        ConfigManager.init(ConfigManagerTest.parseArguments(args));
+        return new WorkLoadManager(ConfigManager.getInstance()) {
+            /** {@inheritDoc} */
+            @Override
+            boolean hasPerThreadLimit(ModelInfo model) {
+                return perThreadLimit;
+            }
+        };
+    }
+
+    private static ModelInfo newModel(String name) throws ModelException, IOException {
+        ModelInfo model = new ModelInfo(name, MODEL_URL, ModelInfo.loadModel(MODEL_URL), 10);
+        model.setMaxWorkers(3);
+        return model;
+    }
+}